@@ -0,0 +1,70 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.enumerative.AllIntegers;
+
+/**
+ * Measures the cost of enumerating integers in a scrambled order with
+ * {@link AllIntegers}. The picker is reset whenever it has enumerated all
+ * its values, so the cost per pick is averaged over whole enumerations,
+ * including the resets.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class AllIntegersBenchmark
+{
+	/**
+	 * The number of values to enumerate.
+	 */
+	@Param({"100", "10000"})
+	public int m_size;
+
+	/**
+	 * The picker enumerating integers in a scrambled order.
+	 */
+	protected AllIntegers m_scrambled;
+
+	@Setup
+	public void setup()
+	{
+		m_scrambled = new AllIntegers(0, m_size - 1, true).setSeed(0);
+	}
+
+	@Benchmark
+	public Integer scrambled()
+	{
+		if (m_scrambled.isDone())
+		{
+			m_scrambled.reset();
+		}
+		return m_scrambled.pick();
+	}
+}
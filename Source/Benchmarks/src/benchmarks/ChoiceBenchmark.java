@@ -0,0 +1,69 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.util.Choice;
+
+/**
+ * Measures the cost of picking from a {@link Choice} as the number of
+ * alternatives grows.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class ChoiceBenchmark
+{
+	/**
+	 * The number of alternatives of the choice.
+	 */
+	@Param({"2", "16", "256"})
+	public int m_alternatives;
+
+	/**
+	 * The choice among the alternatives.
+	 */
+	protected Choice<Integer> m_choice;
+
+	@Setup
+	public void setup()
+	{
+		m_choice = new Choice<Integer>(new RandomFloat().setSeed(0));
+		for (int i = 0; i < m_alternatives; i++)
+		{
+			m_choice.add(i, 1f / m_alternatives);
+		}
+	}
+
+	@Benchmark
+	public Integer pick()
+	{
+		return m_choice.pick();
+	}
+}
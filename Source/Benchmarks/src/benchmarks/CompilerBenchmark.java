@@ -0,0 +1,94 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.AffineTransform.AffineTransformFloat;
+import ca.uqac.lif.synthia.random.AffineTransform.AffineTransformInteger;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.string.AsString;
+import ca.uqac.lif.synthia.string.StringPattern;
+import ca.uqac.lif.synthia.util.AsInt;
+import ca.uqac.lif.synthia.util.Choice;
+import ca.uqac.lif.synthia.util.PickerCompiler;
+import ca.uqac.lif.synthia.util.Tick;
+
+/**
+ * Compares the cost of picking values from picker trees with and
+ * without fusing them with the {@link PickerCompiler}.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class CompilerBenchmark
+{
+	/**
+	 * Whether the trees are compiled.
+	 */
+	@Param({"false", "true"})
+	public boolean m_compiled;
+
+	/**
+	 * A deep tree of numerical pickers.
+	 */
+	protected Picker<Integer> m_numbers;
+
+	/**
+	 * A string pattern made of a choice and a number.
+	 */
+	protected Picker<String> m_pattern;
+
+	@Setup
+	public void setup()
+	{
+		AffineTransformFloat scaled = new AffineTransformFloat(new AffineTransformFloat(new RandomFloat().setSeed(0), 2, 1), 0.5f, -3);
+		m_numbers = new AffineTransformInteger(new AsInt(new Tick(scaled)), 3, 1);
+		Choice<String> choice = new Choice<String>(new RandomFloat().setSeed(1));
+		choice.add("GET", 0.5).add("POST", 0.3).add("DELETE", 0.2);
+		m_pattern = new StringPattern("{$0} /{$1}", choice, new AsString(new RandomInteger(0, 1000).setSeed(2)));
+		if (m_compiled)
+		{
+			m_numbers = PickerCompiler.compile(m_numbers);
+			m_pattern = PickerCompiler.compile(m_pattern);
+		}
+	}
+
+	@Benchmark
+	public Integer numbers()
+	{
+		return m_numbers.pick();
+	}
+
+	@Benchmark
+	public String pattern()
+	{
+		return m_pattern.pick();
+	}
+}
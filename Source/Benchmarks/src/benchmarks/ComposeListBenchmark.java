@@ -0,0 +1,67 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+/**
+ * Measures the cost of generating lists of integers with
+ * {@link ComposeList}.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class ComposeListBenchmark
+{
+	/**
+	 * The length of the lists.
+	 */
+	@Param({"10", "1000"})
+	public int m_length;
+
+	/**
+	 * The picker of lists.
+	 */
+	protected ComposeList<Integer> m_list;
+
+	@Setup
+	public void setup()
+	{
+		m_list = new ComposeList<Integer>(new RandomInteger(0, 1000).setSeed(0), m_length);
+	}
+
+	@Benchmark
+	public List<Integer> pick()
+	{
+		return m_list.pick();
+	}
+}
@@ -0,0 +1,63 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.bullwinkle.BnfParser;
+import ca.uqac.lif.bullwinkle.BnfParser.InvalidGrammarException;
+import ca.uqac.lif.synthia.grammar.GrammarSentence;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+/**
+ * Measures the cost of generating a sentence from a BNF grammar with
+ * {@link GrammarSentence}. The grammar is the one of the
+ * <tt>GrammarDemo</tt> example.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class GrammarBenchmark
+{
+	/**
+	 * The picker of sentences.
+	 */
+	protected GrammarSentence m_sentence;
+
+	@Setup
+	public void setup() throws InvalidGrammarException
+	{
+		BnfParser parser = new BnfParser(GrammarBenchmark.class.getResourceAsStream("grammar.bnf"));
+		parser.setStartRule("<S>");
+		m_sentence = new GrammarSentence(parser, new RandomInteger().setSeed(0));
+	}
+
+	@Benchmark
+	public String pick()
+	{
+		return m_sentence.pick();
+	}
+}
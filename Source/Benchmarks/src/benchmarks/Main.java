@@ -0,0 +1,64 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks. All benchmarks are run with JMH's GC profiler, so
+ * that the memory allocated per operation (the <tt>gc.alloc.rate.norm</tt>
+ * metric, in bytes) is reported alongside the time per operation. The
+ * results are also written in JSON to the file <tt>benchmarks.json</tt>,
+ * so that the results of two releases can be compared.
+ * <p>
+ * The first argument, if present, is a regular expression selecting the
+ * benchmarks to run; for example, <tt>Choice</tt> only runs the
+ * benchmarks of {@link ChoiceBenchmark}. All benchmarks are run
+ * otherwise.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+public class Main
+{
+	public static void main(String[] args) throws RunnerException
+	{
+		Options opt = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "benchmarks\\..*")
+				.addProfiler(GCProfiler.class)
+				.forks(1)
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(1))
+				.timeUnit(TimeUnit.NANOSECONDS)
+				.resultFormat(ResultFormatType.JSON)
+				.result("benchmarks.json")
+				.build();
+		new Runner(opt).run();
+	}
+}
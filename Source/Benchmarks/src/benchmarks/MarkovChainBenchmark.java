@@ -0,0 +1,75 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.sequence.MarkovChain;
+import ca.uqac.lif.synthia.util.Constant;
+
+/**
+ * Measures the cost of one step of a walk in a {@link MarkovChain}. Each
+ * state of the chain has a transition to itself and to the next four states
+ * (modulo the number of states), with equal probabilities.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class MarkovChainBenchmark
+{
+	/**
+	 * The number of states of the chain.
+	 */
+	@Param({"8", "128"})
+	public int m_states;
+
+	/**
+	 * The Markov chain.
+	 */
+	protected MarkovChain<Integer> m_chain;
+
+	@Setup
+	public void setup()
+	{
+		m_chain = new MarkovChain<Integer>(new RandomFloat().setSeed(0));
+		for (int i = 0; i < m_states; i++)
+		{
+			m_chain.add(i, new Constant<Integer>(i));
+			for (int j = 0; j < 5; j++)
+			{
+				m_chain.add(i, (i + j) % m_states, 0.2f);
+			}
+		}
+	}
+
+	@Benchmark
+	public Integer step()
+	{
+		return m_chain.pick();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.random.GaussianFloat;
+import ca.uqac.lif.synthia.random.PoissonInteger;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+/**
+ * Measures the cost of picking a single primitive value from the basic
+ * random pickers. These pickers are at the leaves of almost every picker
+ * tree, so their cost is paid many times for each composite value.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class PrimitiveBenchmark
+{
+	/**
+	 * The picker of integers.
+	 */
+	protected RandomInteger m_integer;
+
+	/**
+	 * The picker of floats.
+	 */
+	protected RandomFloat m_float;
+
+	/**
+	 * The picker of floats following a Gaussian distribution.
+	 */
+	protected GaussianFloat m_gaussian;
+
+	/**
+	 * The picker of integers following a Poisson distribution.
+	 */
+	protected PoissonInteger m_poisson;
+
+	@Setup
+	public void setup()
+	{
+		m_integer = new RandomInteger(0, 1000);
+		m_integer.setSeed(0);
+		m_float = new RandomFloat();
+		m_float.setSeed(0);
+		m_gaussian = new GaussianFloat();
+		m_gaussian.setSeed(0);
+		m_poisson = new PoissonInteger(4);
+		m_poisson.setSeed(0);
+	}
+
+	@Benchmark
+	public Integer randomInteger()
+	{
+		return m_integer.pick();
+	}
+
+	@Benchmark
+	public Float randomFloat()
+	{
+		return m_float.pick();
+	}
+
+	@Benchmark
+	public Float gaussianFloat()
+	{
+		return m_gaussian.pick();
+	}
+
+	@Benchmark
+	public Integer poissonInteger()
+	{
+		return m_poisson.pick();
+	}
+}
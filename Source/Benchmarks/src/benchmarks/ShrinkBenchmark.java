@@ -0,0 +1,186 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.test.Action;
+import ca.uqac.lif.synthia.test.Assert;
+import ca.uqac.lif.synthia.test.Monkey;
+import ca.uqac.lif.synthia.test.Monkey.ActionMonkey;
+import ca.uqac.lif.synthia.test.Testable;
+import ca.uqac.lif.synthia.util.Choice;
+
+/**
+ * Measures the cost of a complete check, from finding a failing input to
+ * shrinking it, with an {@link Assert} and a {@link Monkey} on toy systems.
+ * Each operation uses the next of 64 seeds in turn, so that the time
+ * measured is an average over a fixed set of searches. The monkey is
+ * not given any delay to reset the counter, which would otherwise dominate
+ * the time measured.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShrinkBenchmark
+{
+	/**
+	 * The number of distinct seeds used by the benchmarks.
+	 */
+	protected static final int SEEDS = 64;
+
+	/**
+	 * The seed of the next operation.
+	 */
+	protected int m_seed = 0;
+
+	/**
+	 * Checks that lists contain no element greater than 900, which fails
+	 * for most lists of more than a few elements, and shrinks the first
+	 * counter-example found.
+	 * @return The shrunk list
+	 */
+	@Benchmark
+	public List<Integer> assertShrink()
+	{
+		int seed = m_seed++ % SEEDS;
+		Assert<List<Integer>> a = new Assert<List<Integer>>(new AllSmall(),
+				new ComposeList<Integer>(new RandomInteger(0, 1000).setSeed(seed), new RandomInteger(0, 50).setSeed(seed)),
+				new RandomFloat().setSeed(seed));
+		a.check();
+		return a.getShrunk();
+	}
+
+	/**
+	 * Applies random increments and decrements to a counter that fails when
+	 * it reaches 8, and shrinks the first failing sequence found.
+	 * @return The shrunk sequence
+	 */
+	@Benchmark
+	public List<Action> monkeyShrink()
+	{
+		int seed = m_seed++ % SEEDS;
+		Counter c = new Counter();
+		Choice<Action> actions = new Choice<Action>(new RandomFloat().setSeed(seed));
+		actions.add(new Step(c, 1), 0.7f).add(new Step(c, -1), 0.3f);
+		Monkey m = new ActionMonkey(c, actions, new RandomFloat().setSeed(seed), null).setResetDelay(0);
+		m.check();
+		return m.getShrunk();
+	}
+
+	/**
+	 * Condition that no element of a list is greater than 900.
+	 */
+	protected static class AllSmall implements Testable
+	{
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean test(Object ... parameters)
+		{
+			for (int x : (List<Integer>) parameters[0])
+			{
+				if (x > 900)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A counter that throws an exception when it reaches 8.
+	 */
+	protected static class Counter implements Resettable
+	{
+		/**
+		 * The value of the counter.
+		 */
+		protected int m_value = 0;
+
+		/**
+		 * Adds a value to the counter.
+		 * @param d The value to add
+		 */
+		public void add(int d)
+		{
+			m_value += d;
+			if (m_value >= 8)
+			{
+				throw new IllegalStateException("Overflow");
+			}
+		}
+
+		@Override
+		public void reset()
+		{
+			m_value = 0;
+		}
+	}
+
+	/**
+	 * Action adding a fixed value to a counter.
+	 */
+	protected static class Step implements Action
+	{
+		/**
+		 * The counter.
+		 */
+		protected final Counter m_counter;
+
+		/**
+		 * The value to add.
+		 */
+		protected final int m_delta;
+
+		public Step(Counter c, int delta)
+		{
+			super();
+			m_counter = c;
+			m_delta = delta;
+		}
+
+		@Override
+		public void doAction()
+		{
+			m_counter.add(m_delta);
+		}
+
+		@Override
+		public String toString()
+		{
+			return m_delta > 0 ? "+" + m_delta : Integer.toString(m_delta);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ca.uqac.lif.synthia.random.RandomBoolean;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.string.RandomString;
+import ca.uqac.lif.synthia.string.StringPattern;
+
+/**
+ * Measures the cost of generating strings with {@link RandomString} and
+ * {@link StringPattern}.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class StringBenchmark
+{
+	/**
+	 * The picker of strings of random length.
+	 */
+	protected RandomString m_string;
+
+	/**
+	 * The picker of strings following a pattern.
+	 */
+	protected StringPattern m_pattern;
+
+	@Setup
+	public void setup()
+	{
+		m_string = new RandomString(new RandomInteger(5, 20).setSeed(0));
+		m_string.setSeed(0);
+		RandomString name = new RandomString(new RandomInteger(3, 8).setSeed(1));
+		name.setSeed(1);
+		m_pattern = new StringPattern("{$0} is {$1} and weighs {$2} kg", name,
+				new RandomBoolean().setSeed(2), new RandomInteger(10, 1000).setSeed(3));
+	}
+
+	@Benchmark
+	public String randomString()
+	{
+		return m_string.pick();
+	}
+
+	@Benchmark
+	public String stringPattern()
+	{
+		return m_pattern.pick();
+	}
+}
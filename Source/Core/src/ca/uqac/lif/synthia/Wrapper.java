@@ -0,0 +1,36 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia;
+
+/**
+ * Interface implemented by pickers that stand in place of another picker,
+ * and pass their calls to it. Code that walks a tree of pickers can use
+ * this interface to reach the picker being wrapped, without depending on
+ * the class that does the wrapping.
+ * 
+ * @ingroup API
+ */
+public interface Wrapper
+{
+	/**
+	 * Gets the picker standing behind this one.
+	 * @return The picker
+	 */
+	/*@ pure non_null @*/ public Picker<?> getWrapped();
+}
@@ -83,6 +83,24 @@ public class ComposeList<T> implements Picker<List<T>>, Shrinkable<List<T>>, Exp
 		this(elements, new Constant<Integer>(length));
 	}
 
+	/**
+	 * Gets the picker providing elements for the list.
+	 * @return The picker
+	 */
+	/*@ pure non_null @*/ public Picker<T> getElementPicker()
+	{
+		return m_elements;
+	}
+
+	/**
+	 * Gets the picker deciding on the length of the list.
+	 * @return The picker
+	 */
+	/*@ pure non_null @*/ public Picker<Integer> getLengthPicker()
+	{
+		return m_length;
+	}
+
 	@Override
 	public void reset()
 	{
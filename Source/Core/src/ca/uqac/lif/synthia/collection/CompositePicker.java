@@ -18,7 +18,14 @@
  */
 package ca.uqac.lif.synthia.collection;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.string.StringPattern;
+import ca.uqac.lif.synthia.util.ArrayPicker;
+import ca.uqac.lif.synthia.util.PickerCompiler;
 
 /**
  * Picker that merges the result of other pickers into a
@@ -26,7 +33,7 @@ import ca.uqac.lif.synthia.Picker;
  * different data structure.
  * @ingroup API
  */
-public abstract class CompositePicker<T> implements Picker<T>
+public abstract class CompositePicker<T> implements Picker<T>, PickerCompiler.Fusible
 {
 	/**
 	 * The pickers used to generate the values
@@ -101,6 +108,22 @@ public abstract class CompositePicker<T> implements Picker<T>
 		return getOutput(out);
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, ArrayPicker.class, SetPicker.class, StringPattern.class))
+		{
+			return null;
+		}
+		MethodHandle[] parts = new MethodHandle[m_pickers.length];
+		for (int i = 0; i < m_pickers.length; i++)
+		{
+			parts[i] = c.fuse(m_pickers[i], Object.class);
+		}
+		MethodHandle out = MethodHandles.lookup().findVirtual(CompositePicker.class, "getOutput", MethodType.methodType(Object.class, Object[].class)).bindTo(this);
+		return PickerCompiler.sequence(out.asCollector(Object[].class, parts.length), parts);
+	}
+
 
 	/**
 	 * Puts the composite picker back into its initial state. This means that the
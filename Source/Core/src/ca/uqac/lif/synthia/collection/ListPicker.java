@@ -18,12 +18,14 @@
  */
 package ca.uqac.lif.synthia.collection;
 
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.util.Constant;
+import ca.uqac.lif.synthia.util.PickerCompiler;
 
 /**
  * Picker that merges the result of other pickers into a list.
@@ -121,6 +123,13 @@ public class ListPicker extends CompositePicker<List<Object>>
 		return picked_elements;
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c)
+	{
+		// The number of elements picked varies from one list to the next
+		return null;
+	}
+
 	@Override
 	public void reset()
 	{
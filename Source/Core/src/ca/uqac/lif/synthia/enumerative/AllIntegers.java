@@ -173,6 +173,42 @@ public class AllIntegers implements Bounded<Integer>, Seedable
 		return picked_value;
 	}
 
+	/**
+	 * Counts the values that remain to be enumerated.
+	 * @return The number of values
+	 */
+	public long countRemaining()
+	{
+		if (!m_scramble)
+		{
+			return Math.max(0, (long) m_max - m_actualValue + 1);
+		}
+		return m_valuesToScramble.size();
+	}
+
+	/**
+	 * Splits the values that remain to be enumerated in two halves. This
+	 * picker keeps the upper half, which also becomes the range it goes back
+	 * to when reset; a new picker enumerating the lower half is returned.
+	 * Splitting is only possible when values are enumerated in order.
+	 * @return The picker enumerating the lower half, or <tt>null</tt> if
+	 * values are scrambled or fewer than two values remain
+	 */
+	/*@ null @*/ public AllIntegers split()
+	{
+		long remaining = countRemaining();
+		if (m_scramble || remaining < 2)
+		{
+			return null;
+		}
+		int mid = (int) (m_actualValue + remaining / 2);
+		AllIntegers lower = new AllIntegers(m_actualValue, mid - 1, m_actualValue, false,
+				new ArrayList<Integer>(), m_indexGenerator.duplicate(false));
+		m_min = mid;
+		m_actualValue = mid;
+		return lower;
+	}
+
 	@Override
 	public AllIntegers duplicate(boolean with_state)
 	{
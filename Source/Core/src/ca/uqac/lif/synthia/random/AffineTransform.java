@@ -18,10 +18,17 @@
  */
 package ca.uqac.lif.synthia.random;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.synthia.CannotShrinkException;
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.Shrinkable;
+import ca.uqac.lif.synthia.util.Constant;
 import ca.uqac.lif.synthia.util.Mutator;
+import ca.uqac.lif.synthia.util.PickerCompiler;
+import ca.uqac.lif.synthia.util.PickerSimplifier;
 
 /**
  * Applies an affine transform to a value produced by another picker.
@@ -35,7 +42,7 @@ import ca.uqac.lif.synthia.util.Mutator;
  * <tt>Integer</tt>, etc.)
  * @ingroup API
  */
-public abstract class AffineTransform<T extends Number> extends Mutator<T> implements Shrinkable<T>
+public abstract class AffineTransform<T extends Number> extends Mutator<T> implements Shrinkable<T>, PickerCompiler.Fusible, PickerSimplifier.Simplifiable
 {
 	/**
 	 * The slope of the affine transform
@@ -73,7 +80,28 @@ public abstract class AffineTransform<T extends Number> extends Mutator<T> imple
 	 */
 	protected float pickFloat()
 	{
-		return m_picker.pick().floatValue() * m_m + m_b;
+		return transform(m_picker.pick().floatValue());
+	}
+
+	/**
+	 * Applies the affine transform to a floating point number.
+	 * @param x The number
+	 * @return The transformed number
+	 */
+	protected float transform(float x)
+	{
+		return x * m_m + m_b;
+	}
+
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, AffineTransformInteger.class, AffineTransformFloat.class))
+		{
+			return null;
+		}
+		MethodHandle t = MethodHandles.lookup().findVirtual(AffineTransform.class, "transform", MethodType.methodType(float.class, float.class)).bindTo(this);
+		return MethodHandles.filterReturnValue(c.fuse(m_picker, float.class), t);
 	}
 	
 	/**
@@ -98,6 +126,13 @@ public abstract class AffineTransform<T extends Number> extends Mutator<T> imple
 			return (int) super.pickFloat();
 		}
 
+		@Override
+		public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+		{
+			MethodHandle h = super.fuse(c);
+			return h == null ? null : PickerCompiler.convert(h, int.class);
+		}
+
 		@Override
 		public AffineTransformInteger duplicate(boolean with_state) 
 		{
@@ -106,6 +141,55 @@ public abstract class AffineTransform<T extends Number> extends Mutator<T> imple
 			return ati;
 
 		}
+
+		@Override
+		public Picker<?> simplify(PickerSimplifier s)
+		{
+			Picker<? extends Integer> p = s.reduce(m_picker);
+			AffineTransformInteger t = p == m_picker ? this : new AffineTransformInteger(p, m_m, m_b);
+			if (p instanceof Constant)
+			{
+				return s.fold(this, t);
+			}
+			if (!PickerSimplifier.isIntegral(m_m) || !PickerSimplifier.isIntegral(m_b))
+			{
+				return t;
+			}
+			long m = (long) m_m, b = (long) m_b;
+			if (p instanceof RandomInteger && m == 1 && !s.isShared(p))
+			{
+				// A translation of a random integer is a random integer
+				RandomInteger r = (RandomInteger) p;
+				long lo = r.getMin(), hi = r.getMax() - 1;
+				if (hi >= lo && PickerSimplifier.isExact(lo, hi, lo + b, hi + b))
+				{
+					RandomInteger shifted = r.duplicate(true).setInterval((int) (lo + b), (int) (hi + b + 1));
+					s.report(PickerSimplifier.TRANSFORM_FUSION, this, shifted);
+					return shifted;
+				}
+			}
+			if (p instanceof AffineTransformInteger && ((AffineTransformInteger) p).m_picker instanceof RandomInteger)
+			{
+				// Both transforms are exact on the values of the random integer:
+				// so is their composition
+				AffineTransformInteger inner = (AffineTransformInteger) p;
+				RandomInteger r = (RandomInteger) inner.m_picker;
+				long lo = r.getMin(), hi = r.getMax() - 1;
+				if (hi >= lo && PickerSimplifier.isIntegral(inner.m_m) && PickerSimplifier.isIntegral(inner.m_b))
+				{
+					long m1 = (long) inner.m_m, b1 = (long) inner.m_b;
+					if (PickerSimplifier.isExact(lo, hi, lo * m1, hi * m1, lo * m1 + b1, hi * m1 + b1,
+							(lo * m1 + b1) * m, (hi * m1 + b1) * m, (lo * m1 + b1) * m + b, (hi * m1 + b1) * m + b,
+							m1 * m, b1 * m, b1 * m + b, lo * m1 * m, hi * m1 * m))
+					{
+						AffineTransformInteger fused = new AffineTransformInteger(r, m1 * m, b1 * m + b);
+						s.report(PickerSimplifier.TRANSFORM_FUSION, this, fused);
+						return fused;
+					}
+				}
+			}
+			return t;
+		}
 		
 		@SuppressWarnings("unchecked")
 		@Override
@@ -153,6 +237,20 @@ public abstract class AffineTransform<T extends Number> extends Mutator<T> imple
 		{
 			 return new AffineTransformFloat(m_picker.duplicate(with_state), m_m, m_b);
 		}
+
+		@Override
+		public Picker<?> simplify(PickerSimplifier s)
+		{
+			// Nested transforms on floats are not merged, as this would change
+			// the rounding of their results
+			Picker<? extends Float> p = s.reduce(m_picker);
+			AffineTransformFloat t = p == m_picker ? this : new AffineTransformFloat(p, m_m, m_b);
+			if (p instanceof Constant)
+			{
+				return s.fold(this, t);
+			}
+			return t;
+		}
 		
 		@SuppressWarnings("unchecked")
 		@Override
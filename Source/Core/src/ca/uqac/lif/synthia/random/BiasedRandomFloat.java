@@ -48,9 +48,9 @@ public class BiasedRandomFloat extends RandomFloat
 	}
 	
 	@Override
-	public Float pick()
+	protected float pickFloat()
 	{
-		float f = super.pick();
+		float f = super.pickFloat();
 		float biased_f = f * m_beta;
 		if (biased_f < 0)
 		{
@@ -0,0 +1,278 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.random;
+
+import java.util.Arrays;
+
+import ca.uqac.lif.synthia.GiveUpException;
+import ca.uqac.lif.synthia.util.Telemetry;
+
+/**
+ * Records or replays the primitive random draws made by all the
+ * {@link RandomPicker}s used by a thread. Since every random picker in
+ * Synthia ultimately obtains its values from the <tt>next</tt> method of
+ * its {@link Random} instance, the sequence of these values (the
+ * <em>choice sequence</em>) completely determines the objects produced by
+ * an arbitrary tree of pickers.
+ * <p>
+ * A buffer operates in one of two modes:
+ * <ul>
+ * <li>In <em>recording</em> mode, draws are produced normally by each random
+ * generator, and are appended to the buffer.</li>
+ * <li>In <em>replay</em> mode, draws are taken from a sequence of values
+ * given in advance, regardless of the state of each generator. When this
+ * sequence is exhausted, draws return 0, which is the "simplest" value a
+ * generator can produce. To prevent infinite loops in pickers that reject
+ * some values, a {@link GiveUpException} is thrown if too many draws are
+ * made past the end of the sequence.</li>
+ * </ul>
+ * A buffer only intercepts draws while it is active on the current thread,
+ * i.e. between calls to {@link #start()} and {@link #stop()}. Since a value
+ * returned by <tt>next</tt> never has more than 32 bits, the buffer stores
+ * choices as plain <tt>int</tt>s.
+ * <p>
+ * Choice sequences are what makes it possible to shrink inputs produced by
+ * any combination of pickers, without relying on their implementation of
+ * {@link ca.uqac.lif.synthia.Shrinkable Shrinkable}: smaller inputs are
+ * obtained by making the choice sequence shorter, or its values closer to
+ * zero, and replaying it.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class ChoiceBuffer
+{
+	/**
+	 * The maximum number of draws that can be made in replay mode past the
+	 * end of the sequence.
+	 */
+	public static final int MAX_OVERRUN = 1000;
+
+	/**
+	 * The buffer active on each thread, if any.
+	 */
+	protected static final ThreadLocal<ChoiceBuffer> s_current = new ThreadLocal<ChoiceBuffer>();
+
+	/**
+	 * The number of buffers active across all threads. This counter is used
+	 * to skip the lookup of the thread-local buffer in the (frequent) case
+	 * where no buffer is active at all.
+	 */
+	protected static volatile int s_active = 0;
+
+	/**
+	 * The values to replay, or <tt>null</tt> if the buffer is in recording
+	 * mode.
+	 */
+	/*@ null @*/ protected final int[] m_replay;
+
+	/**
+	 * The position of the next value to replay.
+	 */
+	protected int m_position;
+
+	/**
+	 * The choices made so far.
+	 */
+	/*@ non_null @*/ protected int[] m_choices;
+
+	/**
+	 * The number of choices made so far.
+	 */
+	protected int m_length;
+
+	/**
+	 * The buffer that was active on this thread before this one was started.
+	 */
+	/*@ null @*/ protected ChoiceBuffer m_previous;
+
+	/**
+	 * A flag indicating whether the buffer is currently active.
+	 */
+	protected boolean m_started;
+
+	/**
+	 * Creates a new buffer in recording mode.
+	 */
+	public ChoiceBuffer()
+	{
+		this(null);
+	}
+
+	/**
+	 * Creates a new buffer that replays a sequence of choices.
+	 * @param choices The choices to replay, or <tt>null</tt> to create a
+	 * buffer in recording mode
+	 */
+	public ChoiceBuffer(/*@ null @*/ int[] choices)
+	{
+		super();
+		m_replay = choices;
+		m_choices = new int[choices == null ? 64 : Math.max(choices.length, 1)];
+		m_length = 0;
+		m_position = 0;
+		m_previous = null;
+		m_started = false;
+	}
+
+	/**
+	 * Makes this buffer the one intercepting the random draws made on the
+	 * current thread.
+	 * @return This buffer
+	 */
+	public ChoiceBuffer start()
+	{
+		if (m_started)
+		{
+			return this;
+		}
+		m_previous = s_current.get();
+		s_current.set(this);
+		m_started = true;
+		synchronized (ChoiceBuffer.class)
+		{
+			s_active++;
+		}
+		return this;
+	}
+
+	/**
+	 * Stops intercepting random draws on the current thread. The buffer that
+	 * was active before this one was started, if any, becomes active again.
+	 * @return This buffer
+	 */
+	public ChoiceBuffer stop()
+	{
+		if (!m_started)
+		{
+			return this;
+		}
+		if (m_previous == null)
+		{
+			s_current.remove();
+		}
+		else
+		{
+			s_current.set(m_previous);
+		}
+		m_previous = null;
+		m_started = false;
+		synchronized (ChoiceBuffer.class)
+		{
+			s_active--;
+		}
+		return this;
+	}
+
+	/**
+	 * Determines if the buffer is in replay mode.
+	 * @return {@code true} if the buffer replays choices, {@code false} if it
+	 * records them
+	 */
+	public boolean isReplay()
+	{
+		return m_replay != null;
+	}
+
+	/**
+	 * Gets the number of choices made so far.
+	 * @return The number of choices
+	 */
+	public int size()
+	{
+		return m_length;
+	}
+
+	/**
+	 * Gets the choices made so far. In replay mode, this corresponds to the
+	 * values actually consumed by the pickers, which may be shorter (if some
+	 * values were not used) or longer (if the sequence was exhausted) than
+	 * the sequence that was given.
+	 * @return A copy of the choices
+	 */
+	/*@ non_null @*/ public int[] getChoices()
+	{
+		return Arrays.copyOf(m_choices, m_length);
+	}
+
+	/**
+	 * Produces the next draw for a random generator. This method is called
+	 * by {@link Random} when a buffer is active on the current thread.
+	 * @param r The generator asking for a draw
+	 * @param bits The number of random bits to produce
+	 * @return The value of the draw
+	 */
+	int next(Random r, int bits)
+	{
+		int value;
+		if (m_replay == null)
+		{
+			value = r.nextBits(bits);
+		}
+		else
+		{
+			if (m_position < m_replay.length)
+			{
+				value = m_replay[m_position] & mask(bits);
+			}
+			else if (m_position - m_replay.length < MAX_OVERRUN)
+			{
+				value = 0;
+			}
+			else
+			{
+				throw Telemetry.gaveUp(this, new GiveUpException("Choice sequence exhausted"));
+			}
+			m_position++;
+		}
+		if (m_length == m_choices.length)
+		{
+			m_choices = Arrays.copyOf(m_choices, m_choices.length * 2);
+		}
+		m_choices[m_length++] = value;
+		return value;
+	}
+
+	/**
+	 * Gets the buffer active on the current thread.
+	 * @return The buffer, or <tt>null</tt> if no buffer is active
+	 */
+	/*@ null @*/ static ChoiceBuffer current()
+	{
+		if (s_active == 0)
+		{
+			return null;
+		}
+		return s_current.get();
+	}
+
+	/**
+	 * Computes the mask keeping only the lowest bits of a value.
+	 * @param bits The number of bits to keep
+	 * @return The mask
+	 */
+	protected static int mask(int bits)
+	{
+		if (bits >= 32)
+		{
+			return -1;
+		}
+		return (1 << bits) - 1;
+	}
+}
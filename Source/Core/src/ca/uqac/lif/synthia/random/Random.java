@@ -216,6 +216,22 @@ public class Random {
 	 * @since  1.1
 	 */
 	protected int next(int bits) {
+		ChoiceBuffer buffer = ChoiceBuffer.current();
+		if (buffer != null)
+			return buffer.next(this, bits);
+		return nextBits(bits);
+	}
+
+	/**
+	 * Generates the next pseudorandom number from the internal state of this
+	 * generator, bypassing any {@link ChoiceBuffer} active on the current
+	 * thread.
+	 *
+	 * @param  bits random bits
+	 * @return the next pseudorandom value from this random number
+	 *         generator's sequence
+	 */
+	int nextBits(int bits) {
 		long oldseed, nextseed;
 		AtomicLong seed = this.seed;
 		do {
@@ -18,11 +18,16 @@
  */
 package ca.uqac.lif.synthia.random;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.Reactive;
 import ca.uqac.lif.synthia.Shrinkable;
 import ca.uqac.lif.synthia.util.Constant;
 import ca.uqac.lif.synthia.util.NothingPicker;
+import ca.uqac.lif.synthia.util.PickerCompiler;
 
 /**
  * Picks a Boolean value. This class actually implements a Bernoulli
@@ -31,7 +36,7 @@ import ca.uqac.lif.synthia.util.NothingPicker;
  * 
  * @ingroup API
  */
-public class RandomBoolean extends RandomPicker<Boolean> implements Shrinkable<Boolean>, Reactive<Float,Boolean>
+public class RandomBoolean extends RandomPicker<Boolean> implements Shrinkable<Boolean>, Reactive<Float,Boolean>, PickerCompiler.Fusible
 {
 	/**
 	 * The probability of picking <tt>true</tt>
@@ -91,10 +96,29 @@ public class RandomBoolean extends RandomPicker<Boolean> implements Shrinkable<B
 	 */
 	@Override
 	public Boolean pick()
+	{
+		return pickBoolean();
+	}
+
+	/**
+	 * Picks a random Boolean without boxing it.
+	 * @return The random Boolean
+	 */
+	protected boolean pickBoolean()
 	{
 		return m_random.nextFloat() <= m_trueProbability;
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, RandomBoolean.class))
+		{
+			return null;
+		}
+		return MethodHandles.lookup().findVirtual(RandomBoolean.class, "pickBoolean", MethodType.methodType(boolean.class)).bindTo(this);
+	}
+
 
 	/**
 	 * Creates a copy of the RandomBoolean picker.
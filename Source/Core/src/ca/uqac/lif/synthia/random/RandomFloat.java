@@ -18,16 +18,21 @@
  */
 package ca.uqac.lif.synthia.random;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.Shrinkable;
 import ca.uqac.lif.synthia.util.NothingPicker;
+import ca.uqac.lif.synthia.util.PickerCompiler;
 
 /**
  * Picks a floating point number uniformly in an interval.
  * 
  * @ingroup API
  */
-public class RandomFloat extends RandomPicker<Float> implements Shrinkable<Float>
+public class RandomFloat extends RandomPicker<Float> implements Shrinkable<Float>, PickerCompiler.Fusible
 {
 	/**
 	 * The lower bound of the interval
@@ -81,6 +86,24 @@ public class RandomFloat extends RandomPicker<Float> implements Shrinkable<Float
 		m_random = random;
 	}
 	
+	/**
+	 * Gets the lower bound of the interval.
+	 * @return The lower bound
+	 */
+	public float getMin()
+	{
+		return m_min;
+	}
+
+	/**
+	 * Gets the higher bound of the interval.
+	 * @return The higher bound
+	 */
+	public float getMax()
+	{
+		return m_max;
+	}
+
 	@Override
 	public RandomFloat setSeed(int seed)
 	{
@@ -98,10 +121,29 @@ public class RandomFloat extends RandomPicker<Float> implements Shrinkable<Float
 	 */
 	@Override
 	public Float pick()
+	{
+		return pickFloat();
+	}
+
+	/**
+	 * Picks a random float in the specified interval without boxing it.
+	 * @return The random float
+	 */
+	protected float pickFloat()
 	{
 		return m_random.nextFloat() * (m_max - m_min) + m_min;
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, RandomFloat.class, BiasedRandomFloat.class))
+		{
+			return null;
+		}
+		return MethodHandles.lookup().findVirtual(RandomFloat.class, "pickFloat", MethodType.methodType(float.class)).bindTo(this);
+	}
+
 	/**
 	 * Creates a copy of the RandomIntervalFloat picker.
 	 * @param with_state If set to <tt>false</tt>, the returned copy is set to
@@ -18,17 +18,22 @@
  */
 package ca.uqac.lif.synthia.random;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.Reactive;
 import ca.uqac.lif.synthia.Shrinkable;
 import ca.uqac.lif.synthia.util.NothingPicker;
+import ca.uqac.lif.synthia.util.PickerCompiler;
 
 /**
  * Picks an integer uniformly in an interval.
  * 
  * @ingroup API
  */
-public class RandomInteger extends RandomPicker<Integer> implements Shrinkable<Integer>, Reactive<Integer,Integer>
+public class RandomInteger extends RandomPicker<Integer> implements Shrinkable<Integer>, Reactive<Integer,Integer>, PickerCompiler.Fusible
 {
 	/**
 	 * The lower bound of the interval
@@ -88,6 +93,24 @@ public class RandomInteger extends RandomPicker<Integer> implements Shrinkable<I
 		return this;
 	}
 	
+	/**
+	 * Gets the lower bound of the interval.
+	 * @return The lower bound
+	 */
+	public int getMin()
+	{
+		return m_min;
+	}
+
+	/**
+	 * Gets the higher bound of the interval.
+	 * @return The higher bound
+	 */
+	public int getMax()
+	{
+		return m_max;
+	}
+	
 	/**
 	 * Sets the maximum bound for values of this picker.
 	 * @param max The higher bound of the interval
@@ -116,10 +139,29 @@ public class RandomInteger extends RandomPicker<Integer> implements Shrinkable<I
 	 */
 	@Override
 	public Integer pick() 
+	{
+		return pickInt();
+	}
+
+	/**
+	 * Picks a random integer without boxing it.
+	 * @return The random integer
+	 */
+	protected int pickInt()
 	{
 		return m_random.nextInt(m_max - m_min) + m_min;
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, RandomInteger.class))
+		{
+			return null;
+		}
+		return MethodHandles.lookup().findVirtual(RandomInteger.class, "pickInt", MethodType.methodType(int.class)).bindTo(this);
+	}
+
 
 	/**
 	 * Creates a copy of the RandomInteger picker.
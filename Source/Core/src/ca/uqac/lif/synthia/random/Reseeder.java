@@ -0,0 +1,294 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.random;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Seedable;
+import ca.uqac.lif.synthia.Wrapper;
+
+/**
+ * Gives new seeds to all the random generators inside a picker. A picker
+ * is generally a tree of other pickers, of which only some (typically the
+ * leaves) are {@link Seedable}. This class walks this tree, by looking at
+ * the fields of each picker that refer to other pickers (directly, or
+ * through an array, a collection, a map, or another Synthia object such
+ * as the alternatives of a {@link ca.uqac.lif.synthia.util.Choice Choice}),
+ * and gives each seedable picker found a distinct seed derived from a
+ * single <em>master</em> seed.
+ * <p>
+ * Since the tree is always walked in the same order, reseeding two
+ * identical trees with the same master seed makes them produce the same
+ * values. The elements of unordered collections and maps (such as
+ * <tt>HashSet</tt> and <tt>HashMap</tt>) are visited in the natural order
+ * of their elements or keys when they have one, and otherwise by class
+ * name and string rendition. {@link Wrapper} pickers, such as the ones
+ * measured by {@link ca.uqac.lif.synthia.util.PickerMetrics PickerMetrics},
+ * are walked through to the picker they wrap.
+ * <p>
+ * Reseeding is used to derive independent but reproducible copies of a
+ * picker: each copy is obtained by calling
+ * {@link Picker#duplicate(boolean) duplicate(false)}, and reseeded with a
+ * master seed computed by {@link #derive(long, long)} from a global seed and
+ * the index of the copy.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Reseeder
+{
+	/**
+	 * The fields of each class that can refer to other pickers, in the order
+	 * in which they are visited.
+	 */
+	protected static final Map<Class<?>,Field[]> s_fields = new ConcurrentHashMap<Class<?>,Field[]>();
+
+	/**
+	 * Orders fields by name.
+	 */
+	protected static final Comparator<Field> s_byName = new Comparator<Field>()
+	{
+		@Override
+		public int compare(Field f1, Field f2)
+		{
+			return f1.getName().compareTo(f2.getName());
+		}
+	};
+
+	/**
+	 * Orders the elements of unordered collections and the keys of unordered
+	 * maps, so that they are visited in the same order in all copies.
+	 */
+	protected static final Comparator<Object> s_stable = new Comparator<Object>()
+	{
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		@Override
+		public int compare(Object o1, Object o2)
+		{
+			if (o1 == o2)
+			{
+				return 0;
+			}
+			if (o1 == null || o2 == null)
+			{
+				return o1 == null ? -1 : 1;
+			}
+			if (o1.getClass() == o2.getClass() && o1 instanceof Comparable)
+			{
+				return ((Comparable) o1).compareTo(o2);
+			}
+			int c = o1.getClass().getName().compareTo(o2.getClass().getName());
+			if (c != 0)
+			{
+				return c;
+			}
+			return String.valueOf(o1).compareTo(String.valueOf(o2));
+		}
+	};
+
+	/**
+	 * The prefix of the names of the classes whose fields are visited even if
+	 * they are not pickers.
+	 */
+	protected static final String HOLDER_PREFIX = "ca.uqac.lif.synthia.";
+
+	/**
+	 * Cannot be instantiated.
+	 */
+	private Reseeder()
+	{
+		super();
+	}
+
+	/**
+	 * Derives a seed from a master seed and an index, using the
+	 * <a href="https://prng.di.unimi.it/splitmix64.c">SplitMix64</a>
+	 * mixing function. Seeds derived from the same master seed and
+	 * successive indices are statistically independent.
+	 * @param seed The master seed
+	 * @param index The index
+	 * @return The derived seed
+	 */
+	public static long derive(long seed, long index)
+	{
+		long z = seed + (index + 1) * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Gives new seeds to all the seedable pickers inside a picker, including
+	 * the picker itself.
+	 * @param picker The picker
+	 * @param seed The master seed
+	 * @return The number of pickers that have been given a seed
+	 */
+	public static int reseed(/*@ non_null @*/ Picker<?> picker, long seed)
+	{
+		return reseed(picker, seed, new IdentityHashMap<Object,Object>(), 0);
+	}
+
+	/**
+	 * Recursively gives new seeds to the seedable pickers inside an object.
+	 * @param o The object
+	 * @param seed The master seed
+	 * @param visited The objects already visited
+	 * @param count The number of pickers given a seed so far
+	 * @return The number of pickers given a seed after visiting the object
+	 */
+	protected static int reseed(Object o, long seed, Map<Object,Object> visited, int count)
+	{
+		while (o instanceof Wrapper)
+		{
+			o = ((Wrapper) o).getWrapped();
+		}
+		if (o == null || visited.containsKey(o))
+		{
+			return count;
+		}
+		visited.put(o, o);
+		if (o instanceof Picker || o.getClass().getName().startsWith(HOLDER_PREFIX))
+		{
+			if (o instanceof Seedable)
+			{
+				((Seedable) o).setSeed((int) derive(seed, count));
+				count++;
+			}
+			for (Field f : getFields(o.getClass()))
+			{
+				try
+				{
+					count = reseed(f.get(o), seed, visited, count);
+				}
+				catch (IllegalAccessException e)
+				{
+					// Skip this field
+				}
+			}
+		}
+		else if (o instanceof Object[])
+		{
+			for (Object e : (Object[]) o)
+			{
+				count = reseed(e, seed, visited, count);
+			}
+		}
+		else if (o instanceof Collection)
+		{
+			Collection<?> elements = (Collection<?>) o;
+			if (!isOrdered(elements))
+			{
+				List<Object> sorted = new ArrayList<Object>(elements);
+				Collections.sort(sorted, s_stable);
+				elements = sorted;
+			}
+			for (Object e : elements)
+			{
+				count = reseed(e, seed, visited, count);
+			}
+		}
+		else if (o instanceof Map)
+		{
+			Map<?,?> map = (Map<?,?>) o;
+			Collection<?> keys = map.keySet();
+			if (!isOrdered(map))
+			{
+				List<Object> sorted = new ArrayList<Object>(keys);
+				Collections.sort(sorted, s_stable);
+				keys = sorted;
+			}
+			for (Object k : keys)
+			{
+				count = reseed(map.get(k), seed, visited, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Determines if a collection or a map is iterated in an order that does
+	 * not depend on the hash codes of its elements.
+	 * @param o The collection or map
+	 * @return <tt>true</tt> if the iteration order is fixed
+	 */
+	protected static boolean isOrdered(/*@ non_null @*/ Object o)
+	{
+		return o instanceof List || o instanceof SortedSet || o instanceof SortedMap
+				|| o instanceof LinkedHashSet || o instanceof LinkedHashMap || o instanceof Queue;
+	}
+
+	/**
+	 * Gets the fields of a class and its ancestors that can refer to other
+	 * pickers.
+	 * @param c The class
+	 * @return The fields, ordered by class (ancestors first) and by name
+	 */
+	protected static Field[] getFields(Class<?> c)
+	{
+		Field[] fields = s_fields.get(c);
+		if (fields != null)
+		{
+			return fields;
+		}
+		List<Field> list = new ArrayList<Field>();
+		if (c.getSuperclass() != null)
+		{
+			list.addAll(Arrays.asList(getFields(c.getSuperclass())));
+		}
+		Field[] declared = c.getDeclaredFields();
+		Arrays.sort(declared, s_byName);
+		for (Field f : declared)
+		{
+			Class<?> t = f.getType();
+			if (Modifier.isStatic(f.getModifiers()) || t.isPrimitive() || t == String.class || t == Random.class || f.isSynthetic())
+			{
+				continue;
+			}
+			try
+			{
+				f.setAccessible(true);
+			}
+			catch (RuntimeException e)
+			{
+				continue;
+			}
+			list.add(f);
+		}
+		fields = list.toArray(new Field[list.size()]);
+		s_fields.put(c, fields);
+		return fields;
+	}
+}
@@ -29,6 +29,7 @@ import ca.uqac.lif.synthia.GiveUpException;
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.explanation.NthSuccessiveOutput;
 import ca.uqac.lif.synthia.util.Mutator;
+import ca.uqac.lif.synthia.util.Telemetry;
 
 /**
  * Returns object from a picker satisfying a condition.
@@ -123,22 +124,35 @@ public class PickIf<T> extends Mutator<T> implements ExplanationQueryable
 	 * Method to pick the first object generated by the picker who satisfies the condition.
 	 * WARNING: For now, this method can result in a infinite loop if the picker can't generate
 	 * an object who satisfies the condition.
+	 * <p>
+	 * If a {@link Telemetry} listener is installed, it is notified of the
+	 * number of values rejected before returning or giving up.
 	 *
 	 * @return The object.
 	 */
 	public T pick()
 	{
+		Telemetry.Listener listener = Telemetry.getListener();
+		long start = listener == null ? 0 : System.nanoTime();
 		int iteration_counter = 0;
 		T picked_value = m_picker.pick();
 		while (!canChoose(picked_value))
 		{
 			if (checkIfInfiniteLoop(iteration_counter))
 			{
-				throw new GiveUpException();
+				if (listener != null)
+				{
+					listener.rejected(this, iteration_counter + 1, System.nanoTime() - start, true);
+				}
+				throw Telemetry.gaveUp(this, new GiveUpException());
 			}
 			picked_value = m_picker.pick();
 			iteration_counter++;
 		}
+		if (listener != null && iteration_counter > 0)
+		{
+			listener.rejected(this, iteration_counter, System.nanoTime() - start, false);
+		}
 		return picked_value;
 	}
 
@@ -21,6 +21,7 @@ package ca.uqac.lif.synthia.sequence;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -189,9 +190,20 @@ public class MarkovChain<T> implements Picker<T>
 	@Override
 	public MarkovChain<T> duplicate(boolean with_state)
 	{
-		MarkovChain<T> mmm = new MarkovChain<T>(m_floatSource);
+		MarkovChain<T> mmm = new MarkovChain<T>(m_floatSource.duplicate(with_state));
 		mmm.m_transitions.putAll(m_transitions);
-		mmm.m_pickers.putAll(m_pickers);
+		// A picker associated to several states remains shared in the copy
+		Map<Picker<? extends T>,Picker<? extends T>> copies = new IdentityHashMap<Picker<? extends T>,Picker<? extends T>>();
+		for (Map.Entry<Integer,Picker<? extends T>> e : m_pickers.entrySet())
+		{
+			Picker<? extends T> copy = copies.get(e.getValue());
+			if (copy == null)
+			{
+				copy = e.getValue().duplicate(with_state);
+				copies.put(e.getValue(), copy);
+			}
+			mmm.m_pickers.put(e.getKey(), copy);
+		}
 		mmm.m_exhaust = m_exhaust;
 		if (with_state)
 		{
@@ -0,0 +1,89 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.sequence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.util.PerThread;
+
+/**
+ * Records the values produced by another picker that is called from
+ * several threads. Like a {@link PerThread} picker, it gives each thread its
+ * own reseeded copy of the picker; each copy is wrapped in a {@link Record},
+ * so that the values produced for each thread are recorded in a separate
+ * <em>stripe</em>, without any synchronization between threads. The stripes
+ * can be retrieved individually, or aggregated into a single list.
+ * 
+ * @param <T> The type of the elements to pick
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class StripedRecord<T> extends PerThread<T>
+{
+	/**
+	 * Creates a new striped record.
+	 * @param picker The picker of which each thread receives a copy
+	 * @param seed The master seed from which the seed of each copy is derived
+	 */
+	public StripedRecord(/*@ non_null @*/ Picker<T> picker, long seed)
+	{
+		super(picker, seed);
+	}
+
+	@Override
+	protected Record<T> newCopy(int index)
+	{
+		return new Record<T>(super.newCopy(index));
+	}
+
+	/**
+	 * Gets the values recorded for a thread. This method must not be called
+	 * while that thread is using the picker.
+	 * @param index The index of the thread
+	 * @return The list of values
+	 */
+	/*@ non_null @*/ public List<T> getStripe(int index)
+	{
+		return ((Record<T>) m_copies.get(index)).getSequence();
+	}
+
+	/**
+	 * Gets the values recorded for all threads, stripe after stripe, in the
+	 * order of the thread indices. This method must not be called while other
+	 * threads are using the picker.
+	 * @return The list of values
+	 */
+	/*@ non_null @*/ public List<T> getValues()
+	{
+		List<T> values = new ArrayList<T>();
+		for (Picker<T> p : m_copies)
+		{
+			values.addAll(((Record<T>) p).getSequence());
+		}
+		return values;
+	}
+
+	@Override
+	public StripedRecord<T> duplicate(boolean with_state)
+	{
+		return new StripedRecord<T>(m_picker.duplicate(with_state), m_seed);
+	}
+}
@@ -18,14 +18,21 @@
  */
 package ca.uqac.lif.synthia.string;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.util.Constant;
+import ca.uqac.lif.synthia.util.PickerCompiler;
+import ca.uqac.lif.synthia.util.PickerSimplifier;
 
 /**
  * Utility picker that converts an input into a string.
  * @author Sylvain Hallé
  * @ingroup API
  */
-public class AsString implements Picker<String>
+public class AsString implements Picker<String>, PickerCompiler.Fusible, PickerSimplifier.Simplifiable
 {
 	/**
 	 * The picker from which to take the input objects.
@@ -53,12 +60,41 @@ public class AsString implements Picker<String>
 		return o.toString();
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, AsString.class))
+		{
+			return null;
+		}
+		// String.valueOf also turns null into "null"
+		MethodHandle f = MethodHandles.publicLookup().findStatic(String.class, "valueOf", MethodType.methodType(String.class, Object.class));
+		return MethodHandles.filterReturnValue(c.fuse(m_picker, Object.class), f);
+	}
+
 	@Override
 	public AsString duplicate(boolean with_state)
 	{
 		return new AsString(m_picker.duplicate(with_state));
 	}
 
+	@Override
+	public Picker<?> simplify(PickerSimplifier s)
+	{
+		Picker<?> p = s.reduce(m_picker);
+		if (p instanceof Constant)
+		{
+			return s.fold(this, new AsString(p));
+		}
+		if (p instanceof AsString || p instanceof StringPattern)
+		{
+			// The picker already produces non-null strings
+			s.report(PickerSimplifier.REDUNDANT_CONVERSION, this, p);
+			return p;
+		}
+		return p == m_picker ? this : new AsString(p);
+	}
+
 	@Override
 	public void reset()
 	{
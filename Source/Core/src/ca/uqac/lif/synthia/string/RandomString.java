@@ -114,6 +114,24 @@ public class RandomString implements Shrinkable<String>, Seedable
 		m_charIndexPicker = new RandomInteger(0, m_chars.length);
 	}
 
+	/**
+	 * Gets the picker used to determine the string's length.
+	 * @return The picker
+	 */
+	public Picker<Integer> getLengthPicker()
+	{
+		return m_lengthPicker;
+	}
+
+	/**
+	 * Gets the characters allowed in the random string.
+	 * @return The array of characters
+	 */
+	public char[] getChars()
+	{
+		return m_chars;
+	}
+
 	/**
 	 * A private method to initialize the default characters array
 	 */
@@ -23,6 +23,8 @@ import ca.uqac.lif.synthia.Shrinkable;
 import ca.uqac.lif.synthia.collection.CompositePicker;
 import ca.uqac.lif.synthia.random.RandomFloat;
 import ca.uqac.lif.synthia.relative.PickSmallerComparable;
+import ca.uqac.lif.synthia.util.Constant;
+import ca.uqac.lif.synthia.util.PickerSimplifier;
 
 /**
  * Generates a string according to a predefined pattern. The picker is
@@ -38,7 +40,7 @@ import ca.uqac.lif.synthia.relative.PickSmallerComparable;
  * ...</pre>
  * @ingroup API
  */
-public class StringPattern extends CompositePicker<String> implements Shrinkable<String>
+public class StringPattern extends CompositePicker<String> implements Shrinkable<String>, PickerSimplifier.Simplifiable
 {	
 	/**
 	 * The string pattern
@@ -89,6 +91,25 @@ public class StringPattern extends CompositePicker<String> implements Shrinkable
 		return new StringPattern(m_pattern, pickers);
 	}
 
+	@Override
+	public Picker<?> simplify(PickerSimplifier s)
+	{
+		Picker<?>[] parts = new Picker<?>[m_pickers.length];
+		boolean changed = false, constant = true;
+		for (int i = 0; i < parts.length; i++)
+		{
+			parts[i] = s.reduce(m_pickers[i]);
+			changed |= parts[i] != m_pickers[i];
+			constant &= parts[i] instanceof Constant;
+		}
+		StringPattern t = changed ? newPicker(parts) : this;
+		if (constant)
+		{
+			return s.fold(this, t);
+		}
+		return t;
+	}
+
 	@Override
 	public Shrinkable<String> shrink(String o, Picker<Float> decision, float magnitude)
 	{
@@ -19,13 +19,17 @@
 package ca.uqac.lif.synthia.test;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ca.uqac.lif.synthia.GiveUpException;
 import ca.uqac.lif.synthia.NoMoreElementException;
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.Shrinkable;
+import ca.uqac.lif.synthia.random.ChoiceBuffer;
 import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.util.Telemetry;
 
 /**
  * @ingroup Examples
@@ -75,6 +79,55 @@ public class Assert<T>
 	 */
 	protected Picker<Float> m_decision;
 
+	/**
+	 * An optional cache of the verdicts already returned by the object under
+	 * test. Set to <tt>null</tt> to run the test on every input.
+	 */
+	/*@ null @*/ protected VerdictCache m_cache;
+
+	/**
+	 * A flag indicating whether failing inputs are shrunk by manipulating the
+	 * choice sequence that produced them, instead of calling
+	 * {@link Shrinkable#shrink(Object, Picker, float) shrink} on the input
+	 * picker.
+	 */
+	protected boolean m_choiceShrinking;
+
+	/**
+	 * The budget of the check, or <tt>null</tt> if the check is only bounded
+	 * by the default number of attempts.
+	 */
+	/*@ null @*/ protected Budget m_budget;
+
+	/**
+	 * The resources spent by the last call to {@link #check()}.
+	 */
+	/*@ null @*/ protected CheckResult m_result;
+
+	/**
+	 * The registry where shrinkers constructing smaller inputs are looked up,
+	 * or <tt>null</tt> to always use the shrinking of the input picker.
+	 */
+	/*@ null @*/ protected ShrinkerRegistry m_registry;
+
+	/**
+	 * The corpus of failing choice sequences replayed before the search, and
+	 * where new failures are stored, or <tt>null</tt> to use no corpus.
+	 */
+	/*@ null @*/ protected Corpus m_corpus;
+
+	/**
+	 * The number of threads used to replay the corpus.
+	 */
+	protected int m_replayThreads;
+
+	/**
+	 * A flag indicating whether the inputs currently tested are candidates
+	 * produced by shrinking a failing input. This is only used to report the
+	 * tests to the {@link Telemetry} listener, if any.
+	 */
+	protected boolean m_shrinking;
+
 	/**
 	 * Creates a new assertion object.
 	 * @param sut The object that is being tested
@@ -88,6 +141,13 @@ public class Assert<T>
 		m_input = input;
 		m_shrunk = new ArrayList<T>();
 		m_decision = decision;
+		m_cache = null;
+		m_choiceShrinking = false;
+		m_budget = null;
+		m_result = null;
+		m_registry = ShrinkerRegistry.instance;
+		m_corpus = null;
+		m_replayThreads = 1;
 	}
 
 	/**
@@ -100,6 +160,116 @@ public class Assert<T>
 		this(sut, input, RandomFloat.instance);
 	}
 
+	/**
+	 * Sets a cache used to remember the verdicts already returned by the
+	 * object under test. When a cache is set, an input that has already been
+	 * tested is not passed again to the object; this is useful when tests are
+	 * expensive, as the shrinking process frequently produces the same input
+	 * more than once.
+	 * @param cache The cache, or <tt>null</tt> to disable caching
+	 * @return This assertion
+	 */
+	public Assert<T> setCache(/*@ null @*/ VerdictCache cache)
+	{
+		m_cache = cache;
+		return this;
+	}
+
+	/**
+	 * Gets the cache used to remember the verdicts already returned by the
+	 * object under test.
+	 * @return The cache, or <tt>null</tt> if no cache is set
+	 */
+	/*@ null @*/ public VerdictCache getCache()
+	{
+		return m_cache;
+	}
+
+	/**
+	 * Sets whether failing inputs are shrunk by manipulating the choice
+	 * sequence that produced them. When enabled, the random choices made by
+	 * the input picker are recorded in a {@link ChoiceBuffer}, and a failing
+	 * input is shrunk by a {@link ChoiceShrinker}; this works for any
+	 * combination of pickers, regardless of how (and whether) they implement
+	 * {@link Shrinkable#shrink(Object, Picker, float) shrink}.
+	 * @param b Set to {@code true} to shrink choice sequences, {@code false}
+	 * to use the shrinking of the input picker (the default)
+	 * @return This assertion
+	 */
+	public Assert<T> setChoiceShrinking(boolean b)
+	{
+		m_choiceShrinking = b;
+		return this;
+	}
+
+	/**
+	 * Sets the registry where shrinkers are looked up. When the registry
+	 * contains a {@link Shrinker} for the input picker, failing inputs are
+	 * shrunk by testing the candidates it constructs, instead of calling
+	 * {@link Shrinkable#shrink(Object, Picker, float) shrink} on the input
+	 * picker. By default, the shrinkers of {@link ShrinkerRegistry#instance},
+	 * which are provided for the built-in pickers, are used automatically.
+	 * @param r The registry, or <tt>null</tt> to always use the shrinking of
+	 * the input picker
+	 * @return This assertion
+	 */
+	public Assert<T> setShrinkerRegistry(/*@ null @*/ ShrinkerRegistry r)
+	{
+		m_registry = r;
+		return this;
+	}
+
+	/**
+	 * Sets the corpus of failing choice sequences used by the check. When a
+	 * corpus is set, the check starts by replaying all its entries; if some
+	 * of them still fail, the smallest one becomes the initial failing input,
+	 * and no random exploration takes place. The failure reported by the
+	 * check is added to the corpus: if choice shrinking is enabled, the shrunk
+	 * choice sequence is stored, otherwise the choice sequence of the initial
+	 * failing input.
+	 * @param c The corpus, or <tt>null</tt> to use no corpus
+	 * @return This assertion
+	 */
+	public Assert<T> setCorpus(/*@ null @*/ Corpus c)
+	{
+		m_corpus = c;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used to replay the corpus. Since all
+	 * threads call the same object under test, it must be thread-safe if
+	 * more than one thread is used.
+	 * @param n The number of threads (1 by default)
+	 * @return This assertion
+	 */
+	public Assert<T> setReplayThreads(int n)
+	{
+		m_replayThreads = Math.max(1, n);
+		return this;
+	}
+
+	/**
+	 * Sets the budget of the check.
+	 * @param b The budget, or <tt>null</tt> to only bound the check by the
+	 * default number of attempts
+	 * @return This assertion
+	 */
+	public Assert<T> setBudget(/*@ null @*/ Budget b)
+	{
+		m_budget = b;
+		return this;
+	}
+
+	/**
+	 * Gets the resources spent by the last call to {@link #check()}.
+	 * @return The result, or <tt>null</tt> if no check has been made yet
+	 */
+	/*@ null @*/ public CheckResult getResult()
+	{
+		return m_result;
+	}
+
 	/**
 	 * Gets the total number of shrinking iterations conducted by the object.
 	 * @return The number of iterations
@@ -137,25 +307,76 @@ public class Assert<T>
 	}
 
 	/**
-	 * Starts the search for a failing test input.
+	 * Starts the search for a failing test input. If a {@link Budget} has been
+	 * set and bounds the search, the search runs until a failing input is
+	 * found and shrunk, or the budget is exhausted; otherwise, it is restarted
+	 * at most {@link #MAX_STARTS} times. In both cases, the search also stops
+	 * after {@link #MAX_STARTS} consecutive restarts that could not test any
+	 * input, because the input picker has no more elements or gives up.
 	 * @return The value {@code false} if a failing input has been found,
 	 * {@code true} otherwise. 
 	 */
 	@SuppressWarnings("unchecked")
 	public boolean check()
 	{
+		Telemetry.Listener listener = Telemetry.getListener();
+		if (listener != null)
+		{
+			listener.checkStarted(this);
+		}
+		m_result = new CheckResult();
+		m_shrinking = false;
 		T best = null;
-		for (int start_cnt = 0; start_cnt < MAX_STARTS; start_cnt++)
+		int[] best_choices = null;
+		int[] replay = replayCorpus();
+		boolean bounded = m_budget != null && m_budget.boundsSearch();
+		int idle_starts = 0;
+		for (int start_cnt = 0; (bounded ? best == null : start_cnt < MAX_STARTS) && idle_starts < MAX_STARTS && !isExhausted(); start_cnt++)
 		{
+			boolean from_corpus = replay != null;
 			List<T> shrunk = new ArrayList<T>();
+			m_shrinking = false;
 			T o = null;
+			int[] choices = null;
 			boolean found = false;
+			// Counts the starts that end before testing anything
+			idle_starts++;
 			try
 			{
-				for (int i = 0; i < MAX_TRIES; i++)
+				for (int i = 0; i < MAX_TRIES && !isExhausted(); i++)
 				{
-					o = m_input.pick();
-					if (!m_sut.test(o))
+					ChoiceBuffer buffer = null;
+					if (replay != null)
+					{
+						m_input.reset();
+						buffer = new ChoiceBuffer(replay).start();
+						replay = null;
+					}
+					else if (m_choiceShrinking || m_corpus != null)
+					{
+						buffer = new ChoiceBuffer().start();
+					}
+					long gen_start = System.nanoTime();
+					try
+					{
+						o = m_input.pick();
+					}
+					finally
+					{
+						long gen_duration = System.nanoTime() - gen_start;
+						m_result.addGeneration(gen_duration);
+						if (listener != null)
+						{
+							listener.picked(m_input, gen_duration);
+						}
+						if (buffer != null)
+						{
+							buffer.stop();
+							choices = buffer.getChoices();
+						}
+					}
+					idle_starts = 0;
+					if (!test(o))
 					{
 						found = true;
 						break;
@@ -175,37 +396,58 @@ public class Assert<T>
 			{
 				continue;
 			}
-			Shrinkable<T> p = m_input.shrink(o, m_decision, 1);
-			try
+			m_result.addProgress(o, sizeOf(o));
+			m_shrinking = true;
+			long shrink_start = System.nanoTime(), sut_before = m_result.getSutTime();
+			if (m_choiceShrinking)
 			{
-				for (int i = 0; i < MAX_CYCLES; i++)
+				m_shrunk = shrinkChoices(o, choices);
+				m_result.addShrinkingTime(System.nanoTime() - shrink_start - (m_result.getSutTime() - sut_before));
+				break;
+			}
+			Shrinker<T> shrinker = m_registry == null ? null : m_registry.get(m_input);
+			if (shrinker != null)
+			{
+				o = shrinkConstructive(shrinker, o, shrunk);
+			}
+			else
+			{
+				Shrinkable<T> p = m_input.shrink(o, m_decision, 1);
+				try
 				{
-					boolean new_found = false;
-					for (float magnitude = 0.25f; !new_found && magnitude <= 1; magnitude += 0.25f)
+					for (int i = 0; (i < MAX_CYCLES || (m_budget != null && m_budget.getMaxShrinkSteps() != Budget.UNLIMITED)) && !isShrinkingExhausted(); i++)
 					{
-						p = p.shrink(o, m_decision, magnitude);
-						int j;
-						for (j = 0; j < MAX_TRIES; j++)
+						boolean new_found = false;
+						for (float magnitude = 0.25f; !new_found && magnitude <= 1 && !isShrinkingExhausted(); magnitude += 0.25f)
 						{
-							o = p.pick();
-							if (!m_sut.test(o))
+							p = p.shrink(o, m_decision, magnitude);
+							int j;
+							for (j = 0; j < MAX_TRIES && !isShrinkingExhausted(); j++)
 							{
-								shrunk.add(o);
-								new_found = true;
-								break;
+								o = p.pick();
+								m_result.addShrinkStep();
+								if (!test(o))
+								{
+									shrunk.add(o);
+									m_result.addProgress(o, sizeOf(o));
+									new_found = true;
+									break;
+								}
 							}
 						}
 					}
 				}
+				catch (NoMoreElementException e)
+				{
+					// Nothing to do
+				}
 			}
-			catch (NoMoreElementException e)
-			{
-				// Nothing to do
-			}
+			m_result.addShrinkingTime(System.nanoTime() - shrink_start - (m_result.getSutTime() - sut_before));
 			if (!(o instanceof Comparable))
 			{
 				// No point in trying to find "best" input
 				m_shrunk = shrunk;
+				best_choices = choices;
 				break;
 			}
 			if (!shrunk.isEmpty())
@@ -216,9 +458,230 @@ public class Assert<T>
 					// Found a "smaller" input
 					m_shrunk = shrunk;
 					best = shrunk.get(shrunk.size() - 1);
+					best_choices = choices;
 				}				
 			}
+			if (from_corpus)
+			{
+				// A failure of the corpus is not compared with new random inputs
+				break;
+			}
+		}
+		// Only the failure that is reported goes into the corpus
+		store(best_choices);
+		m_result.end(isExhausted());
+		m_shrinking = false;
+		if (listener != null)
+		{
+			listener.checkEnded(this, m_shrunk.isEmpty(), m_result.getElapsedTime(), m_result.getGenerated(), m_result.getShrinkSteps());
 		}
 		return m_shrunk.isEmpty();
 	}
+
+	/**
+	 * Shrinks a failing input by repeatedly testing the candidates produced
+	 * by a shrinker, and moving to the first one that also fails.
+	 * @param shrinker The shrinker
+	 * @param o The failing input
+	 * @param shrunk The list where progressively smaller inputs are added
+	 * @return The smallest failing input found
+	 */
+	protected T shrinkConstructive(Shrinker<T> shrinker, T o, List<T> shrunk)
+	{
+		boolean bounded = m_budget != null && m_budget.getMaxShrinkSteps() != Budget.UNLIMITED;
+		boolean new_found = true;
+		for (int i = 0; new_found && (i < MAX_CYCLES || bounded) && !isShrinkingExhausted(); i++)
+		{
+			new_found = false;
+			for (T c : shrinker.candidates(o))
+			{
+				if (isShrinkingExhausted())
+				{
+					break;
+				}
+				m_result.addShrinkStep();
+				if (!test(c))
+				{
+					o = c;
+					shrunk.add(o);
+					m_result.addProgress(o, sizeOf(o));
+					new_found = true;
+					break;
+				}
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * Runs the test on an input, possibly retrieving its verdict from the
+	 * cache. Every verdict counts as an invocation in the result of the
+	 * check, including those retrieved from the cache; otherwise, a budget
+	 * limiting the number of invocations would no longer be consumed once
+	 * all the inputs the picker can produce are in the cache.
+	 * @param o The input
+	 * @return The verdict of the test
+	 */
+	protected boolean test(T o)
+	{
+		long start = System.nanoTime();
+		boolean verdict = true;
+		try
+		{
+			if (m_cache == null)
+			{
+				verdict = m_sut.test(o);
+			}
+			else
+			{
+				verdict = m_cache.test(m_sut, o);
+			}
+			return verdict;
+		}
+		finally
+		{
+			long duration = System.nanoTime() - start;
+			if (m_result != null)
+			{
+				m_result.addInvocations(1, duration);
+			}
+			Telemetry.Listener listener = Telemetry.getListener();
+			if (listener != null)
+			{
+				if (m_shrinking)
+				{
+					listener.shrinkStep(this, duration, !verdict);
+				}
+				else
+				{
+					listener.tried(this, m_result == null ? 0 : m_result.getGenerated() - 1, duration, !verdict);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replays the entries of the corpus, if any.
+	 * @return The smallest choice sequence of the corpus that still produces
+	 * a failing input, or <tt>null</tt> if there is none
+	 */
+	/*@ null @*/ protected int[] replayCorpus()
+	{
+		if (m_corpus == null || m_corpus.size() == 0)
+		{
+			return null;
+		}
+		long start = System.nanoTime();
+		final AtomicLong tested = new AtomicLong();
+		List<Corpus.Entry> failing = m_corpus.replay(m_input, new Testable()
+		{
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				// Entries that no longer produce an input are not tested
+				tested.incrementAndGet();
+				return m_sut.test(parameters);
+			}
+		}, m_replayThreads);
+		m_result.addInvocations(tested.get(), System.nanoTime() - start);
+		int[] smallest = null;
+		for (Corpus.Entry e : failing)
+		{
+			int[] c = e.getChoices();
+			if (smallest == null || ChoiceShrinker.compare(c, smallest) < 0)
+			{
+				smallest = c;
+			}
+		}
+		return smallest;
+	}
+
+	/**
+	 * Adds a failing choice sequence to the corpus, if any.
+	 * @param choices The choice sequence, or <tt>null</tt> if it has not been
+	 * recorded
+	 */
+	protected void store(/*@ null @*/ int[] choices)
+	{
+		if (m_corpus != null && choices != null)
+		{
+			m_corpus.add(choices, (String) null);
+		}
+	}
+
+	/**
+	 * Determines if the budget of the check is exhausted.
+	 * @return {@code true} if a budget is set and is exhausted
+	 */
+	protected boolean isExhausted()
+	{
+		return m_budget != null && m_budget.isExhausted(m_result);
+	}
+
+	/**
+	 * Determines if the budget of the shrinking phase is exhausted.
+	 * @return {@code true} if a budget is set and is exhausted
+	 */
+	protected boolean isShrinkingExhausted()
+	{
+		return m_budget != null && m_budget.isShrinkingExhausted(m_result);
+	}
+
+	/**
+	 * Computes a measure of the size of an input, which is used to report
+	 * the progress of the shrinking process.
+	 * @param o The input
+	 * @return The size of the input, or -1 if no size can be computed
+	 */
+	protected static int sizeOf(Object o)
+	{
+		if (o instanceof Collection)
+		{
+			return ((Collection<?>) o).size();
+		}
+		if (o instanceof CharSequence)
+		{
+			return ((CharSequence) o).length();
+		}
+		if (o instanceof Object[])
+		{
+			return ((Object[]) o).length;
+		}
+		return -1;
+	}
+
+	/**
+	 * Shrinks a failing input by manipulating the choice sequence that
+	 * produced it.
+	 * @param o The failing input
+	 * @param choices The choice sequence that produced the input
+	 * @return The list of progressively smaller failing inputs, starting with
+	 * <tt>o</tt>
+	 */
+	protected List<T> shrinkChoices(T o, int[] choices)
+	{
+		ChoiceShrinker<T> cs = new ChoiceShrinker<T>(m_input, new Testable()
+		{
+			@SuppressWarnings("unchecked")
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				return Assert.this.test((T) parameters[0]);
+			}
+		});
+		if (m_budget != null)
+		{
+			cs.setBudget(m_budget, m_result);
+		}
+		store(cs.shrink(choices));
+		List<T> shrunk = new ArrayList<T>();
+		shrunk.add(o);
+		List<T> found = cs.getShrunk();
+		// The first element is the replay of the original choice sequence
+		for (int i = 1; i < found.size(); i++)
+		{
+			shrunk.add(found.get(i));
+		}
+		return shrunk;
+	}
 }
@@ -0,0 +1,186 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the resources that an {@link Assert} or a {@link Monkey} can
+ * spend on a check. A budget can bound three quantities:
+ * <ul>
+ * <li>the elapsed (wall clock) time of the check;</li>
+ * <li>the number of invocations of the object under test, i.e. calls to
+ * {@link Testable#test(Object...) test} for an assertion (including
+ * verdicts retrieved from a {@link VerdictCache}), and calls to
+ * {@link Action#doAction() doAction} for a monkey;</li>
+ * <li>the number of steps of the shrinking phase, i.e. the number of
+ * candidate inputs (or action sequences) that are tried.</li>
+ * </ul>
+ * Each limit is optional. When at least one of the first two limits is set,
+ * the search for a failing input is no longer bounded by a fixed number of
+ * attempts, but runs until one of the limits is reached.
+ * <p>
+ * A budget only describes limits; the resources actually spent during a
+ * check are recorded in a {@link CheckResult}.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Budget
+{
+	/**
+	 * A value indicating that a quantity is not limited.
+	 */
+	public static final long UNLIMITED = -1;
+
+	/**
+	 * The maximum elapsed time of a check, in nanoseconds.
+	 */
+	protected long m_wallTime;
+
+	/**
+	 * The maximum number of invocations of the object under test.
+	 */
+	protected long m_maxInvocations;
+
+	/**
+	 * The maximum number of shrinking steps.
+	 */
+	protected long m_maxShrinkSteps;
+
+	/**
+	 * Creates a new budget with no limit.
+	 */
+	public Budget()
+	{
+		super();
+		m_wallTime = UNLIMITED;
+		m_maxInvocations = UNLIMITED;
+		m_maxShrinkSteps = UNLIMITED;
+	}
+
+	/**
+	 * Sets the maximum elapsed time of a check.
+	 * @param duration The duration, or {@link #UNLIMITED}
+	 * @param unit The unit of the duration
+	 * @return This budget
+	 */
+	public Budget setWallTime(long duration, TimeUnit unit)
+	{
+		m_wallTime = duration < 0 ? UNLIMITED : unit.toNanos(duration);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of invocations of the object under test.
+	 * @param n The number of invocations, or {@link #UNLIMITED}
+	 * @return This budget
+	 */
+	public Budget setMaxInvocations(long n)
+	{
+		m_maxInvocations = n < 0 ? UNLIMITED : n;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of shrinking steps.
+	 * @param n The number of steps, or {@link #UNLIMITED}
+	 * @return This budget
+	 */
+	public Budget setMaxShrinkSteps(long n)
+	{
+		m_maxShrinkSteps = n < 0 ? UNLIMITED : n;
+		return this;
+	}
+
+	/**
+	 * Gets the maximum elapsed time of a check.
+	 * @return The duration in nanoseconds, or {@link #UNLIMITED}
+	 */
+	public long getWallTime()
+	{
+		return m_wallTime;
+	}
+
+	/**
+	 * Gets the maximum number of invocations of the object under test.
+	 * @return The number of invocations, or {@link #UNLIMITED}
+	 */
+	public long getMaxInvocations()
+	{
+		return m_maxInvocations;
+	}
+
+	/**
+	 * Gets the maximum number of shrinking steps.
+	 * @return The number of steps, or {@link #UNLIMITED}
+	 */
+	public long getMaxShrinkSteps()
+	{
+		return m_maxShrinkSteps;
+	}
+
+	/**
+	 * Determines if the search for a failing input is bounded by this
+	 * budget, i.e. if a limit is set on either the elapsed time or the number
+	 * of invocations.
+	 * @return {@code true} if the search is bounded, {@code false} otherwise
+	 */
+	public boolean boundsSearch()
+	{
+		return m_wallTime != UNLIMITED || m_maxInvocations != UNLIMITED;
+	}
+
+	/**
+	 * Determines if the resources recorded in a result exceed this budget.
+	 * @param r The result
+	 * @return {@code true} if the budget is exhausted, {@code false}
+	 * otherwise
+	 */
+	public boolean isExhausted(/*@ non_null @*/ CheckResult r)
+	{
+		if (m_wallTime != UNLIMITED && r.getElapsedTime() >= m_wallTime)
+		{
+			return true;
+		}
+		return m_maxInvocations != UNLIMITED && r.getInvocations() >= m_maxInvocations;
+	}
+
+	/**
+	 * Determines if the resources recorded in a result exceed this budget,
+	 * including the number of shrinking steps.
+	 * @param r The result
+	 * @return {@code true} if the budget is exhausted, {@code false}
+	 * otherwise
+	 */
+	public boolean isShrinkingExhausted(/*@ non_null @*/ CheckResult r)
+	{
+		if (isExhausted(r))
+		{
+			return true;
+		}
+		return m_maxShrinkSteps != UNLIMITED && r.getShrinkSteps() >= m_maxShrinkSteps;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Budget [time=" + m_wallTime + " ns, invocations=" + m_maxInvocations + ", shrink steps=" + m_maxShrinkSteps + "]";
+	}
+}
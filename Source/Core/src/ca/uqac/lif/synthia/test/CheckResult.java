@@ -0,0 +1,374 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the resources spent by an {@link Assert} or a {@link Monkey}
+ * during a check. The result keeps track of:
+ * <ul>
+ * <li>the number of invocations of the object under test, and the number
+ * of inputs (or actions) generated;</li>
+ * <li>the time spent generating inputs, the time spent in the object under
+ * test, and the time spent in the shrinking process (excluding the time
+ * spent in the object under test);</li>
+ * <li>the progress of the shrinking process, in the form of a list of
+ * {@link ShrinkStep}s recording each smaller failing input found, along
+ * with the moment it was found.</li>
+ * </ul>
+ * All durations are expressed in nanoseconds.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class CheckResult
+{
+	/**
+	 * The moment the check started, as given by {@link System#nanoTime()}.
+	 */
+	protected long m_start;
+
+	/**
+	 * The moment the check ended, or -1 if it is still running.
+	 */
+	protected long m_end;
+
+	/**
+	 * The number of invocations of the object under test.
+	 */
+	protected long m_invocations;
+
+	/**
+	 * The number of inputs generated.
+	 */
+	protected long m_generated;
+
+	/**
+	 * The number of steps of the shrinking process.
+	 */
+	protected long m_shrinkSteps;
+
+	/**
+	 * The time spent generating inputs.
+	 */
+	protected long m_generationTime;
+
+	/**
+	 * The time spent in the object under test.
+	 */
+	protected long m_sutTime;
+
+	/**
+	 * The time spent in the shrinking process, excluding the time spent in
+	 * the object under test.
+	 */
+	protected long m_shrinkingTime;
+
+	/**
+	 * A flag indicating whether the check stopped because its budget was
+	 * exhausted.
+	 */
+	protected boolean m_exhausted;
+
+	/**
+	 * The smaller failing inputs found during the shrinking process.
+	 */
+	/*@ non_null @*/ protected final List<ShrinkStep> m_progress;
+
+	/**
+	 * Creates a new empty result, and marks the start of the check.
+	 */
+	public CheckResult()
+	{
+		super();
+		m_start = System.nanoTime();
+		m_end = -1;
+		m_invocations = 0;
+		m_generated = 0;
+		m_shrinkSteps = 0;
+		m_generationTime = 0;
+		m_sutTime = 0;
+		m_shrinkingTime = 0;
+		m_exhausted = false;
+		m_progress = new ArrayList<ShrinkStep>();
+	}
+
+	/**
+	 * Marks the end of the check.
+	 * @param exhausted Set to {@code true} if the check stopped because its
+	 * budget was exhausted
+	 */
+	public void end(boolean exhausted)
+	{
+		m_end = System.nanoTime();
+		m_exhausted = exhausted;
+	}
+
+	/**
+	 * Records the generation of an input.
+	 * @param duration The time spent generating the input
+	 */
+	public void addGeneration(long duration)
+	{
+		m_generated++;
+		m_generationTime += duration;
+	}
+
+	/**
+	 * Records invocations of the object under test.
+	 * @param n The number of invocations
+	 * @param duration The time spent in the object under test
+	 */
+	public void addInvocations(long n, long duration)
+	{
+		m_invocations += n;
+		m_sutTime += duration;
+	}
+
+	/**
+	 * Records a step of the shrinking process.
+	 */
+	public void addShrinkStep()
+	{
+		m_shrinkSteps++;
+	}
+
+	/**
+	 * Records time spent in the shrinking process.
+	 * @param duration The time spent, excluding the time spent in the object
+	 * under test
+	 */
+	public void addShrinkingTime(long duration)
+	{
+		m_shrinkingTime += duration;
+	}
+
+	/**
+	 * Records that a smaller failing input has been found.
+	 * @param input The input
+	 * @param size A measure of the size of the input
+	 */
+	public void addProgress(Object input, int size)
+	{
+		m_progress.add(new ShrinkStep(getElapsedTime(), m_shrinkSteps, input, size));
+	}
+
+	/**
+	 * Gets the elapsed time of the check.
+	 * @return The elapsed time
+	 */
+	public long getElapsedTime()
+	{
+		return (m_end < 0 ? System.nanoTime() : m_end) - m_start;
+	}
+
+	/**
+	 * Gets the number of invocations of the object under test.
+	 * @return The number of invocations
+	 */
+	public long getInvocations()
+	{
+		return m_invocations;
+	}
+
+	/**
+	 * Gets the number of inputs generated.
+	 * @return The number of inputs
+	 */
+	public long getGenerated()
+	{
+		return m_generated;
+	}
+
+	/**
+	 * Gets the number of steps of the shrinking process.
+	 * @return The number of steps
+	 */
+	public long getShrinkSteps()
+	{
+		return m_shrinkSteps;
+	}
+
+	/**
+	 * Gets the time spent generating inputs.
+	 * @return The time
+	 */
+	public long getGenerationTime()
+	{
+		return m_generationTime;
+	}
+
+	/**
+	 * Gets the time spent in the object under test.
+	 * @return The time
+	 */
+	public long getSutTime()
+	{
+		return m_sutTime;
+	}
+
+	/**
+	 * Gets the time spent in the shrinking process, excluding the time spent
+	 * in the object under test.
+	 * @return The time
+	 */
+	public long getShrinkingTime()
+	{
+		return m_shrinkingTime;
+	}
+
+	/**
+	 * Gets the number of invocations of the object under test per second of
+	 * elapsed time.
+	 * @return The number of invocations per second
+	 */
+	public double getExecutionsPerSecond()
+	{
+		long elapsed = getElapsedTime();
+		if (elapsed <= 0)
+		{
+			return 0;
+		}
+		return m_invocations * 1e9 / elapsed;
+	}
+
+	/**
+	 * Determines if the check stopped because its budget was exhausted.
+	 * @return {@code true} if the budget was exhausted, {@code false}
+	 * otherwise
+	 */
+	public boolean isExhausted()
+	{
+		return m_exhausted;
+	}
+
+	/**
+	 * Gets the progress of the shrinking process.
+	 * @return The list of smaller failing inputs found, in the order they
+	 * were found
+	 */
+	/*@ non_null @*/ public List<ShrinkStep> getProgress()
+	{
+		return m_progress;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		out.append("Elapsed time: ").append(getElapsedTime() / 1000000).append(" ms").append("\n");
+		out.append("Invocations: ").append(m_invocations).append(" (").append(String.format("%.1f", getExecutionsPerSecond())).append("/s)").append("\n");
+		out.append("Generation: ").append(m_generationTime / 1000000).append(" ms, SUT: ").append(m_sutTime / 1000000).append(" ms, shrinking: ").append(m_shrinkingTime / 1000000).append(" ms").append("\n");
+		out.append("Shrinking steps: ").append(m_shrinkSteps).append(", improvements: ").append(m_progress.size());
+		if (m_exhausted)
+		{
+			out.append("\n").append("Budget exhausted");
+		}
+		return out.toString();
+	}
+
+	/**
+	 * A smaller failing input found during the shrinking process.
+	 */
+	public static class ShrinkStep
+	{
+		/**
+		 * The elapsed time of the check when the input was found.
+		 */
+		protected final long m_time;
+
+		/**
+		 * The number of shrinking steps made when the input was found.
+		 */
+		protected final long m_step;
+
+		/**
+		 * The input.
+		 */
+		protected final Object m_input;
+
+		/**
+		 * A measure of the size of the input.
+		 */
+		protected final int m_size;
+
+		/**
+		 * Creates a new shrinking step.
+		 * @param time The elapsed time of the check when the input was found
+		 * @param step The number of shrinking steps made when the input was
+		 * found
+		 * @param input The input
+		 * @param size A measure of the size of the input
+		 */
+		public ShrinkStep(long time, long step, Object input, int size)
+		{
+			super();
+			m_time = time;
+			m_step = step;
+			m_input = input;
+			m_size = size;
+		}
+
+		/**
+		 * Gets the elapsed time of the check when the input was found.
+		 * @return The time, in nanoseconds
+		 */
+		public long getTime()
+		{
+			return m_time;
+		}
+
+		/**
+		 * Gets the number of shrinking steps made when the input was found.
+		 * @return The number of steps
+		 */
+		public long getStep()
+		{
+			return m_step;
+		}
+
+		/**
+		 * Gets the input.
+		 * @return The input
+		 */
+		public Object getInput()
+		{
+			return m_input;
+		}
+
+		/**
+		 * Gets a measure of the size of the input. For an assertion, this is
+		 * the number of elements of a collection or the length of a string;
+		 * for a monkey, this is the length of the sequence of actions.
+		 * @return The size, or -1 if no size can be computed
+		 */
+		public int getSize()
+		{
+			return m_size;
+		}
+
+		@Override
+		public String toString()
+		{
+			return (m_time / 1000000) + " ms, step " + m_step + ": " + m_input;
+		}
+	}
+}
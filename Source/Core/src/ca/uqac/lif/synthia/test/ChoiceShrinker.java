@@ -0,0 +1,487 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.PickerException;
+import ca.uqac.lif.synthia.random.ChoiceBuffer;
+
+/**
+ * Shrinks a failing test input by manipulating the sequence of random
+ * choices that produced it, rather than the input itself. Given the
+ * {@link ChoiceBuffer choice sequence} recorded while a picker produced an
+ * input that fails a test, the shrinker repeatedly transforms this sequence
+ * and replays it through the picker, keeping any transformed sequence that
+ * still produces a failing input. The transformations are, in this order:
+ * <ol>
+ * <li>deleting blocks of consecutive choices;</li>
+ * <li>replacing blocks of consecutive choices by zeros;</li>
+ * <li>sorting blocks of consecutive choices in ascending order;</li>
+ * <li>decreasing each individual choice as much as possible, by binary
+ * search;</li>
+ * <li>if none of the above succeeds, decreasing a choice by one while
+ * deleting a block of choices after it. This handles the frequent case
+ * where a choice determines how many of the subsequent choices are
+ * consumed, such as the length of a list.</li>
+ * </ol>
+ * A transformed sequence is kept only if the choices it actually consumes
+ * are smaller in the <em>shortlex</em> order (shorter, or of equal length
+ * and lexicographically smaller). Since the pickers provided by Synthia
+ * produce "simpler" values from smaller choices (e.g. shorter lists, numbers
+ * closer to the lower bound of their interval), this shrinks the input
+ * produced by any tree of pickers, without requiring each of them to
+ * implement {@link ca.uqac.lif.synthia.Shrinkable Shrinkable}.
+ * <p>
+ * The picker is {@link Picker#reset() reset} before each replay. Choice
+ * sequences only capture the draws made by random pickers; the output of
+ * pickers with other internal state (such as
+ * {@link ca.uqac.lif.synthia.util.Tick Tick}) is therefore reproduced only
+ * if it does not depend on the previous values they produced.
+ * 
+ * @param <T> The type of the inputs to shrink
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class ChoiceShrinker<T>
+{
+	/**
+	 * The default maximum number of replays attempted by the shrinker.
+	 */
+	public static final int DEFAULT_MAX_REPLAYS = 10000;
+
+	/**
+	 * The sizes of the blocks of choices the shrinker tries to delete, zero
+	 * or sort.
+	 */
+	protected static final int[] s_blockSizes = {8, 4, 2, 1};
+
+	/**
+	 * The picker producing the inputs.
+	 */
+	/*@ non_null @*/ protected final Picker<T> m_picker;
+
+	/**
+	 * The object that is being tested.
+	 */
+	/*@ non_null @*/ protected final Testable m_sut;
+
+	/**
+	 * The maximum number of replays attempted by the shrinker.
+	 */
+	protected int m_maxReplays;
+
+	/**
+	 * The number of replays performed so far.
+	 */
+	protected int m_replays;
+
+	/**
+	 * The smallest failing choice sequence found so far.
+	 */
+	/*@ null @*/ protected int[] m_best;
+
+	/**
+	 * The inputs produced by the successive failing choice sequences found
+	 * by the shrinker.
+	 */
+	/*@ non_null @*/ protected List<T> m_shrunk;
+
+	/**
+	 * An optional budget bounding the shrinking process.
+	 */
+	/*@ null @*/ protected Budget m_budget;
+
+	/**
+	 * The result where the resources spent by the shrinker are recorded, if
+	 * a budget is set.
+	 */
+	/*@ null @*/ protected CheckResult m_result;
+
+	/**
+	 * Creates a new shrinker.
+	 * @param picker The picker producing the inputs
+	 * @param sut The object that is being tested
+	 */
+	public ChoiceShrinker(/*@ non_null @*/ Picker<T> picker, /*@ non_null @*/ Testable sut)
+	{
+		super();
+		m_picker = picker;
+		m_sut = sut;
+		m_maxReplays = DEFAULT_MAX_REPLAYS;
+		m_replays = 0;
+		m_best = null;
+		m_shrunk = new ArrayList<T>();
+		m_budget = null;
+		m_result = null;
+	}
+
+	/**
+	 * Sets the maximum number of replays attempted by the shrinker.
+	 * @param max The number of replays
+	 * @return This shrinker
+	 */
+	public ChoiceShrinker<T> setMaxReplays(int max)
+	{
+		m_maxReplays = max;
+		return this;
+	}
+
+	/**
+	 * Bounds the shrinking process by a budget. Each replay counts as a
+	 * shrinking step, and is recorded in the given result.
+	 * @param b The budget
+	 * @param r The result where the resources spent by the shrinker are
+	 * recorded
+	 * @return This shrinker
+	 */
+	public ChoiceShrinker<T> setBudget(/*@ non_null @*/ Budget b, /*@ non_null @*/ CheckResult r)
+	{
+		m_budget = b;
+		m_result = r;
+		return this;
+	}
+
+	/**
+	 * Gets the number of replays performed by the last call to
+	 * {@link #shrink(int[])}.
+	 * @return The number of replays
+	 */
+	public int getReplays()
+	{
+		return m_replays;
+	}
+
+	/**
+	 * Gets the inputs produced by the successive failing choice sequences
+	 * found by the last call to {@link #shrink(int[])}, from the original
+	 * input to the smallest one.
+	 * @return The list of inputs
+	 */
+	/*@ non_null @*/ public List<T> getShrunk()
+	{
+		return m_shrunk;
+	}
+
+	/**
+	 * Shrinks a failing choice sequence.
+	 * @param choices The choice sequence. It must make the picker produce an
+	 * input for which the test fails.
+	 * @return The smallest failing choice sequence that was found
+	 */
+	/*@ non_null @*/ public int[] shrink(/*@ non_null @*/ int[] choices)
+	{
+		m_replays = 0;
+		m_best = null;
+		m_shrunk = new ArrayList<T>();
+		if (!tryChoices(choices))
+		{
+			// The given sequence does not produce a failing input
+			return choices;
+		}
+		boolean improved = true;
+		while (improved && canReplay())
+		{
+			improved = false;
+			for (int size : s_blockSizes)
+			{
+				improved |= deleteBlocks(size);
+			}
+			for (int size : s_blockSizes)
+			{
+				improved |= zeroBlocks(size);
+			}
+			for (int size : s_blockSizes)
+			{
+				improved |= sortBlocks(size);
+			}
+			improved |= minimizeChoices();
+			if (!improved)
+			{
+				improved = lowerAndDelete();
+			}
+		}
+		return m_best;
+	}
+
+	/**
+	 * Attempts to delete blocks of consecutive choices from the best
+	 * sequence, starting from the end.
+	 * @param size The size of the blocks
+	 * @return {@code true} if a smaller failing sequence was found
+	 */
+	protected boolean deleteBlocks(int size)
+	{
+		boolean improved = false;
+		for (int i = m_best.length - size; i >= 0 && canReplay(); i--)
+		{
+			if (i + size > m_best.length)
+			{
+				continue;
+			}
+			int[] candidate = new int[m_best.length - size];
+			System.arraycopy(m_best, 0, candidate, 0, i);
+			System.arraycopy(m_best, i + size, candidate, i, m_best.length - i - size);
+			improved |= tryChoices(candidate);
+		}
+		return improved;
+	}
+
+	/**
+	 * Attempts to replace blocks of consecutive choices of the best sequence
+	 * by zeros.
+	 * @param size The size of the blocks
+	 * @return {@code true} if a smaller failing sequence was found
+	 */
+	protected boolean zeroBlocks(int size)
+	{
+		boolean improved = false;
+		for (int i = 0; i + size <= m_best.length && canReplay(); i++)
+		{
+			if (isZero(m_best, i, size))
+			{
+				continue;
+			}
+			int[] candidate = Arrays.copyOf(m_best, m_best.length);
+			Arrays.fill(candidate, i, i + size, 0);
+			improved |= tryChoices(candidate);
+		}
+		return improved;
+	}
+
+	/**
+	 * Attempts to sort blocks of consecutive choices of the best sequence.
+	 * @param size The size of the blocks
+	 * @return {@code true} if a smaller failing sequence was found
+	 */
+	protected boolean sortBlocks(int size)
+	{
+		boolean improved = false;
+		if (size < 2)
+		{
+			return false;
+		}
+		for (int i = 0; i + size <= m_best.length && canReplay(); i++)
+		{
+			int[] candidate = Arrays.copyOf(m_best, m_best.length);
+			sortUnsigned(candidate, i, i + size);
+			if (compare(candidate, m_best) < 0)
+			{
+				improved |= tryChoices(candidate);
+			}
+		}
+		return improved;
+	}
+
+	/**
+	 * Attempts to decrease each choice of the best sequence, by doing a binary
+	 * search between 0 and its current value.
+	 * @return {@code true} if a smaller failing sequence was found
+	 */
+	protected boolean minimizeChoices()
+	{
+		boolean improved = false;
+		for (int i = 0; i < m_best.length && canReplay(); i++)
+		{
+			long lo = 0, hi = m_best[i] & 0xFFFFFFFFL;
+			while (lo < hi && i < m_best.length && canReplay())
+			{
+				long mid = lo + (hi - lo) / 2;
+				int[] candidate = Arrays.copyOf(m_best, m_best.length);
+				candidate[i] = (int) mid;
+				if (tryChoices(candidate))
+				{
+					improved = true;
+					hi = mid;
+				}
+				else
+				{
+					lo = mid + 1;
+				}
+			}
+		}
+		return improved;
+	}
+
+	/**
+	 * Attempts to decrease a choice of the best sequence by one, while
+	 * deleting a block of choices located after it.
+	 * @return {@code true} if a smaller failing sequence was found
+	 */
+	protected boolean lowerAndDelete()
+	{
+		for (int i = 0; i < m_best.length; i++)
+		{
+			if (m_best[i] == 0)
+			{
+				continue;
+			}
+			for (int size : s_blockSizes)
+			{
+				for (int j = m_best.length - size; j > i; j--)
+				{
+					if (!canReplay())
+					{
+						return false;
+					}
+					int[] candidate = new int[m_best.length - size];
+					System.arraycopy(m_best, 0, candidate, 0, j);
+					System.arraycopy(m_best, j + size, candidate, j, m_best.length - j - size);
+					candidate[i]--;
+					if (tryChoices(candidate))
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replays a choice sequence and tests the resulting input. If the test
+	 * fails and the choices consumed by the picker are smaller than the best
+	 * sequence found so far, they become the new best sequence.
+	 * @param choices The choice sequence
+	 * @return {@code true} if the best sequence has been replaced
+	 */
+	protected boolean tryChoices(int[] choices)
+	{
+		m_replays++;
+		if (m_result != null)
+		{
+			m_result.addShrinkStep();
+		}
+		ChoiceBuffer buffer = new ChoiceBuffer(choices);
+		T o;
+		m_picker.reset();
+		buffer.start();
+		try
+		{
+			o = m_picker.pick();
+		}
+		catch (PickerException e)
+		{
+			// This sequence does not produce a valid input
+			return false;
+		}
+		finally
+		{
+			buffer.stop();
+		}
+		int[] consumed = buffer.getChoices();
+		if (m_best != null && compare(consumed, m_best) >= 0)
+		{
+			return false;
+		}
+		if (m_sut.test(o))
+		{
+			return false;
+		}
+		boolean first = m_best == null;
+		m_best = consumed;
+		m_shrunk.add(o);
+		if (m_result != null && !first)
+		{
+			m_result.addProgress(o, Assert.sizeOf(o));
+		}
+		return true;
+	}
+
+	/**
+	 * Determines if the shrinker can perform another replay.
+	 * @return {@code true} if neither the maximum number of replays nor the
+	 * budget is exhausted
+	 */
+	protected boolean canReplay()
+	{
+		if (m_replays >= m_maxReplays)
+		{
+			return false;
+		}
+		return m_budget == null || !m_budget.isShrinkingExhausted(m_result);
+	}
+
+	/**
+	 * Compares two choice sequences in the shortlex order, treating each
+	 * choice as an unsigned value.
+	 * @param c1 The first sequence
+	 * @param c2 The second sequence
+	 * @return A negative value, zero or a positive value if the first
+	 * sequence is respectively smaller, equal or greater than the second
+	 */
+	public static int compare(int[] c1, int[] c2)
+	{
+		if (c1.length != c2.length)
+		{
+			return c1.length < c2.length ? -1 : 1;
+		}
+		for (int i = 0; i < c1.length; i++)
+		{
+			int c = Integer.compare(c1[i] + Integer.MIN_VALUE, c2[i] + Integer.MIN_VALUE);
+			if (c != 0)
+			{
+				return c;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks if a range of a choice sequence only contains zeros.
+	 * @param c The sequence
+	 * @param from The start of the range
+	 * @param size The size of the range
+	 * @return {@code true} if the range only contains zeros
+	 */
+	protected static boolean isZero(int[] c, int from, int size)
+	{
+		for (int i = from; i < from + size; i++)
+		{
+			if (c[i] != 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sorts a range of a choice sequence, treating each choice as an unsigned
+	 * value.
+	 * @param c The sequence
+	 * @param from The start of the range (inclusive)
+	 * @param to The end of the range (exclusive)
+	 */
+	protected static void sortUnsigned(int[] c, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			c[i] += Integer.MIN_VALUE;
+		}
+		Arrays.sort(c, from, to);
+		for (int i = from; i < to; i++)
+		{
+			c[i] -= Integer.MIN_VALUE;
+		}
+	}
+}
@@ -0,0 +1,1232 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.Seedable;
+import ca.uqac.lif.synthia.random.Random;
+
+/**
+ * Performs monkey testing of a component by several threads at once, in
+ * order to expose concurrency bugs. Each thread performs actions produced
+ * by its own <tt>Picker&lt;Action&gt;</tt>; contrary to letting the threads
+ * race freely, the monkey lets only one of them run at a time, and a
+ * deterministic <em>scheduler</em> decides which one runs at each
+ * <em>scheduling point</em>. The monkey works as follows:
+ * <ol>
+ * <li>Each schedule is explored with a
+ * <a href="https://doi.org/10.1145/1736020.1736040">PCT</a> scheduler:
+ * threads are given random priorities, the highest-priority thread runs,
+ * and the priority of the running thread is lowered at a few randomly
+ * picked steps. Any bug that manifests itself under some ordering of
+ * <i>d</i> events is found by a schedule with <i>d</i>&nbsp;&minus;&nbsp;1
+ * priority changes with a probability that only depends on the number of
+ * threads and steps.</li>
+ * <li>A schedule fails when an action throws an exception (or an error),
+ * when all threads are blocked, or when the optional invariant checked at
+ * the end of the schedule is violated. The decisions of the scheduler and
+ * the actions of each thread are then recorded in a {@link Schedule}, which
+ * can be {@link #replay(Schedule) replayed}.</li>
+ * <li>The failing schedule is then shrunk, by deleting actions and
+ * removing context switches, as long as its replay still fails.</li>
+ * </ol>
+ * There is a scheduling point before each action. The component can add
+ * finer-grained scheduling points by calling {@link #schedulingPoint()}
+ * in its code, for instance between reading and writing a shared variable;
+ * the call has no effect outside of a monkey's thread.
+ * <p>
+ * A thread that does not reach its next scheduling point within a short
+ * delay (typically, because it waits for a lock held by another thread) is
+ * considered as blocked, and the scheduler lets another thread run. Replay
+ * is exact as long as no thread blocks in this way.
+ * <p>
+ * Threads hand over control to each other by spinning for a short while
+ * before parking; on a multi-core machine, a schedule of a few dozen
+ * actions takes well under a millisecond.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class ConcurrentMonkey implements Seedable
+{
+	/**
+	 * The default number of actions performed by each thread in a schedule.
+	 */
+	public static final int DEFAULT_ACTIONS_PER_THREAD = 10;
+
+	/**
+	 * The default bug depth of the PCT scheduler.
+	 */
+	public static final int DEFAULT_DEPTH = 3;
+
+	/**
+	 * The maximum number of schedules explored when no budget is set.
+	 */
+	public static final int DEFAULT_MAX_SCHEDULES = 1000;
+
+	/**
+	 * The number of times a thread checks for its turn before parking.
+	 */
+	protected static final int SPINS = 1 << 12;
+
+	/**
+	 * State of a thread waiting at a scheduling point.
+	 */
+	protected static final int WAITING = 0;
+
+	/**
+	 * State of a thread allowed to run.
+	 */
+	protected static final int RUNNING = 1;
+
+	/**
+	 * State of a thread having performed all its actions.
+	 */
+	protected static final int DONE = 2;
+
+	/**
+	 * The worker associated with the current thread, if any.
+	 */
+	protected static final ThreadLocal<Worker> s_current = new ThreadLocal<Worker>();
+
+	/**
+	 * The object on which the actions are applied.
+	 */
+	/*@ non_null @*/ protected final Resettable m_object;
+
+	/**
+	 * The pickers producing the actions of each thread.
+	 */
+	/*@ non_null @*/ protected final List<Picker<Action>> m_pickers;
+
+	/**
+	 * The source of randomness of the PCT scheduler.
+	 */
+	/*@ non_null @*/ protected Random m_random;
+
+	/**
+	 * The number of actions performed by each thread in a schedule.
+	 */
+	protected int m_actionsPerThread;
+
+	/**
+	 * The bug depth of the PCT scheduler.
+	 */
+	protected int m_depth;
+
+	/**
+	 * The maximum number of schedules explored when no budget is set.
+	 */
+	protected int m_maxSchedules;
+
+	/**
+	 * The delay, in nanoseconds, after which a running thread is considered
+	 * as blocked.
+	 */
+	protected long m_blockedTimeout;
+
+	/**
+	 * The delay, in nanoseconds, after which threads that are all blocked are
+	 * considered as deadlocked.
+	 */
+	protected long m_deadlockTimeout;
+
+	/**
+	 * A flag telling the monkey whether it should shrink a failing schedule.
+	 */
+	protected boolean m_shrink;
+
+	/**
+	 * A condition checked on the object at the end of each schedule, or
+	 * <tt>null</tt> if no condition is checked.
+	 */
+	/*@ null @*/ protected Testable m_invariant;
+
+	/**
+	 * The budget of the check, or <tt>null</tt> to explore at most
+	 * {@link #m_maxSchedules} schedules.
+	 */
+	/*@ null @*/ protected Budget m_budget;
+
+	/**
+	 * The resources spent by the last call to {@link #check()}.
+	 */
+	/*@ null @*/ protected CheckResult m_result;
+
+	/**
+	 * The largest number of steps observed in a schedule so far. This number
+	 * is used by the PCT scheduler to place priority changes.
+	 */
+	protected int m_steps;
+
+	/**
+	 * The first failing schedule found.
+	 */
+	/*@ null @*/ protected Schedule m_initial;
+
+	/**
+	 * The smallest failing schedule found.
+	 */
+	/*@ null @*/ protected Schedule m_schedule;
+
+	/**
+	 * The failure caused by {@link #m_schedule}.
+	 */
+	/*@ null @*/ protected Throwable m_failure;
+
+	/**
+	 * The schedule performed by the last call to
+	 * {@link #execute(Scheduler, List)}.
+	 */
+	/*@ null @*/ protected Schedule m_last;
+
+	/**
+	 * The threads performing the actions, created on demand.
+	 */
+	/*@ null @*/ protected Worker[] m_workers;
+
+	/**
+	 * The thread deciding on the schedule.
+	 */
+	/*@ null @*/ protected volatile Thread m_controller;
+
+	/**
+	 * Creates a new instance of the monkey.
+	 * @param object The object on which the actions are applied
+	 * @param threads The pickers producing the actions of each thread
+	 */
+	@SafeVarargs
+	public ConcurrentMonkey(/*@ non_null @*/ Resettable object, /*@ non_null @*/ Picker<Action> ... threads)
+	{
+		super();
+		m_object = object;
+		// Copied element by element so that the varargs array does not escape
+		m_pickers = new ArrayList<Picker<Action>>(threads.length);
+		for (Picker<Action> p : threads)
+		{
+			m_pickers.add(p);
+		}
+		m_random = new Random();
+		m_actionsPerThread = DEFAULT_ACTIONS_PER_THREAD;
+		m_depth = DEFAULT_DEPTH;
+		m_maxSchedules = DEFAULT_MAX_SCHEDULES;
+		m_blockedTimeout = TimeUnit.MILLISECONDS.toNanos(20);
+		m_deadlockTimeout = TimeUnit.SECONDS.toNanos(1);
+		m_shrink = true;
+		m_invariant = null;
+		m_budget = null;
+		m_result = null;
+		m_steps = 0;
+	}
+
+	@Override
+	public ConcurrentMonkey setSeed(int seed)
+	{
+		m_random = new Random(seed);
+		return this;
+	}
+
+	/**
+	 * Sets the number of actions performed by each thread in a schedule.
+	 * @param n The number of actions
+	 * @return This monkey
+	 */
+	public ConcurrentMonkey setActionsPerThread(int n)
+	{
+		m_actionsPerThread = n;
+		return this;
+	}
+
+	/**
+	 * Sets the bug depth of the PCT scheduler, that is, one more than the
+	 * number of priority changes in each schedule.
+	 * @param d The depth, at least 1
+	 * @return This monkey
+	 */
+	public ConcurrentMonkey setDepth(int d)
+	{
+		m_depth = Math.max(1, d);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of schedules explored when no budget bounds
+	 * the search.
+	 * @param n The number of schedules
+	 * @return This monkey
+	 */
+	public ConcurrentMonkey setMaxSchedules(int n)
+	{
+		m_maxSchedules = n;
+		return this;
+	}
+
+	/**
+	 * Sets the delay after which a running thread is considered as blocked.
+	 * @param duration The delay
+	 * @param unit The unit of the delay
+	 * @return This monkey
+	 */
+	public ConcurrentMonkey setBlockedTimeout(long duration, TimeUnit unit)
+	{
+		m_blockedTimeout = unit.toNanos(duration);
+		return this;
+	}
+
+	/**
+	 * Sets a condition checked on the object at the end of each schedule.
+	 * The object is passed as the only argument of
+	 * {@link Testable#test(Object...) test()}.
+	 * @param t The condition, or <tt>null</tt> to check no condition
+	 * @return This monkey
+	 */
+	public ConcurrentMonkey setInvariant(/*@ null @*/ Testable t)
+	{
+		m_invariant = t;
+		return this;
+	}
+
+	/**
+	 * Tells the monkey whether a failing schedule should be shrunk.
+	 * @param b Set to <tt>true</tt> to enable shrinking, <tt>false</tt>
+	 * otherwise
+	 * @return This monkey
+	 */
+	public ConcurrentMonkey shrink(boolean b)
+	{
+		m_shrink = b;
+		return this;
+	}
+
+	/**
+	 * Sets the budget of the check. Each schedule explored counts as one
+	 * generated input, each action as one invocation, and each schedule
+	 * replayed during shrinking as one shrinking step.
+	 * @param b The budget, or <tt>null</tt> to explore at most a fixed number
+	 * of schedules
+	 * @return This monkey
+	 */
+	public ConcurrentMonkey setBudget(/*@ null @*/ Budget b)
+	{
+		m_budget = b;
+		return this;
+	}
+
+	/**
+	 * Gets the resources spent by the last call to {@link #check()}.
+	 * @return The result, or <tt>null</tt> if no check has been made yet
+	 */
+	/*@ null @*/ public CheckResult getResult()
+	{
+		return m_result;
+	}
+
+	/**
+	 * Gets the first failing schedule found by the last call to
+	 * {@link #check()}.
+	 * @return The schedule, or <tt>null</tt> if no failing schedule was found
+	 */
+	/*@ null @*/ public Schedule getInitial()
+	{
+		return m_initial;
+	}
+
+	/**
+	 * Gets the smallest failing schedule found by the last call to
+	 * {@link #check()}.
+	 * @return The schedule, or <tt>null</tt> if no failing schedule was found
+	 */
+	/*@ null @*/ public Schedule getShrunk()
+	{
+		return m_schedule;
+	}
+
+	/**
+	 * Gets the failure caused by the smallest failing schedule.
+	 * @return The failure, or <tt>null</tt> if no failing schedule was found
+	 */
+	/*@ null @*/ public Throwable getFailure()
+	{
+		return m_failure;
+	}
+
+	/**
+	 * Explores schedules until one of them fails.
+	 * @return The value {@code false} if a failing schedule has been found,
+	 * {@code true} otherwise
+	 */
+	public boolean check()
+	{
+		m_result = new CheckResult();
+		m_initial = null;
+		m_schedule = null;
+		m_failure = null;
+		m_controller = Thread.currentThread();
+		boolean bounded = m_budget != null && m_budget.boundsSearch();
+		try
+		{
+			for (int i = 0; (bounded || i < m_maxSchedules) && !isExhausted(); i++)
+			{
+				long start = System.nanoTime();
+				Scheduler s = new PctScheduler(m_random, m_pickers.size(), Math.max(m_steps, m_pickers.size() * m_actionsPerThread), m_depth);
+				m_result.addGeneration(System.nanoTime() - start);
+				Throwable f = execute(s, null);
+				if (f != null)
+				{
+					m_initial = m_last;
+					m_schedule = m_last;
+					m_failure = f;
+					m_result.addProgress(m_last, m_last.getActionCount());
+					if (m_shrink)
+					{
+						shrink();
+					}
+					break;
+				}
+			}
+		}
+		finally
+		{
+			stopWorkers();
+		}
+		m_result.end(isExhausted());
+		return m_failure == null;
+	}
+
+	/**
+	 * Replays a schedule.
+	 * @param s The schedule
+	 * @return The failure caused by the schedule, or <tt>null</tt> if the
+	 * schedule does not fail
+	 */
+	/*@ null @*/ public Throwable replay(/*@ non_null @*/ Schedule s)
+	{
+		if (m_result == null)
+		{
+			m_result = new CheckResult();
+		}
+		m_controller = Thread.currentThread();
+		try
+		{
+			return execute(new ReplayScheduler(s.getDecisions()), s.m_actions);
+		}
+		finally
+		{
+			stopWorkers();
+		}
+	}
+
+	/**
+	 * Declares a scheduling point. When called from one of the threads of a
+	 * monkey, the thread waits until the scheduler allows it to run again;
+	 * otherwise, the method has no effect.
+	 */
+	public static void schedulingPoint()
+	{
+		Worker w = s_current.get();
+		if (w != null)
+		{
+			w.pause();
+		}
+	}
+
+	/**
+	 * Shrinks the failing schedule, by replaying smaller candidates as long as
+	 * one of them still fails.
+	 */
+	protected void shrink()
+	{
+		long start = System.nanoTime(), sut_before = m_result.getSutTime();
+		boolean improved = true;
+		while (improved && !isShrinkingExhausted())
+		{
+			improved = false;
+			for (Schedule c : candidates(m_schedule))
+			{
+				if (isShrinkingExhausted())
+				{
+					break;
+				}
+				m_result.addShrinkStep();
+				Throwable f = execute(new ReplayScheduler(c.getDecisions()), c.m_actions);
+				if (f != null && isSmaller(m_last, m_schedule))
+				{
+					m_schedule = m_last;
+					m_failure = f;
+					m_result.addProgress(m_last, m_last.getActionCount());
+					improved = true;
+					break;
+				}
+			}
+		}
+		m_result.addShrinkingTime(System.nanoTime() - start - (m_result.getSutTime() - sut_before));
+	}
+
+	/**
+	 * Produces schedules smaller than a reference schedule: first by deleting
+	 * chunks of actions of each thread (halving the size of chunks), then by
+	 * deleting decisions, and finally by removing preemptions.
+	 * @param s The reference schedule
+	 * @return The list of candidates
+	 */
+	protected static List<Schedule> candidates(Schedule s)
+	{
+		List<Schedule> list = new ArrayList<Schedule>();
+		for (int t = 0; t < s.getThreadCount(); t++)
+		{
+			int n = s.getActions(t).size();
+			for (int k = n; k > 0; k /= 2)
+			{
+				for (int i = n - k; i >= 0; i -= k)
+				{
+					list.add(delete(s, t, i, i + k));
+				}
+			}
+		}
+		List<Integer> decisions = new ArrayList<Integer>(s.m_decisions.length);
+		for (int d : s.m_decisions)
+		{
+			decisions.add(d);
+		}
+		for (List<Integer> l : new ListShrinker<Integer>(null, 0).candidates(decisions))
+		{
+			int[] new_decisions = new int[l.size()];
+			for (int i = 0; i < new_decisions.length; i++)
+			{
+				new_decisions[i] = l.get(i);
+			}
+			list.add(new Schedule(new_decisions, s.m_actions));
+		}
+		for (int i : s.m_preemptions)
+		{
+			int[] new_decisions = Arrays.copyOf(s.m_decisions, s.m_decisions.length);
+			new_decisions[i] = new_decisions[i - 1];
+			list.add(new Schedule(new_decisions, s.m_actions));
+		}
+		return list;
+	}
+
+	/**
+	 * Deletes a range of actions of a thread from a schedule. If the schedule
+	 * has been executed, the decisions that gave a turn to these actions are
+	 * also deleted, so that the other decisions keep applying to the same
+	 * actions.
+	 * @param s The schedule
+	 * @param t The index of the thread
+	 * @param from The index of the first action to delete
+	 * @param to The index of the action following the last one to delete
+	 * @return The new schedule
+	 */
+	protected static Schedule delete(Schedule s, int t, int from, int to)
+	{
+		List<Action> actions = new ArrayList<Action>(s.getActions(t).subList(0, from));
+		actions.addAll(s.getActions(t).subList(to, s.getActions(t).size()));
+		List<List<Action>> new_actions = new ArrayList<List<Action>>(s.m_actions);
+		new_actions.set(t, actions);
+		if (s.m_turns == null)
+		{
+			return new Schedule(s.m_decisions, new_actions);
+		}
+		int[] decisions = new int[s.m_decisions.length];
+		int n = 0;
+		for (int i = 0; i < s.m_decisions.length; i++)
+		{
+			if (s.m_decisions[i] != t || s.m_turns[i] < from || s.m_turns[i] >= to)
+			{
+				decisions[n++] = s.m_decisions[i];
+			}
+		}
+		return new Schedule(Arrays.copyOf(decisions, n), new_actions);
+	}
+
+	/**
+	 * Determines if a schedule is smaller than another one. A schedule is
+	 * smaller if it has fewer actions; for the same number of actions, if it
+	 * has fewer preemptions; and for the same number of preemptions, if its
+	 * last preemption occurs earlier. The last criterion lets decisions be
+	 * deleted in several steps, each one bringing the interesting preemptions
+	 * closer to the actions that will later be deleted.
+	 * @param s1 The first schedule
+	 * @param s2 The second schedule
+	 * @return {@code true} if <tt>s1</tt> is smaller than <tt>s2</tt>
+	 */
+	protected static boolean isSmaller(Schedule s1, Schedule s2)
+	{
+		int a1 = s1.getActionCount(), a2 = s2.getActionCount();
+		if (a1 != a2)
+		{
+			return a1 < a2;
+		}
+		int p1 = s1.getPreemptions(), p2 = s2.getPreemptions();
+		if (p1 != p2)
+		{
+			return p1 < p2;
+		}
+		return s1.getLastPreemption() < s2.getLastPreemption();
+	}
+
+	/**
+	 * Executes one schedule on the object.
+	 * @param scheduler The scheduler deciding which thread runs at each
+	 * scheduling point
+	 * @param replay The sequence of actions performed by each thread, or
+	 * <tt>null</tt> to obtain actions from the pickers
+	 * @return The failure caused by the schedule, or <tt>null</tt> if the
+	 * schedule does not fail
+	 */
+	/*@ null @*/ protected Throwable execute(/*@ non_null @*/ Scheduler scheduler, /*@ null @*/ List<List<Action>> replay)
+	{
+		int n = m_pickers.size();
+		if (m_workers == null)
+		{
+			startWorkers();
+		}
+		Worker[] workers = m_workers;
+		m_object.reset();
+		for (int i = 0; i < n; i++)
+		{
+			if (replay == null)
+			{
+				m_workers[i].prepare(m_pickers.get(i), null, m_actionsPerThread);
+			}
+			else
+			{
+				m_workers[i].prepare(null, replay.get(i), replay.get(i).size());
+			}
+		}
+		long start = System.nanoTime();
+		int[] decisions = new int[16], turns = new int[16], preemptions = new int[16];
+		int steps = 0, preempted = 0;
+		boolean[] enabled = new boolean[n];
+		Throwable failure = null;
+		while (true)
+		{
+			boolean any_enabled = false, all_done = true;
+			for (int i = 0; i < n; i++)
+			{
+				Worker w = m_workers[i];
+				int state = w.m_state;
+				enabled[i] = state == WAITING;
+				any_enabled |= enabled[i];
+				all_done &= state == DONE;
+				if (state == DONE && w.m_failure != null && failure == null)
+				{
+					failure = w.m_failure;
+				}
+			}
+			if (failure != null || all_done)
+			{
+				break;
+			}
+			if (!any_enabled)
+			{
+				if (!awaitEnabled())
+				{
+					failure = new ScheduleException("All threads are blocked");
+					break;
+				}
+				continue;
+			}
+			int t = scheduler.choose(enabled, steps);
+			if (steps == decisions.length)
+			{
+				decisions = Arrays.copyOf(decisions, steps * 2);
+				turns = Arrays.copyOf(turns, steps * 2);
+			}
+			if (steps > 0 && t != decisions[steps - 1] && enabled[decisions[steps - 1]])
+			{
+				if (preempted == preemptions.length)
+				{
+					preemptions = Arrays.copyOf(preemptions, preempted * 2);
+				}
+				preemptions[preempted++] = steps;
+			}
+			decisions[steps++] = t;
+			Worker w = m_workers[t];
+			w.m_state = RUNNING;
+			w.grant();
+			awaitReport(w);
+			// The worker may still be running if it is blocked
+			turns[steps - 1] = w.m_performedCount - 1;
+		}
+		abort();
+		if (failure == null && m_invariant != null && !m_invariant.test(m_object))
+		{
+			failure = new ScheduleException("Invariant violated");
+		}
+		m_steps = Math.max(m_steps, steps);
+		List<List<Action>> performed = new ArrayList<List<Action>>(n);
+		for (int i = 0; i < n; i++)
+		{
+			performed.add(workers[i].getPerformed());
+		}
+		m_last = new Schedule(Arrays.copyOf(decisions, steps), Arrays.copyOf(turns, steps), performed, Arrays.copyOf(preemptions, preempted));
+		m_result.addInvocations(m_last.getActionCount(), System.nanoTime() - start);
+		return failure;
+	}
+
+	/**
+	 * Waits until a running thread reaches a scheduling point, finishes, or
+	 * is considered as blocked.
+	 * @param w The thread
+	 */
+	protected void awaitReport(Worker w)
+	{
+		for (int i = 0; i < SPINS; i++)
+		{
+			if (w.m_state != RUNNING)
+			{
+				return;
+			}
+		}
+		long deadline = System.nanoTime() + m_blockedTimeout;
+		while (w.m_state == RUNNING)
+		{
+			long left = deadline - System.nanoTime();
+			if (left <= 0)
+			{
+				return;
+			}
+			LockSupport.parkNanos(this, left);
+		}
+	}
+
+	/**
+	 * Waits until a blocked thread reaches a scheduling point or finishes.
+	 * @return {@code true} if a thread can be scheduled, {@code false} if
+	 * all threads remained blocked
+	 */
+	protected boolean awaitEnabled()
+	{
+		long deadline = System.nanoTime() + m_deadlockTimeout;
+		while (true)
+		{
+			for (Worker w : m_workers)
+			{
+				if (w.m_state != RUNNING)
+				{
+					return true;
+				}
+			}
+			long left = deadline - System.nanoTime();
+			if (left <= 0)
+			{
+				return false;
+			}
+			LockSupport.parkNanos(this, left);
+		}
+	}
+
+	/**
+	 * Interrupts the threads that have not finished their actions. Threads
+	 * that do not stop in time are abandoned, and new threads are created
+	 * for the next schedule.
+	 */
+	protected void abort()
+	{
+		for (Worker w : m_workers)
+		{
+			if (w.m_state != DONE)
+			{
+				w.m_abort = true;
+				if (w.m_state == WAITING)
+				{
+					w.m_state = RUNNING;
+					w.grant();
+				}
+			}
+		}
+		long deadline = System.nanoTime() + m_deadlockTimeout;
+		for (Worker w : m_workers)
+		{
+			while (w.m_state != DONE && System.nanoTime() < deadline)
+			{
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+			}
+			if (w.m_state != DONE)
+			{
+				stopWorkers();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Creates and starts the threads performing the actions.
+	 */
+	protected void startWorkers()
+	{
+		m_workers = new Worker[m_pickers.size()];
+		for (int i = 0; i < m_workers.length; i++)
+		{
+			m_workers[i] = new Worker(i);
+			m_workers[i].m_thread.start();
+		}
+	}
+
+	/**
+	 * Stops the threads performing the actions.
+	 */
+	protected void stopWorkers()
+	{
+		if (m_workers == null)
+		{
+			return;
+		}
+		for (Worker w : m_workers)
+		{
+			w.m_terminate = true;
+			w.m_abort = true;
+			w.grant();
+			if (w.m_state == RUNNING)
+			{
+				w.m_thread.interrupt();
+			}
+		}
+		m_workers = null;
+	}
+
+	/**
+	 * Determines if the budget of the check is exhausted.
+	 * @return {@code true} if a budget is set and is exhausted
+	 */
+	protected boolean isExhausted()
+	{
+		return m_budget != null && m_budget.isExhausted(m_result);
+	}
+
+	/**
+	 * Determines if the budget of the shrinking phase is exhausted.
+	 * @return {@code true} if a budget is set and is exhausted
+	 */
+	protected boolean isShrinkingExhausted()
+	{
+		return m_budget != null && m_budget.isShrinkingExhausted(m_result);
+	}
+
+	/**
+	 * Decides which thread runs at each scheduling point.
+	 */
+	public static interface Scheduler
+	{
+		/**
+		 * Chooses the thread that runs at a scheduling point.
+		 * @param enabled An array indicating which threads can run; at least
+		 * one element is {@code true}
+		 * @param step The index of the scheduling point
+		 * @return The index of the thread
+		 */
+		public int choose(/*@ non_null @*/ boolean[] enabled, int step);
+	}
+
+	/**
+	 * Scheduler implementing the Probabilistic Concurrency Testing (PCT)
+	 * algorithm.
+	 */
+	public static class PctScheduler implements Scheduler
+	{
+		/**
+		 * The priority of each thread.
+		 */
+		/*@ non_null @*/ protected final int[] m_priorities;
+
+		/**
+		 * The steps at which the priority of the running thread is lowered.
+		 */
+		/*@ non_null @*/ protected final int[] m_changes;
+
+		/**
+		 * The thread chosen at the previous step.
+		 */
+		protected int m_last;
+
+		/**
+		 * Creates a new PCT scheduler.
+		 * @param r The source of randomness used to assign priorities and to
+		 * pick the steps where priorities change
+		 * @param threads The number of threads
+		 * @param steps An estimate of the number of steps of a schedule
+		 * @param depth The bug depth
+		 */
+		public PctScheduler(/*@ non_null @*/ Random r, int threads, int steps, int depth)
+		{
+			super();
+			m_priorities = new int[threads];
+			for (int i = 0; i < threads; i++)
+			{
+				m_priorities[i] = depth + i;
+			}
+			for (int i = threads - 1; i > 0; i--)
+			{
+				int j = r.nextInt(i + 1);
+				int p = m_priorities[i];
+				m_priorities[i] = m_priorities[j];
+				m_priorities[j] = p;
+			}
+			m_changes = new int[depth - 1];
+			for (int i = 0; i < m_changes.length; i++)
+			{
+				m_changes[i] = r.nextInt(Math.max(1, steps));
+			}
+			m_last = -1;
+		}
+
+		@Override
+		public int choose(boolean[] enabled, int step)
+		{
+			if (m_last >= 0)
+			{
+				for (int i = 0; i < m_changes.length; i++)
+				{
+					if (m_changes[i] == step)
+					{
+						// Lower than all initial priorities, which are at least the depth
+						m_priorities[m_last] = m_changes.length - 1 - i;
+					}
+				}
+			}
+			int best = -1;
+			for (int i = 0; i < enabled.length; i++)
+			{
+				if (enabled[i] && (best < 0 || m_priorities[i] > m_priorities[best]))
+				{
+					best = i;
+				}
+			}
+			m_last = best;
+			return best;
+		}
+	}
+
+	/**
+	 * Scheduler replaying a list of decisions. Decisions designating a thread
+	 * that cannot run are skipped; once the decisions are exhausted, the
+	 * thread chosen last keeps running as long as it can, and the enabled
+	 * thread with the lowest index runs otherwise.
+	 */
+	public static class ReplayScheduler implements Scheduler
+	{
+		/**
+		 * The decisions to replay.
+		 */
+		/*@ non_null @*/ protected final int[] m_decisions;
+
+		/**
+		 * The position of the next decision to replay.
+		 */
+		protected int m_position;
+
+		/**
+		 * The thread chosen at the previous step.
+		 */
+		protected int m_last;
+
+		/**
+		 * Creates a new replay scheduler.
+		 * @param decisions The decisions to replay
+		 */
+		public ReplayScheduler(/*@ non_null @*/ int[] decisions)
+		{
+			super();
+			m_decisions = decisions;
+			m_position = 0;
+			m_last = -1;
+		}
+
+		@Override
+		public int choose(boolean[] enabled, int step)
+		{
+			while (m_position < m_decisions.length)
+			{
+				int t = m_decisions[m_position++];
+				if (t >= 0 && t < enabled.length && enabled[t])
+				{
+					m_last = t;
+					return t;
+				}
+			}
+			if (m_last < 0 || !enabled[m_last])
+			{
+				for (m_last = 0; !enabled[m_last]; m_last++)
+				{
+					// Find the first enabled thread
+				}
+			}
+			return m_last;
+		}
+	}
+
+	/**
+	 * Exception signaling a failure that is not caused by an action, such as
+	 * a deadlock or the violation of the invariant.
+	 */
+	public static class ScheduleException extends RuntimeException
+	{
+		/**
+		 * Dummy UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Creates a new exception.
+		 * @param message The message of the exception
+		 */
+		public ScheduleException(String message)
+		{
+			super(message);
+		}
+	}
+
+	/**
+	 * Error thrown at a scheduling point to interrupt a thread whose
+	 * schedule has ended.
+	 */
+	protected static class Abort extends Error
+	{
+		/**
+		 * Dummy UID.
+		 */
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * A thread performing actions on the object.
+	 */
+	protected class Worker implements Runnable
+	{
+		/**
+		 * The underlying thread.
+		 */
+		/*@ non_null @*/ protected final Thread m_thread;
+
+		/**
+		 * The state of the thread, one of {@link #WAITING}, {@link #RUNNING}
+		 * and {@link #DONE}.
+		 */
+		protected volatile int m_state;
+
+		/**
+		 * A flag set by the scheduler to let the thread run.
+		 */
+		protected volatile boolean m_go;
+
+		/**
+		 * A flag telling the thread to stop the current schedule.
+		 */
+		protected volatile boolean m_abort;
+
+		/**
+		 * A flag telling the thread to terminate.
+		 */
+		protected volatile boolean m_terminate;
+
+		/**
+		 * The picker producing the actions, or <tt>null</tt> if actions are
+		 * replayed.
+		 */
+		/*@ null @*/ protected Picker<Action> m_source;
+
+		/**
+		 * The actions to replay, or <tt>null</tt> if actions are picked.
+		 */
+		/*@ null @*/ protected List<Action> m_replay;
+
+		/**
+		 * The number of actions to perform.
+		 */
+		protected int m_count;
+
+		/**
+		 * The actions performed in the current schedule. Only the first
+		 * {@link #m_performedCount} elements are set.
+		 */
+		/*@ non_null @*/ protected Action[] m_performed;
+
+		/**
+		 * The number of actions performed in the current schedule. This
+		 * publishes the actions to the scheduler, which may read them while a
+		 * thread it considers as blocked is still running.
+		 */
+		protected volatile int m_performedCount;
+
+		/**
+		 * The failure caused by the last action performed, if any.
+		 */
+		/*@ null @*/ protected Throwable m_failure;
+
+		/**
+		 * Creates a new worker.
+		 * @param index The index of the thread
+		 */
+		public Worker(int index)
+		{
+			super();
+			m_thread = new Thread(this, "ConcurrentMonkey-" + index);
+			m_thread.setDaemon(true);
+			m_state = DONE;
+			m_performed = new Action[0];
+			m_performedCount = 0;
+		}
+
+		/**
+		 * Prepares the worker for a new schedule.
+		 * @param source The picker producing the actions, or <tt>null</tt>
+		 * @param replay The actions to replay, or <tt>null</tt>
+		 * @param count The number of actions to perform
+		 */
+		protected void prepare(Picker<Action> source, List<Action> replay, int count)
+		{
+			m_source = source;
+			m_replay = replay;
+			m_count = count;
+			m_performed = new Action[count];
+			m_performedCount = 0;
+			m_failure = null;
+			m_abort = false;
+			m_state = WAITING;
+		}
+
+		@Override
+		public void run()
+		{
+			s_current.set(this);
+			while (true)
+			{
+				awaitGo();
+				if (m_terminate)
+				{
+					return;
+				}
+				if (!m_abort)
+				{
+					perform();
+				}
+				m_state = DONE;
+				LockSupport.unpark(m_controller);
+			}
+		}
+
+		/**
+		 * Performs the actions of the current schedule.
+		 */
+		protected void perform()
+		{
+			try
+			{
+				for (int i = 0; i < m_count; i++)
+				{
+					if (i > 0)
+					{
+						pause();
+					}
+					Action a;
+					if (m_replay != null)
+					{
+						a = m_replay.get(i);
+					}
+					else
+					{
+						try
+						{
+							a = m_source.pick();
+						}
+						catch (NoMoreElementException e)
+						{
+							break;
+						}
+					}
+					m_performed[i] = a;
+					m_performedCount = i + 1;
+					a.doAction();
+				}
+			}
+			catch (Abort e)
+			{
+				// The schedule has ended
+			}
+			catch (Throwable t)
+			{
+				m_failure = t;
+			}
+		}
+
+		/**
+		 * Gets the actions performed in the current schedule.
+		 * @return A copy of the list of actions
+		 */
+		/*@ non_null @*/ protected List<Action> getPerformed()
+		{
+			int n = m_performedCount;
+			List<Action> list = new ArrayList<Action>(n);
+			for (int i = 0; i < n; i++)
+			{
+				list.add(m_performed[i]);
+			}
+			return list;
+		}
+
+		/**
+		 * Lets the thread run.
+		 */
+		protected void grant()
+		{
+			m_go = true;
+			LockSupport.unpark(m_thread);
+		}
+
+		/**
+		 * Hands over control to the scheduler, and waits for the next turn of
+		 * the thread.
+		 */
+		protected void pause()
+		{
+			m_state = WAITING;
+			LockSupport.unpark(m_controller);
+			awaitGo();
+			if (m_abort)
+			{
+				throw new Abort();
+			}
+		}
+
+		/**
+		 * Waits until the scheduler lets the thread run.
+		 */
+		protected void awaitGo()
+		{
+			for (int i = 0; i < SPINS && !m_go; i++)
+			{
+				// Spin
+			}
+			while (!m_go && !m_terminate)
+			{
+				LockSupport.park(this);
+			}
+			m_go = false;
+		}
+	}
+}
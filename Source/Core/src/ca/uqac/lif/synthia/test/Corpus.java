@@ -0,0 +1,669 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.PickerException;
+import ca.uqac.lif.synthia.random.ChoiceBuffer;
+
+/**
+ * A persistent collection of failing choice sequences. Each time an
+ * {@link Assert} or a {@link Monkey} finds a failure, the choice sequence
+ * (see {@link ChoiceBuffer}) that produced it can be stored in a corpus;
+ * subsequent runs then replay the whole corpus before exploring new inputs,
+ * so that known regressions are re-checked immediately instead of being
+ * rediscovered by luck.
+ * <p>
+ * Along with the choices, each entry records the seed of the run that found
+ * it, a short signature of the exception it caused, if any, and optionally
+ * a <em>context</em>: a string describing the state, outside of the
+ * choices, in which they must be replayed (such as the configuration of a
+ * {@link Swarm}). A corpus is a directory where each entry is stored in its
+ * own file, named after the <em>fingerprint</em> of its choices and
+ * context. Two failures produced by the same choices in the same context
+ * are therefore stored only once. Choices are encoded as variable-length
+ * integers, which makes the files very compact since
+ * most choices (and in particular shrunk ones) are small.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Corpus
+{
+	/**
+	 * The extension of the files containing the entries of a corpus.
+	 */
+	public static final String EXTENSION = ".chs";
+
+	/**
+	 * A value indicating that the seed of an entry is unknown.
+	 */
+	public static final long NO_SEED = -1;
+
+	/**
+	 * The first bytes of every entry file.
+	 */
+	protected static final int MAGIC = 0x53594e43;
+
+	/**
+	 * The version of the encoding of entry files.
+	 */
+	protected static final int VERSION = 1;
+
+	/**
+	 * The directory where entries are stored, or <tt>null</tt> if the corpus
+	 * only resides in memory.
+	 */
+	/*@ null @*/ protected final File m_directory;
+
+	/**
+	 * The entries of the corpus, indexed by their fingerprint.
+	 */
+	/*@ non_null @*/ protected final Map<Long,Entry> m_entries;
+
+	/**
+	 * The seed recorded in the entries added to the corpus.
+	 */
+	protected long m_seed;
+
+	/**
+	 * Creates an empty corpus residing only in memory.
+	 */
+	public Corpus()
+	{
+		super();
+		m_directory = null;
+		m_entries = new LinkedHashMap<Long,Entry>();
+		m_seed = NO_SEED;
+	}
+
+	/**
+	 * Creates a corpus stored in a directory. The directory is created if it
+	 * does not exist, and the entries it already contains are loaded.
+	 * @param directory The directory
+	 * @throws CorpusException If the directory cannot be created, or one of
+	 * its entries cannot be read
+	 */
+	public Corpus(/*@ non_null @*/ File directory)
+	{
+		super();
+		m_directory = directory;
+		m_entries = new LinkedHashMap<Long,Entry>();
+		m_seed = NO_SEED;
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new CorpusException("Cannot create directory " + directory);
+		}
+		File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		Arrays.sort(files);
+		for (File f : files)
+		{
+			if (f.isFile() && f.getName().endsWith(EXTENSION))
+			{
+				Entry e = read(f);
+				m_entries.put(e.getFingerprint(), e);
+			}
+		}
+	}
+
+	/**
+	 * Sets the seed recorded in the entries that are subsequently added to
+	 * the corpus. This is typically the seed of the pickers used in the
+	 * current run.
+	 * @param seed The seed, or {@link #NO_SEED}
+	 * @return This corpus
+	 */
+	/*@ non_null @*/ public Corpus setSeed(long seed)
+	{
+		m_seed = seed;
+		return this;
+	}
+
+	/**
+	 * Adds a choice sequence to the corpus, unless a sequence with the same
+	 * fingerprint is already present.
+	 * @param choices The choice sequence
+	 * @param signature A signature of the failure caused by the sequence, or
+	 * <tt>null</tt>
+	 * @return {@code true} if the sequence has been added, {@code false} if
+	 * it was already in the corpus
+	 * @throws CorpusException If the entry cannot be written to disk
+	 */
+	public boolean add(/*@ non_null @*/ int[] choices, /*@ null @*/ String signature)
+	{
+		return add(choices, signature, "");
+	}
+
+	/**
+	 * Adds a choice sequence to the corpus, along with the context in which
+	 * it must be replayed, unless a sequence with the same fingerprint and
+	 * context is already present.
+	 * @param choices The choice sequence
+	 * @param signature A signature of the failure caused by the sequence, or
+	 * <tt>null</tt>
+	 * @param context The context of the sequence, or the empty string if it
+	 * has none
+	 * @return {@code true} if the sequence has been added, {@code false} if
+	 * it was already in the corpus
+	 * @throws CorpusException If the entry cannot be written to disk
+	 */
+	public synchronized boolean add(/*@ non_null @*/ int[] choices, /*@ null @*/ String signature, /*@ non_null @*/ String context)
+	{
+		long fp = fingerprint(choices, context);
+		if (m_entries.containsKey(fp))
+		{
+			return false;
+		}
+		Entry e = new Entry(Arrays.copyOf(choices, choices.length), m_seed, signature == null ? "" : signature, context);
+		if (m_directory != null)
+		{
+			write(e, new File(m_directory, String.format("%016x", fp) + EXTENSION));
+		}
+		m_entries.put(fp, e);
+		return true;
+	}
+
+	/**
+	 * Adds a choice sequence to the corpus, along with the signature of the
+	 * exception it caused.
+	 * @param choices The choice sequence
+	 * @param t The exception, or <tt>null</tt>
+	 * @return {@code true} if the sequence has been added, {@code false} if
+	 * it was already in the corpus
+	 */
+	public boolean add(/*@ non_null @*/ int[] choices, /*@ null @*/ Throwable t)
+	{
+		return add(choices, signature(t));
+	}
+
+	/**
+	 * Gets the entries of the corpus, in the order in which they were loaded
+	 * or added.
+	 * @return The list of entries
+	 */
+	/*@ non_null @*/ public synchronized List<Entry> getEntries()
+	{
+		return new ArrayList<Entry>(m_entries.values());
+	}
+
+	/**
+	 * Gets the number of entries in the corpus.
+	 * @return The number of entries
+	 */
+	/*@ pure @*/ public synchronized int size()
+	{
+		return m_entries.size();
+	}
+
+	/**
+	 * Replays every entry of the corpus on a picker, and tests the resulting
+	 * inputs. Entries are distributed among a number of threads; each thread
+	 * uses its own copy of the picker, but the same object under test, which
+	 * must therefore be thread-safe if more than one thread is used. An entry
+	 * fails if the test returns {@code false} or throws an exception.
+	 * Entries whose choices no longer produce an input (because the picker
+	 * has changed) are ignored.
+	 * @param picker The picker producing the inputs
+	 * @param sut The object under test
+	 * @param threads The number of threads
+	 * @return The entries that still fail, in the order of the corpus
+	 */
+	/*@ non_null @*/ public List<Entry> replay(/*@ non_null @*/ final Picker<?> picker, /*@ non_null @*/ final Testable sut, int threads)
+	{
+		final List<Entry> entries = getEntries();
+		final boolean[] failed = new boolean[entries.size()];
+		threads = Math.max(1, Math.min(threads, entries.size()));
+		if (threads == 1)
+		{
+			replay(picker, sut, entries, failed, 0, 1);
+		}
+		else
+		{
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+			try
+			{
+				for (int i = 0; i < threads; i++)
+				{
+					final int offset = i, stride = threads;
+					futures.add(executor.submit(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							replay(picker.duplicate(false), sut, entries, failed, offset, stride);
+						}
+					}));
+				}
+				for (Future<?> f : futures)
+				{
+					f.get();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new CorpusException(e);
+			}
+			catch (ExecutionException e)
+			{
+				throw new CorpusException(e.getCause());
+			}
+			finally
+			{
+				executor.shutdownNow();
+			}
+		}
+		List<Entry> failing = new ArrayList<Entry>();
+		for (int i = 0; i < failed.length; i++)
+		{
+			if (failed[i])
+			{
+				failing.add(entries.get(i));
+			}
+		}
+		return failing;
+	}
+
+	/**
+	 * Replays a slice of the entries of the corpus on a single thread.
+	 * @param picker The picker producing the inputs
+	 * @param sut The object under test
+	 * @param entries The entries
+	 * @param failed An array where the entries that still fail are flagged
+	 * @param offset The index of the first entry to replay
+	 * @param stride The distance between two replayed entries
+	 */
+	protected static void replay(Picker<?> picker, Testable sut, List<Entry> entries, boolean[] failed, int offset, int stride)
+	{
+		for (int i = offset; i < entries.size(); i += stride)
+		{
+			Object o;
+			ChoiceBuffer buffer = new ChoiceBuffer(entries.get(i).getChoices());
+			picker.reset();
+			buffer.start();
+			try
+			{
+				o = picker.pick();
+			}
+			catch (PickerException ex)
+			{
+				continue;
+			}
+			finally
+			{
+				buffer.stop();
+			}
+			try
+			{
+				failed[i] = !sut.test(o);
+			}
+			catch (RuntimeException ex)
+			{
+				failed[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of a choice sequence. The fingerprint is the
+	 * 64-bit FNV-1a hash of the sequence.
+	 * @param choices The choice sequence
+	 * @return The fingerprint
+	 */
+	public static long fingerprint(/*@ non_null @*/ int[] choices)
+	{
+		long h = 0xcbf29ce484222325L;
+		for (int c : choices)
+		{
+			for (int i = 0; i < 4; i++)
+			{
+				h ^= (c >>> (8 * i)) & 0xff;
+				h *= 0x100000001b3L;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Computes the fingerprint of a choice sequence and of the context in
+	 * which it is replayed. The hash of the sequence is continued with the
+	 * characters of the context, so that a sequence without context keeps
+	 * the fingerprint computed by {@link #fingerprint(int[])}.
+	 * @param choices The choice sequence
+	 * @param context The context
+	 * @return The fingerprint
+	 */
+	public static long fingerprint(/*@ non_null @*/ int[] choices, /*@ non_null @*/ String context)
+	{
+		long h = fingerprint(choices);
+		for (int i = 0; i < context.length(); i++)
+		{
+			h ^= context.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Computes the signature of an exception, made of its class and the
+	 * location where it was thrown. Unlike the message of the exception,
+	 * this signature does not depend on the input that caused it.
+	 * @param t The exception, or <tt>null</tt>
+	 * @return The signature, or the empty string if <tt>t</tt> is null
+	 */
+	/*@ non_null @*/ public static String signature(/*@ null @*/ Throwable t)
+	{
+		if (t == null)
+		{
+			return "";
+		}
+		StackTraceElement[] trace = t.getStackTrace();
+		if (trace.length == 0)
+		{
+			return t.getClass().getName();
+		}
+		return t.getClass().getName() + " at " + trace[0].getClassName() + "." + trace[0].getMethodName();
+	}
+
+	/**
+	 * Writes an entry to a file.
+	 * @param e The entry
+	 * @param f The file
+	 * @throws CorpusException If the file cannot be written
+	 */
+	protected static void write(Entry e, File f)
+	{
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeLong(e.m_seed);
+			out.writeUTF(e.m_signature);
+			out.writeUTF(e.m_context);
+			writeVarInt(out, e.m_choices.length);
+			for (int c : e.m_choices)
+			{
+				writeVarInt(out, c);
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new CorpusException(ex);
+		}
+		finally
+		{
+			close(out);
+		}
+	}
+
+	/**
+	 * Reads an entry from a file.
+	 * @param f The file
+	 * @return The entry
+	 * @throws CorpusException If the file cannot be read or is not a valid
+	 * entry
+	 */
+	protected static Entry read(File f)
+	{
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+			if (in.readInt() != MAGIC || in.readByte() != VERSION)
+			{
+				throw new CorpusException("Not a corpus entry: " + f);
+			}
+			long seed = in.readLong();
+			String signature = in.readUTF();
+			String context = in.readUTF();
+			int[] choices = new int[readVarInt(in)];
+			for (int i = 0; i < choices.length; i++)
+			{
+				choices[i] = readVarInt(in);
+			}
+			return new Entry(choices, seed, signature, context);
+		}
+		catch (IOException ex)
+		{
+			throw new CorpusException(ex);
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	/**
+	 * Writes an integer, considered as unsigned, using 7 bits per byte.
+	 * @param out The stream to write to
+	 * @param v The integer
+	 * @throws IOException If the stream cannot be written
+	 */
+	protected static void writeVarInt(DataOutputStream out, int v) throws IOException
+	{
+		while ((v & ~0x7f) != 0)
+		{
+			out.writeByte((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	/**
+	 * Reads an integer written by {@link #writeVarInt(DataOutputStream, int)}.
+	 * @param in The stream to read from
+	 * @return The integer
+	 * @throws IOException If the stream cannot be read
+	 */
+	protected static int readVarInt(DataInputStream in) throws IOException
+	{
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			v |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return v;
+			}
+		}
+		throw new IOException("Malformed integer");
+	}
+
+	/**
+	 * Closes a stream, ignoring errors.
+	 * @param c The stream, or <tt>null</tt>
+	 */
+	protected static void close(/*@ null @*/ Closeable c)
+	{
+		if (c == null)
+		{
+			return;
+		}
+		try
+		{
+			c.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing to do
+		}
+	}
+
+	/**
+	 * An entry of a corpus.
+	 */
+	public static class Entry
+	{
+		/**
+		 * The choice sequence.
+		 */
+		/*@ non_null @*/ protected final int[] m_choices;
+
+		/**
+		 * The seed of the run that found the entry.
+		 */
+		protected final long m_seed;
+
+		/**
+		 * The signature of the failure caused by the entry.
+		 */
+		/*@ non_null @*/ protected final String m_signature;
+
+		/**
+		 * The context in which the entry must be replayed.
+		 */
+		/*@ non_null @*/ protected final String m_context;
+
+		/**
+		 * Creates a new entry without context.
+		 * @param choices The choice sequence
+		 * @param seed The seed of the run that found the entry
+		 * @param signature The signature of the failure caused by the entry
+		 */
+		public Entry(/*@ non_null @*/ int[] choices, long seed, /*@ non_null @*/ String signature)
+		{
+			this(choices, seed, signature, "");
+		}
+
+		/**
+		 * Creates a new entry.
+		 * @param choices The choice sequence
+		 * @param seed The seed of the run that found the entry
+		 * @param signature The signature of the failure caused by the entry
+		 * @param context The context in which the entry must be replayed
+		 */
+		public Entry(/*@ non_null @*/ int[] choices, long seed, /*@ non_null @*/ String signature, /*@ non_null @*/ String context)
+		{
+			super();
+			m_choices = choices;
+			m_seed = seed;
+			m_signature = signature;
+			m_context = context;
+		}
+
+		/**
+		 * Gets the choice sequence of this entry.
+		 * @return A copy of the choices
+		 */
+		/*@ non_null @*/ public int[] getChoices()
+		{
+			return Arrays.copyOf(m_choices, m_choices.length);
+		}
+
+		/**
+		 * Gets the seed of the run that found this entry.
+		 * @return The seed, or {@link Corpus#NO_SEED}
+		 */
+		/*@ pure @*/ public long getSeed()
+		{
+			return m_seed;
+		}
+
+		/**
+		 * Gets the signature of the failure caused by this entry.
+		 * @return The signature, or the empty string if the failure did not
+		 * involve an exception
+		 */
+		/*@ pure non_null @*/ public String getSignature()
+		{
+			return m_signature;
+		}
+
+		/**
+		 * Gets the context in which this entry must be replayed.
+		 * @return The context, or the empty string if the entry has none
+		 */
+		/*@ pure non_null @*/ public String getContext()
+		{
+			return m_context;
+		}
+
+		/**
+		 * Gets the fingerprint of the choice sequence and of the context of
+		 * this entry.
+		 * @return The fingerprint
+		 */
+		/*@ pure @*/ public long getFingerprint()
+		{
+			return fingerprint(m_choices, m_context);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%016x", getFingerprint()) + " " + m_signature + " " + Arrays.toString(m_choices);
+		}
+	}
+
+	/**
+	 * Exception signaling that a corpus cannot be read or written.
+	 */
+	public static class CorpusException extends RuntimeException
+	{
+		/**
+		 * Dummy UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Creates a new exception.
+		 * @param message The message of the exception
+		 */
+		public CorpusException(String message)
+		{
+			super(message);
+		}
+
+		/**
+		 * Creates a new exception wrapping another one.
+		 * @param cause The cause of the exception
+		 */
+		public CorpusException(Throwable cause)
+		{
+			super(cause);
+		}
+	}
+}
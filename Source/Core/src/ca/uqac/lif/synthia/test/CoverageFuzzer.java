@@ -0,0 +1,554 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.uqac.lif.synthia.GiveUpException;
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.PickerException;
+import ca.uqac.lif.synthia.Seedable;
+import ca.uqac.lif.synthia.random.ChoiceBuffer;
+import ca.uqac.lif.synthia.random.Random;
+
+/**
+ * Searches for a failing test input using coverage feedback from the object
+ * under test. Contrary to {@link Assert}, which draws inputs blindly from a
+ * picker, the fuzzer observes the edges of the object exercised by each
+ * input (as recorded by calls to {@link CoverageMap#probe(int)}), and keeps
+ * a <em>corpus</em> of the inputs that exercised new edges. New inputs are
+ * then preferably obtained by mutating inputs of the corpus, which makes it
+ * possible to reach parts of the object that are guarded by conditions very
+ * unlikely to be satisfied by purely random inputs.
+ * <p>
+ * Inputs are not mutated directly: the fuzzer records the
+ * {@link ChoiceBuffer choice sequence} made by the input picker, and mutates
+ * this sequence (changing, deleting or duplicating choices, or splicing two
+ * sequences) before replaying it through the picker. Any picker, or
+ * combination of pickers, can therefore be used as the source of inputs.
+ * When a failing input is found, it can optionally be shrunk with a
+ * {@link ChoiceShrinker}.
+ * <p>
+ * The object under test must be instrumented so that it calls
+ * {@link CoverageMap#probe(int)}, either by hand or by loading its classes
+ * with the Java agent of the Synthia Coverage project, which inserts the
+ * probes into their bytecode. An object that calls no probe makes the
+ * fuzzer behave like random testing.
+ * 
+ * @param <T> The type of the test inputs
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class CoverageFuzzer<T> implements Seedable
+{
+	/**
+	 * The maximum number of inputs tried when no budget is set.
+	 */
+	public static final int DEFAULT_MAX_EXECUTIONS = 100000;
+
+	/**
+	 * The object that is being tested.
+	 */
+	/*@ non_null @*/ protected final Testable m_sut;
+
+	/**
+	 * The picker producing test inputs.
+	 */
+	/*@ non_null @*/ protected final Picker<T> m_input;
+
+	/**
+	 * The coverage accumulated over all the inputs tried.
+	 */
+	/*@ non_null @*/ protected final CoverageMap m_coverage;
+
+	/**
+	 * The inputs that exercised new edges.
+	 */
+	/*@ non_null @*/ protected final List<Entry> m_corpus;
+
+	/**
+	 * The source of randomness used to schedule and mutate inputs.
+	 */
+	/*@ non_null @*/ protected Random m_random;
+
+	/**
+	 * The probability of mutating an input of the corpus, rather than
+	 * picking a new one.
+	 */
+	protected float m_mutationProbability;
+
+	/**
+	 * A flag indicating whether failing inputs are shrunk.
+	 */
+	protected boolean m_shrink;
+
+	/**
+	 * The budget of the check, or <tt>null</tt> to try at most
+	 * {@link #DEFAULT_MAX_EXECUTIONS} inputs.
+	 */
+	/*@ null @*/ protected Budget m_budget;
+
+	/**
+	 * The resources spent by the last call to {@link #check()}.
+	 */
+	/*@ null @*/ protected CheckResult m_result;
+
+	/**
+	 * The progressively smaller failing inputs found by the last call to
+	 * {@link #check()}.
+	 */
+	/*@ non_null @*/ protected List<T> m_shrunk;
+
+	/**
+	 * The choice sequence producing the last element of {@link #m_shrunk}.
+	 */
+	/*@ null @*/ protected int[] m_failingChoices;
+
+	/**
+	 * Creates a new fuzzer.
+	 * @param sut The object that is being tested
+	 * @param input The picker producing test inputs
+	 */
+	public CoverageFuzzer(/*@ non_null @*/ Testable sut, /*@ non_null @*/ Picker<T> input)
+	{
+		super();
+		m_sut = sut;
+		m_input = input;
+		m_coverage = new CoverageMap();
+		m_corpus = new ArrayList<Entry>();
+		m_random = new Random();
+		m_mutationProbability = 0.9f;
+		m_shrink = true;
+		m_budget = null;
+		m_result = null;
+		m_shrunk = new ArrayList<T>();
+		m_failingChoices = null;
+	}
+
+	@Override
+	public CoverageFuzzer<T> setSeed(int seed)
+	{
+		m_random = new Random(seed);
+		return this;
+	}
+
+	/**
+	 * Sets the probability of mutating an input of the corpus, rather than
+	 * picking a new one, when the corpus is not empty.
+	 * @param p The probability, between 0 and 1
+	 * @return This fuzzer
+	 */
+	public CoverageFuzzer<T> setMutationProbability(float p)
+	{
+		m_mutationProbability = p;
+		return this;
+	}
+
+	/**
+	 * Sets whether failing inputs are shrunk.
+	 * @param b Set to {@code true} to shrink failing inputs (the default)
+	 * @return This fuzzer
+	 */
+	public CoverageFuzzer<T> shrink(boolean b)
+	{
+		m_shrink = b;
+		return this;
+	}
+
+	/**
+	 * Sets the budget of the check.
+	 * @param b The budget, or <tt>null</tt> to try at most
+	 * {@link #DEFAULT_MAX_EXECUTIONS} inputs
+	 * @return This fuzzer
+	 */
+	public CoverageFuzzer<T> setBudget(/*@ null @*/ Budget b)
+	{
+		m_budget = b;
+		return this;
+	}
+
+	/**
+	 * Adds a choice sequence to the corpus. This can be used to start the
+	 * search from inputs known to be interesting.
+	 * @param choices The choice sequence
+	 * @return This fuzzer
+	 */
+	public CoverageFuzzer<T> addToCorpus(/*@ non_null @*/ int[] choices)
+	{
+		m_corpus.add(new Entry(choices, 1));
+		return this;
+	}
+
+	/**
+	 * Searches for a failing input.
+	 * @return The value {@code false} if a failing input has been found,
+	 * {@code true} otherwise
+	 */
+	public boolean check()
+	{
+		m_result = new CheckResult();
+		m_shrunk = new ArrayList<T>();
+		m_failingChoices = null;
+		while (!isExhausted())
+		{
+			Entry parent = null;
+			int[] choices = null;
+			if (!m_corpus.isEmpty() && m_random.nextFloat() < m_mutationProbability)
+			{
+				parent = schedule();
+				choices = mutate(parent.m_choices);
+			}
+			ChoiceBuffer buffer = new ChoiceBuffer(choices);
+			T o;
+			long start = System.nanoTime();
+			if (choices != null)
+			{
+				// The choices of the corpus were recorded from a fresh picker
+				m_input.reset();
+			}
+			buffer.start();
+			try
+			{
+				o = m_input.pick();
+			}
+			catch (GiveUpException e)
+			{
+				continue;
+			}
+			catch (NoMoreElementException e)
+			{
+				continue;
+			}
+			catch (PickerException e)
+			{
+				continue;
+			}
+			finally
+			{
+				buffer.stop();
+				m_result.addGeneration(System.nanoTime() - start);
+			}
+			int[] consumed = buffer.getChoices();
+			CoverageMap.clear();
+			start = System.nanoTime();
+			boolean verdict;
+			try
+			{
+				verdict = m_sut.test(o);
+			}
+			finally
+			{
+				m_result.addInvocations(1, System.nanoTime() - start);
+			}
+			int fresh = m_coverage.merge();
+			if (!verdict)
+			{
+				m_shrunk.add(o);
+				m_failingChoices = consumed;
+				m_result.addProgress(o, Assert.sizeOf(o));
+				if (m_shrink)
+				{
+					shrink(consumed);
+				}
+				m_result.end(false);
+				return false;
+			}
+			if (fresh > 0)
+			{
+				m_corpus.add(new Entry(consumed, fresh));
+				if (parent != null)
+				{
+					parent.m_found++;
+				}
+			}
+		}
+		m_result.end(true);
+		return true;
+	}
+
+	/**
+	 * Gets the inputs that exercised new edges.
+	 * @return The corpus
+	 */
+	/*@ non_null @*/ public List<Entry> getCorpus()
+	{
+		return m_corpus;
+	}
+
+	/**
+	 * Gets the coverage accumulated over all the inputs tried.
+	 * @return The coverage map
+	 */
+	/*@ non_null @*/ public CoverageMap getCoverage()
+	{
+		return m_coverage;
+	}
+
+	/**
+	 * Gets the resources spent by the last call to {@link #check()}.
+	 * @return The result, or <tt>null</tt> if no check has been made yet
+	 */
+	/*@ null @*/ public CheckResult getResult()
+	{
+		return m_result;
+	}
+
+	/**
+	 * Gets the progressively smaller failing inputs found by the last call
+	 * to {@link #check()}.
+	 * @return The list of inputs, empty if no failing input was found
+	 */
+	/*@ non_null @*/ public List<T> getIterations()
+	{
+		return m_shrunk;
+	}
+
+	/**
+	 * Gets the smallest failing input found by the last call to
+	 * {@link #check()}.
+	 * @return The input, or <tt>null</tt> if no failing input was found
+	 */
+	/*@ null @*/ public T getShrunk()
+	{
+		if (m_shrunk.isEmpty())
+		{
+			return null;
+		}
+		return m_shrunk.get(m_shrunk.size() - 1);
+	}
+
+	/**
+	 * Gets the choice sequence producing the smallest failing input found by
+	 * the last call to {@link #check()}.
+	 * @return The choice sequence, or <tt>null</tt> if no failing input was
+	 * found
+	 */
+	/*@ null @*/ public int[] getFailingChoices()
+	{
+		return m_failingChoices;
+	}
+
+	/**
+	 * Shrinks the choice sequence of a failing input.
+	 * @param choices The choice sequence
+	 */
+	protected void shrink(int[] choices)
+	{
+		long start = System.nanoTime(), sut_before = m_result.getSutTime();
+		ChoiceShrinker<T> cs = new ChoiceShrinker<T>(m_input, new Testable()
+		{
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				long start = System.nanoTime();
+				try
+				{
+					return m_sut.test(parameters[0]);
+				}
+				finally
+				{
+					m_result.addInvocations(1, System.nanoTime() - start);
+				}
+			}
+		});
+		if (m_budget != null)
+		{
+			cs.setBudget(m_budget, m_result);
+		}
+		m_failingChoices = cs.shrink(choices);
+		List<T> found = cs.getShrunk();
+		// The first element is the replay of the original choice sequence;
+		// successive sequences may also produce the same input
+		for (int i = 1; i < found.size(); i++)
+		{
+			T o = found.get(i), last = m_shrunk.get(m_shrunk.size() - 1);
+			if (o == null ? last != null : !o.equals(last))
+			{
+				m_shrunk.add(o);
+			}
+		}
+		m_result.addShrinkingTime(System.nanoTime() - start - (m_result.getSutTime() - sut_before));
+	}
+
+	/**
+	 * Selects the entry of the corpus to mutate. Two entries are drawn at
+	 * random, and the one that was mutated less often relative to the number
+	 * of new edges it led to is kept; this favors recent entries and entries
+	 * whose mutations are productive.
+	 * @return The entry
+	 */
+	protected Entry schedule()
+	{
+		Entry e1 = m_corpus.get(m_random.nextInt(m_corpus.size()));
+		Entry e2 = m_corpus.get(m_random.nextInt(m_corpus.size()));
+		Entry e = e1.getScore() >= e2.getScore() ? e1 : e2;
+		e.m_picked++;
+		return e;
+	}
+
+	/**
+	 * Produces a mutated copy of a choice sequence.
+	 * @param choices The choice sequence
+	 * @return The mutated sequence
+	 */
+	protected int[] mutate(int[] choices)
+	{
+		int[] c = Arrays.copyOf(choices, choices.length);
+		int rounds = 1 + m_random.nextInt(4);
+		for (int r = 0; r < rounds; r++)
+		{
+			if (c.length == 0)
+			{
+				c = new int[] {m_random.nextInt()};
+				continue;
+			}
+			int i = m_random.nextInt(c.length);
+			switch (m_random.nextInt(7))
+			{
+			case 0:
+				// Replace by a random value
+				c[i] = m_random.nextInt();
+				break;
+			case 1:
+				// Replace by a small value
+				c[i] = m_random.nextInt(16);
+				break;
+			case 2:
+				// Flip one of the high-order bits, which decide the outcome of
+				// most draws
+				c[i] ^= 1 << (30 - m_random.nextInt(8));
+				break;
+			case 3:
+				// Add or subtract a small amount
+				c[i] += m_random.nextInt(65) - 32;
+				break;
+			case 4:
+			{
+				// Delete a block
+				int len = 1 + m_random.nextInt(Math.min(8, c.length - i));
+				int[] n = new int[c.length - len];
+				System.arraycopy(c, 0, n, 0, i);
+				System.arraycopy(c, i + len, n, i, c.length - i - len);
+				c = n;
+				break;
+			}
+			case 5:
+			{
+				// Duplicate a block
+				int len = 1 + m_random.nextInt(Math.min(8, c.length - i));
+				int[] n = new int[c.length + len];
+				System.arraycopy(c, 0, n, 0, i + len);
+				System.arraycopy(c, i, n, i + len, c.length - i);
+				c = n;
+				break;
+			}
+			default:
+			{
+				// Splice with another entry of the corpus
+				int[] other = m_corpus.get(m_random.nextInt(m_corpus.size())).m_choices;
+				if (other.length > 0)
+				{
+					int j = m_random.nextInt(other.length);
+					int[] n = new int[i + other.length - j];
+					System.arraycopy(c, 0, n, 0, i);
+					System.arraycopy(other, j, n, i, other.length - j);
+					c = n;
+				}
+				break;
+			}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Determines if the search must stop.
+	 * @return {@code true} if the budget (or the default maximum number of
+	 * executions) is exhausted
+	 */
+	protected boolean isExhausted()
+	{
+		if (m_budget == null || !m_budget.boundsSearch())
+		{
+			return m_result.getGenerated() >= DEFAULT_MAX_EXECUTIONS;
+		}
+		return m_budget.isExhausted(m_result);
+	}
+
+	/**
+	 * An input of the corpus, represented by its choice sequence.
+	 */
+	public static class Entry
+	{
+		/**
+		 * The choice sequence producing the input.
+		 */
+		/*@ non_null @*/ protected final int[] m_choices;
+
+		/**
+		 * The number of new edges exercised by the input when it was added.
+		 */
+		protected final int m_edges;
+
+		/**
+		 * The number of times the input was selected for mutation.
+		 */
+		protected int m_picked;
+
+		/**
+		 * The number of mutations of this input that exercised new edges.
+		 */
+		protected int m_found;
+
+		/**
+		 * Creates a new entry.
+		 * @param choices The choice sequence producing the input
+		 * @param edges The number of new edges exercised by the input
+		 */
+		public Entry(/*@ non_null @*/ int[] choices, int edges)
+		{
+			super();
+			m_choices = choices;
+			m_edges = edges;
+			m_picked = 0;
+			m_found = 0;
+		}
+
+		/**
+		 * Gets the choice sequence producing the input.
+		 * @return The choice sequence
+		 */
+		/*@ non_null @*/ public int[] getChoices()
+		{
+			return m_choices;
+		}
+
+		/**
+		 * Computes the priority of this entry for mutation.
+		 * @return The score; higher is better
+		 */
+		protected float getScore()
+		{
+			return (float) (m_edges + m_found) / (float) (1 + m_picked);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Records the branches of the object under test that are exercised by a
+ * test input, in the form of a bitmap of <em>edges</em>. The object under
+ * test (or code that instruments it) calls the static method
+ * {@link #probe(int)} at interesting locations, such as the start of each
+ * branch, giving each location an arbitrary (ideally random and distinct)
+ * integer identifier. As in the
+ * <a href="https://lcamtuf.coredump.cx/afl/technical_details.txt">AFL</a>
+ * fuzzer, a probe does not record the location itself, but the
+ * <em>transition</em> from the previous location, which distinguishes
+ * between different paths reaching the same location.
+ * <p>
+ * The calls to {@link #probe(int)} can be written by hand, or inserted into
+ * the bytecode of the object under test when its classes are loaded, using
+ * the Java agent of the Synthia Coverage project.
+ * <p>
+ * Probes write into a single global bitmap, which is cleared before each
+ * test by a {@link CoverageFuzzer}. An instance of this class accumulates
+ * the coverage observed over many tests, and can tell whether the last test
+ * exercised edges (or numbers of hits of an edge) that were never seen
+ * before.
+ * <p>
+ * Probes can be called from several threads: each thread keeps track of its
+ * own previous location, and hit counts are updated atomically. A hit count
+ * saturates at {@link #MAX_HITS} instead of wrapping around, so that an edge
+ * hit many times is never mistaken for an edge that was not hit. Since the
+ * bitmap is global, it should only be used by one check at a time.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class CoverageMap
+{
+	/**
+	 * The number of entries in the bitmap.
+	 */
+	public static final int SIZE = 1 << 16;
+
+	/**
+	 * The maximum value of a hit count.
+	 */
+	public static final int MAX_HITS = 255;
+
+	/**
+	 * The number of hits of each edge since the last call to
+	 * {@link #clear()}.
+	 */
+	protected static final AtomicIntegerArray s_hits = new AtomicIntegerArray(SIZE);
+
+	/**
+	 * The number of calls to {@link #clear()}, used to detect that the
+	 * previous location recorded by a thread belongs to an earlier test.
+	 */
+	protected static volatile int s_generation = 0;
+
+	/**
+	 * The previous location reached by each thread.
+	 */
+	protected static final ThreadLocal<Trace> s_previous = new ThreadLocal<Trace>()
+	{
+		@Override
+		protected Trace initialValue()
+		{
+			return new Trace();
+		}
+	};
+
+	/**
+	 * For each edge, the set of hit count classes that have been seen so far,
+	 * as a bit mask.
+	 */
+	/*@ non_null @*/ protected final byte[] m_seen;
+
+	/**
+	 * The number of distinct edges seen so far.
+	 */
+	protected int m_edges;
+
+	/**
+	 * Creates a new empty coverage map.
+	 */
+	public CoverageMap()
+	{
+		super();
+		m_seen = new byte[SIZE];
+		m_edges = 0;
+	}
+
+	/**
+	 * Records that a location of the object under test has been reached.
+	 * @param location The identifier of the location
+	 */
+	public static void probe(int location)
+	{
+		Trace t = s_previous.get();
+		int generation = s_generation;
+		if (t.m_generation != generation)
+		{
+			t.m_generation = generation;
+			t.m_previous = 0;
+		}
+		int index = (location ^ t.m_previous) & (SIZE - 1);
+		t.m_previous = location >>> 1;
+		int hits = s_hits.get(index);
+		while (hits < MAX_HITS && !s_hits.compareAndSet(index, hits, hits + 1))
+		{
+			hits = s_hits.get(index);
+		}
+	}
+
+	/**
+	 * Clears the global bitmap of edges hit by the current test.
+	 */
+	public static void clear()
+	{
+		for (int i = 0; i < SIZE; i++)
+		{
+			s_hits.set(i, 0);
+		}
+		s_generation++;
+	}
+
+	/**
+	 * Adds the edges hit by the current test to those seen so far.
+	 * @return The number of edges whose hit count falls in a class never seen
+	 * before for this edge. A value greater than 0 indicates that the
+	 * current test exercised a new behavior of the object.
+	 */
+	public synchronized int merge()
+	{
+		int fresh = 0;
+		for (int i = 0; i < SIZE; i++)
+		{
+			int hits = s_hits.get(i);
+			if (hits == 0)
+			{
+				continue;
+			}
+			byte c = classify(hits);
+			if ((m_seen[i] & c) == 0)
+			{
+				if (m_seen[i] == 0)
+				{
+					m_edges++;
+				}
+				m_seen[i] |= c;
+				fresh++;
+			}
+		}
+		return fresh;
+	}
+
+	/**
+	 * Gets the number of distinct edges seen so far.
+	 * @return The number of edges
+	 */
+	public synchronized int getEdgeCount()
+	{
+		return m_edges;
+	}
+
+	/**
+	 * Forgets all the edges seen so far.
+	 */
+	public synchronized void reset()
+	{
+		Arrays.fill(m_seen, (byte) 0);
+		m_edges = 0;
+	}
+
+	/**
+	 * Puts a hit count into one of eight classes (1, 2, 3, 4-7, 8-15, 16-31,
+	 * 32-127, 128+), so that small variations in the number of iterations of
+	 * a loop are not considered as new behavior.
+	 * @param h The hit count, between 1 and {@link #MAX_HITS}
+	 * @return A bit mask with a single bit set, corresponding to the class
+	 */
+	protected static byte classify(int h)
+	{
+		if (h <= 3)
+		{
+			return (byte) (1 << (h - 1));
+		}
+		if (h <= 7)
+		{
+			return 8;
+		}
+		if (h <= 15)
+		{
+			return 16;
+		}
+		if (h <= 31)
+		{
+			return 32;
+		}
+		if (h <= 127)
+		{
+			return 64;
+		}
+		return (byte) 128;
+	}
+
+	/**
+	 * The previous location reached by a thread.
+	 */
+	protected static class Trace
+	{
+		/**
+		 * The value of {@link CoverageMap#s_generation} when the location was
+		 * reached.
+		 */
+		protected int m_generation = 0;
+
+		/**
+		 * The identifier of the previous location, shifted by one bit.
+		 */
+		protected int m_previous = 0;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shrinks floating point numbers by binary search toward a lower bound. The
+ * candidates are the bound itself, the largest integer below the reference
+ * (if it is above the bound), and then values whose distance to the
+ * reference is halved at each step, up to {@link #MAX_HALVINGS} times.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class FloatShrinker implements Shrinker<Float>
+{
+	/**
+	 * The maximum number of times the distance to the bound is halved. This
+	 * corresponds to the precision of the mantissa of a float.
+	 */
+	public static final int MAX_HALVINGS = 24;
+
+	/**
+	 * The lower bound toward which numbers are shrunk.
+	 */
+	protected final float m_min;
+
+	/**
+	 * Creates a new float shrinker.
+	 * @param min The lower bound toward which numbers are shrunk
+	 */
+	public FloatShrinker(float min)
+	{
+		super();
+		m_min = min;
+	}
+
+	@Override
+	public List<Float> candidates(Float o)
+	{
+		List<Float> list = new ArrayList<Float>();
+		if (o.isNaN() || o <= m_min)
+		{
+			return list;
+		}
+		list.add(m_min);
+		float floor = (float) Math.floor(o);
+		if (floor > m_min && floor < o)
+		{
+			list.add(floor);
+		}
+		float d = (o - m_min) / 2;
+		for (int i = 0; i < MAX_HALVINGS; i++, d /= 2)
+		{
+			float c = o - d;
+			if (c >= o)
+			{
+				break;
+			}
+			if (c > m_min)
+			{
+				list.add(c);
+			}
+		}
+		return list;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shrinks integers by binary search toward a lower bound. For an integer
+ * <i>x</i> and a bound <i>m</i>, the candidates are <i>m</i>, then
+ * <i>x</i>&nbsp;&minus;&nbsp;(<i>x</i>&nbsp;&minus;&nbsp;<i>m</i>)/2,
+ * <i>x</i>&nbsp;&minus;&nbsp;(<i>x</i>&nbsp;&minus;&nbsp;<i>m</i>)/4, and
+ * so on down to <i>x</i>&nbsp;&minus;&nbsp;1.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class IntegerShrinker implements Shrinker<Integer>
+{
+	/**
+	 * The lower bound toward which integers are shrunk.
+	 */
+	protected final int m_min;
+
+	/**
+	 * Creates a new integer shrinker.
+	 * @param min The lower bound toward which integers are shrunk
+	 */
+	public IntegerShrinker(int min)
+	{
+		super();
+		m_min = min;
+	}
+
+	@Override
+	public List<Integer> candidates(Integer o)
+	{
+		List<Integer> list = new ArrayList<Integer>();
+		for (long d = (long) o - m_min; d > 0; d /= 2)
+		{
+			list.add((int) (o - d));
+		}
+		return list;
+	}
+}
@@ -0,0 +1,242 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations that can be updated concurrently without
+ * locking. Following the design of
+ * <a href="http://hdrhistogram.org">HdrHistogram</a>, values are counted in
+ * buckets whose width grows with the magnitude of the values: values below
+ * 128 each have their own bucket, and every larger power-of-two range is
+ * split in 64 buckets of equal width. The
+ * value reported for a percentile is therefore within 1/64 (about 1.6%) of
+ * the actual value, and the histogram occupies a fixed amount of memory
+ * regardless of the range of the values recorded.
+ * <p>
+ * Recording a value amounts to a few atomic increments, which makes the
+ * histogram suitable to measure the latency of operations performed by
+ * several threads at once.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class LatencyHistogram
+{
+	/**
+	 * The number of bits of precision of each bucket.
+	 */
+	public static final int SUB_BUCKET_BITS = 7;
+
+	/**
+	 * The number of buckets in each power-of-two range, except the first.
+	 */
+	protected static final int HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+
+	/**
+	 * The number of values counted in each bucket.
+	 */
+	/*@ non_null @*/ protected final AtomicLongArray m_counts;
+
+	/**
+	 * The number of values recorded.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_count;
+
+	/**
+	 * The sum of the values recorded.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_sum;
+
+	/**
+	 * The largest value recorded.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_max;
+
+	/**
+	 * Creates a new empty histogram.
+	 */
+	public LatencyHistogram()
+	{
+		super();
+		m_counts = new AtomicLongArray(indexOf(Long.MAX_VALUE) + 1);
+		m_count = new AtomicLong();
+		m_sum = new AtomicLong();
+		m_max = new AtomicLong();
+	}
+
+	/**
+	 * Records a value. Negative values are counted as 0.
+	 * @param value The value, typically a duration in nanoseconds
+	 */
+	public void record(long value)
+	{
+		if (value < 0)
+		{
+			value = 0;
+		}
+		m_counts.incrementAndGet(indexOf(value));
+		m_count.incrementAndGet();
+		m_sum.addAndGet(value);
+		long max = m_max.get();
+		while (value > max && !m_max.compareAndSet(max, value))
+		{
+			max = m_max.get();
+		}
+	}
+
+	/**
+	 * Gets the number of values recorded.
+	 * @return The number of values
+	 */
+	/*@ pure @*/ public long getCount()
+	{
+		return m_count.get();
+	}
+
+	/**
+	 * Gets the largest value recorded.
+	 * @return The value, or 0 if no value has been recorded
+	 */
+	/*@ pure @*/ public long getMax()
+	{
+		return m_max.get();
+	}
+
+	/**
+	 * Gets the average of the values recorded.
+	 * @return The average, or 0 if no value has been recorded
+	 */
+	/*@ pure @*/ public double getMean()
+	{
+		long n = m_count.get();
+		return n == 0 ? 0 : (double) m_sum.get() / n;
+	}
+
+	/**
+	 * Gets the value at a given percentile, i.e. the smallest value such that
+	 * the given percentage of the values recorded are lower or equal to it
+	 * (within the precision of the histogram).
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The value, or 0 if no value has been recorded
+	 */
+	/*@ pure @*/ public long getValueAtPercentile(double percentile)
+	{
+		long total = 0;
+		long[] counts = new long[m_counts.length()];
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] = m_counts.get(i);
+			total += counts[i];
+		}
+		if (total == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if (seen >= rank)
+			{
+				return Math.min(highestValueAt(i), m_max.get());
+			}
+		}
+		return m_max.get();
+	}
+
+	/**
+	 * Adds the values recorded in another histogram to this one.
+	 * @param h The other histogram
+	 * @return This histogram
+	 */
+	/*@ non_null @*/ public LatencyHistogram add(/*@ non_null @*/ LatencyHistogram h)
+	{
+		for (int i = 0; i < m_counts.length(); i++)
+		{
+			long c = h.m_counts.get(i);
+			if (c != 0)
+			{
+				m_counts.addAndGet(i, c);
+			}
+		}
+		m_count.addAndGet(h.m_count.get());
+		m_sum.addAndGet(h.m_sum.get());
+		long value = h.m_max.get(), max = m_max.get();
+		while (value > max && !m_max.compareAndSet(max, value))
+		{
+			max = m_max.get();
+		}
+		return this;
+	}
+
+	/**
+	 * Removes all the values recorded in the histogram.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < m_counts.length(); i++)
+		{
+			m_counts.set(i, 0);
+		}
+		m_count.set(0);
+		m_sum.set(0);
+		m_max.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "n=" + getCount() + " mean=" + (long) getMean() + " p50=" + getValueAtPercentile(50) + " p90=" + getValueAtPercentile(90) + " p99=" + getValueAtPercentile(99) + " max=" + getMax();
+	}
+
+	/**
+	 * Computes the index of the bucket where a value is counted.
+	 * @param value The value, which must not be negative
+	 * @return The index
+	 */
+	protected static int indexOf(long value)
+	{
+		if (value < (1L << SUB_BUCKET_BITS))
+		{
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return shift * HALF_COUNT + (int) (value >>> shift);
+	}
+
+	/**
+	 * Computes the largest value counted in a bucket.
+	 * @param index The index of the bucket
+	 * @return The value
+	 */
+	protected static long highestValueAt(int index)
+	{
+		if (index < (1 << SUB_BUCKET_BITS))
+		{
+			return index;
+		}
+		int shift = index / HALF_COUNT - 1;
+		long sub = index - shift * HALF_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+}
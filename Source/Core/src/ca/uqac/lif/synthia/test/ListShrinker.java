@@ -0,0 +1,92 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.uqac.lif.synthia.collection.ComparableList;
+
+/**
+ * Shrinks lists by deleting chunks of elements, and then by shrinking
+ * individual elements. Chunks are first as large as possible (all the
+ * elements above the minimum length), and then halved until single elements
+ * are deleted; trailing chunks are tried before leading ones, so that
+ * prefixes of the list are preferred. The lists produced are instances of
+ * {@link ComparableList}.
+ * 
+ * @param <T> The type of the elements of the lists
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class ListShrinker<T> implements Shrinker<List<T>>
+{
+	/**
+	 * The shrinker used on individual elements, or <tt>null</tt> if elements
+	 * are left unchanged.
+	 */
+	/*@ null @*/ protected final Shrinker<T> m_elements;
+
+	/**
+	 * The minimum length of the lists produced.
+	 */
+	protected final int m_minLength;
+
+	/**
+	 * Creates a new list shrinker.
+	 * @param elements The shrinker used on individual elements, or
+	 * <tt>null</tt> to leave elements unchanged
+	 * @param min_length The minimum length of the lists produced
+	 */
+	public ListShrinker(/*@ null @*/ Shrinker<T> elements, int min_length)
+	{
+		super();
+		m_elements = elements;
+		m_minLength = min_length;
+	}
+
+	@Override
+	public List<List<T>> candidates(List<T> o)
+	{
+		List<List<T>> list = new ArrayList<List<T>>();
+		int n = o.size();
+		for (int k = n - m_minLength; k > 0; k /= 2)
+		{
+			for (int i = n - k; i >= 0; i -= k)
+			{
+				List<T> c = new ComparableList<T>(o.subList(0, i));
+				c.addAll(o.subList(i + k, n));
+				list.add(c);
+			}
+		}
+		if (m_elements != null)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				for (T e : m_elements.candidates(o.get(i)))
+				{
+					List<T> c = new ComparableList<T>(o);
+					c.set(i, e);
+					list.add(c);
+				}
+			}
+		}
+		return list;
+	}
+}
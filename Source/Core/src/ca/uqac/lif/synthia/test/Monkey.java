@@ -22,16 +22,27 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import ca.uqac.lif.synthia.NoMoreElementException;
 import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.PickerException;
 import ca.uqac.lif.synthia.Resettable;
 import ca.uqac.lif.synthia.SequenceShrinkable;
 import ca.uqac.lif.synthia.Shrinkable;
+import ca.uqac.lif.synthia.random.ChoiceBuffer;
 import ca.uqac.lif.synthia.sequence.Playback;
 import ca.uqac.lif.synthia.sequence.Record;
 import ca.uqac.lif.synthia.util.Delay;
+import ca.uqac.lif.synthia.util.Telemetry;
 
 /**
  * Performs <a href="https://en.wikipedia.org/wiki/Monkey_testing">monkey
@@ -71,6 +82,18 @@ public abstract class Monkey
 	 * shrinking phase.
 	 */
 	protected static final int s_maxTries = 5;
+
+	/**
+	 * The default number of actions performed in each attempt of the
+	 * discovery phase.
+	 */
+	public static final int DEFAULT_ACTIONS_PER_ATTEMPT = 100;
+
+	/**
+	 * The default time given to the object to reset itself before each
+	 * sequence tried in the shrinking phase, in seconds.
+	 */
+	public static final float DEFAULT_RESET_DELAY = 0.25f;
 	
 	/**
 	 * The object on which the actions are applied.
@@ -110,6 +133,77 @@ public abstract class Monkey
 	 */
 	protected boolean m_shrink;
 
+	/**
+	 * The number of actions performed in each attempt of the discovery phase.
+	 */
+	protected int m_actionsPerAttempt;
+
+	/**
+	 * The time given to the object to reset itself before each sequence
+	 * tried in the shrinking phase, in seconds.
+	 */
+	protected float m_resetDelay;
+
+	/**
+	 * The budget of the check, or <tt>null</tt> if the check is only bounded
+	 * by the default number of attempts.
+	 */
+	/*@ null @*/ protected Budget m_budget;
+
+	/**
+	 * The resources spent by the last call to {@link #check()}.
+	 */
+	/*@ null @*/ protected CheckResult m_result;
+
+	/**
+	 * The corpus of failing choice sequences replayed before the discovery
+	 * phase, and where new failures are stored, or <tt>null</tt> to use no
+	 * corpus.
+	 */
+	/*@ null @*/ protected Corpus m_corpus;
+
+	/**
+	 * The histograms of the duration of the actions performed by the monkey,
+	 * for each class of action.
+	 */
+	/*@ non_null @*/ protected final Map<Class<?>,LatencyHistogram> m_latencies;
+
+	/**
+	 * The executor running the actions of the discovery phase, or
+	 * <tt>null</tt> to run them synchronously.
+	 */
+	/*@ null @*/ protected Executor m_executor;
+
+	/**
+	 * The maximum number of actions submitted to the executor and not yet
+	 * completed.
+	 */
+	protected int m_maxInFlight;
+
+	/**
+	 * The permits bounding the number of actions in flight.
+	 */
+	/*@ null @*/ protected Semaphore m_inFlight;
+
+	/**
+	 * The first exception thrown by an action run by the executor. Errors
+	 * and other throwables that are not exceptions are wrapped into an
+	 * {@link ExecutionException}.
+	 */
+	/*@ non_null @*/ protected final AtomicReference<Exception> m_asyncException;
+
+	/**
+	 * The number of actions completed by the executor and not yet added to
+	 * the result of the check.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_asyncInvocations;
+
+	/**
+	 * The time spent in the actions completed by the executor and not yet
+	 * added to the result of the check.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_asyncTime;
+
 	/**
 	 * Creates a new instance of the monkey.
 	 * @param object The object on which the actions are applied
@@ -129,6 +223,18 @@ public abstract class Monkey
 		m_bestThreshold = 4;
 		m_lastException = null;
 		m_shrink = true;
+		m_actionsPerAttempt = DEFAULT_ACTIONS_PER_ATTEMPT;
+		m_resetDelay = DEFAULT_RESET_DELAY;
+		m_budget = null;
+		m_result = null;
+		m_corpus = null;
+		m_latencies = new ConcurrentHashMap<Class<?>,LatencyHistogram>();
+		m_executor = null;
+		m_maxInFlight = 0;
+		m_inFlight = null;
+		m_asyncException = new AtomicReference<Exception>();
+		m_asyncInvocations = new AtomicLong();
+		m_asyncTime = new AtomicLong();
 	}
 
 	/**
@@ -155,24 +261,175 @@ public abstract class Monkey
 		return this;
 	}
 
+	/**
+	 * Sets the number of actions performed in each attempt of the discovery
+	 * phase.
+	 * @param n The number of actions
+	 * @return This monkey
+	 */
+	public Monkey setActionsPerAttempt(int n)
+	{
+		m_actionsPerAttempt = n;
+		return this;
+	}
+
+	/**
+	 * Sets the time given to the object to reset itself before each sequence
+	 * tried in the shrinking phase. An object whose {@link Resettable#reset()
+	 * reset()} method completes synchronously needs no delay.
+	 * @param seconds The time, in seconds
+	 * @return This monkey
+	 */
+	public Monkey setResetDelay(float seconds)
+	{
+		m_resetDelay = seconds;
+		return this;
+	}
+
+	/**
+	 * Sets the budget of the check. If the budget bounds the search, the
+	 * discovery phase makes as many attempts as the budget allows, instead of
+	 * {@link #s_maxTries}; if it bounds the number of shrinking steps, the
+	 * shrinking phase is no longer limited to {@link #s_maxShrinkingPhases}.
+	 * Each action performed on the object counts as one invocation, and each
+	 * sequence tried in the shrinking phase counts as one shrinking step.
+	 * @param b The budget, or <tt>null</tt> to only bound the check by the
+	 * default number of attempts
+	 * @return This monkey
+	 */
+	public Monkey setBudget(/*@ null @*/ Budget b)
+	{
+		m_budget = b;
+		return this;
+	}
+
+	/**
+	 * Sets the corpus of failing choice sequences used by the monkey. When a
+	 * corpus is set, the random choices made during each attempt of the
+	 * discovery phase are recorded, and those of an attempt ending with an
+	 * exception are added to the corpus. Before the discovery phase, the
+	 * entries of the corpus are replayed one by one (they cannot be replayed
+	 * in parallel, as they all act on the same object); the first one that
+	 * still throws an exception becomes the failing sequence, and the
+	 * discovery phase is skipped.
+	 * <p>
+	 * Since an entry only contains random choices, replaying it reproduces
+	 * the original sequence of actions only if the actions are produced by
+	 * the same pickers, in the same state after a call to
+	 * {@link #restart(Record) restart}. State that is not drawn from these
+	 * choices is saved as the context of the entry (see
+	 * {@link #getContext()}), and restored by
+	 * {@link #restart(Record, String)} before the entry is replayed.
+	 * @param c The corpus, or <tt>null</tt> to use no corpus
+	 * @return This monkey
+	 */
+	public Monkey setCorpus(/*@ null @*/ Corpus c)
+	{
+		m_corpus = c;
+		return this;
+	}
+
+	/**
+	 * Runs the actions of the discovery phase asynchronously. Each action is
+	 * submitted to an executor, and the monkey picks the next one without
+	 * waiting for it to complete, as long as fewer than a given number of
+	 * actions are in flight. Each attempt ends when all its actions have
+	 * completed; if one of them has thrown an exception, the sequence of all
+	 * the actions submitted so far becomes the failing sequence. The
+	 * shrinking phase always runs actions synchronously, so that each
+	 * sequence it tries is applied in a well-defined order.
+	 * <p>
+	 * Combined with {@link #getLatencies()}, this turns the monkey into a
+	 * probe measuring the throughput and latency of the object under load.
+	 * @param executor The executor, or <tt>null</tt> to run actions
+	 * synchronously (the default)
+	 * @param max_in_flight The maximum number of actions in flight
+	 * @return This monkey
+	 */
+	public Monkey setAsync(/*@ null @*/ Executor executor, int max_in_flight)
+	{
+		m_executor = executor;
+		m_maxInFlight = Math.max(1, max_in_flight);
+		m_inFlight = executor == null ? null : new Semaphore(m_maxInFlight);
+		return this;
+	}
+
+	/**
+	 * Gets the histograms of the duration of the actions performed during the
+	 * last call to {@link #check()}, in nanoseconds. Actions are grouped by
+	 * their class.
+	 * @return A map associating each class of action with its histogram
+	 */
+	/*@ non_null @*/ public Map<Class<?>,LatencyHistogram> getLatencies()
+	{
+		return m_latencies;
+	}
+
+	/**
+	 * Gets the resources spent by the last call to {@link #check()}.
+	 * @return The result, or <tt>null</tt> if no check has been made yet
+	 */
+	/*@ null @*/ public CheckResult getResult()
+	{
+		return m_result;
+	}
+
 	public boolean check()
 	{
+		Telemetry.Listener listener = Telemetry.getListener();
+		if (listener != null)
+		{
+			listener.checkStarted(this);
+		}
+		m_result = new CheckResult();
+		m_latencies.clear();
 		boolean error_found = false;
 		Record<Action> rec = null;
 		Set<List<Action>> already_tried = new HashSet<List<Action>>();
-		for (int try_counter = 0; try_counter < s_maxTries; try_counter++)
+		boolean bounded = m_budget != null && m_budget.boundsSearch();
+		if (m_corpus != null)
+		{
+			for (Corpus.Entry e : m_corpus.getEntries())
+			{
+				if (isExhausted())
+				{
+					break;
+				}
+				rec = restart(rec, e.getContext());
+				println("Replaying " + e);
+				Exception ex = replay(rec, e.getChoices());
+				if (ex != null)
+				{
+					print("\n" + ex);
+					error_found = true;
+					setFailure(rec, ex, already_tried);
+					break;
+				}
+			}
+		}
+		for (int try_counter = 0; !error_found && (bounded || try_counter < s_maxTries) && !isExhausted(); try_counter++)
 		{
 			rec = restart(rec);
 			println("Attempt " + try_counter);
+			ChoiceBuffer buffer = m_corpus == null ? null : new ChoiceBuffer().start();
+			long attempt_start = listener == null ? 0 : System.nanoTime();
 			try
 			{
-				for (int i = 0; i < 100; i++)
+				for (int i = 0; i < m_actionsPerAttempt && !isExhausted(); i++)
 				{
-					Action a = rec.pick();
-					a.doAction();
+					Action a = pick(rec);
+					if (m_executor == null)
+					{
+						doAction(a);
+					}
+					else
+					{
+						submit(a);
+					}
 					print(a);
 					//Delay.wait(0.005f); // Give time for the object to reset itself
 				}
+				awaitActions();
 				println("");
 			}
 			catch (NoMoreElementException e)
@@ -185,26 +442,49 @@ public abstract class Monkey
 				// Exception thrown
 				print("\n" + e);
 				error_found = true;
-				m_bestSequence = rec.getSequence();
-				m_lastException = e;
-				println("\nSequence: " + m_bestSequence);
-				already_tried.add(m_bestSequence);
+				setFailure(rec, e, already_tried);
+				if (buffer != null)
+				{
+					buffer.stop();
+					m_corpus.add(buffer.getChoices(), Corpus.signature(e), getContext());
+				}
 				break;
 			}
+			finally
+			{
+				if (buffer != null)
+				{
+					buffer.stop();
+				}
+				if (m_executor != null)
+				{
+					// Actions still in flight must not act on the next attempt
+					quiesce();
+					m_asyncException.set(null);
+				}
+				if (listener != null)
+				{
+					listener.tried(this, try_counter, System.nanoTime() - attempt_start, error_found);
+				}
+			}
 		}
 		if (!m_shrink)
 		{
 			// Shrinking disabled, we are done
+			m_result.end(isExhausted());
+			checkEnded(listener, error_found);
 			return !error_found;
 		}
+		long shrink_start = System.nanoTime(), sut_before = m_result.getSutTime();
+		boolean unbounded_phases = m_budget != null && m_budget.getMaxShrinkSteps() != Budget.UNLIMITED;
 		SequenceShrinkable<Action> reference = rec;
-		for (int shrinking_steps = 0; m_bestSequence.size() > m_bestThreshold && shrinking_steps < s_maxShrinkingPhases; shrinking_steps++)
+		for (int shrinking_steps = 0; m_bestSequence.size() > m_bestThreshold && (unbounded_phases || shrinking_steps < s_maxShrinkingPhases) && !isShrinkingExhausted(); shrinking_steps++)
 		{
 			boolean shrink_again = false;
 			for (float magnitude = 0.25f; m_bestSequence.size() > m_bestThreshold && !shrink_again && magnitude <= 1; magnitude += 0.25)
 			{
 				Exception last_ex = null;
-				for (int i = 0; i < s_maxTries; i++)
+				for (int i = 0; i < s_maxTries && !isShrinkingExhausted(); i++)
 				{
 					SequenceShrinkable<Action> to_try = reference.shrink(m_decision, magnitude);
 					if (to_try instanceof Playback)
@@ -212,6 +492,9 @@ public abstract class Monkey
 						List<Action> actions = ((Playback<Action>) to_try).getProgrammedSequence();
 						if (contains(already_tried, actions))
 						{
+							// Counted as a step, so that a bounded number of steps
+							// ends the shrinking even if no new candidate comes up
+							m_result.addShrinkStep();
 							continue;
 						}
 						else
@@ -220,14 +503,23 @@ public abstract class Monkey
 						}
 					}
 					boolean success = false;
+					m_result.addShrinkStep();
+					long step_start = listener == null ? 0 : System.nanoTime();
 					m_object.reset();
-					Delay.wait(0.25f); // Give time for the object to reset itself
+					if (m_resetDelay > 0)
+					{
+						Delay.wait(m_resetDelay); // Give time for the object to reset itself
+					}
+					if (listener != null)
+					{
+						listener.reset(this, System.nanoTime() - step_start);
+					}
 					while (!to_try.isDone())
 					{
 						try
 						{
 							Action a = to_try.pick();
-							a.doAction();
+							doAction(a);
 							print(a);
 							//Delay.wait(0.005f); // Give time for the object to reset itself
 						}
@@ -238,6 +530,10 @@ public abstract class Monkey
 							break;
 						}
 					}
+					if (listener != null)
+					{
+						listener.shrinkStep(this, System.nanoTime() - step_start, success);
+					}
 					if (success)
 					{
 						reference = to_try;
@@ -245,6 +541,7 @@ public abstract class Monkey
 						{
 							m_bestSequence = to_try.getSequence();
 							println("\nSequence: " + m_bestSequence);
+							m_result.addProgress(m_bestSequence, m_bestSequence.size());
 							m_lastException = last_ex;
 						}
 						shrink_again = true;
@@ -255,8 +552,247 @@ public abstract class Monkey
 			}
 		}
 		println("");
+		m_result.addShrinkingTime(System.nanoTime() - shrink_start - (m_result.getSutTime() - sut_before));
+		m_result.end(isExhausted());
+		checkEnded(listener, error_found);
 		return !error_found;
 	}
+
+	/**
+	 * Notifies the {@link Telemetry} listener, if any, of the end of the
+	 * last call to {@link #check()}.
+	 * @param listener The listener, or <tt>null</tt> if none
+	 * @param error_found Whether a failing sequence has been found
+	 */
+	protected void checkEnded(/*@ null @*/ Telemetry.Listener listener, boolean error_found)
+	{
+		if (listener != null)
+		{
+			listener.checkEnded(this, !error_found, m_result.getElapsedTime(), m_result.getGenerated(), m_result.getShrinkSteps());
+		}
+	}
+
+	/**
+	 * Records the sequence of actions that caused an exception as the
+	 * failing sequence found by the discovery phase.
+	 * @param rec The record of the actions performed
+	 * @param e The exception
+	 * @param already_tried The set of sequences already tried
+	 */
+	protected void setFailure(Record<Action> rec, Exception e, Set<List<Action>> already_tried)
+	{
+		m_bestSequence = rec.getSequence();
+		m_lastException = e;
+		println("\nSequence: " + m_bestSequence);
+		m_result.addProgress(m_bestSequence, m_bestSequence.size());
+		already_tried.add(m_bestSequence);
+	}
+
+	/**
+	 * Replays a choice sequence of the corpus, by performing actions until
+	 * all the choices are consumed or an exception is thrown.
+	 * @param rec The record of the actions performed
+	 * @param choices The choice sequence
+	 * @return The exception thrown by the actions, or <tt>null</tt> if the
+	 * sequence no longer causes a failure
+	 */
+	/*@ null @*/ protected Exception replay(Record<Action> rec, int[] choices)
+	{
+		ChoiceBuffer buffer = new ChoiceBuffer(choices).start();
+		try
+		{
+			for (int i = 0; i < m_actionsPerAttempt && buffer.size() < choices.length && !isExhausted(); i++)
+			{
+				Action a = pick(rec);
+				doAction(a);
+				print(a);
+			}
+			println("");
+		}
+		catch (PickerException e)
+		{
+			// The choices no longer produce a sequence of actions
+			return null;
+		}
+		catch (Exception e)
+		{
+			return e;
+		}
+		finally
+		{
+			buffer.stop();
+		}
+		return null;
+	}
+
+	/**
+	 * Picks the next action to perform, and records the time spent doing so.
+	 * @param p The picker producing the actions
+	 * @return The action
+	 */
+	protected Action pick(Picker<Action> p)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			return p.pick();
+		}
+		finally
+		{
+			long duration = System.nanoTime() - start;
+			m_result.addGeneration(duration);
+			Telemetry.Listener listener = Telemetry.getListener();
+			if (listener != null)
+			{
+				listener.picked(p, duration);
+			}
+		}
+	}
+
+	/**
+	 * Performs an action on the object, and records the time spent doing so.
+	 * @param a The action
+	 */
+	protected void doAction(Action a)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			a.doAction();
+		}
+		finally
+		{
+			long duration = System.nanoTime() - start;
+			m_result.addInvocations(1, duration);
+			getHistogram(a).record(duration);
+		}
+	}
+
+	/**
+	 * Submits an action to the executor, waiting first for a slot to be
+	 * available. The time spent by the action is recorded in its histogram
+	 * by the thread that runs it.
+	 * @param a The action
+	 * @throws Exception The exception thrown by an action submitted earlier,
+	 * if any
+	 */
+	protected void submit(final Action a) throws Exception
+	{
+		collectActions();
+		m_inFlight.acquire();
+		try
+		{
+			m_executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					long start = System.nanoTime();
+					try
+					{
+						a.doAction();
+					}
+					catch (Throwable t)
+					{
+						// An error ends the check like any other failure, instead of
+						// silently killing the thread of the executor
+						m_asyncException.compareAndSet(null, t instanceof Exception ? (Exception) t : new ExecutionException(t));
+					}
+					finally
+					{
+						long duration = System.nanoTime() - start;
+						getHistogram(a).record(duration);
+						m_asyncTime.addAndGet(duration);
+						m_asyncInvocations.incrementAndGet();
+						m_inFlight.release();
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			m_inFlight.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits until all the actions submitted to the executor have completed.
+	 * Does nothing if actions are run synchronously.
+	 * @throws Exception The exception thrown by one of these actions, if any
+	 */
+	protected void awaitActions() throws Exception
+	{
+		if (m_executor == null)
+		{
+			return;
+		}
+		quiesce();
+		collectActions();
+	}
+
+	/**
+	 * Waits until no action is in flight.
+	 */
+	protected void quiesce()
+	{
+		m_inFlight.acquireUninterruptibly(m_maxInFlight);
+		m_inFlight.release(m_maxInFlight);
+		m_result.addInvocations(m_asyncInvocations.getAndSet(0), m_asyncTime.getAndSet(0));
+	}
+
+	/**
+	 * Adds the actions completed by the executor to the result of the check,
+	 * and throws the exception raised by one of them, if any.
+	 * @throws Exception The exception
+	 */
+	protected void collectActions() throws Exception
+	{
+		m_result.addInvocations(m_asyncInvocations.getAndSet(0), m_asyncTime.getAndSet(0));
+		Exception e = m_asyncException.getAndSet(null);
+		if (e != null)
+		{
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the histogram where the duration of an action is recorded.
+	 * @param a The action
+	 * @return The histogram
+	 */
+	/*@ non_null @*/ protected LatencyHistogram getHistogram(Action a)
+	{
+		LatencyHistogram h = m_latencies.get(a.getClass());
+		if (h == null)
+		{
+			LatencyHistogram new_h = new LatencyHistogram();
+			h = m_latencies.putIfAbsent(a.getClass(), new_h);
+			if (h == null)
+			{
+				h = new_h;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Determines if the budget of the check is exhausted.
+	 * @return {@code true} if a budget is set and is exhausted
+	 */
+	protected boolean isExhausted()
+	{
+		return m_budget != null && m_budget.isExhausted(m_result);
+	}
+
+	/**
+	 * Determines if the budget of the shrinking phase is exhausted.
+	 * @return {@code true} if a budget is set and is exhausted
+	 */
+	protected boolean isShrinkingExhausted()
+	{
+		return m_budget != null && m_budget.isShrinkingExhausted(m_result);
+	}
 	
 	/**
 	 * Checks if a set of lists of actions contains a given list of actions.
@@ -332,6 +868,30 @@ public abstract class Monkey
 	 * @return A new instance of recording picker.
 	 */
 	protected abstract Record<Action> restart(Record<Action> rec);
+
+	/**
+	 * Restarts the process of finding a faulty sequence in order to replay
+	 * an entry of the corpus, restoring the context saved with this entry.
+	 * By default, the context is ignored.
+	 * @param rec The picker used to record the sequence of actions played.
+	 * @param context The context of the entry, or the empty string if it has
+	 * none
+	 * @return A new instance of recording picker.
+	 */
+	protected Record<Action> restart(Record<Action> rec, /*@ non_null @*/ String context)
+	{
+		return restart(rec);
+	}
+
+	/**
+	 * Gets the context of the current attempt, which is saved in the corpus
+	 * along with its choices if it fails. By default, the context is empty.
+	 * @return The context
+	 */
+	/*@ non_null @*/ protected String getContext()
+	{
+		return "";
+	}
 	
 	/**
 	 * A {@link Monkey} that is given a picker producing individual actions.
@@ -373,6 +933,133 @@ public abstract class Monkey
 		}
 	}
 	
+	/**
+	 * A {@link Monkey} drawing its actions from a {@link Swarm}. Each attempt
+	 * of the discovery phase starts from a reset object and a new
+	 * configuration of the swarm, and its outcome is reported to the swarm,
+	 * which biases the following configurations toward the subsets of actions
+	 * that produced failures. The configuration of a failing attempt is
+	 * saved in the corpus, if any, and restored when the entry is replayed.
+	 */
+	public static class SwarmMonkey extends Monkey
+	{
+		/**
+		 * The swarm producing the actions to be applied.
+		 */
+		protected Swarm<Action> m_swarm;
+
+		/**
+		 * A flag indicating that the outcome of the current configuration has
+		 * not been reported to the swarm yet.
+		 */
+		protected boolean m_pending;
+
+		/**
+		 * Creates a new instance of the monkey.
+		 * @param object The object on which the actions are applied
+		 * @param actions The swarm producing the actions to be applied
+		 * @param decision A picker passed to the action picker for the
+		 * shrinking process
+		 * @param ps A print stream where the monkey outputs status messages during
+		 * its execution. Set it to <tt>null</tt> to disable messages.
+		 */
+		public SwarmMonkey(Resettable object, Swarm<Action> actions, Picker<Float> decision, PrintStream ps)
+		{
+			super(object, decision, ps);
+			m_swarm = actions;
+			m_pending = false;
+		}
+
+		/**
+		 * Gets the swarm producing the actions to be applied.
+		 * @return The swarm
+		 */
+		public Swarm<Action> getSwarm()
+		{
+			return m_swarm;
+		}
+
+		@Override
+		public boolean check()
+		{
+			boolean passed = super.check();
+			if (m_pending)
+			{
+				m_swarm.tell(!passed);
+				m_pending = false;
+			}
+			return passed;
+		}
+
+		@Override
+		protected Record<Action> restart(Record<Action> rec)
+		{
+			tellPending();
+			m_swarm.nextConfiguration();
+			m_pending = true;
+			return start();
+		}
+
+		/**
+		 * Restarts the monkey to replay a corpus entry. The swarm is given no
+		 * feedback on the outcome of a replay, so that the entries of the
+		 * corpus do not skew the counts of the configurations they were saved
+		 * under.
+		 */
+		@Override
+		protected Record<Action> restart(Record<Action> rec, String context)
+		{
+			tellPending();
+			if (context.length() == m_swarm.getFeatureCount() && !context.isEmpty())
+			{
+				m_swarm.setConfiguration(context);
+			}
+			else
+			{
+				// No context, or one saved for a different set of features
+				m_swarm.nextConfiguration();
+			}
+			return start();
+		}
+
+		/**
+		 * Tells the swarm that the previous attempt, if it is still waiting for
+		 * feedback, did not fail.
+		 */
+		protected void tellPending()
+		{
+			if (m_pending)
+			{
+				m_swarm.tell(false);
+				m_pending = false;
+			}
+		}
+
+		/**
+		 * Resets the object under test for an attempt using the current
+		 * configuration of the swarm.
+		 * @return A new record for the attempt
+		 */
+		protected Record<Action> start()
+		{
+			println("Configuration " + m_swarm.getConfiguration());
+			Telemetry.Listener listener = Telemetry.getListener();
+			long start = listener == null ? 0 : System.nanoTime();
+			m_object.reset();
+			if (listener != null)
+			{
+				listener.reset(this, System.nanoTime() - start);
+			}
+			return new Record<Action>(m_swarm);
+		}
+
+		@Override
+		protected String getContext()
+		{
+			return m_swarm.getConfiguration();
+		}
+	}
+
 	/**
 	 * A {@link Monkey} that is given a picker producing action <em>sequences</em>.
 	 */
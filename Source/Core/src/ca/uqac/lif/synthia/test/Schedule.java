@@ -0,0 +1,189 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An interleaving of the actions performed by the threads of a
+ * {@link ConcurrentMonkey}. A schedule is made of the sequence of actions
+ * performed by each thread, and of the list of <em>decisions</em> taken by
+ * the scheduler: the index of the thread allowed to run at each scheduling
+ * point. Replaying a schedule with {@link ConcurrentMonkey#replay(Schedule)}
+ * performs the same actions in the same order.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Schedule
+{
+	/**
+	 * The index of the thread allowed to run at each scheduling point.
+	 */
+	/*@ non_null @*/ protected final int[] m_decisions;
+
+	/**
+	 * The sequence of actions performed by each thread.
+	 */
+	/*@ non_null @*/ protected final List<List<Action>> m_actions;
+
+	/**
+	 * The positions of the decisions that preempt a thread, that is, that
+	 * switch away from a thread that could have kept running.
+	 */
+	/*@ non_null @*/ protected final int[] m_preemptions;
+
+	/**
+	 * For each decision, the index of the action of the chosen thread that
+	 * was running at the end of its turn, or <tt>null</tt> if the schedule
+	 * has not been executed.
+	 */
+	/*@ null @*/ protected final int[] m_turns;
+
+	/**
+	 * Creates a new schedule. As the schedule has not been executed, every
+	 * decision that differs from the previous one is considered as a
+	 * preemption.
+	 * @param decisions The index of the thread allowed to run at each
+	 * scheduling point
+	 * @param actions The sequence of actions performed by each thread
+	 */
+	public Schedule(/*@ non_null @*/ int[] decisions, /*@ non_null @*/ List<List<Action>> actions)
+	{
+		this(decisions, null, actions, switches(decisions));
+	}
+
+	/**
+	 * Creates a new schedule from an execution.
+	 * @param decisions The index of the thread allowed to run at each
+	 * scheduling point
+	 * @param turns For each decision, the index of the action of the chosen
+	 * thread that was running at the end of its turn, or <tt>null</tt>
+	 * @param actions The sequence of actions performed by each thread
+	 * @param preemptions The positions of the decisions that preempt a thread
+	 */
+	protected Schedule(/*@ non_null @*/ int[] decisions, /*@ null @*/ int[] turns, /*@ non_null @*/ List<List<Action>> actions, /*@ non_null @*/ int[] preemptions)
+	{
+		super();
+		m_decisions = decisions;
+		m_turns = turns;
+		m_preemptions = preemptions;
+		m_actions = new ArrayList<List<Action>>(actions.size());
+		for (List<Action> l : actions)
+		{
+			m_actions.add(Collections.unmodifiableList(new ArrayList<Action>(l)));
+		}
+	}
+
+	/**
+	 * Gets the index of the thread allowed to run at each scheduling point.
+	 * @return The array of decisions
+	 */
+	/*@ pure non_null @*/ public int[] getDecisions()
+	{
+		return m_decisions;
+	}
+
+	/**
+	 * Gets the sequence of actions performed by a thread.
+	 * @param thread The index of the thread
+	 * @return The sequence of actions
+	 */
+	/*@ pure non_null @*/ public List<Action> getActions(int thread)
+	{
+		return m_actions.get(thread);
+	}
+
+	/**
+	 * Gets the number of threads of this schedule.
+	 * @return The number of threads
+	 */
+	/*@ pure @*/ public int getThreadCount()
+	{
+		return m_actions.size();
+	}
+
+	/**
+	 * Gets the total number of actions performed by all threads.
+	 * @return The number of actions
+	 */
+	/*@ pure @*/ public int getActionCount()
+	{
+		int n = 0;
+		for (List<Action> l : m_actions)
+		{
+			n += l.size();
+		}
+		return n;
+	}
+
+	/**
+	 * Gets the number of preemptions of this schedule, that is, the number
+	 * of times the scheduler switched away from a thread that could have
+	 * kept running.
+	 * @return The number of preemptions
+	 */
+	/*@ pure @*/ public int getPreemptions()
+	{
+		return m_preemptions.length;
+	}
+
+	/**
+	 * Gets the position of the last preemption of this schedule.
+	 * @return The position, or 0 if the schedule has no preemption
+	 */
+	/*@ pure @*/ public int getLastPreemption()
+	{
+		return m_preemptions.length == 0 ? 0 : m_preemptions[m_preemptions.length - 1];
+	}
+
+	/**
+	 * Finds the decisions that differ from the previous one.
+	 * @param decisions The decisions
+	 * @return The positions of these decisions
+	 */
+	protected static int[] switches(int[] decisions)
+	{
+		int[] positions = new int[decisions.length];
+		int n = 0;
+		for (int i = 1; i < decisions.length; i++)
+		{
+			if (decisions[i] != decisions[i - 1])
+			{
+				positions[n++] = i;
+			}
+		}
+		return Arrays.copyOf(positions, n);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < m_actions.size(); i++)
+		{
+			out.append("Thread ").append(i).append(": ").append(m_actions.get(i)).append("\n");
+		}
+		out.append("Decisions: ").append(Arrays.toString(m_decisions));
+		return out.toString();
+	}
+}
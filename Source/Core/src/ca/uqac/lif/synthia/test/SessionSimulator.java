@@ -0,0 +1,633 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.Reseeder;
+import ca.uqac.lif.synthia.util.Pacer;
+
+/**
+ * Simulates many users of a system, each running as its own thread of
+ * sequential code. Pickers such as {@link ca.uqac.lif.synthia.sequence.Knit
+ * Knit} interleave the behaviour of several users in a single thread, which
+ * requires writing each user as a picker. Here, each user instead follows a
+ * {@link Script}: ordinary code that makes calls to the system under test,
+ * waits between them ("think time"), and records the events of its
+ * <em>session</em> in a trace.
+ * <p>
+ * The simulator works as follows:
+ * <ul>
+ * <li>The thread calling {@link #run(int)} starts sessions following an
+ * arrival picker, which produces the gap between two successive sessions
+ * in nanoseconds (for example, one of the {@link Workload.Arrivals}). A
+ * lifetime picker gives the duration of each session; a script can ask
+ * its session whether this duration has elapsed.</li>
+ * <li>Each session draws its choices from its own copy of a picker,
+ * obtained with {@link Picker#duplicate(boolean) duplicate(false)} and
+ * reseeded by a {@link Reseeder} with a seed derived from a master seed and
+ * the index of the session. Copies are made by the thread starting the
+ * sessions, so that the original picker is never accessed concurrently. The
+ * choices of a session therefore do not
+ * depend on the other sessions, nor on the way their threads are
+ * scheduled.</li>
+ * <li>Each session runs in its own task. By default, tasks are run by
+ * <em>virtual threads</em> when the Java runtime provides them (Java 21 or
+ * later), so that a simulation can hold a very large number of sessions
+ * that spend most of their time waiting; otherwise, each session is given a
+ * platform thread. Another executor can be set with
+ * {@link #setExecutor(Executor)}.</li>
+ * <li>The trace of a session is only written by the thread of this
+ * session. When the session ends, it is handed to a sink or appended to a
+ * lock-free queue of finished sessions; no global lock is taken.</li>
+ * </ul>
+ * 
+ * @param <P> The type of the choices made by a session
+ * @param <E> The type of the events recorded in the trace of a session
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class SessionSimulator<P,E>
+{
+	/**
+	 * The code followed by each session.
+	 */
+	/*@ non_null @*/ protected final Script<P,E> m_script;
+
+	/**
+	 * The picker of which each session receives a copy.
+	 */
+	/*@ non_null @*/ protected final Picker<P> m_choices;
+
+	/**
+	 * The picker producing the gap between two successive sessions, in
+	 * nanoseconds.
+	 */
+	/*@ non_null @*/ protected final Picker<? extends Number> m_arrivals;
+
+	/**
+	 * The picker producing the duration of each session, in nanoseconds.
+	 */
+	/*@ non_null @*/ protected final Picker<? extends Number> m_lifetimes;
+
+	/**
+	 * The master seed from which the seed of each copy is derived.
+	 */
+	protected final long m_seed;
+
+	/**
+	 * The executor running the sessions, or <tt>null</tt> to use virtual
+	 * threads when available.
+	 */
+	/*@ null @*/ protected Executor m_executor;
+
+	/**
+	 * The consumer receiving each finished session, or <tt>null</tt> to keep
+	 * sessions in {@link #m_finished}.
+	 */
+	/*@ null @*/ protected Consumer<? super Session<P,E>> m_sink;
+
+	/**
+	 * The sessions that have finished, if no sink is set.
+	 */
+	/*@ non_null @*/ protected final Queue<Session<P,E>> m_finished;
+
+	/**
+	 * The number of sessions started in the last run.
+	 */
+	protected long m_started;
+
+	/**
+	 * The number of sessions that have finished.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_completed;
+
+	/**
+	 * The number of sessions whose script threw an exception.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_errors;
+
+	/**
+	 * The number of sessions currently running.
+	 */
+	/*@ non_null @*/ protected final AtomicInteger m_live;
+
+	/**
+	 * The largest number of sessions that were running at the same time.
+	 */
+	/*@ non_null @*/ protected final AtomicInteger m_maxLive;
+
+	/**
+	 * The first exception thrown by a script.
+	 */
+	/*@ non_null @*/ protected final AtomicReference<Throwable> m_firstError;
+
+	/**
+	 * The time taken by the last run, in nanoseconds.
+	 */
+	protected long m_elapsed;
+
+	/**
+	 * Creates a new simulator.
+	 * @param script The code followed by each session
+	 * @param choices The picker of which each session receives a copy
+	 * @param arrivals The picker producing the gap between two successive
+	 * sessions, in nanoseconds
+	 * @param lifetimes The picker producing the duration of each session, in
+	 * nanoseconds
+	 * @param seed The master seed from which the seed of each copy is derived
+	 */
+	public SessionSimulator(/*@ non_null @*/ Script<P,E> script, /*@ non_null @*/ Picker<P> choices, /*@ non_null @*/ Picker<? extends Number> arrivals, /*@ non_null @*/ Picker<? extends Number> lifetimes, long seed)
+	{
+		super();
+		m_script = script;
+		m_choices = choices;
+		m_arrivals = arrivals;
+		m_lifetimes = lifetimes;
+		m_seed = seed;
+		m_executor = null;
+		m_sink = null;
+		m_finished = new ConcurrentLinkedQueue<Session<P,E>>();
+		m_completed = new AtomicLong();
+		m_errors = new AtomicLong();
+		m_live = new AtomicInteger();
+		m_maxLive = new AtomicInteger();
+		m_firstError = new AtomicReference<Throwable>();
+	}
+
+	/**
+	 * Sets the executor running the sessions. Since a session occupies its
+	 * thread for its whole duration, an executor with a bounded number of
+	 * threads also bounds the number of sessions running at the same time.
+	 * @param executor The executor, or <tt>null</tt> to use virtual threads
+	 * when available
+	 * @return This simulator
+	 */
+	/*@ non_null @*/ public SessionSimulator<P,E> setExecutor(/*@ null @*/ Executor executor)
+	{
+		m_executor = executor;
+		return this;
+	}
+
+	/**
+	 * Sets the consumer receiving each finished session. The consumer is
+	 * called from the thread of the session, and must therefore be
+	 * thread-safe; an exception it throws is counted as an error of the
+	 * session. Sessions passed to a sink are not kept by the simulator,
+	 * which bounds memory in long simulations.
+	 * @param sink The consumer, or <tt>null</tt> to keep the sessions
+	 * @return This simulator
+	 */
+	/*@ non_null @*/ public SessionSimulator<P,E> setSink(/*@ null @*/ Consumer<? super Session<P,E>> sink)
+	{
+		m_sink = sink;
+		return this;
+	}
+
+	/**
+	 * Starts sessions and waits for all of them to finish. The sessions and
+	 * statistics of any previous run are discarded. If the calling thread is
+	 * interrupted, no more sessions are started.
+	 * @param n The number of sessions to start
+	 * @return This simulator
+	 */
+	/*@ non_null @*/ public SessionSimulator<P,E> run(int n)
+	{
+		m_finished.clear();
+		m_started = 0;
+		m_completed.set(0);
+		m_errors.set(0);
+		m_live.set(0);
+		m_maxLive.set(0);
+		m_firstError.set(null);
+		ExecutorService pool = null;
+		Executor executor = m_executor;
+		if (executor == null)
+		{
+			pool = newVirtualThreadExecutor();
+			if (pool == null)
+			{
+				pool = Executors.newCachedThreadPool(new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable r)
+					{
+						Thread t = new Thread(r, "session");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			}
+			executor = pool;
+		}
+		long start = System.nanoTime();
+		try
+		{
+			long intended = start;
+			for (int i = 0; i < n && !Thread.currentThread().isInterrupted(); i++)
+			{
+				intended += m_arrivals.pick().longValue();
+				Session<P,E> s = newSession(i, intended, intended + m_lifetimes.pick().longValue());
+				Pacer.waitUntil(intended);
+				executor.execute(s);
+				m_started++;
+			}
+			while (m_completed.get() < m_started)
+			{
+				LockSupport.parkNanos(Pacer.SPIN_THRESHOLD);
+			}
+		}
+		finally
+		{
+			m_elapsed = System.nanoTime() - start;
+			if (pool != null)
+			{
+				pool.shutdown();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the sessions that have finished in the last run, in the order in
+	 * which they finished. This collection is empty if a sink is set.
+	 * @return The sessions
+	 */
+	/*@ non_null @*/ public List<Session<P,E>> getSessions()
+	{
+		return new ArrayList<Session<P,E>>(m_finished);
+	}
+
+	/**
+	 * Gets the number of sessions started in the last run.
+	 * @return The number of sessions
+	 */
+	/*@ pure @*/ public long getStarted()
+	{
+		return m_started;
+	}
+
+	/**
+	 * Gets the number of sessions whose script threw an exception in the
+	 * last run.
+	 * @return The number of sessions
+	 */
+	/*@ pure @*/ public long getErrors()
+	{
+		return m_errors.get();
+	}
+
+	/**
+	 * Gets the first exception thrown by a script in the last run.
+	 * @return The exception, or <tt>null</tt> if no script threw one
+	 */
+	/*@ null @*/ public Throwable getFirstError()
+	{
+		return m_firstError.get();
+	}
+
+	/**
+	 * Gets the largest number of sessions that were running at the same time
+	 * in the last run.
+	 * @return The number of sessions
+	 */
+	/*@ pure @*/ public int getMaxConcurrent()
+	{
+		return m_maxLive.get();
+	}
+
+	/**
+	 * Gets the time taken by the last run.
+	 * @return The time, in nanoseconds
+	 */
+	/*@ pure @*/ public long getElapsedTime()
+	{
+		return m_elapsed;
+	}
+
+	/**
+	 * Creates an executor starting a new virtual thread for each task. The
+	 * executor is looked up by reflection, so that this class can still run
+	 * on versions of Java that do not provide virtual threads.
+	 * @return The executor, or <tt>null</tt> if the runtime does not provide
+	 * virtual threads
+	 */
+	/*@ null @*/ public static ExecutorService newVirtualThreadExecutor()
+	{
+		try
+		{
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return null;
+		}
+		catch (UnsupportedOperationException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a session, along with the copy of the picker from which it
+	 * draws its choices. If the picker cannot be copied or reseeded, the
+	 * session fails immediately with the exception when it is run.
+	 * @param index The index of the session in its simulation
+	 * @param start The time at which the session is intended to start
+	 * @param deadline The time at which the lifetime of the session ends
+	 * @return The session
+	 */
+	/*@ non_null @*/ protected Session<P,E> newSession(int index, long start, long deadline)
+	{
+		Session<P,E> s = new Session<P,E>(this, index, start, deadline);
+		try
+		{
+			s.m_picker = m_choices.duplicate(false);
+			Reseeder.reseed(s.m_picker, Reseeder.derive(m_seed, index));
+		}
+		catch (RuntimeException e)
+		{
+			s.m_error = e;
+		}
+		return s;
+	}
+
+	/**
+	 * Called by a session when it finishes.
+	 * @param s The session
+	 */
+	protected void finish(/*@ non_null @*/ Session<P,E> s)
+	{
+		try
+		{
+			if (m_sink != null)
+			{
+				try
+				{
+					m_sink.accept(s);
+				}
+				catch (RuntimeException e)
+				{
+					if (s.m_error == null)
+					{
+						s.m_error = e;
+					}
+				}
+			}
+			else
+			{
+				m_finished.add(s);
+			}
+			if (s.m_error != null)
+			{
+				m_errors.incrementAndGet();
+				m_firstError.compareAndSet(null, s.m_error);
+			}
+		}
+		finally
+		{
+			m_live.decrementAndGet();
+			m_completed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The code followed by each session of a simulation.
+	 * @param <P> The type of the choices made by a session
+	 * @param <E> The type of the events recorded in the trace of a session
+	 */
+	public interface Script<P,E>
+	{
+		/**
+		 * Runs a session. The script draws its choices from
+		 * {@link Session#getPicker()}, waits with
+		 * {@link Session#think(long)}, and records events with
+		 * {@link Session#record(Object)}; it should return once
+		 * {@link Session#isAlive()} becomes {@code false}.
+		 * @param s The session
+		 * @throws Exception Any exception thrown by the system under test,
+		 * which ends the session
+		 */
+		public void run(/*@ non_null @*/ Session<P,E> s) throws Exception;
+	}
+
+	/**
+	 * A session of a simulation. A session is confined to its own thread
+	 * until it finishes; it then holds the trace of the events it recorded.
+	 * @param <P> The type of the choices made by the session
+	 * @param <E> The type of the events recorded in the trace
+	 */
+	public static class Session<P,E> implements Runnable
+	{
+		/**
+		 * The simulator to which this session belongs.
+		 */
+		/*@ non_null @*/ protected final SessionSimulator<P,E> m_simulator;
+
+		/**
+		 * The index of the session in its simulation.
+		 */
+		protected final int m_index;
+
+		/**
+		 * The time at which the session was intended to start, as given by
+		 * {@link System#nanoTime()}.
+		 */
+		protected final long m_start;
+
+		/**
+		 * The time at which the lifetime of the session ends, as given by
+		 * {@link System#nanoTime()}.
+		 */
+		protected final long m_deadline;
+
+		/**
+		 * The events recorded by the session.
+		 */
+		/*@ non_null @*/ protected final List<E> m_trace;
+
+		/**
+		 * The copy of the picker from which the session draws its choices.
+		 */
+		/*@ null @*/ protected Picker<P> m_picker;
+
+		/**
+		 * The time at which the session finished.
+		 */
+		protected long m_end;
+
+		/**
+		 * The exception thrown by the script, if any.
+		 */
+		/*@ null @*/ protected Throwable m_error;
+
+		/**
+		 * Creates a new session.
+		 * @param simulator The simulator to which this session belongs
+		 * @param index The index of the session in its simulation
+		 * @param start The time at which the session was intended to start
+		 * @param deadline The time at which the lifetime of the session ends
+		 */
+		protected Session(/*@ non_null @*/ SessionSimulator<P,E> simulator, int index, long start, long deadline)
+		{
+			super();
+			m_simulator = simulator;
+			m_index = index;
+			m_start = start;
+			m_deadline = deadline;
+			m_trace = new ArrayList<E>();
+		}
+
+		@Override
+		public void run()
+		{
+			int live = m_simulator.m_live.incrementAndGet();
+			int max;
+			while (live > (max = m_simulator.m_maxLive.get()) && !m_simulator.m_maxLive.compareAndSet(max, live))
+			{
+				// Retry until the maximum is updated
+			}
+			try
+			{
+				if (m_error == null)
+				{
+					// Otherwise, the picker could not be copied
+					m_simulator.m_script.run(this);
+				}
+			}
+			catch (Throwable t)
+			{
+				m_error = t;
+			}
+			finally
+			{
+				m_end = System.nanoTime();
+				m_simulator.finish(this);
+			}
+		}
+
+		/**
+		 * Gets the index of the session in its simulation.
+		 * @return The index
+		 */
+		/*@ pure @*/ public int getIndex()
+		{
+			return m_index;
+		}
+
+		/**
+		 * Gets the picker from which the session draws its choices.
+		 * @return The picker
+		 */
+		/*@ non_null @*/ public Picker<P> getPicker()
+		{
+			return m_picker;
+		}
+
+		/**
+		 * Determines whether the lifetime of the session has not yet elapsed.
+		 * @return {@code true} if the session is still alive
+		 */
+		public boolean isAlive()
+		{
+			return System.nanoTime() - m_deadline < 0 && !Thread.currentThread().isInterrupted();
+		}
+
+		/**
+		 * Waits for some time, without going past the end of the lifetime of
+		 * the session. Unlike {@link Pacer#sleep(long)}, the thread never
+		 * spins, so that waiting sessions use no processor time.
+		 * @param nanos The time to wait, in nanoseconds
+		 * @return {@code true} if the session is still alive after the wait
+		 */
+		public boolean think(long nanos)
+		{
+			long until = System.nanoTime() + nanos;
+			if (until - m_deadline > 0)
+			{
+				until = m_deadline;
+			}
+			long remaining;
+			while ((remaining = until - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted())
+			{
+				LockSupport.parkNanos(remaining);
+			}
+			return isAlive();
+		}
+
+		/**
+		 * Records an event in the trace of the session.
+		 * @param e The event
+		 */
+		public void record(E e)
+		{
+			m_trace.add(e);
+		}
+
+		/**
+		 * Gets the events recorded by the session.
+		 * @return The trace
+		 */
+		/*@ non_null @*/ public List<E> getTrace()
+		{
+			return m_trace;
+		}
+
+		/**
+		 * Gets the exception thrown by the script of the session.
+		 * @return The exception, or <tt>null</tt> if the script ended normally
+		 */
+		/*@ null @*/ public Throwable getError()
+		{
+			return m_error;
+		}
+
+		/**
+		 * Gets the time the session has lasted, from the time it was intended
+		 * to start. This includes any time the session waited before a thread
+		 * was available to run it.
+		 * @return The duration, in nanoseconds
+		 */
+		/*@ pure @*/ public long getDuration()
+		{
+			return m_end - m_start;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Session " + m_index + " " + m_trace;
+		}
+	}
+}
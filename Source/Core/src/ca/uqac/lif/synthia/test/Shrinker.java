@@ -0,0 +1,47 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.List;
+
+/**
+ * Constructs inputs that are smaller than a reference input. Contrary to
+ * {@link ca.uqac.lif.synthia.Shrinkable Shrinkable} pickers, which typically
+ * draw random values until one of them is smaller than the reference, a
+ * shrinker builds its candidates directly. Candidates are returned from the
+ * most to the least aggressive, so that the first failing candidate found
+ * by {@link Assert} is also the one that makes the most progress; when
+ * distances to the simplest input are halved from one candidate to the
+ * next, the shrinking process converges in a logarithmic number of steps.
+ * 
+ * @param <T> The type of the inputs
+ * @author Sylvain Hallé
+ * @see ShrinkerRegistry
+ * @ingroup API
+ */
+public interface Shrinker<T>
+{
+	/**
+	 * Produces candidates that are smaller than a reference input.
+	 * @param o The reference input
+	 * @return The list of candidates, from the most to the least aggressive;
+	 * an empty list indicates that the input cannot be shrunk further
+	 */
+	/*@ non_null @*/ public List<T> candidates(T o);
+}
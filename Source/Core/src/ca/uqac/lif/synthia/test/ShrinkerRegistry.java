@@ -0,0 +1,187 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.string.RandomString;
+import ca.uqac.lif.synthia.util.Constant;
+import ca.uqac.lif.synthia.util.Metered;
+
+/**
+ * Associates picker classes with {@link Shrinker}s able to construct
+ * smaller versions of the values they produce. When shrinking a failing
+ * input, {@link Assert} looks up the registry for a shrinker matching its
+ * input picker, and only falls back to the
+ * {@link ca.uqac.lif.synthia.Shrinkable#shrink(Object, Picker, float) shrink}
+ * method of the picker if none is found.
+ * <p>
+ * The {@link #instance default registry} contains shrinkers for
+ * {@link RandomInteger}, {@link RandomFloat}, {@link ComposeList} and
+ * {@link RandomString}; other pickers can be added with
+ * {@link #register(Class, Factory) register()}.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class ShrinkerRegistry
+{
+	/**
+	 * A public static instance of the registry, containing the shrinkers for
+	 * the pickers of the library.
+	 */
+	public static final ShrinkerRegistry instance = new ShrinkerRegistry().registerDefaults();
+
+	/**
+	 * The factories associated with each picker class.
+	 */
+	/*@ non_null @*/ protected final Map<Class<?>,Factory> m_factories;
+
+	/**
+	 * Creates a new empty registry.
+	 */
+	public ShrinkerRegistry()
+	{
+		super();
+		m_factories = new HashMap<Class<?>,Factory>();
+	}
+
+	/**
+	 * Associates a picker class with a shrinker factory. The factory also
+	 * applies to the descendants of the class, unless they are registered
+	 * themselves.
+	 * @param c The picker class
+	 * @param f The factory
+	 * @return This registry
+	 */
+	public synchronized ShrinkerRegistry register(/*@ non_null @*/ Class<?> c, /*@ non_null @*/ Factory f)
+	{
+		m_factories.put(c, f);
+		return this;
+	}
+
+	/**
+	 * Gets a shrinker for the values produced by a picker. A
+	 * {@link Metered} picker gets the shrinker of the picker it measures.
+	 * @param <T> The type of the values
+	 * @param p The picker
+	 * @return The shrinker, or <tt>null</tt> if no shrinker is registered for
+	 * this picker
+	 */
+	@SuppressWarnings("unchecked")
+	/*@ null @*/ public synchronized <T> Shrinker<T> get(/*@ non_null @*/ Picker<T> p)
+	{
+		p = Metered.unwrap(p);
+		for (Class<?> c = p.getClass(); c != null; c = c.getSuperclass())
+		{
+			Factory f = m_factories.get(c);
+			if (f != null)
+			{
+				return (Shrinker<T>) f.getShrinker(p, this);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the shrinkers for the pickers of the library.
+	 * @return This registry
+	 */
+	protected ShrinkerRegistry registerDefaults()
+	{
+		register(RandomInteger.class, new Factory()
+		{
+			@Override
+			public Shrinker<?> getShrinker(Picker<?> p, ShrinkerRegistry r)
+			{
+				return new IntegerShrinker(((RandomInteger) p).getMin());
+			}
+		});
+		register(RandomFloat.class, new Factory()
+		{
+			@Override
+			public Shrinker<?> getShrinker(Picker<?> p, ShrinkerRegistry r)
+			{
+				return new FloatShrinker(((RandomFloat) p).getMin());
+			}
+		});
+		register(ComposeList.class, new Factory()
+		{
+			@SuppressWarnings("unchecked")
+			@Override
+			public Shrinker<?> getShrinker(Picker<?> p, ShrinkerRegistry r)
+			{
+				ComposeList<?> cl = (ComposeList<?>) p;
+				return new ListShrinker<Object>(r.get((Picker<Object>) cl.getElementPicker()), getMinLength(cl.getLengthPicker()));
+			}
+		});
+		register(RandomString.class, new Factory()
+		{
+			@Override
+			public Shrinker<?> getShrinker(Picker<?> p, ShrinkerRegistry r)
+			{
+				RandomString rs = (RandomString) p;
+				return new StringShrinker(rs.getChars(), getMinLength(rs.getLengthPicker()));
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Determines the minimum length that can be produced by a picker
+	 * deciding on the length of a list or a string.
+	 * @param p The picker
+	 * @return The minimum length
+	 */
+	protected static int getMinLength(Picker<Integer> p)
+	{
+		p = Metered.unwrap(p);
+		if (p instanceof RandomInteger)
+		{
+			return Math.max(0, ((RandomInteger) p).getMin());
+		}
+		if (p instanceof Constant)
+		{
+			// Constants have no state: picking does not alter them
+			return p.pick();
+		}
+		return 0;
+	}
+
+	/**
+	 * Creates the shrinker associated with a picker.
+	 */
+	public static interface Factory
+	{
+		/**
+		 * Creates the shrinker for the values produced by a picker.
+		 * @param p The picker
+		 * @param r The registry, which can be queried for the shrinkers of the
+		 * pickers nested in <tt>p</tt>
+		 * @return The shrinker, or <tt>null</tt> if the values of this
+		 * particular picker cannot be shrunk
+		 */
+		/*@ null @*/ public Shrinker<?> getShrinker(/*@ non_null @*/ Picker<?> p, /*@ non_null @*/ ShrinkerRegistry r);
+	}
+}
@@ -0,0 +1,120 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shrinks strings by keeping progressively longer prefixes, deleting chunks
+ * of characters, and then replacing individual characters by simpler ones.
+ * The simplicity of a character is given by its position in an array of
+ * allowed characters: the first character of the array is the simplest.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class StringShrinker implements Shrinker<String>
+{
+	/**
+	 * The allowed characters, from the simplest to the most complex, or
+	 * <tt>null</tt> if characters are left unchanged.
+	 */
+	/*@ null @*/ protected final char[] m_chars;
+
+	/**
+	 * The minimum length of the strings produced.
+	 */
+	protected final int m_minLength;
+
+	/**
+	 * Creates a new string shrinker.
+	 * @param chars The allowed characters, from the simplest to the most
+	 * complex, or <tt>null</tt> to leave characters unchanged
+	 * @param min_length The minimum length of the strings produced
+	 */
+	public StringShrinker(/*@ null @*/ char[] chars, int min_length)
+	{
+		super();
+		m_chars = chars;
+		m_minLength = min_length;
+	}
+
+	@Override
+	public List<String> candidates(String o)
+	{
+		List<String> list = new ArrayList<String>();
+		int n = o.length();
+		for (int k = n - m_minLength; k > 0; k /= 2)
+		{
+			for (int i = n - k; i >= 0; i -= k)
+			{
+				list.add(o.substring(0, i) + o.substring(i + k));
+			}
+		}
+		if (m_chars != null && m_chars.length > 0)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				int index = indexOf(o.charAt(i));
+				if (index < 0)
+				{
+					list.add(replace(o, i, m_chars[0]));
+					continue;
+				}
+				for (int d = index; d > 0; d /= 2)
+				{
+					list.add(replace(o, i, m_chars[index - d]));
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Finds the position of a character in the array of allowed characters.
+	 * @param c The character
+	 * @return The position, or -1 if the character is not allowed
+	 */
+	protected int indexOf(char c)
+	{
+		for (int i = 0; i < m_chars.length; i++)
+		{
+			if (m_chars[i] == c)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Replaces a character of a string.
+	 * @param s The string
+	 * @param i The position of the character
+	 * @param c The new character
+	 * @return The new string
+	 */
+	protected static String replace(String s, int i, char c)
+	{
+		char[] chars = s.toCharArray();
+		chars[i] = c;
+		return new String(chars);
+	}
+}
@@ -0,0 +1,405 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Reactive;
+import ca.uqac.lif.synthia.util.Choice;
+import ca.uqac.lif.synthia.util.Constant;
+
+/**
+ * Picks objects from a randomly chosen subset of <em>features</em>, in the
+ * spirit of <a href="https://doi.org/10.1145/2338965.2336763">swarm
+ * testing</a>. A feature is a picker with a weight, typically producing one
+ * kind of {@link Action}; drawing from all the features at once tends to
+ * produce runs that all look alike, while omitting some features in each
+ * run lets others be exercised more deeply (for instance, a run without
+ * "pop" actions can fill a stack to its capacity).
+ * <p>
+ * A new subset of features, called a <em>configuration</em>, is sampled by
+ * calling {@link #nextConfiguration()}, typically at the start of each run;
+ * {@link #pick()} then draws from the enabled features in proportion to
+ * their weights. The outcome of the run is reported with
+ * {@link #tell(Boolean) tell()}: the swarm keeps the configurations that
+ * produced failures, and counts how often each feature was enabled in
+ * passing and failing runs. Later configurations are biased accordingly:
+ * a feature that appears in failing runs more often than in passing ones
+ * is enabled more often, and a feature whose absence seems to cause
+ * failures is enabled less often. Failing configurations are also sampled
+ * again as they are, with probability {@link #setReuseProbability(float)}.
+ * <p>
+ * Resetting the swarm resets the feature pickers, but keeps the current
+ * configuration and the statistics collected so far.
+ * 
+ * @param <T> The type of objects to pick
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Swarm<T> implements Reactive<Boolean,T>
+{
+	/**
+	 * The minimum probability of enabling a feature.
+	 */
+	protected static final float MIN_INCLUSION = 0.1f;
+
+	/**
+	 * The maximum probability of enabling a feature.
+	 */
+	protected static final float MAX_INCLUSION = 0.9f;
+
+	/**
+	 * The pickers of each feature.
+	 */
+	/*@ non_null @*/ protected List<Picker<T>> m_features;
+
+	/**
+	 * The weight of each feature.
+	 */
+	/*@ non_null @*/ protected float[] m_weights;
+
+	/**
+	 * The features enabled in the current configuration.
+	 */
+	/*@ non_null @*/ protected boolean[] m_enabled;
+
+	/**
+	 * A picker used to sample configurations and to choose features.
+	 */
+	/*@ non_null @*/ protected Picker<Float> m_floatPicker;
+
+	/**
+	 * The number of runs in which each feature was enabled.
+	 */
+	/*@ non_null @*/ protected int[] m_runsOn;
+
+	/**
+	 * The number of failing runs in which each feature was enabled.
+	 */
+	/*@ non_null @*/ protected int[] m_failuresOn;
+
+	/**
+	 * The total number of runs reported.
+	 */
+	protected int m_runs;
+
+	/**
+	 * The total number of failing runs reported.
+	 */
+	protected int m_failures;
+
+	/**
+	 * The configurations that produced failures, associated with the number
+	 * of failures they produced.
+	 */
+	/*@ non_null @*/ protected Map<String,Integer> m_failing;
+
+	/**
+	 * The probability of sampling a failing configuration again.
+	 */
+	protected float m_reuse;
+
+	/**
+	 * Creates a new swarm.
+	 * @param picker A picker used to sample configurations and to choose
+	 * features
+	 */
+	public Swarm(/*@ non_null @*/ Picker<Float> picker)
+	{
+		super();
+		m_features = new ArrayList<Picker<T>>();
+		m_weights = new float[0];
+		m_enabled = new boolean[0];
+		m_floatPicker = picker;
+		m_runsOn = new int[0];
+		m_failuresOn = new int[0];
+		m_runs = 0;
+		m_failures = 0;
+		m_failing = new LinkedHashMap<String,Integer>();
+		m_reuse = 0.25f;
+	}
+
+	/**
+	 * Creates a new swarm whose features are the alternatives of a
+	 * {@link Choice}.
+	 * @param picker A picker used to sample configurations and to choose
+	 * features
+	 * @param c The choice
+	 */
+	public Swarm(/*@ non_null @*/ Picker<Float> picker, /*@ non_null @*/ Choice<T> c)
+	{
+		this(picker);
+		for (int i = 0; i < c.getChoiceCount(); i++)
+		{
+			add(c.getChoice(i).getPicker(), c.getChoice(i).getProbability());
+		}
+	}
+
+	/**
+	 * Adds a feature. The feature is enabled in the current configuration.
+	 * @param p The picker of the feature
+	 * @param weight The weight of the feature
+	 * @return This swarm
+	 */
+	/*@ non_null @*/ public Swarm<T> add(/*@ non_null @*/ Picker<T> p, /*@ non_null @*/ Number weight)
+	{
+		int n = m_features.size();
+		m_features.add(p);
+		m_weights = Arrays.copyOf(m_weights, n + 1);
+		m_weights[n] = weight.floatValue();
+		m_enabled = Arrays.copyOf(m_enabled, n + 1);
+		m_enabled[n] = true;
+		m_runsOn = Arrays.copyOf(m_runsOn, n + 1);
+		m_failuresOn = Arrays.copyOf(m_failuresOn, n + 1);
+		return this;
+	}
+
+	/**
+	 * Adds a feature that always produces the same object. The feature is
+	 * enabled in the current configuration.
+	 * @param t The object
+	 * @param weight The weight of the feature
+	 * @return This swarm
+	 */
+	/*@ non_null @*/ public Swarm<T> add(/*@ non_null @*/ T t, /*@ non_null @*/ Number weight)
+	{
+		return add(new Constant<T>(t), weight);
+	}
+
+	/**
+	 * Sets the probability of sampling a configuration that already produced
+	 * a failure, instead of a new one.
+	 * @param p The probability, between 0 and 1
+	 * @return This swarm
+	 */
+	/*@ non_null @*/ public Swarm<T> setReuseProbability(float p)
+	{
+		m_reuse = p;
+		return this;
+	}
+
+	/**
+	 * Samples a new configuration.
+	 * @return This swarm
+	 */
+	/*@ non_null @*/ public Swarm<T> nextConfiguration()
+	{
+		int n = m_features.size();
+		if (!m_failing.isEmpty() && m_floatPicker.pick() < m_reuse)
+		{
+			// Pick a failing configuration, in proportion to its failures
+			int target = (int) (m_floatPicker.pick() * m_failures);
+			for (Map.Entry<String,Integer> e : m_failing.entrySet())
+			{
+				target -= e.getValue();
+				if (target < 0)
+				{
+					return setConfiguration(e.getKey());
+				}
+			}
+		}
+		boolean any = false;
+		for (int i = 0; i < n; i++)
+		{
+			m_enabled[i] = m_floatPicker.pick() < getInclusionProbability(i);
+			any |= m_enabled[i];
+		}
+		if (!any && n > 0)
+		{
+			m_enabled[(int) Math.min(n - 1, m_floatPicker.pick() * n)] = true;
+		}
+		return this;
+	}
+
+	/**
+	 * Reports the outcome of a run made with the current configuration.
+	 * @param failed {@code true} if the run produced a failure
+	 */
+	@Override
+	public void tell(Boolean failed)
+	{
+		m_runs++;
+		for (int i = 0; i < m_enabled.length; i++)
+		{
+			if (m_enabled[i])
+			{
+				m_runsOn[i]++;
+				if (failed)
+				{
+					m_failuresOn[i]++;
+				}
+			}
+		}
+		if (failed)
+		{
+			m_failures++;
+			String key = getConfiguration();
+			Integer count = m_failing.get(key);
+			m_failing.put(key, count == null ? 1 : count + 1);
+		}
+	}
+
+	/**
+	 * Computes the probability of enabling a feature in a new configuration.
+	 * The probability compares the (smoothed) failure rates of the runs
+	 * where the feature was enabled and disabled; it is 1/2 when no failure
+	 * has been reported, and is kept between {@link #MIN_INCLUSION} and
+	 * {@link #MAX_INCLUSION} so that every subset remains possible.
+	 * @param i The index of the feature
+	 * @return The probability
+	 */
+	public float getInclusionProbability(int i)
+	{
+		float rate_on = (m_failuresOn[i] + 1f) / (m_runsOn[i] + 2f);
+		float rate_off = (m_failures - m_failuresOn[i] + 1f) / (m_runs - m_runsOn[i] + 2f);
+		float p = rate_on / (rate_on + rate_off);
+		return Math.max(MIN_INCLUSION, Math.min(MAX_INCLUSION, p));
+	}
+
+	/**
+	 * Sets the current configuration, typically to replay a run made with a
+	 * configuration obtained from {@link #getConfiguration()}.
+	 * @param key A string with one character per feature, <tt>1</tt> if the
+	 * feature is enabled and <tt>0</tt> otherwise
+	 * @return This swarm
+	 * @throws IllegalArgumentException If the string does not describe a
+	 * configuration of this swarm
+	 */
+	/*@ non_null @*/ public Swarm<T> setConfiguration(/*@ non_null @*/ String key)
+	{
+		if (!key.matches("[01]*") || key.length() != m_enabled.length)
+		{
+			throw new IllegalArgumentException("Not a configuration of this swarm: " + key);
+		}
+		for (int i = 0; i < m_enabled.length; i++)
+		{
+			m_enabled[i] = key.charAt(i) == '1';
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the current configuration.
+	 * @return A string with one character per feature, <tt>1</tt> if the
+	 * feature is enabled and <tt>0</tt> otherwise
+	 */
+	/*@ non_null @*/ public String getConfiguration()
+	{
+		StringBuilder out = new StringBuilder(m_enabled.length);
+		for (boolean b : m_enabled)
+		{
+			out.append(b ? '1' : '0');
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Gets the configurations that produced failures.
+	 * @return A map associating each configuration, in the format of
+	 * {@link #getConfiguration()}, with the number of failures it produced
+	 */
+	/*@ non_null @*/ public Map<String,Integer> getFailingConfigurations()
+	{
+		return m_failing;
+	}
+
+	/**
+	 * Gets the number of features of this swarm.
+	 * @return The number of features
+	 */
+	/*@ pure @*/ public int getFeatureCount()
+	{
+		return m_features.size();
+	}
+
+	@Override
+	public T pick()
+	{
+		float total = 0;
+		for (int i = 0; i < m_weights.length; i++)
+		{
+			if (m_enabled[i])
+			{
+				total += m_weights[i];
+			}
+		}
+		float f = m_floatPicker.pick() * total;
+		int last = -1;
+		for (int i = 0; i < m_weights.length; i++)
+		{
+			if (m_enabled[i])
+			{
+				last = i;
+				f -= m_weights[i];
+				if (f < 0)
+				{
+					return m_features.get(i).pick();
+				}
+			}
+		}
+		if (last < 0)
+		{
+			return null;
+		}
+		// Rounding errors
+		return m_features.get(last).pick();
+	}
+
+	@Override
+	public void reset()
+	{
+		m_floatPicker.reset();
+		for (Picker<T> p : m_features)
+		{
+			p.reset();
+		}
+	}
+
+	@Override
+	public Swarm<T> duplicate(boolean with_state)
+	{
+		Swarm<T> s = new Swarm<T>(m_floatPicker.duplicate(with_state));
+		for (int i = 0; i < m_features.size(); i++)
+		{
+			s.add(m_features.get(i).duplicate(with_state), m_weights[i]);
+		}
+		s.m_reuse = m_reuse;
+		if (with_state)
+		{
+			s.m_enabled = Arrays.copyOf(m_enabled, m_enabled.length);
+			s.m_runsOn = Arrays.copyOf(m_runsOn, m_runsOn.length);
+			s.m_failuresOn = Arrays.copyOf(m_failuresOn, m_failuresOn.length);
+			s.m_runs = m_runs;
+			s.m_failures = m_failures;
+			s.m_failing.putAll(m_failing);
+		}
+		return s;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Swarm " + getConfiguration();
+	}
+}
@@ -0,0 +1,347 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the verdict returned by a {@link Testable} object for the inputs
+ * it has already been given. During the shrinking phase of an {@link Assert},
+ * the same input is frequently produced more than once (especially on small
+ * domains); when a cache is attached to the assertion, the verdict for such an
+ * input is taken from the cache instead of running the test again.
+ * <p>
+ * Inputs are compared using an {@link Equivalence}. The default equivalence,
+ * {@link #DEEP}, compares arrays and lists element by element (recursively),
+ * and falls back on {@link Object#equals(Object) equals} and
+ * {@link Object#hashCode() hashCode} for all other objects. The cache holds
+ * at most a fixed number of verdicts; when full, the least recently used
+ * verdict is evicted.
+ * <p>
+ * Note that the cache assumes that the verdict of the test only depends on
+ * its input, and that inputs are not modified after being tested.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class VerdictCache
+{
+	/**
+	 * The default maximum number of verdicts kept by the cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * An equivalence that compares arrays and lists element by element.
+	 */
+	public static final Equivalence DEEP = new DeepEquivalence();
+
+	/**
+	 * The verdicts stored by the cache, in access order.
+	 */
+	/*@ non_null @*/ protected final Map<Key,Boolean> m_verdicts;
+
+	/**
+	 * The equivalence used to compare inputs.
+	 */
+	/*@ non_null @*/ protected final Equivalence m_equivalence;
+
+	/**
+	 * The maximum number of verdicts kept by the cache.
+	 */
+	protected final int m_capacity;
+
+	/**
+	 * The number of lookups that found a verdict in the cache.
+	 */
+	protected long m_hits;
+
+	/**
+	 * The number of lookups that did not find a verdict in the cache.
+	 */
+	protected long m_misses;
+
+	/**
+	 * Creates a new verdict cache.
+	 * @param capacity The maximum number of verdicts kept by the cache
+	 * @param e The equivalence used to compare inputs
+	 */
+	public VerdictCache(int capacity, /*@ non_null @*/ Equivalence e)
+	{
+		super();
+		m_capacity = capacity;
+		m_equivalence = e;
+		m_verdicts = new LinkedHashMap<Key,Boolean>(16, 0.75f, true)
+		{
+			/**
+			 * Dummy UID.
+			 */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,Boolean> eldest)
+			{
+				return size() > m_capacity;
+			}
+		};
+		m_hits = 0;
+		m_misses = 0;
+	}
+
+	/**
+	 * Creates a new verdict cache using the {@link #DEEP} equivalence.
+	 * @param capacity The maximum number of verdicts kept by the cache
+	 */
+	public VerdictCache(int capacity)
+	{
+		this(capacity, DEEP);
+	}
+
+	/**
+	 * Creates a new verdict cache with default capacity, using the
+	 * {@link #DEEP} equivalence.
+	 */
+	public VerdictCache()
+	{
+		this(DEFAULT_CAPACITY, DEEP);
+	}
+
+	/**
+	 * Runs a test on an input, or retrieves its verdict from the cache if the
+	 * same input has already been tested. If the test throws an exception,
+	 * no verdict is recorded and the exception is passed on to the caller.
+	 * @param sut The object that is being tested
+	 * @param input The input to test
+	 * @return The verdict of the test
+	 */
+	public boolean test(/*@ non_null @*/ Testable sut, Object input)
+	{
+		Key k = new Key(input);
+		Boolean b = m_verdicts.get(k);
+		if (b != null)
+		{
+			m_hits++;
+			return b;
+		}
+		m_misses++;
+		boolean verdict = sut.test(input);
+		m_verdicts.put(k, verdict);
+		return verdict;
+	}
+
+	/**
+	 * Gets the number of lookups that found a verdict in the cache.
+	 * @return The number of hits
+	 */
+	public long getHits()
+	{
+		return m_hits;
+	}
+
+	/**
+	 * Gets the number of lookups that did not find a verdict in the cache,
+	 * i.e. the number of times the test was actually run.
+	 * @return The number of misses
+	 */
+	public long getMisses()
+	{
+		return m_misses;
+	}
+
+	/**
+	 * Gets the fraction of lookups that found a verdict in the cache.
+	 * @return The hit rate, between 0 and 1; 0 if no lookup has been made yet
+	 */
+	public float getHitRate()
+	{
+		long total = m_hits + m_misses;
+		if (total == 0)
+		{
+			return 0;
+		}
+		return (float) m_hits / (float) total;
+	}
+
+	/**
+	 * Gets the number of verdicts currently held in the cache.
+	 * @return The number of verdicts
+	 */
+	public int size()
+	{
+		return m_verdicts.size();
+	}
+
+	/**
+	 * Empties the cache and resets its hit and miss counters.
+	 */
+	public void clear()
+	{
+		m_verdicts.clear();
+		m_hits = 0;
+		m_misses = 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "VerdictCache [size=" + m_verdicts.size() + ", hits=" + m_hits + ", misses=" + m_misses + "]";
+	}
+
+	/**
+	 * Decides whether two inputs should be considered the same for the
+	 * purpose of caching verdicts. As for {@link Object#hashCode()}, two
+	 * equivalent objects must have the same hash.
+	 */
+	public static interface Equivalence
+	{
+		/**
+		 * Computes a hash for an object.
+		 * @param o The object
+		 * @return The hash
+		 */
+		public int hash(Object o);
+
+		/**
+		 * Determines if two objects are equivalent.
+		 * @param o1 The first object
+		 * @param o2 The second object
+		 * @return {@code true} if the objects are equivalent, {@code false}
+		 * otherwise
+		 */
+		public boolean equivalent(Object o1, Object o2);
+	}
+
+	/**
+	 * Equivalence that compares arrays and lists element by element,
+	 * recursively.
+	 */
+	protected static class DeepEquivalence implements Equivalence
+	{
+		@Override
+		public int hash(Object o)
+		{
+			if (o instanceof List)
+			{
+				int h = 1;
+				for (Object e : (List<?>) o)
+				{
+					h = 31 * h + hash(e);
+				}
+				return h;
+			}
+			if (o instanceof Object[])
+			{
+				return hash(Arrays.asList((Object[]) o));
+			}
+			if (o != null && o.getClass().isArray())
+			{
+				// Array of primitives
+				return Arrays.deepHashCode(new Object[] {o});
+			}
+			return o == null ? 0 : o.hashCode();
+		}
+
+		@Override
+		public boolean equivalent(Object o1, Object o2)
+		{
+			if (o1 == o2)
+			{
+				return true;
+			}
+			if (o1 == null || o2 == null)
+			{
+				return false;
+			}
+			if (o1 instanceof Object[] && o2 instanceof Object[])
+			{
+				return equivalent(Arrays.asList((Object[]) o1), Arrays.asList((Object[]) o2));
+			}
+			if (o1 instanceof List && o2 instanceof List)
+			{
+				List<?> l1 = (List<?>) o1, l2 = (List<?>) o2;
+				if (l1.size() != l2.size())
+				{
+					return false;
+				}
+				for (int i = 0; i < l1.size(); i++)
+				{
+					if (!equivalent(l1.get(i), l2.get(i)))
+					{
+						return false;
+					}
+				}
+				return true;
+			}
+			if (o1.getClass().isArray() && o2.getClass().isArray())
+			{
+				// Arrays of primitives
+				return Arrays.deepEquals(new Object[] {o1}, new Object[] {o2});
+			}
+			return o1.equals(o2);
+		}
+	}
+
+	/**
+	 * Wrapper around an input, delegating its hash and equality to the
+	 * cache's equivalence.
+	 */
+	protected class Key
+	{
+		/**
+		 * The wrapped input.
+		 */
+		protected final Object m_input;
+
+		/**
+		 * The hash of the input, computed once.
+		 */
+		protected final int m_hash;
+
+		/**
+		 * Creates a new key.
+		 * @param input The wrapped input
+		 */
+		public Key(Object input)
+		{
+			super();
+			m_input = input;
+			m_hash = m_equivalence.hash(input);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return m_hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof VerdictCache.Key))
+			{
+				return false;
+			}
+			Key k = (Key) o;
+			return m_hash == k.m_hash && m_equivalence.equivalent(m_input, k.m_input);
+		}
+	}
+}
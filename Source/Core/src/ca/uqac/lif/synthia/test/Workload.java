@@ -0,0 +1,754 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Reactive;
+import ca.uqac.lif.synthia.util.Pacer;
+
+/**
+ * Issues actions at a target rate, following an <em>open-loop</em> model: the
+ * time at which each action is issued is decided by an arrival process,
+ * independently of how long the previous actions take to complete. This
+ * is the way independent clients load a service, and unlike a loop that
+ * waits for each action before issuing the next (such as a {@link Monkey}
+ * interspersed with {@link ca.uqac.lif.synthia.util.Delay Delay}s), it does
+ * not hide the time requests spend waiting in queues.
+ * <p>
+ * The workload works as follows:
+ * <ul>
+ * <li>A scheduling thread (the one calling {@link #run()}) computes the
+ * intended start time of each action on an absolute schedule, by adding
+ * the gaps produced by an {@link Arrivals} picker; errors in the timing of
+ * one action therefore do not accumulate. The thread waits until each
+ * start time with {@link Pacer#waitUntil(long)}, which gives a precision
+ * well below one millisecond.</li>
+ * <li>Each action is then handed to an executor; if the scheduling thread
+ * falls behind, actions are issued immediately until it catches up.</li>
+ * <li>The target rate can change over time, by defining successive
+ * {@link Phase}s in which the rate is constant or varies linearly (ramps
+ * up or down).</li>
+ * </ul>
+ * The latency of each action is measured from its <em>intended</em> start
+ * time rather than from the time it actually started, which corrects the
+ * bias known as <em>coordinated omission</em>: when the service (or the
+ * executor) stalls, the actions that should have been issued in the
+ * meantime are counted with the delay they would have experienced. The time
+ * spent by each action alone is recorded separately as its service time.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Workload
+{
+	/**
+	 * The largest interval, in nanoseconds, over which the rate of a ramp is
+	 * considered constant when computing the start time of the next action.
+	 */
+	protected static final long RATE_STEP = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/**
+	 * The picker producing the actions to issue.
+	 */
+	/*@ non_null @*/ protected final Picker<Action> m_actions;
+
+	/**
+	 * The picker producing the gap between two successive actions, in
+	 * nanoseconds, and which is told the current target rate.
+	 */
+	/*@ non_null @*/ protected final Reactive<Number,Long> m_arrivals;
+
+	/**
+	 * The successive phases of the workload.
+	 */
+	/*@ non_null @*/ protected final List<Phase> m_phases;
+
+	/**
+	 * The executor running the actions, or <tt>null</tt> to create a pool of
+	 * threads for each run.
+	 */
+	/*@ null @*/ protected Executor m_executor;
+
+	/**
+	 * The number of threads of the pool created when no executor is given.
+	 */
+	protected int m_threads;
+
+	/**
+	 * The histogram of the latency of actions, measured from their intended
+	 * start time.
+	 */
+	/*@ non_null @*/ protected final LatencyHistogram m_latencies;
+
+	/**
+	 * The histogram of the time spent in each action.
+	 */
+	/*@ non_null @*/ protected final LatencyHistogram m_serviceTimes;
+
+	/**
+	 * The number of actions issued.
+	 */
+	protected long m_issued;
+
+	/**
+	 * The number of actions completed.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_completed;
+
+	/**
+	 * The number of actions that threw an exception.
+	 */
+	/*@ non_null @*/ protected final AtomicLong m_errors;
+
+	/**
+	 * The first exception thrown by an action.
+	 */
+	/*@ non_null @*/ protected final AtomicReference<RuntimeException> m_firstError;
+
+	/**
+	 * The largest delay between the intended start time of an action and the
+	 * moment it was handed to the executor, in nanoseconds.
+	 */
+	protected long m_maxLag;
+
+	/**
+	 * The duration of the last run, in nanoseconds.
+	 */
+	protected long m_elapsed;
+
+	/**
+	 * Creates a new workload.
+	 * @param actions The picker producing the actions to issue
+	 * @param arrivals The picker producing the gap between two successive
+	 * actions
+	 */
+	public Workload(/*@ non_null @*/ Picker<Action> actions, /*@ non_null @*/ Reactive<Number,Long> arrivals)
+	{
+		super();
+		m_actions = actions;
+		m_arrivals = arrivals;
+		m_phases = new ArrayList<Phase>();
+		m_executor = null;
+		m_threads = Runtime.getRuntime().availableProcessors();
+		m_latencies = new LatencyHistogram();
+		m_serviceTimes = new LatencyHistogram();
+		m_completed = new AtomicLong();
+		m_errors = new AtomicLong();
+		m_firstError = new AtomicReference<RuntimeException>();
+	}
+
+	/**
+	 * Adds a phase where actions are issued at a constant rate.
+	 * @param rate The rate, in actions per second
+	 * @param duration The duration of the phase
+	 * @param unit The unit of the duration
+	 * @return This workload
+	 */
+	/*@ non_null @*/ public Workload addPhase(double rate, long duration, /*@ non_null @*/ TimeUnit unit)
+	{
+		return addRamp(rate, rate, duration, unit);
+	}
+
+	/**
+	 * Adds a phase where the rate at which actions are issued varies
+	 * linearly.
+	 * @param from The rate at the start of the phase, in actions per second
+	 * @param to The rate at the end of the phase, in actions per second
+	 * @param duration The duration of the phase
+	 * @param unit The unit of the duration
+	 * @return This workload
+	 */
+	/*@ non_null @*/ public Workload addRamp(double from, double to, long duration, /*@ non_null @*/ TimeUnit unit)
+	{
+		m_phases.add(new Phase(from, to, unit.toNanos(duration)));
+		return this;
+	}
+
+	/**
+	 * Sets the executor running the actions. The executor should not bound
+	 * the number of actions it accepts; otherwise, the workload is no longer
+	 * open-loop.
+	 * @param executor The executor, or <tt>null</tt> to create a pool of
+	 * threads for each run
+	 * @return This workload
+	 */
+	/*@ non_null @*/ public Workload setExecutor(/*@ null @*/ Executor executor)
+	{
+		m_executor = executor;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads of the pool created for each run, when no
+	 * executor is given.
+	 * @param n The number of threads (by default, the number of processors)
+	 * @return This workload
+	 */
+	/*@ non_null @*/ public Workload setThreads(int n)
+	{
+		m_threads = Math.max(1, n);
+		return this;
+	}
+
+	/**
+	 * Issues actions according to the phases of the workload, and waits for
+	 * all of them to complete. The statistics of any previous run are
+	 * discarded. If the calling thread is interrupted, no more actions are
+	 * issued.
+	 * @return This workload
+	 */
+	/*@ non_null @*/ public Workload run()
+	{
+		m_latencies.reset();
+		m_serviceTimes.reset();
+		m_issued = 0;
+		m_completed.set(0);
+		m_errors.set(0);
+		m_firstError.set(null);
+		m_maxLag = 0;
+		ExecutorService pool = null;
+		Executor executor = m_executor;
+		if (executor == null)
+		{
+			pool = Executors.newFixedThreadPool(m_threads, new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "workload");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor = pool;
+		}
+		long start = System.nanoTime();
+		try
+		{
+			long phase_start = start;
+			for (Phase phase : m_phases)
+			{
+				issue(executor, phase, phase_start);
+				phase_start += phase.m_duration;
+				if (Thread.currentThread().isInterrupted())
+				{
+					break;
+				}
+			}
+			while (m_completed.get() < m_issued)
+			{
+				LockSupport.parkNanos(Pacer.SPIN_THRESHOLD);
+			}
+		}
+		finally
+		{
+			m_elapsed = System.nanoTime() - start;
+			if (pool != null)
+			{
+				pool.shutdown();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Issues the actions of a phase.
+	 * @param executor The executor running the actions
+	 * @param phase The phase
+	 * @param phase_start The time at which the phase starts, in nanoseconds
+	 */
+	protected void issue(Executor executor, Phase phase, long phase_start)
+	{
+		long phase_end = phase_start + phase.m_duration;
+		double max_rate = Math.max(phase.m_from, phase.m_to);
+		if (max_rate <= 0)
+		{
+			// No action in this phase
+			return;
+		}
+		long intended = phase_start;
+		while (!Thread.currentThread().isInterrupted())
+		{
+			double rate = phase.getRate(intended - phase_start);
+			if (rate <= 0)
+			{
+				// The gap is only picked at a positive rate, and then rescaled
+				rate = max_rate;
+			}
+			m_arrivals.tell(rate);
+			long gap = m_arrivals.pick();
+			if (phase.m_from == phase.m_to)
+			{
+				intended += gap;
+			}
+			else
+			{
+				intended = advance(phase, phase_start, intended, gap * rate / 1e9);
+			}
+			if (intended >= phase_end)
+			{
+				return;
+			}
+			Pacer.waitUntil(intended);
+			m_maxLag = Math.max(m_maxLag, System.nanoTime() - intended);
+			executor.execute(new Task(m_actions.pick(), intended));
+			m_issued++;
+		}
+	}
+
+	/**
+	 * Computes the time at which a given number of actions is expected to be
+	 * issued in a ramp. The gap picked by the arrival process is expressed as
+	 * a number of actions at the rate it was told; time then moves forward in
+	 * steps of at most {@link #RATE_STEP}, at the rate of the middle of each
+	 * step, until this number is reached. The gap therefore follows the
+	 * changes of the rate, instead of keeping the rate at its start (which,
+	 * at the start of a ramp from 0, would skip the whole phase).
+	 * @param phase The phase
+	 * @param phase_start The time at which the phase starts, in nanoseconds
+	 * @param from The time of the previous action, in nanoseconds
+	 * @param actions The expected number of actions
+	 * @return The time of the next action, in nanoseconds; a value at or past
+	 * the end of the phase means that there is no next action in the phase
+	 */
+	protected static long advance(Phase phase, long phase_start, long from, double actions)
+	{
+		long phase_end = phase_start + phase.m_duration;
+		long t = from;
+		while (t < phase_end)
+		{
+			long step = Math.min(RATE_STEP, phase_end - t);
+			double rate = phase.getRate(t + step / 2 - phase_start);
+			double in_step = rate * step / 1e9;
+			if (rate > 0 && in_step >= actions)
+			{
+				return t + Math.round(actions / rate * 1e9);
+			}
+			actions -= Math.max(0, in_step);
+			t += step;
+		}
+		return phase_end;
+	}
+
+	/**
+	 * Gets the histogram of the latency of the actions issued during the last
+	 * run, in nanoseconds, measured from their intended start time.
+	 * @return The histogram
+	 */
+	/*@ non_null @*/ public LatencyHistogram getLatencies()
+	{
+		return m_latencies;
+	}
+
+	/**
+	 * Gets the histogram of the time spent in each action issued during the
+	 * last run, in nanoseconds.
+	 * @return The histogram
+	 */
+	/*@ non_null @*/ public LatencyHistogram getServiceTimes()
+	{
+		return m_serviceTimes;
+	}
+
+	/**
+	 * Gets the number of actions issued during the last run.
+	 * @return The number of actions
+	 */
+	/*@ pure @*/ public long getIssued()
+	{
+		return m_issued;
+	}
+
+	/**
+	 * Gets the number of actions that threw an exception during the last run.
+	 * @return The number of actions
+	 */
+	/*@ pure @*/ public long getErrors()
+	{
+		return m_errors.get();
+	}
+
+	/**
+	 * Gets the first exception thrown by an action during the last run.
+	 * @return The exception, or <tt>null</tt> if no action failed
+	 */
+	/*@ null @*/ public RuntimeException getFirstError()
+	{
+		return m_firstError.get();
+	}
+
+	/**
+	 * Gets the largest delay between the intended start time of an action and
+	 * the moment it was issued during the last run. A large value indicates
+	 * that the scheduling thread could not sustain the target rate.
+	 * @return The delay, in nanoseconds
+	 */
+	/*@ pure @*/ public long getMaxLag()
+	{
+		return m_maxLag;
+	}
+
+	/**
+	 * Gets the duration of the last run, including the time taken to
+	 * complete the last actions.
+	 * @return The duration, in nanoseconds
+	 */
+	/*@ pure @*/ public long getElapsedTime()
+	{
+		return m_elapsed;
+	}
+
+	/**
+	 * Gets the number of actions completed per second during the last run.
+	 * @return The throughput
+	 */
+	/*@ pure @*/ public double getThroughput()
+	{
+		return m_elapsed == 0 ? 0 : m_completed.get() * 1e9 / m_elapsed;
+	}
+
+	/**
+	 * An action issued at a given time.
+	 */
+	protected class Task implements Runnable
+	{
+		/**
+		 * The action.
+		 */
+		/*@ non_null @*/ protected final Action m_action;
+
+		/**
+		 * The time at which the action was intended to start.
+		 */
+		protected final long m_intended;
+
+		/**
+		 * Creates a new task.
+		 * @param a The action
+		 * @param intended The time at which the action was intended to start
+		 */
+		public Task(/*@ non_null @*/ Action a, long intended)
+		{
+			super();
+			m_action = a;
+			m_intended = intended;
+		}
+
+		@Override
+		public void run()
+		{
+			long start = System.nanoTime();
+			try
+			{
+				m_action.doAction();
+			}
+			catch (RuntimeException e)
+			{
+				m_errors.incrementAndGet();
+				m_firstError.compareAndSet(null, e);
+			}
+			finally
+			{
+				long end = System.nanoTime();
+				m_serviceTimes.record(end - start);
+				m_latencies.record(end - m_intended);
+				m_completed.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * A period of time during which the target rate is constant or varies
+	 * linearly.
+	 */
+	public static class Phase
+	{
+		/**
+		 * The rate at the start of the phase, in actions per second.
+		 */
+		protected final double m_from;
+
+		/**
+		 * The rate at the end of the phase, in actions per second.
+		 */
+		protected final double m_to;
+
+		/**
+		 * The duration of the phase, in nanoseconds.
+		 */
+		protected final long m_duration;
+
+		/**
+		 * Creates a new phase.
+		 * @param from The rate at the start of the phase
+		 * @param to The rate at the end of the phase
+		 * @param duration The duration of the phase, in nanoseconds
+		 */
+		public Phase(double from, double to, long duration)
+		{
+			super();
+			m_from = from;
+			m_to = to;
+			m_duration = duration;
+		}
+
+		/**
+		 * Gets the target rate at some point of the phase.
+		 * @param t The time elapsed since the start of the phase, in
+		 * nanoseconds
+		 * @return The rate, in actions per second
+		 */
+		/*@ pure @*/ public double getRate(long t)
+		{
+			if (m_duration <= 0)
+			{
+				return m_to;
+			}
+			return m_from + (m_to - m_from) * Math.min(1, (double) t / m_duration);
+		}
+	}
+
+	/**
+	 * An arrival process, producing the gap between two successive actions,
+	 * in nanoseconds. The process is told the current target rate, in
+	 * actions per second, before each gap is picked.
+	 */
+	public abstract static class Arrivals implements Reactive<Number,Long>
+	{
+		/**
+		 * The current target rate, in actions per second.
+		 */
+		protected double m_rate;
+
+		/**
+		 * Creates a new arrival process.
+		 */
+		public Arrivals()
+		{
+			super();
+			m_rate = 1;
+		}
+
+		@Override
+		public void tell(Number rate)
+		{
+			m_rate = rate.doubleValue();
+		}
+
+		@Override
+		public void reset()
+		{
+			m_rate = 1;
+		}
+
+		/**
+		 * Gets the average gap between two actions at the current rate.
+		 * @return The gap, in nanoseconds
+		 */
+		protected double getMeanGap()
+		{
+			return 1e9 / m_rate;
+		}
+
+		/**
+		 * Picks a gap following an exponential distribution.
+		 * @param p The picker producing uniform floats in [0,1[
+		 * @param mean The mean of the distribution
+		 * @return The gap, in nanoseconds
+		 */
+		protected static long exponential(Picker<Float> p, double mean)
+		{
+			return (long) (-Math.log(1 - p.pick()) * mean);
+		}
+	}
+
+	/**
+	 * Arrival process where actions are evenly spaced.
+	 */
+	public static class FixedRate extends Arrivals
+	{
+		/**
+		 * The fraction of nanosecond carried over from the previous gap, so
+		 * that the average rate is exact even when the gap is not an integer.
+		 */
+		protected double m_remainder;
+
+		/**
+		 * Creates a new arrival process.
+		 */
+		public FixedRate()
+		{
+			super();
+			m_remainder = 0;
+		}
+
+		@Override
+		public Long pick()
+		{
+			double gap = getMeanGap() + m_remainder;
+			long n = (long) gap;
+			m_remainder = gap - n;
+			return n;
+		}
+
+		@Override
+		public void reset()
+		{
+			super.reset();
+			m_remainder = 0;
+		}
+
+		@Override
+		public FixedRate duplicate(boolean with_state)
+		{
+			FixedRate f = new FixedRate();
+			if (with_state)
+			{
+				f.m_rate = m_rate;
+				f.m_remainder = m_remainder;
+			}
+			return f;
+		}
+	}
+
+	/**
+	 * Arrival process where actions arrive independently of each other
+	 * (a Poisson process): gaps follow an exponential distribution.
+	 */
+	public static class Poisson extends Arrivals
+	{
+		/**
+		 * The picker producing uniform floats in [0,1[.
+		 */
+		/*@ non_null @*/ protected final Picker<Float> m_floatSource;
+
+		/**
+		 * Creates a new arrival process.
+		 * @param float_source A picker producing uniform floats in [0,1[
+		 */
+		public Poisson(/*@ non_null @*/ Picker<Float> float_source)
+		{
+			super();
+			m_floatSource = float_source;
+		}
+
+		@Override
+		public Long pick()
+		{
+			return exponential(m_floatSource, getMeanGap());
+		}
+
+		@Override
+		public void reset()
+		{
+			super.reset();
+			m_floatSource.reset();
+		}
+
+		@Override
+		public Poisson duplicate(boolean with_state)
+		{
+			Poisson p = new Poisson(m_floatSource.duplicate(with_state));
+			if (with_state)
+			{
+				p.m_rate = m_rate;
+			}
+			return p;
+		}
+	}
+
+	/**
+	 * Arrival process where actions arrive in bursts. Bursts follow a Poisson
+	 * process, and each burst contains a fixed number of actions issued at
+	 * once; the average rate is the target rate.
+	 */
+	public static class Bursty extends Arrivals
+	{
+		/**
+		 * The picker producing uniform floats in [0,1[.
+		 */
+		/*@ non_null @*/ protected final Picker<Float> m_floatSource;
+
+		/**
+		 * The number of actions in each burst.
+		 */
+		protected final int m_burstSize;
+
+		/**
+		 * The number of actions left in the current burst.
+		 */
+		protected int m_left;
+
+		/**
+		 * Creates a new arrival process.
+		 * @param float_source A picker producing uniform floats in [0,1[
+		 * @param burst_size The number of actions in each burst
+		 */
+		public Bursty(/*@ non_null @*/ Picker<Float> float_source, int burst_size)
+		{
+			super();
+			m_floatSource = float_source;
+			m_burstSize = Math.max(1, burst_size);
+			m_left = 0;
+		}
+
+		@Override
+		public Long pick()
+		{
+			if (m_left > 0)
+			{
+				m_left--;
+				return 0L;
+			}
+			m_left = m_burstSize - 1;
+			return exponential(m_floatSource, getMeanGap() * m_burstSize);
+		}
+
+		@Override
+		public void reset()
+		{
+			super.reset();
+			m_floatSource.reset();
+			m_left = 0;
+		}
+
+		@Override
+		public Bursty duplicate(boolean with_state)
+		{
+			Bursty b = new Bursty(m_floatSource.duplicate(with_state), m_burstSize);
+			if (with_state)
+			{
+				b.m_rate = m_rate;
+				b.m_left = m_left;
+			}
+			return b;
+		}
+	}
+}
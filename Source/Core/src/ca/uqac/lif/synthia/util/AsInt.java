@@ -18,14 +18,20 @@
  */
 package ca.uqac.lif.synthia.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.AffineTransform.AffineTransformInteger;
+import ca.uqac.lif.synthia.random.RandomInteger;
 
 /**
  * Utility picker that converts an input into an integer.
  * @author Sylvain Hallé
  * @ingroup API
  */
-public class AsInt implements Picker<Integer>
+public class AsInt implements Picker<Integer>, PickerCompiler.Fusible, PickerSimplifier.Simplifiable
 {
 	/**
 	 * The picker from which to take the input objects.
@@ -45,7 +51,16 @@ public class AsInt implements Picker<Integer>
 	@Override
 	public Integer pick()
 	{
-		Object o = m_picker.pick();
+		return intValue(m_picker.pick());
+	}
+
+	/**
+	 * Converts an object into an integer.
+	 * @param o The object
+	 * @return The integer value of the object if it is a number, 0 otherwise
+	 */
+	protected static int intValue(/*@ null @*/ Object o)
+	{
 		if (o == null)
 		{
 			return 0;
@@ -57,12 +72,46 @@ public class AsInt implements Picker<Integer>
 		return 0;
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, AsInt.class))
+		{
+			return null;
+		}
+		MethodHandle h = c.fuse(m_picker);
+		Class<?> type = h.type().returnType();
+		if (type.isPrimitive() && type != boolean.class)
+		{
+			return PickerCompiler.convert(h, int.class);
+		}
+		MethodHandle f = MethodHandles.lookup().findStatic(AsInt.class, "intValue", MethodType.methodType(int.class, Object.class));
+		return MethodHandles.filterReturnValue(PickerCompiler.convert(h, Object.class), f);
+	}
+
 	@Override
 	public AsInt duplicate(boolean with_state)
 	{
 		return new AsInt(m_picker.duplicate(with_state));
 	}
 
+	@Override
+	public Picker<?> simplify(PickerSimplifier s)
+	{
+		Picker<?> p = s.reduce(m_picker);
+		if (p instanceof Constant)
+		{
+			return s.fold(this, new AsInt(p));
+		}
+		if (p instanceof RandomInteger || p instanceof AffineTransformInteger || p instanceof AsInt)
+		{
+			// The picker already produces non-null integers
+			s.report(PickerSimplifier.REDUNDANT_CONVERSION, this, p);
+			return p;
+		}
+		return p == m_picker ? this : new AsInt(p);
+	}
+
 	@Override
 	public void reset()
 	{
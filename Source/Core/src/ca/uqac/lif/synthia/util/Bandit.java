@@ -0,0 +1,398 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Reactive;
+
+/**
+ * Picks an element from one of several child pickers, called <em>arms</em>,
+ * and learns which arms are the most productive from feedback. Each call to
+ * {@link #pick()} selects an arm and returns an element produced by it; the
+ * caller then passes the reward obtained with this element (for instance, 1
+ * if it caused an error and 0 otherwise, or a normalized latency) to
+ * {@link #tell(Number) tell()}, which credits it to the arm that was
+ * selected last. Contrary to {@link Choice}, whose probabilities are fixed,
+ * a bandit gradually favors the arms with the highest mean reward, while
+ * still exploring the others from time to time.
+ * <p>
+ * The statistics of each arm are kept in arrays of primitive values; a
+ * reward is recorded in constant time, and selecting an arm takes time
+ * proportional to the number of arms, with no allocation. Two strategies are
+ * available: {@link Ucb}, which is deterministic, and {@link Thompson},
+ * which samples the expected reward of each arm. Both expect rewards in
+ * the interval [0,1].
+ * 
+ * @param <T> The type of the objects to pick
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public abstract class Bandit<T> implements Reactive<Number,T>
+{
+	/**
+	 * The child pickers.
+	 */
+	/*@ non_null @*/ protected List<Picker<T>> m_arms;
+
+	/**
+	 * The number of rewards received by each arm.
+	 */
+	/*@ non_null @*/ protected long[] m_pulls;
+
+	/**
+	 * The sum of the rewards received by each arm.
+	 */
+	/*@ non_null @*/ protected double[] m_sums;
+
+	/**
+	 * The sum of the squared rewards received by each arm.
+	 */
+	/*@ non_null @*/ protected double[] m_squares;
+
+	/**
+	 * The total number of rewards received.
+	 */
+	protected long m_total;
+
+	/**
+	 * The arm selected by the last call to {@link #pick()}, or -1 if no arm
+	 * has been selected since the last reward.
+	 */
+	protected int m_last;
+
+	/**
+	 * Creates a new bandit with no arm.
+	 */
+	public Bandit()
+	{
+		super();
+		m_arms = new ArrayList<Picker<T>>();
+		m_pulls = new long[0];
+		m_sums = new double[0];
+		m_squares = new double[0];
+		m_total = 0;
+		m_last = -1;
+	}
+
+	/**
+	 * Adds an arm.
+	 * @param p The picker of the arm
+	 * @return This bandit
+	 */
+	/*@ non_null @*/ public Bandit<T> add(/*@ non_null @*/ Picker<T> p)
+	{
+		m_arms.add(p);
+		int n = m_arms.size();
+		m_pulls = Arrays.copyOf(m_pulls, n);
+		m_sums = Arrays.copyOf(m_sums, n);
+		m_squares = Arrays.copyOf(m_squares, n);
+		return this;
+	}
+
+	/**
+	 * Adds an arm that always produces the same object.
+	 * @param t The object
+	 * @return This bandit
+	 */
+	/*@ non_null @*/ public Bandit<T> add(/*@ non_null @*/ T t)
+	{
+		return add(new Constant<T>(t));
+	}
+
+	@Override
+	public T pick()
+	{
+		if (m_arms.isEmpty())
+		{
+			return null;
+		}
+		m_last = select();
+		return m_arms.get(m_last).pick();
+	}
+
+	/**
+	 * Credits a reward to the arm selected by the last call to
+	 * {@link #pick()}. A reward received without a preceding call to
+	 * <tt>pick()</tt> is ignored.
+	 * @param reward The reward, normally between 0 and 1
+	 */
+	@Override
+	public void tell(Number reward)
+	{
+		if (m_last < 0)
+		{
+			return;
+		}
+		double r = reward.doubleValue();
+		m_pulls[m_last]++;
+		m_sums[m_last] += r;
+		m_squares[m_last] += r * r;
+		m_total++;
+		m_last = -1;
+	}
+
+	/**
+	 * Gets the arm selected by the last call to {@link #pick()}.
+	 * @return The index of the arm, or -1 if a reward has been received
+	 * since
+	 */
+	/*@ pure @*/ public int getLastArm()
+	{
+		return m_last;
+	}
+
+	/**
+	 * Gets the number of rewards received by an arm.
+	 * @param arm The index of the arm
+	 * @return The number of rewards
+	 */
+	/*@ pure @*/ public long getPulls(int arm)
+	{
+		return m_pulls[arm];
+	}
+
+	/**
+	 * Gets the mean reward received by an arm.
+	 * @param arm The index of the arm
+	 * @return The mean reward, or 0 if the arm has received no reward
+	 */
+	/*@ pure @*/ public double getMeanReward(int arm)
+	{
+		return m_pulls[arm] == 0 ? 0 : m_sums[arm] / m_pulls[arm];
+	}
+
+	/**
+	 * Gets the number of arms of this bandit.
+	 * @return The number of arms
+	 */
+	/*@ pure @*/ public int getArmCount()
+	{
+		return m_arms.size();
+	}
+
+	/**
+	 * Puts the bandit back into its initial state. This resets the arms and
+	 * forgets all the rewards received.
+	 */
+	@Override
+	public void reset()
+	{
+		for (Picker<T> p : m_arms)
+		{
+			p.reset();
+		}
+		Arrays.fill(m_pulls, 0);
+		Arrays.fill(m_sums, 0);
+		Arrays.fill(m_squares, 0);
+		m_total = 0;
+		m_last = -1;
+	}
+
+	/**
+	 * Copies the arms and, optionally, the statistics of this bandit into
+	 * another one.
+	 * @param b The other bandit
+	 * @param with_state Whether to copy the statistics and the state of the
+	 * arms
+	 * @return The other bandit
+	 */
+	protected Bandit<T> copyInto(Bandit<T> b, boolean with_state)
+	{
+		for (Picker<T> p : m_arms)
+		{
+			b.add(p.duplicate(with_state));
+		}
+		if (with_state)
+		{
+			b.m_pulls = Arrays.copyOf(m_pulls, m_pulls.length);
+			b.m_sums = Arrays.copyOf(m_sums, m_sums.length);
+			b.m_squares = Arrays.copyOf(m_squares, m_squares.length);
+			b.m_total = m_total;
+			b.m_last = m_last;
+		}
+		return b;
+	}
+
+	/**
+	 * Selects the arm to use for the next element.
+	 * @return The index of the arm
+	 */
+	protected abstract int select();
+
+	@Override
+	public abstract Bandit<T> duplicate(boolean with_state);
+
+	/**
+	 * Bandit using the UCB1 strategy. Each arm is first tried once; the arm
+	 * with the highest upper confidence bound
+	 * <i>&mu;<sub>i</sub></i> + <i>c</i>&radic;(ln&nbsp;<i>N</i>&nbsp;/&nbsp;<i>n<sub>i</sub></i>)
+	 * is then selected, where <i>&mu;<sub>i</sub></i> is the mean reward of
+	 * the arm, <i>n<sub>i</sub></i> its number of rewards, <i>N</i> the total
+	 * number of rewards and <i>c</i> an exploration coefficient.
+	 * @param <T> The type of the objects to pick
+	 */
+	public static class Ucb<T> extends Bandit<T>
+	{
+		/**
+		 * The exploration coefficient.
+		 */
+		protected double m_exploration;
+
+		/**
+		 * Creates a new UCB1 bandit with an exploration coefficient of
+		 * &radic;2.
+		 */
+		public Ucb()
+		{
+			super();
+			m_exploration = Math.sqrt(2);
+		}
+
+		/**
+		 * Sets the exploration coefficient. Higher values try the arms with a
+		 * lower mean reward more often.
+		 * @param c The coefficient
+		 * @return This bandit
+		 */
+		/*@ non_null @*/ public Ucb<T> setExploration(double c)
+		{
+			m_exploration = c;
+			return this;
+		}
+
+		@Override
+		protected int select()
+		{
+			double log_total = Math.log(Math.max(1, m_total));
+			int best = 0;
+			double best_bound = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < m_pulls.length; i++)
+			{
+				if (m_pulls[i] == 0)
+				{
+					return i;
+				}
+				double bound = m_sums[i] / m_pulls[i] + m_exploration * Math.sqrt(log_total / m_pulls[i]);
+				if (bound > best_bound)
+				{
+					best = i;
+					best_bound = bound;
+				}
+			}
+			return best;
+		}
+
+		@Override
+		public Ucb<T> duplicate(boolean with_state)
+		{
+			Ucb<T> b = new Ucb<T>();
+			b.m_exploration = m_exploration;
+			copyInto(b, with_state);
+			return b;
+		}
+	}
+
+	/**
+	 * Bandit using Thompson sampling. For each arm, an expected reward is
+	 * drawn from a normal distribution centered on the mean reward of the
+	 * arm, and whose variance shrinks as the arm receives more rewards; the
+	 * arm with the highest draw is selected. Arms that have received no
+	 * reward are drawn around a prior mean of 1/2.
+	 * @param <T> The type of the objects to pick
+	 */
+	public static class Thompson<T> extends Bandit<T>
+	{
+		/**
+		 * The variance assumed for an arm with too few rewards to estimate it.
+		 */
+		protected static final double PRIOR_VARIANCE = 0.25;
+
+		/**
+		 * A picker providing the uniform values used to draw expected rewards.
+		 */
+		/*@ non_null @*/ protected Picker<Float> m_floatPicker;
+
+		/**
+		 * Creates a new Thompson sampling bandit.
+		 * @param picker A picker providing uniform values in [0,1], used to draw
+		 * expected rewards
+		 */
+		public Thompson(/*@ non_null @*/ Picker<Float> picker)
+		{
+			super();
+			m_floatPicker = picker;
+		}
+
+		@Override
+		protected int select()
+		{
+			int best = 0;
+			double best_draw = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < m_pulls.length; i++)
+			{
+				long n = m_pulls[i];
+				// One pseudo-observation of the prior mean 1/2
+				double mean = (m_sums[i] + 0.5) / (n + 1);
+				double variance = PRIOR_VARIANCE;
+				if (n > 1)
+				{
+					variance = Math.max((m_squares[i] - m_sums[i] * m_sums[i] / n) / (n - 1), 1d / n);
+				}
+				double draw = mean + gaussian() * Math.sqrt(variance / (n + 1));
+				if (draw > best_draw)
+				{
+					best = i;
+					best_draw = draw;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Draws a value from the standard normal distribution, using the
+		 * Box-Muller transform.
+		 * @return The value
+		 */
+		protected double gaussian()
+		{
+			double u = Math.max(m_floatPicker.pick(), Float.MIN_VALUE);
+			double v = m_floatPicker.pick();
+			return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+		}
+
+		@Override
+		public void reset()
+		{
+			super.reset();
+			m_floatPicker.reset();
+		}
+
+		@Override
+		public Thompson<T> duplicate(boolean with_state)
+		{
+			Thompson<T> b = new Thompson<T>(m_floatPicker.duplicate(with_state));
+			copyInto(b, with_state);
+			return b;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.Reseeder;
+
+/**
+ * Generates a large number of values from a picker, using several
+ * threads. The values to produce are split into <em>blocks</em> of fixed
+ * size; each block is produced by its own copy of the picker, obtained with
+ * {@link Picker#duplicate(boolean) duplicate(false)} and reseeded by a
+ * {@link Reseeder} with a seed derived from a master seed and the index of
+ * the block. Blocks are produced by the threads of a {@link ForkJoinPool}.
+ * <p>
+ * Since the values of each block only depend on the master seed, the size
+ * of the blocks and the index of the block, the values produced are the
+ * same regardless of the number of threads used. They can be passed to a
+ * consumer in two ways:
+ * <ul>
+ * <li><em>in order</em>: the consumer is called by the thread calling
+ * {@link #generate(long, Consumer, boolean) generate}, and receives the
+ * values of block 0, then those of block 1, etc.; the sequence it receives
+ * is therefore always the same. To bound memory, at most a few blocks per
+ * thread are produced ahead of the block being consumed.</li>
+ * <li><em>unordered</em>: each block is passed to the consumer by the
+ * thread that produced it, as soon as it is produced; the consumer must
+ * then be thread-safe. The values of each block are still passed in order,
+ * but blocks may be interleaved.</li>
+ * </ul>
+ * If the copy of a block has no more element, the block ends early.
+ * 
+ * @param <T> The type of the elements to generate
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class BulkGenerator<T>
+{
+	/**
+	 * The default number of values in a block.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+	/**
+	 * The number of blocks per thread that can be produced ahead of the
+	 * block being consumed, in ordered mode.
+	 */
+	protected static final int BLOCKS_AHEAD = 4;
+
+	/**
+	 * The picker of which each block receives a copy.
+	 */
+	/*@ non_null @*/ protected final Picker<T> m_picker;
+
+	/**
+	 * The master seed from which the seed of each block is derived.
+	 */
+	protected final long m_seed;
+
+	/**
+	 * The number of values in a block.
+	 */
+	protected int m_blockSize;
+
+	/**
+	 * The pool producing the blocks.
+	 */
+	/*@ non_null @*/ protected ForkJoinPool m_pool;
+
+	/**
+	 * Creates a new bulk generator using the common fork-join pool.
+	 * @param picker The picker of which each block receives a copy
+	 * @param seed The master seed from which the seed of each block is
+	 * derived
+	 */
+	public BulkGenerator(/*@ non_null @*/ Picker<T> picker, long seed)
+	{
+		super();
+		m_picker = picker;
+		m_seed = seed;
+		m_blockSize = DEFAULT_BLOCK_SIZE;
+		m_pool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Sets the number of values in a block. Changing the size of blocks
+	 * changes the values generated.
+	 * @param size The size
+	 * @return This generator
+	 */
+	/*@ non_null @*/ public BulkGenerator<T> setBlockSize(int size)
+	{
+		m_blockSize = Math.max(1, size);
+		return this;
+	}
+
+	/**
+	 * Sets the pool producing the blocks.
+	 * @param pool The pool
+	 * @return This generator
+	 */
+	/*@ non_null @*/ public BulkGenerator<T> setPool(/*@ non_null @*/ ForkJoinPool pool)
+	{
+		m_pool = pool;
+		return this;
+	}
+
+	/**
+	 * Generates values and passes them to a consumer.
+	 * @param n The number of values to generate
+	 * @param sink The consumer receiving the values
+	 * @param ordered Set to {@code true} to pass the values in order from the
+	 * calling thread, {@code false} to pass each block from the thread that
+	 * produced it
+	 */
+	public void generate(long n, /*@ non_null @*/ final Consumer<? super T> sink, boolean ordered)
+	{
+		final long blocks = (n + m_blockSize - 1) / m_blockSize;
+		if (!ordered)
+		{
+			m_pool.invoke(new BlockRange(n, 0, blocks, sink));
+			return;
+		}
+		int window = BLOCKS_AHEAD * m_pool.getParallelism();
+		Deque<ForkJoinTask<Object[]>> pending = new ArrayDeque<ForkJoinTask<Object[]>>(window);
+		long submitted = 0;
+		for (long b = 0; b < blocks; b++)
+		{
+			while (submitted < blocks && pending.size() < window)
+			{
+				final long index = submitted++;
+				final long count = Math.min(m_blockSize, n - index * m_blockSize);
+				pending.add(m_pool.submit(new Callable<Object[]>()
+				{
+					@Override
+					public Object[] call()
+					{
+						return produce(index, count);
+					}
+				}));
+			}
+			for (Object o : pending.remove().join())
+			{
+				@SuppressWarnings("unchecked")
+				T t = (T) o;
+				sink.accept(t);
+			}
+		}
+	}
+
+	/**
+	 * Produces the values of a block.
+	 * @param index The index of the block
+	 * @param count The number of values in the block
+	 * @return The values, in an array that is shorter than <tt>count</tt> if
+	 * the picker has no more element
+	 */
+	protected Object[] produce(long index, long count)
+	{
+		Picker<T> p = m_picker.duplicate(false);
+		Reseeder.reseed(p, Reseeder.derive(m_seed, index));
+		Object[] values = new Object[(int) count];
+		for (int i = 0; i < count; i++)
+		{
+			try
+			{
+				values[i] = p.pick();
+			}
+			catch (NoMoreElementException e)
+			{
+				Object[] shorter = new Object[i];
+				System.arraycopy(values, 0, shorter, 0, i);
+				return shorter;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Task producing a range of blocks in unordered mode, by recursively
+	 * splitting the range in two.
+	 */
+	protected class BlockRange extends RecursiveAction
+	{
+		/**
+		 * Dummy UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The total number of values to generate.
+		 */
+		protected final long m_n;
+
+		/**
+		 * The index of the first block of the range.
+		 */
+		protected final long m_from;
+
+		/**
+		 * The index after the last block of the range.
+		 */
+		protected final long m_to;
+
+		/**
+		 * The consumer receiving the values.
+		 */
+		/*@ non_null @*/ protected final Consumer<? super T> m_sink;
+
+		/**
+		 * Creates a new task.
+		 * @param n The total number of values to generate
+		 * @param from The index of the first block of the range
+		 * @param to The index after the last block of the range
+		 * @param sink The consumer receiving the values
+		 */
+		public BlockRange(long n, long from, long to, /*@ non_null @*/ Consumer<? super T> sink)
+		{
+			super();
+			m_n = n;
+			m_from = from;
+			m_to = to;
+			m_sink = sink;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		protected void compute()
+		{
+			if (m_to - m_from > 1)
+			{
+				long mid = (m_from + m_to) >>> 1;
+				invokeAll(new BlockRange(m_n, m_from, mid, m_sink), new BlockRange(m_n, mid, m_to, m_sink));
+				return;
+			}
+			for (long b = m_from; b < m_to; b++)
+			{
+				for (Object o : produce(b, Math.min(m_blockSize, m_n - b * m_blockSize)))
+				{
+					m_sink.accept((T) o);
+				}
+			}
+		}
+	}
+}
@@ -18,6 +18,9 @@
  */
 package ca.uqac.lif.synthia.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,7 +44,7 @@ import ca.uqac.lif.synthia.relative.PickSmallerComparable;
  * @param <T> The type of the object to pick
  * @ingroup API
  */
-public class Choice<T> implements Shrinkable<T>
+public class Choice<T> implements Shrinkable<T>, PickerCompiler.Fusible, PickerSimplifier.Simplifiable
 {
 	/**
 	 * A list storing each element with its associated probability
@@ -151,6 +154,85 @@ public class Choice<T> implements Shrinkable<T>
 		return m_choices.get(index).getObject();
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, Choice.class))
+		{
+			return null;
+		}
+		MethodHandle below = MethodHandles.lookup().findStatic(Choice.class, "isBelow", MethodType.methodType(boolean.class, float.class, float.class));
+		MethodHandle f = c.fuse(m_floatPicker, float.class);
+		float[] probs = new float[m_choices.size()];
+		MethodHandle[] alternatives = new MethodHandle[probs.length];
+		float total_prob = 0f;
+		for (int i = 0; i < probs.length; i++)
+		{
+			total_prob += m_choices.get(i).getProbability();
+			probs[i] = total_prob;
+			alternatives[i] = MethodHandles.dropArguments(c.fuse(m_choices.get(i).getPicker(), Object.class), 0, float.class);
+		}
+		// A chain of tests on the float, built from the last alternative
+		MethodHandle chain = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, float.class);
+		for (int i = probs.length - 1; i >= 0; i--)
+		{
+			chain = MethodHandles.guardWithTest(MethodHandles.insertArguments(below, 1, probs[i]), alternatives[i], chain);
+		}
+		return MethodHandles.foldArguments(chain, f);
+	}
+
+	@Override
+	public Picker<?> simplify(PickerSimplifier s)
+	{
+		Picker<Float> fp = s.reduce(m_floatPicker);
+		// The largest value the float picker can produce, if known
+		float max = Float.POSITIVE_INFINITY;
+		if (fp.getClass() == RandomFloat.class && ((RandomFloat) fp).getMin() == 0)
+		{
+			max = ((RandomFloat) fp).getMax();
+		}
+		Choice<T> c = new Choice<T>(fp);
+		boolean changed = fp != m_floatPicker, dead = false;
+		float total_prob = 0f;
+		for (int i = 0; i < m_choices.size(); i++)
+		{
+			ProbabilityChoice<T> pc = m_choices.get(i);
+			if (i > 0 && (pc.getProbability() == 0 || total_prob >= max))
+			{
+				// Any float selecting this alternative selects a previous one
+				dead = true;
+				continue;
+			}
+			total_prob += pc.getProbability();
+			Picker<T> p = s.reduce(pc.getPicker());
+			changed |= p != pc.getPicker();
+			c.add(p, pc.getProbability());
+		}
+		if (dead)
+		{
+			s.report(PickerSimplifier.DEAD_BRANCH, this, c);
+		}
+		if (c.m_choices.size() == 1 && total_prob >= max && fp != RandomFloat.instance && !s.isShared(fp))
+		{
+			// The single alternative is always selected: the float picker can go
+			Picker<T> p = c.m_choices.get(0).getPicker();
+			s.report(PickerSimplifier.DEAD_BRANCH, dead ? c : this, p);
+			return p;
+		}
+		return changed || dead ? c : this;
+	}
+
+	/**
+	 * Determines if a float falls below a cumulative probability.
+	 * @param f The float
+	 * @param p The probability
+	 * @return <tt>true</tt> if the float is smaller or equal
+	 */
+	protected static boolean isBelow(float f, float p)
+	{
+		return f <= p;
+	}
+
 	/**
 	 * Creates a copy of the element picker.
 	 * @param with_state If set to <tt>false</tt>, the returned copy is set to
@@ -225,6 +307,15 @@ public class Choice<T> implements Shrinkable<T>
 			return m_object.pick();
 		}
 
+		/**
+		 * Gets the picker producing the object of this association
+		 * @return The picker
+		 */
+		/*@ pure non_null @*/ public Picker<T> getPicker()
+		{
+			return m_object;
+		}
+
 
 		/**
 		 * Returns the last picked element and his probability to get picked into a string.
@@ -237,14 +328,16 @@ public class Choice<T> implements Shrinkable<T>
 		}
 		
 		/**
-		 * Duplicates this probability-node association
+		 * Duplicates this probability-node association. The picker of the
+		 * association is duplicated as well, so that the copy does not share
+		 * it with the original.
 		 * @param with_state If set to <tt>true</tt>, the node is duplicated
 		 * with its state
 		 * @return A duplicate of this association
 		 */
 		/*@ pure non_null @*/ public ProbabilityChoice<T> duplicate(boolean with_state)
 		{
-			return new ProbabilityChoice<T>(m_object, m_probability);
+			return new ProbabilityChoice<T>(m_object.duplicate(with_state), m_probability);
 		}
 	}
 	
@@ -256,6 +349,16 @@ public class Choice<T> implements Shrinkable<T>
 	{
 		return m_choices.size();
 	}
+
+	/**
+	 * Gets one of the alternatives available in this picker.
+	 * @param index The index of the alternative
+	 * @return The alternative
+	 */
+	/*@ pure non_null @*/ public ProbabilityChoice<T> getChoice(int index)
+	{
+		return m_choices.get(index);
+	}
 	
 	@Override
 	public Shrinkable<T> shrink(T o, Picker<Float> decision, float m)
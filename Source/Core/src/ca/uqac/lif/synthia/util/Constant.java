@@ -18,6 +18,8 @@
  */
 package ca.uqac.lif.synthia.util;
 
+import java.lang.invoke.MethodHandle;
+
 import ca.uqac.lif.synthia.Picker;
 import ca.uqac.lif.synthia.Shrinkable;
 import ca.uqac.lif.synthia.random.RandomFloat;
@@ -34,7 +36,7 @@ import ca.uqac.lif.synthia.random.RandomFloat;
  * </pre>
  * @ingroup API
  */
-public class Constant<T> implements Shrinkable<T>
+public class Constant<T> implements Shrinkable<T>, PickerCompiler.Fusible
 {
 	/**
 	 * The value to return
@@ -61,6 +63,16 @@ public class Constant<T> implements Shrinkable<T>
 		return m_value;
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c)
+	{
+		if (!PickerCompiler.isKnown(this, Constant.class))
+		{
+			return null;
+		}
+		return PickerCompiler.constant(m_value);
+	}
+
 
 	/**
 	 * Puts the constant back into its initial state. This means that the
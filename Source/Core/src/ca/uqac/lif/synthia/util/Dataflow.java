@@ -0,0 +1,614 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Reactive;
+
+/**
+ * Graph of values computed from one another, whose results are passed to
+ * {@link Reactive} pickers. Instead of calling
+ * {@link Reactive#tell(Object) tell()} by hand each time a parameter
+ * changes, one declares the parameters as nodes of the graph:
+ * <ul>
+ * <li>an {@link Input} holds a value that is set from the outside;</li>
+ * <li>a {@link Derived} node computes its value from that of other nodes,
+ * using a {@link Formula};</li>
+ * <li>a {@link Bound} picker wraps a reactive picker and is told the value
+ * of a node before each pick, if this value changed since the last
+ * time.</li>
+ * </ul>
+ * For example, the following graph drives the rate of a
+ * {@link ca.uqac.lif.synthia.random.PoissonInteger PoissonInteger} from
+ * two inputs:
+ * <pre>
+ * Dataflow g = new Dataflow();
+ * Input&lt;Float&gt; users = g.input(10f), load = g.input(0.5f);
+ * Derived&lt;Float&gt; rate = g.derive(new Formula&lt;Float&gt;() {
+ *   public Float evaluate(Object ... in) {
+ *     return (Float) in[0] * (Float) in[1];
+ *   }}, users, load);
+ * Picker&lt;Integer&gt; arrivals = g.bind(new PoissonInteger(1), rate);
+ * </pre>
+ * Evaluation is lazy and incremental. Setting an input only marks the
+ * nodes that depend on it as dirty; these nodes are re-evaluated when a
+ * bound picker that needs them is asked for a value, and not before. A
+ * dirty node whose inputs all kept their value (as determined by
+ * {@link Object#equals(Object) equals()}) is not re-evaluated, and a node
+ * whose new value is equal to the previous one does not cause its
+ * dependents to be re-evaluated either. Several inputs can be changed at
+ * once through a {@link Batch}.
+ * <p>
+ * The graph must remain acyclic: connecting two nodes in a way that would
+ * close a cycle throws a {@link CycleException}. Like most pickers, a
+ * dataflow graph is not thread-safe.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Dataflow
+{
+	/**
+	 * The number of times a derived node of this graph has been evaluated.
+	 */
+	protected long m_evaluations;
+
+	/**
+	 * Creates a new empty dataflow graph.
+	 */
+	public Dataflow()
+	{
+		super();
+		m_evaluations = 0;
+	}
+
+	/**
+	 * Adds an input node to the graph.
+	 * @param <T> The type of the value of the node
+	 * @param value The initial value of the node
+	 * @return The node
+	 */
+	/*@ non_null @*/ public <T> Input<T> input(/*@ null @*/ T value)
+	{
+		return new Input<T>(this, value);
+	}
+
+	/**
+	 * Adds a derived node to the graph.
+	 * @param <T> The type of the value of the node
+	 * @param f The formula computing the value of the node
+	 * @param inputs The nodes whose values are passed to the formula, in
+	 * this order
+	 * @return The node
+	 */
+	/*@ non_null @*/ public <T> Derived<T> derive(/*@ non_null @*/ Formula<T> f, /*@ non_null @*/ Node<?> ... inputs)
+	{
+		Derived<T> d = new Derived<T>(this, f);
+		for (Node<?> in : inputs)
+		{
+			connect(in, d);
+		}
+		return d;
+	}
+
+	/**
+	 * Adds an edge to the graph, making the value of a node the last
+	 * argument of the formula of a derived node.
+	 * @param from The node whose value is passed
+	 * @param to The derived node receiving the value
+	 * @throws CycleException If the edge would close a cycle in the graph
+	 */
+	public void connect(/*@ non_null @*/ Node<?> from, /*@ non_null @*/ Derived<?> to)
+	{
+		if (from.m_graph != this || to.m_graph != this)
+		{
+			throw new IllegalArgumentException("Nodes belong to another graph");
+		}
+		if (dependsOn(from, to))
+		{
+			throw new CycleException(from, to);
+		}
+		to.m_inputs.add(from);
+		// The new input is seen as changed on the next evaluation
+		to.m_inputVersions = Arrays.copyOf(to.m_inputVersions, to.m_inputs.size());
+		to.m_inputVersions[to.m_inputs.size() - 1] = -1;
+		from.m_dependents.add(to);
+		to.markDirty();
+	}
+
+	/**
+	 * Wraps a reactive picker so that it is told the value of a node before
+	 * each pick.
+	 * @param <U> The type of the value told to the picker
+	 * @param <T> The type of the objects produced by the picker
+	 * @param r The reactive picker
+	 * @param parameter The node holding the value to tell the picker
+	 * @return The bound picker
+	 */
+	/*@ non_null @*/ public <U,T> Bound<U,T> bind(/*@ non_null @*/ Reactive<U,T> r, /*@ non_null @*/ Node<? extends U> parameter)
+	{
+		return new Bound<U,T>(r, parameter);
+	}
+
+	/**
+	 * Starts a batch of input updates, which take effect together when
+	 * {@link Batch#commit()} is called.
+	 * @return The batch
+	 */
+	/*@ non_null @*/ public Batch batch()
+	{
+		return new Batch(this);
+	}
+
+	/**
+	 * Gets the number of times a derived node of this graph has been
+	 * evaluated since the graph was created.
+	 * @return The number of evaluations
+	 */
+	/*@ pure @*/ public long getEvaluationCount()
+	{
+		return m_evaluations;
+	}
+
+	/**
+	 * Determines if a node depends, directly or not, on another one.
+	 * @param n The node
+	 * @param ancestor The other node
+	 * @return <tt>true</tt> if <tt>n</tt> is <tt>ancestor</tt> or one of its
+	 * descendants
+	 */
+	protected static boolean dependsOn(/*@ non_null @*/ Node<?> n, /*@ non_null @*/ Node<?> ancestor)
+	{
+		Set<Node<?>> visited = new HashSet<Node<?>>();
+		List<Node<?>> to_visit = new ArrayList<Node<?>>();
+		to_visit.add(n);
+		while (!to_visit.isEmpty())
+		{
+			Node<?> current = to_visit.remove(to_visit.size() - 1);
+			if (current == ancestor)
+			{
+				return true;
+			}
+			if (visited.add(current) && current instanceof Derived)
+			{
+				to_visit.addAll(((Derived<?>) current).m_inputs);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A node of a dataflow graph, holding a value.
+	 * @param <T> The type of the value
+	 */
+	public abstract static class Node<T>
+	{
+		/**
+		 * The graph this node belongs to.
+		 */
+		/*@ non_null @*/ protected final Dataflow m_graph;
+
+		/**
+		 * The derived nodes that receive the value of this node.
+		 */
+		/*@ non_null @*/ protected final List<Derived<?>> m_dependents;
+
+		/**
+		 * The current value of the node.
+		 */
+		/*@ null @*/ protected T m_value;
+
+		/**
+		 * A number incremented each time the value of the node changes.
+		 */
+		protected long m_version;
+
+		/**
+		 * Creates a new node.
+		 * @param graph The graph this node belongs to
+		 * @param value The initial value of the node
+		 */
+		protected Node(/*@ non_null @*/ Dataflow graph, /*@ null @*/ T value)
+		{
+			super();
+			m_graph = graph;
+			m_dependents = new ArrayList<Derived<?>>(2);
+			m_value = value;
+			m_version = 0;
+		}
+
+		/**
+		 * Gets the current value of the node, re-evaluating the nodes it
+		 * depends on if necessary.
+		 * @return The value
+		 */
+		/*@ null @*/ public abstract T get();
+
+		/**
+		 * Gets a number that changes each time the value of the node
+		 * changes. This method only returns an up-to-date number after a
+		 * call to {@link #get()}.
+		 * @return The version number
+		 */
+		/*@ pure @*/ public long getVersion()
+		{
+			return m_version;
+		}
+
+		/**
+		 * Changes the value of the node, and marks its dependents as dirty
+		 * if this value is different from the previous one.
+		 * @param value The new value
+		 */
+		protected void update(/*@ null @*/ T value)
+		{
+			if (m_value == null ? value == null : m_value.equals(value))
+			{
+				return;
+			}
+			m_value = value;
+			m_version++;
+			for (Derived<?> d : m_dependents)
+			{
+				d.markDirty();
+			}
+		}
+	}
+
+	/**
+	 * A node whose value is set from outside the graph.
+	 * @param <T> The type of the value
+	 */
+	public static class Input<T> extends Node<T>
+	{
+		/**
+		 * Creates a new input node. Use {@link Dataflow#input(Object)}
+		 * instead of calling this constructor directly.
+		 * @param graph The graph this node belongs to
+		 * @param value The initial value of the node
+		 */
+		protected Input(/*@ non_null @*/ Dataflow graph, /*@ null @*/ T value)
+		{
+			super(graph, value);
+		}
+
+		/**
+		 * Sets the value of the node. The nodes that depend on it are only
+		 * marked as dirty, and are re-evaluated when their value is needed.
+		 * @param value The new value
+		 */
+		public void set(/*@ null @*/ T value)
+		{
+			update(value);
+		}
+
+		@Override
+		public T get()
+		{
+			return m_value;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Input(" + m_value + ")";
+		}
+	}
+
+	/**
+	 * A node whose value is computed from that of other nodes.
+	 * @param <T> The type of the value
+	 */
+	public static class Derived<T> extends Node<T>
+	{
+		/**
+		 * The formula computing the value of the node.
+		 */
+		/*@ non_null @*/ protected final Formula<T> m_formula;
+
+		/**
+		 * The nodes whose values are passed to the formula.
+		 */
+		/*@ non_null @*/ protected final List<Node<?>> m_inputs;
+
+		/**
+		 * The version of each input when the node was last evaluated.
+		 */
+		/*@ non_null @*/ protected long[] m_inputVersions;
+
+		/**
+		 * A flag indicating that the value of some ancestor may have changed
+		 * since the node was last evaluated.
+		 */
+		protected boolean m_dirty;
+
+		/**
+		 * A flag indicating that the formula has been evaluated at least once.
+		 */
+		protected boolean m_evaluated;
+
+		/**
+		 * Creates a new derived node. Use
+		 * {@link Dataflow#derive(Formula, Node...)} instead of calling this
+		 * constructor directly.
+		 * @param graph The graph this node belongs to
+		 * @param f The formula computing the value of the node
+		 */
+		protected Derived(/*@ non_null @*/ Dataflow graph, /*@ non_null @*/ Formula<T> f)
+		{
+			super(graph, null);
+			m_formula = f;
+			m_inputs = new ArrayList<Node<?>>(2);
+			m_inputVersions = new long[0];
+			m_dirty = true;
+			m_evaluated = false;
+		}
+
+		@Override
+		public T get()
+		{
+			if (!m_dirty)
+			{
+				return m_value;
+			}
+			Object[] values = new Object[m_inputs.size()];
+			boolean changed = !m_evaluated;
+			for (int i = 0; i < values.length; i++)
+			{
+				Node<?> in = m_inputs.get(i);
+				values[i] = in.get();
+				changed |= in.m_version != m_inputVersions[i];
+				m_inputVersions[i] = in.m_version;
+			}
+			m_dirty = false;
+			if (changed)
+			{
+				m_evaluated = true;
+				m_graph.m_evaluations++;
+				update(m_formula.evaluate(values));
+			}
+			return m_value;
+		}
+
+		/**
+		 * Determines if the node needs to be evaluated before its value can
+		 * be read.
+		 * @return <tt>true</tt> if the node is dirty
+		 */
+		/*@ pure @*/ public boolean isDirty()
+		{
+			return m_dirty;
+		}
+
+		/**
+		 * Marks this node and its descendants as dirty. Since the descendants
+		 * of a dirty node are already dirty, the propagation stops there.
+		 */
+		protected void markDirty()
+		{
+			if (m_dirty)
+			{
+				return;
+			}
+			m_dirty = true;
+			for (Derived<?> d : m_dependents)
+			{
+				d.markDirty();
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Derived(" + (m_dirty ? "?" : m_value) + ")";
+		}
+	}
+
+	/**
+	 * Function computing the value of a derived node.
+	 * @param <T> The type of the value
+	 */
+	public interface Formula<T>
+	{
+		/**
+		 * Computes the value of a node. This method should have no side
+		 * effect, as it is only called when one of its arguments has changed.
+		 * @param inputs The values of the input nodes, in the order in which
+		 * they were connected
+		 * @return The value
+		 */
+		/*@ null @*/ public T evaluate(/*@ non_null @*/ Object ... inputs);
+	}
+
+	/**
+	 * Picker wrapping a reactive picker, which is told the value of a node
+	 * of the graph when it is needed to pick a new object.
+	 * @param <U> The type of the value told to the picker
+	 * @param <T> The type of the objects produced by the picker
+	 */
+	public static class Bound<U,T> implements Picker<T>
+	{
+		/**
+		 * The reactive picker.
+		 */
+		/*@ non_null @*/ protected final Reactive<U,T> m_picker;
+
+		/**
+		 * The node holding the value to tell the picker.
+		 */
+		/*@ non_null @*/ protected final Node<? extends U> m_parameter;
+
+		/**
+		 * The version of the parameter last told to the picker, or -1 if
+		 * the picker has not been told anything.
+		 */
+		protected long m_told;
+
+		/**
+		 * Creates a new bound picker. Use
+		 * {@link Dataflow#bind(Reactive, Node)} instead of calling this
+		 * constructor directly.
+		 * @param r The reactive picker
+		 * @param parameter The node holding the value to tell the picker
+		 */
+		protected Bound(/*@ non_null @*/ Reactive<U,T> r, /*@ non_null @*/ Node<? extends U> parameter)
+		{
+			super();
+			m_picker = r;
+			m_parameter = parameter;
+			m_told = -1;
+		}
+
+		@Override
+		public T pick()
+		{
+			U u = m_parameter.get();
+			if (m_parameter.m_version != m_told)
+			{
+				m_picker.tell(u);
+				m_told = m_parameter.m_version;
+			}
+			return m_picker.pick();
+		}
+
+		@Override
+		public void reset()
+		{
+			m_picker.reset();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Bound<U,T> duplicate(boolean with_state)
+		{
+			Bound<U,T> b = new Bound<U,T>((Reactive<U,T>) m_picker.duplicate(with_state), m_parameter);
+			if (with_state)
+			{
+				b.m_told = m_told;
+			}
+			return b;
+		}
+
+		/**
+		 * Gets the reactive picker wrapped by this bound picker.
+		 * @return The picker
+		 */
+		/*@ pure non_null @*/ public Reactive<U,T> getPicker()
+		{
+			return m_picker;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Bound(" + m_picker + ")";
+		}
+	}
+
+	/**
+	 * A set of input updates applied together. Until {@link #commit()} is
+	 * called, the nodes of the graph keep their previous values.
+	 */
+	public static class Batch
+	{
+		/**
+		 * The graph the updates apply to.
+		 */
+		/*@ non_null @*/ protected final Dataflow m_graph;
+
+		/**
+		 * The new value of each input, in the order in which they were set.
+		 */
+		/*@ non_null @*/ protected final Map<Input<?>,Object> m_updates;
+
+		/**
+		 * Creates a new batch. Use {@link Dataflow#batch()} instead of calling
+		 * this constructor directly.
+		 * @param graph The graph the updates apply to
+		 */
+		protected Batch(/*@ non_null @*/ Dataflow graph)
+		{
+			super();
+			m_graph = graph;
+			m_updates = new LinkedHashMap<Input<?>,Object>();
+		}
+
+		/**
+		 * Adds an update to the batch. Setting the same input twice only keeps
+		 * the last value.
+		 * @param <T> The type of the value of the input
+		 * @param in The input
+		 * @param value The new value of the input
+		 * @return This batch
+		 */
+		/*@ non_null @*/ public <T> Batch set(/*@ non_null @*/ Input<T> in, /*@ null @*/ T value)
+		{
+			if (in.m_graph != m_graph)
+			{
+				throw new IllegalArgumentException("Input belongs to another graph");
+			}
+			m_updates.put(in, value);
+			return this;
+		}
+
+		/**
+		 * Applies the updates of the batch. The batch is emptied and can be
+		 * reused afterwards.
+		 */
+		@SuppressWarnings("unchecked")
+		public void commit()
+		{
+			for (Map.Entry<Input<?>,Object> e : m_updates.entrySet())
+			{
+				((Input<Object>) e.getKey()).set(e.getValue());
+			}
+			m_updates.clear();
+		}
+	}
+
+	/**
+	 * Exception thrown when connecting two nodes would make the graph
+	 * cyclic.
+	 */
+	public static class CycleException extends RuntimeException
+	{
+		/**
+		 * Dummy UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Creates a new cycle exception.
+		 * @param from The source of the edge that closes the cycle
+		 * @param to The target of the edge that closes the cycle
+		 */
+		public CycleException(/*@ non_null @*/ Node<?> from, /*@ non_null @*/ Node<?> to)
+		{
+			super("Connecting " + from + " to " + to + " would create a cycle");
+		}
+	}
+}
@@ -62,18 +62,13 @@ public class Delay implements Picker<Object>
 	}
 	
 	/**
-	 * Waits for some time.
+	 * Waits for some time. The wait is performed by
+	 * {@link Pacer#sleep(long)}; it ends early if the thread is interrupted,
+	 * in which case its interrupted status is preserved.
 	 * @param duration The time to wait, in seconds
 	 */
 	public static void wait(float duration)
 	{
-		try
-		{
-			Thread.sleep((long) (duration * 1000));
-		}
-		catch (InterruptedException e)
-		{
-			// Do nothing
-		}
+		Pacer.sleep((long) (duration * 1e9));
 	}
 }
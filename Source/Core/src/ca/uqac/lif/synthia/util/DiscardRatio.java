@@ -77,7 +77,7 @@ public class DiscardRatio implements Picker<Float>
 
 		if(ratio > m_maxRejectedRatio)
 		{
-			throw new GiveUpException();
+			throw Telemetry.gaveUp(this, new GiveUpException());
 		}
 
 		return ratio;
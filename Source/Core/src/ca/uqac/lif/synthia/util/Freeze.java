@@ -45,7 +45,7 @@ import ca.uqac.lif.synthia.relative.PickSmallerComparable;
  * @param <T> The type of objects to pick
  * @ingroup API
  */
-public class Freeze<T> implements Shrinkable<T>, ExplanationQueryable
+public class Freeze<T> implements Shrinkable<T>, ExplanationQueryable, PickerSimplifier.Simplifiable
 {
 	/**
 	 * The internal picker that is to be called
@@ -111,6 +111,19 @@ public class Freeze<T> implements Shrinkable<T>, ExplanationQueryable
 		return fp;
 	}
 
+	@Override
+	public Picker<?> simplify(PickerSimplifier s)
+	{
+		Picker<T> p = s.reduce(m_innerPicker);
+		if (p instanceof Constant)
+		{
+			// Freezing a constant has no effect
+			s.report(PickerSimplifier.CONSTANT_FOLDING, this, p);
+			return p;
+		}
+		return p == m_innerPicker ? this : new Freeze<T>(p);
+	}
+
 	@Override
 	public Shrinkable<T> shrink(T o, Picker<Float> decision, float m)
 	{
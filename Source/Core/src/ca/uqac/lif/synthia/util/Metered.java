@@ -0,0 +1,232 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import ca.uqac.lif.synthia.GiveUpException;
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Wrapper;
+
+/**
+ * Measures the calls made to a picker, and records them in a node of a
+ * {@link PickerMetrics} registry. Metered pickers are not meant to be
+ * created directly: they are put in place of each node of a picker tree by
+ * {@link PickerMetrics#instrument(Picker)}.
+ * <p>
+ * A metered picker is a {@link Proxy} implementing all the public
+ * interfaces of the picker it wraps, and this class is its invocation
+ * handler. It can therefore be used anywhere the interfaces of the picker
+ * are expected: it is {@link ca.uqac.lif.synthia.Seedable Seedable},
+ * {@link ca.uqac.lif.synthia.Shrinkable Shrinkable},
+ * {@link ca.uqac.lif.synthia.Bounded Bounded} or
+ * {@link ca.uqac.lif.synthia.Reactive Reactive} if the picker is. Calls to
+ * {@link Picker#pick() pick()} are measured; all other calls are passed to
+ * the picker, and the pickers obtained by duplicating or shrinking it are
+ * themselves metered, in the same node. A metered picker is also a
+ * {@link Wrapper} of the picker it measures. Code that needs the class of
+ * the picker can obtain it with {@link #unwrap(Picker)}.
+ * 
+ * @param <T> The type of the elements to pick
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Metered<T> implements InvocationHandler
+{
+	/**
+	 * The picker being measured.
+	 */
+	/*@ non_null @*/ protected final Picker<T> m_picker;
+
+	/**
+	 * The registry to which the node belongs.
+	 */
+	/*@ non_null @*/ protected final PickerMetrics m_metrics;
+
+	/**
+	 * The node where the calls are recorded.
+	 */
+	/*@ non_null @*/ protected final PickerMetrics.Node m_node;
+
+	/**
+	 * Creates a new handler for a metered picker.
+	 * @param picker The picker being measured
+	 * @param metrics The registry to which the node belongs
+	 * @param node The node where the calls are recorded
+	 */
+	protected Metered(/*@ non_null @*/ Picker<T> picker, /*@ non_null @*/ PickerMetrics metrics, /*@ non_null @*/ PickerMetrics.Node node)
+	{
+		super();
+		m_picker = picker;
+		m_metrics = metrics;
+		m_node = node;
+	}
+
+	/**
+	 * Gets the handler of a metered picker.
+	 * @param o The object
+	 * @return The handler, or <tt>null</tt> if the object is not a metered
+	 * picker
+	 */
+	/*@ null @*/ public static Metered<?> of(/*@ null @*/ Object o)
+	{
+		if (o == null || !Proxy.isProxyClass(o.getClass()))
+		{
+			return null;
+		}
+		InvocationHandler h = Proxy.getInvocationHandler(o);
+		return h instanceof Metered ? (Metered<?>) h : null;
+	}
+
+	/**
+	 * Determines if an object is a metered picker.
+	 * @param o The object
+	 * @return {@code true} if the object is a metered picker
+	 */
+	public static boolean isMetered(/*@ null @*/ Object o)
+	{
+		return of(o) != null;
+	}
+
+	/**
+	 * Gets the picker measured by a metered picker.
+	 * @param <T> The type of the elements to pick
+	 * @param p A picker
+	 * @return The picker measured by <tt>p</tt> if it is metered, <tt>p</tt>
+	 * itself otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Picker<T> unwrap(Picker<T> p)
+	{
+		Metered<?> m = of(p);
+		while (m != null)
+		{
+			p = (Picker<T>) m.m_picker;
+			m = of(p);
+		}
+		return p;
+	}
+
+	/**
+	 * Gets the picker being measured.
+	 * @return The picker
+	 */
+	/*@ pure non_null @*/ public Picker<T> getPicker()
+	{
+		return m_picker;
+	}
+
+	/**
+	 * Gets the node where the calls to the picker are recorded.
+	 * @return The node
+	 */
+	/*@ pure non_null @*/ public PickerMetrics.Node getNode()
+	{
+		return m_node;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+		int arity = args == null ? 0 : args.length;
+		if (method.getDeclaringClass() == Object.class)
+		{
+			if (name.equals("equals"))
+			{
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode"))
+			{
+				return System.identityHashCode(proxy);
+			}
+			return m_picker.toString();
+		}
+		if (name.equals("pick") && arity == 0)
+		{
+			return pick();
+		}
+		if (method.getDeclaringClass() == Wrapper.class)
+		{
+			return m_picker;
+		}
+		Object r;
+		try
+		{
+			r = method.invoke(m_picker, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+		if (r == m_picker)
+		{
+			// Methods such as setSeed return the picker itself
+			return proxy;
+		}
+		if ((name.equals("duplicate") || name.equals("shrink")) && r instanceof Picker)
+		{
+			return m_metrics.wrap((Picker<?>) r, m_node);
+		}
+		return r;
+	}
+
+	/**
+	 * Picks an element from the picker, and records the call.
+	 * @return The element
+	 */
+	protected T pick()
+	{
+		if (!m_metrics.m_enabled)
+		{
+			return m_picker.pick();
+		}
+		boolean allocation = m_metrics.m_trackAllocation;
+		long bytes = allocation ? PickerMetrics.allocatedBytes() : 0;
+		long start = System.nanoTime();
+		try
+		{
+			return m_picker.pick();
+		}
+		catch (NoMoreElementException e)
+		{
+			m_node.m_noMoreElements.increment();
+			throw e;
+		}
+		catch (GiveUpException e)
+		{
+			m_node.m_giveUps.increment();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			m_node.m_errors.increment();
+			throw e;
+		}
+		finally
+		{
+			long duration = System.nanoTime() - start;
+			m_node.record(duration, allocation ? PickerMetrics.allocatedBytes() - bytes : 0);
+		}
+	}
+}
@@ -25,7 +25,7 @@ import ca.uqac.lif.synthia.Picker;
  * determined by another picker.
  * @ingroup API
  */
-public class Offset extends Mutator<Number>
+public class Offset extends Mutator<Number> implements PickerSimplifier.Simplifiable
 {
 	/**
 	 * The picker determining the offset of each value.
@@ -58,4 +58,16 @@ public class Offset extends Mutator<Number>
 		super.copyInto(o, with_state);
 		return o;
 	}
+
+	@Override
+	public Picker<?> simplify(PickerSimplifier s)
+	{
+		Picker<? extends Number> p = s.reduce(m_picker), o = s.reduce(m_offset);
+		Offset t = p == m_picker && o == m_offset ? this : new Offset(p, o);
+		if (p instanceof Constant && o instanceof Constant)
+		{
+			return s.fold(this, t);
+		}
+		return t;
+	}
 }
@@ -0,0 +1,254 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+
+/**
+ * Picker that returns the values of another picker at given points in time.
+ * The times are produced by a numerical picker, and can be interpreted in
+ * two ways:
+ * <ul>
+ * <li>as the delay, in seconds, between two successive values (the
+ * default);</li>
+ * <li>as a timestamp, in seconds elapsed since the first value was asked
+ * for; a {@link Tick} is a natural source of timestamps.</li>
+ * </ul>
+ * In both cases, the schedule is absolute: the time of each value is
+ * computed from the start of the stream, and not from the moment the
+ * previous value was actually returned, so that small errors in the timing
+ * of each value do not accumulate. Waiting is done by
+ * {@link #waitUntil(long)}, which parks the thread and then spins for the
+ * last part of the wait, which gives a precision well below one
+ * millisecond.
+ * <p>
+ * A call to {@link #pick()} blocks the calling thread until the time of the
+ * next value. Alternately, values can be pushed to a consumer by a
+ * {@link TimerWheel}, with {@link #start(TimerWheel, Consumer) start}; a
+ * single wheel can pace a large number of streams.
+ * 
+ * @param <T> The type of the elements to pick
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Pacer<T> implements Picker<T>
+{
+	/**
+	 * The time below which {@link #waitUntil(long)} spins instead of
+	 * parking the thread, in nanoseconds.
+	 */
+	public static final long SPIN_THRESHOLD = 100000;
+
+	/**
+	 * The picker producing the values.
+	 */
+	/*@ non_null @*/ protected final Picker<T> m_source;
+
+	/**
+	 * The picker producing the delays or timestamps, in seconds.
+	 */
+	/*@ non_null @*/ protected final Picker<? extends Number> m_times;
+
+	/**
+	 * A flag indicating whether the numbers produced by {@link #m_times} are
+	 * timestamps rather than delays.
+	 */
+	protected boolean m_absolute;
+
+	/**
+	 * The time at which the first value was asked for, or -1 if no value
+	 * has been asked for yet.
+	 */
+	protected long m_start;
+
+	/**
+	 * The time of the last value.
+	 */
+	protected long m_next;
+
+	/**
+	 * A flag indicating whether the values pushed by a timer wheel must stop.
+	 */
+	protected volatile boolean m_stopped;
+
+	/**
+	 * Creates a new pacer.
+	 * @param source The picker producing the values
+	 * @param times The picker producing the delay, in seconds, between two
+	 * successive values
+	 */
+	public Pacer(/*@ non_null @*/ Picker<T> source, /*@ non_null @*/ Picker<? extends Number> times)
+	{
+		super();
+		m_source = source;
+		m_times = times;
+		m_absolute = false;
+		m_start = -1;
+		m_next = 0;
+		m_stopped = false;
+	}
+
+	/**
+	 * Sets whether the numbers produced by the time picker are timestamps
+	 * rather than delays.
+	 * @param b Set to {@code true} to interpret numbers as timestamps,
+	 * {@code false} to interpret them as delays (the default)
+	 * @return This pacer
+	 */
+	/*@ non_null @*/ public Pacer<T> setAbsolute(boolean b)
+	{
+		m_absolute = b;
+		return this;
+	}
+
+	@Override
+	public T pick()
+	{
+		waitUntil(nextDeadline());
+		return m_source.pick();
+	}
+
+	/**
+	 * Pushes the values of this pacer to a consumer, at the time of each
+	 * value. The values are picked and passed to the consumer by the thread
+	 * of the wheel, until the source picker has no more element or
+	 * {@link #stop()} is called.
+	 * @param wheel The wheel scheduling the values
+	 * @param sink The consumer receiving the values
+	 * @return This pacer
+	 */
+	/*@ non_null @*/ public Pacer<T> start(/*@ non_null @*/ final TimerWheel wheel, /*@ non_null @*/ final Consumer<? super T> sink)
+	{
+		m_stopped = false;
+		wheel.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (m_stopped)
+				{
+					return;
+				}
+				try
+				{
+					sink.accept(m_source.pick());
+				}
+				catch (NoMoreElementException e)
+				{
+					return;
+				}
+				wheel.schedule(this, nextDeadline());
+			}
+		}, nextDeadline());
+		return this;
+	}
+
+	/**
+	 * Stops pushing values to the consumer given to
+	 * {@link #start(TimerWheel, Consumer) start}.
+	 */
+	public void stop()
+	{
+		m_stopped = true;
+	}
+
+	@Override
+	public void reset()
+	{
+		m_source.reset();
+		m_times.reset();
+		m_start = -1;
+		m_next = 0;
+	}
+
+	@Override
+	public Pacer<T> duplicate(boolean with_state)
+	{
+		Pacer<T> p = new Pacer<T>(m_source.duplicate(with_state), m_times.duplicate(with_state));
+		p.m_absolute = m_absolute;
+		if (with_state)
+		{
+			p.m_start = m_start;
+			p.m_next = m_next;
+		}
+		return p;
+	}
+
+	/**
+	 * Computes the time of the next value.
+	 * @return The time, as given by {@link System#nanoTime()}
+	 */
+	protected long nextDeadline()
+	{
+		if (m_start < 0)
+		{
+			m_start = System.nanoTime();
+			m_next = m_start;
+		}
+		long t = (long) (m_times.pick().doubleValue() * 1e9);
+		m_next = m_absolute ? m_start + t : m_next + t;
+		return m_next;
+	}
+
+	/**
+	 * Waits until a given time. The thread is parked until shortly before
+	 * that time, and then spins for the rest of the wait. Unlike
+	 * {@link Thread#sleep(long)}, the wait ends early if the thread is
+	 * interrupted, but its interrupted status is preserved.
+	 * @param deadline The time, as given by {@link System#nanoTime()}
+	 * @return {@code true} if the time has been reached, {@code false} if the
+	 * thread has been interrupted
+	 */
+	public static boolean waitUntil(long deadline)
+	{
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > SPIN_THRESHOLD)
+		{
+			LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+			if (Thread.currentThread().isInterrupted())
+			{
+				return false;
+			}
+		}
+		while (deadline - System.nanoTime() > 0)
+		{
+			if (Thread.currentThread().isInterrupted())
+			{
+				return false;
+			}
+			Thread.yield();
+		}
+		return true;
+	}
+
+	/**
+	 * Waits for some time, with the precision of {@link #waitUntil(long)}.
+	 * @param nanos The time to wait, in nanoseconds
+	 * @return {@code true} if the time has elapsed, {@code false} if the
+	 * thread has been interrupted
+	 */
+	public static boolean sleep(long nanos)
+	{
+		return waitUntil(System.nanoTime() + nanos);
+	}
+}
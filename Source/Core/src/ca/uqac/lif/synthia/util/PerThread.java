@@ -0,0 +1,162 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.Reseeder;
+
+/**
+ * Picker that can be called from several threads at once. Pickers in
+ * general are not thread-safe; this picker gives each thread that calls it
+ * its own copy of another picker, created on the first call made by that
+ * thread. Copies are obtained with {@link Picker#duplicate(boolean)
+ * duplicate(false)}, and each of them is reseeded by a {@link Reseeder}
+ * with a seed derived from a master seed and the index of the thread (0
+ * for the first thread calling the picker, 1 for the second, and so on).
+ * Threads therefore draw from independent streams of values, without
+ * sharing any state and without contention, and a thread with a given
+ * index always receives the same sequence of values.
+ * <p>
+ * Each copy is kept as long as the picker itself, so that {@link #reset()}
+ * can reach it; memory therefore grows with the number of distinct threads
+ * that call the picker.
+ * 
+ * @param <T> The type of the elements to pick
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class PerThread<T> implements Picker<T>
+{
+	/**
+	 * The picker of which each thread receives a copy.
+	 */
+	/*@ non_null @*/ protected final Picker<T> m_picker;
+
+	/**
+	 * The master seed from which the seed of each copy is derived.
+	 */
+	protected final long m_seed;
+
+	/**
+	 * The index given to the next thread calling the picker.
+	 */
+	/*@ non_null @*/ protected final AtomicInteger m_threads;
+
+	/**
+	 * The copies created so far, in the order of the thread indices.
+	 */
+	/*@ non_null @*/ protected final List<Picker<T>> m_copies;
+
+	/**
+	 * The copy of the current thread.
+	 */
+	/*@ non_null @*/ protected final ThreadLocal<Picker<T>> m_local;
+
+	/**
+	 * Creates a new per-thread picker.
+	 * @param picker The picker of which each thread receives a copy
+	 * @param seed The master seed from which the seed of each copy is derived
+	 */
+	public PerThread(/*@ non_null @*/ Picker<T> picker, long seed)
+	{
+		super();
+		m_picker = picker;
+		m_seed = seed;
+		m_threads = new AtomicInteger();
+		m_copies = new CopyOnWriteArrayList<Picker<T>>();
+		m_local = new ThreadLocal<Picker<T>>();
+	}
+
+	@Override
+	public T pick()
+	{
+		return getLocal().pick();
+	}
+
+	/**
+	 * Gets the copy used by the current thread, creating it if necessary.
+	 * @return The copy
+	 */
+	/*@ non_null @*/ public Picker<T> getLocal()
+	{
+		Picker<T> p = m_local.get();
+		if (p == null)
+		{
+			synchronized (m_copies)
+			{
+				p = newCopy(m_threads.getAndIncrement());
+				m_copies.add(p);
+			}
+			m_local.set(p);
+		}
+		return p;
+	}
+
+	/**
+	 * Gets the number of threads that have called this picker.
+	 * @return The number of threads
+	 */
+	/*@ pure @*/ public int getThreadCount()
+	{
+		return m_threads.get();
+	}
+
+	/**
+	 * Creates the copy given to a thread.
+	 * @param index The index of the thread
+	 * @return The copy
+	 */
+	/*@ non_null @*/ protected Picker<T> newCopy(int index)
+	{
+		Picker<T> p = m_picker.duplicate(false);
+		Reseeder.reseed(p, Reseeder.derive(m_seed, index));
+		return p;
+	}
+
+	/**
+	 * Resets the copy of every thread. This method must not be called while
+	 * other threads are using the picker.
+	 */
+	@Override
+	public void reset()
+	{
+		for (Picker<T> p : m_copies)
+		{
+			p.reset();
+		}
+	}
+
+	/**
+	 * Creates a new per-thread picker with the same master seed. The copies
+	 * given to threads are not duplicated; each thread receives a new copy
+	 * on its first call to the duplicate.
+	 * @param with_state Whether the picker given to the threads is copied
+	 * with its state
+	 * @return The duplicate
+	 */
+	@Override
+	public PerThread<T> duplicate(boolean with_state)
+	{
+		return new PerThread<T>(m_picker.duplicate(with_state), m_seed);
+	}
+}
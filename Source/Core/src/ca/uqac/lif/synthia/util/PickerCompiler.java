@@ -0,0 +1,427 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.PickerException;
+
+/**
+ * Fuses a tree of pickers into a single method handle. In a typical
+ * generator, every value goes through a chain of calls to the
+ * {@link Picker#pick() pick()} method of small pickers, each returning a
+ * boxed value that the next one unboxes. The compiler walks such a tree
+ * and asks each node implementing {@link Fusible} to express its logic as
+ * a {@link MethodHandle} combining the handles of its children. Values
+ * pass from node to node as primitives whenever possible, and the whole
+ * tree becomes a single handle that the JIT compiler can optimize as a
+ * unit.
+ * <p>
+ * Nodes that do not implement {@link Fusible}, or that cannot be fused,
+ * are simply called through their <tt>pick</tt> method. This includes
+ * user subclasses of fusible pickers, which may override <tt>pick</tt>:
+ * a node is only fused when its class is one of the known node types
+ * (see {@link #isKnown(Object, Class...)}). Interpreted nodes are listed
+ * by {@link Compiled#getInterpreted()}. Fused nodes read their state from
+ * the original pickers, so that a compiled picker produces the same
+ * values as the tree it is made of, given the same seeds. However, the
+ * structure of the tree is captured when it is compiled: pickers added to
+ * a {@link Choice} afterwards are ignored.
+ * <p>
+ * Typical use:
+ * <pre>
+ * Picker&lt;String&gt; p = PickerCompiler.compile(new StringPattern(...));
+ * </pre>
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class PickerCompiler
+{
+	/**
+	 * A handle calling {@link Picker#pick()} on the picker passed as its
+	 * argument.
+	 */
+	/*@ non_null @*/ protected static final MethodHandle s_pick;
+
+	/**
+	 * Handles calling <tt>intValue</tt>, <tt>floatValue</tt> and
+	 * <tt>doubleValue</tt> on a {@link Number} passed as an object.
+	 */
+	/*@ non_null @*/ protected static final MethodHandle s_intValue, s_floatValue, s_doubleValue;
+
+	static
+	{
+		try
+		{
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			s_pick = lookup.findVirtual(Picker.class, "pick", MethodType.methodType(Object.class));
+			s_intValue = numberValue(lookup, "intValue", int.class);
+			s_floatValue = numberValue(lookup, "floatValue", float.class);
+			s_doubleValue = numberValue(lookup, "doubleValue", double.class);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * The pickers that have been fused so far.
+	 */
+	protected int m_fused;
+
+	/**
+	 * The pickers that are called through their <tt>pick</tt> method.
+	 */
+	/*@ non_null @*/ protected final List<Picker<?>> m_interpreted;
+
+	/**
+	 * Compiles a picker tree.
+	 * @param <T> The type of the elements produced by the picker
+	 * @param picker The root of the tree
+	 * @return The compiled picker
+	 */
+	/*@ non_null @*/ public static <T> Compiled<T> compile(/*@ non_null @*/ Picker<T> picker)
+	{
+		PickerCompiler c = new PickerCompiler();
+		MethodHandle h = c.fuse(picker, Object.class);
+		return new Compiled<T>(picker, h, c.m_fused, c.m_interpreted);
+	}
+
+	/**
+	 * Creates a new compiler.
+	 */
+	protected PickerCompiler()
+	{
+		super();
+		m_fused = 0;
+		m_interpreted = new ArrayList<Picker<?>>();
+	}
+
+	/**
+	 * Gets a handle producing the values of a picker. This method is called
+	 * by {@link Fusible} nodes to obtain the handles of their children.
+	 * @param picker The picker
+	 * @return A handle with no argument; its return type is the one chosen
+	 * by the picker if it is fused, and {@link Object} otherwise
+	 */
+	/*@ non_null @*/ public MethodHandle fuse(/*@ non_null @*/ Picker<?> picker)
+	{
+		if (picker instanceof Fusible)
+		{
+			try
+			{
+				MethodHandle h = ((Fusible) picker).fuse(this);
+				if (h != null)
+				{
+					m_fused++;
+					return h;
+				}
+			}
+			catch (ReflectiveOperationException e)
+			{
+				// Fall back to interpretation
+			}
+		}
+		m_interpreted.add(picker);
+		return s_pick.bindTo(picker);
+	}
+
+	/**
+	 * Gets a handle producing the values of a picker, converted to a given
+	 * type.
+	 * @param picker The picker
+	 * @param type The type; see {@link #convert(MethodHandle, Class)}
+	 * @return A handle with no argument returning the given type
+	 */
+	/*@ non_null @*/ public MethodHandle fuse(/*@ non_null @*/ Picker<?> picker, /*@ non_null @*/ Class<?> type)
+	{
+		return convert(fuse(picker), type);
+	}
+
+	/**
+	 * Converts the value returned by a handle to another type, in the same
+	 * way as a picker does when it receives the value of another picker.
+	 * Numbers are converted to <tt>int</tt>, <tt>float</tt> or
+	 * <tt>double</tt> as by the corresponding methods of {@link Number};
+	 * primitive values are boxed when converted to {@link Object}.
+	 * @param h The handle
+	 * @param type The type
+	 * @return The converted handle
+	 */
+	/*@ non_null @*/ public static MethodHandle convert(/*@ non_null @*/ MethodHandle h, /*@ non_null @*/ Class<?> type)
+	{
+		Class<?> from = h.type().returnType();
+		if (from == type)
+		{
+			return h;
+		}
+		if (isNumeric(from) && isNumeric(type))
+		{
+			return MethodHandles.explicitCastArguments(h, h.type().changeReturnType(type));
+		}
+		h = h.asType(h.type().changeReturnType(Object.class));
+		if (type == int.class)
+		{
+			return MethodHandles.filterReturnValue(h, s_intValue);
+		}
+		if (type == float.class)
+		{
+			return MethodHandles.filterReturnValue(h, s_floatValue);
+		}
+		if (type == double.class)
+		{
+			return MethodHandles.filterReturnValue(h, s_doubleValue);
+		}
+		return h.asType(h.type().changeReturnType(type));
+	}
+
+	/**
+	 * Determines if a node is exactly of one of the types whose behaviour
+	 * its {@link Fusible} implementation reproduces. A subclass may override
+	 * {@link Picker#pick() pick()}, in which case the handle of its parent
+	 * class would produce different values; {@link Fusible#fuse(PickerCompiler)
+	 * fuse()} should then return <tt>null</tt>.
+	 * @param node The node
+	 * @param classes The known types
+	 * @return <tt>true</tt> if the class of the node is one of the types
+	 */
+	public static boolean isKnown(/*@ non_null @*/ Object node, /*@ non_null @*/ Class<?> ... classes)
+	{
+		for (Class<?> c : classes)
+		{
+			if (node.getClass() == c)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets a handle returning a constant. Numbers and Booleans are returned
+	 * as primitives.
+	 * @param o The constant
+	 * @return A handle with no argument
+	 */
+	/*@ non_null @*/ public static MethodHandle constant(/*@ null @*/ Object o)
+	{
+		if (o instanceof Integer)
+		{
+			return MethodHandles.constant(int.class, o);
+		}
+		if (o instanceof Float)
+		{
+			return MethodHandles.constant(float.class, o);
+		}
+		if (o instanceof Double)
+		{
+			return MethodHandles.constant(double.class, o);
+		}
+		if (o instanceof Boolean)
+		{
+			return MethodHandles.constant(boolean.class, o);
+		}
+		return MethodHandles.constant(Object.class, o);
+	}
+
+	/**
+	 * Gets a handle that calls handles with no argument one after the other,
+	 * and passes their values to a target. The handles are called in the
+	 * order in which they are given, like the children of a picker are
+	 * usually called.
+	 * @param target The target, taking one argument per handle
+	 * @param args The handles
+	 * @return A handle with no argument
+	 */
+	/*@ non_null @*/ public static MethodHandle sequence(/*@ non_null @*/ MethodHandle target, /*@ non_null @*/ MethodHandle ... args)
+	{
+		for (int i = args.length - 1; i >= 0; i--)
+		{
+			target = MethodHandles.collectArguments(target, i, args[i]);
+		}
+		return target;
+	}
+
+	/**
+	 * Determines if a type is a primitive numerical type.
+	 * @param c The type
+	 * @return <tt>true</tt> if the type is numerical
+	 */
+	protected static boolean isNumeric(Class<?> c)
+	{
+		return c.isPrimitive() && c != boolean.class && c != void.class;
+	}
+
+	/**
+	 * Gets a handle calling a method of {@link Number} on an object.
+	 * @param lookup The lookup object
+	 * @param name The name of the method
+	 * @param type The return type of the method
+	 * @return A handle taking an {@link Object} as its argument
+	 * @throws ReflectiveOperationException If the method cannot be found
+	 */
+	protected static MethodHandle numberValue(MethodHandles.Lookup lookup, String name, Class<?> type) throws ReflectiveOperationException
+	{
+		MethodHandle h = lookup.findVirtual(Number.class, name, MethodType.methodType(type));
+		return h.asType(MethodType.methodType(type, Object.class));
+	}
+
+	/**
+	 * Interface implemented by pickers that can be fused by a
+	 * {@link PickerCompiler}.
+	 */
+	public interface Fusible
+	{
+		/**
+		 * Expresses the logic of the picker as a method handle. The handle
+		 * obtains the values of the picker's children from the handles
+		 * returned by {@link PickerCompiler#fuse(Picker) fuse()}, and must
+		 * read any mutable state from the picker itself, so that the
+		 * picker and the handle stay interchangeable.
+		 * @param c The compiler
+		 * @return A handle with no argument producing the same values as
+		 * {@link Picker#pick() pick()}, possibly as a primitive; <tt>null</tt>
+		 * if the picker cannot be fused, or is of a subclass that the handle
+		 * does not account for
+		 * @throws ReflectiveOperationException If a method used by the handle
+		 * cannot be found
+		 */
+		/*@ null @*/ public MethodHandle fuse(/*@ non_null @*/ PickerCompiler c) throws ReflectiveOperationException;
+	}
+
+	/**
+	 * Picker whose values are produced by a fused picker tree.
+	 * @param <T> The type of the elements produced by the picker
+	 */
+	public static class Compiled<T> implements Picker<T>
+	{
+		/**
+		 * The root of the picker tree.
+		 */
+		/*@ non_null @*/ protected final Picker<T> m_picker;
+
+		/**
+		 * The handle producing the values.
+		 */
+		/*@ non_null @*/ protected final MethodHandle m_handle;
+
+		/**
+		 * The number of pickers that have been fused.
+		 */
+		protected final int m_fused;
+
+		/**
+		 * The pickers that are called through their <tt>pick</tt> method.
+		 */
+		/*@ non_null @*/ protected final List<Picker<?>> m_interpreted;
+
+		/**
+		 * Creates a new compiled picker.
+		 * @param picker The root of the picker tree
+		 * @param handle The handle producing the values
+		 * @param fused The number of pickers that have been fused
+		 * @param interpreted The pickers that are called through their
+		 * <tt>pick</tt> method
+		 */
+		protected Compiled(/*@ non_null @*/ Picker<T> picker, /*@ non_null @*/ MethodHandle handle, int fused, /*@ non_null @*/ List<Picker<?>> interpreted)
+		{
+			super();
+			m_picker = picker;
+			m_handle = handle;
+			m_fused = fused;
+			m_interpreted = interpreted;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T pick()
+		{
+			try
+			{
+				return (T) (Object) m_handle.invokeExact();
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Error e)
+			{
+				throw e;
+			}
+			catch (Throwable t)
+			{
+				throw new PickerException(t);
+			}
+		}
+
+		@Override
+		public void reset()
+		{
+			m_picker.reset();
+		}
+
+		@Override
+		public Compiled<T> duplicate(boolean with_state)
+		{
+			return compile(m_picker.duplicate(with_state));
+		}
+
+		/**
+		 * Gets the root of the picker tree.
+		 * @return The picker
+		 */
+		/*@ pure non_null @*/ public Picker<T> getPicker()
+		{
+			return m_picker;
+		}
+
+		/**
+		 * Gets the number of pickers of the tree that have been fused.
+		 * @return The number of pickers
+		 */
+		/*@ pure @*/ public int getFusedCount()
+		{
+			return m_fused;
+		}
+
+		/**
+		 * Gets the pickers of the tree that could not be fused, and are
+		 * called through their <tt>pick</tt> method.
+		 * @return The list of pickers
+		 */
+		/*@ pure non_null @*/ public List<Picker<?>> getInterpreted()
+		{
+			return Collections.unmodifiableList(m_interpreted);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Compiled " + m_picker + " (" + m_fused + " fused, " + m_interpreted.size() + " interpreted)";
+		}
+	}
+}
@@ -0,0 +1,813 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Wrapper;
+import ca.uqac.lif.synthia.random.Random;
+import ca.uqac.lif.synthia.test.LatencyHistogram;
+
+/**
+ * Registry measuring the cost of each node of picker trees. A picker
+ * passed to {@link #instrument(Picker)} is first duplicated, so that the
+ * original tree is left untouched. The copy is then walked like a tree, by
+ * looking at the fields of each picker that refer to other pickers
+ * (directly, through an array, a collection or a map, or through another
+ * object of this library); each picker found is replaced by a
+ * {@link Metered metered} picker that records its calls in a {@link Node}
+ * of the registry, and which keeps all the interfaces of the picker it
+ * replaces. The nodes form a tree that mirrors the picker tree, and which
+ * can be printed with {@link #toString()}.
+ * <p>
+ * For each node, the registry records:
+ * <ul>
+ * <li>the number of calls to {@link Picker#pick() pick()}, and a histogram
+ * of their duration in nanoseconds;</li>
+ * <li>the number of calls that threw a
+ * {@link ca.uqac.lif.synthia.NoMoreElementException NoMoreElementException},
+ * a {@link ca.uqac.lif.synthia.GiveUpException GiveUpException} or another
+ * exception;</li>
+ * <li>the number of bytes allocated by the calling thread during the calls,
+ * when the Java runtime can measure it.</li>
+ * </ul>
+ * Durations and allocations of a node include those of its children; the
+ * printed tree also shows the share of the time spent in the node itself.
+ * <p>
+ * Metered pickers remain in the tree when the registry is disabled with
+ * {@link #setEnabled(boolean) setEnabled(false)}; each call then only costs
+ * the read of a flag. A picker can only be replaced when the field, array
+ * or list that refers to it accepts a metered picker; for example, a field
+ * declared with a concrete picker class cannot, and final fields are never
+ * modified. Such a picker still has a node, which is reported as not
+ * instrumented (see {@link Node#isInstrumented()}), and the pickers below it
+ * are measured as usual. The time spent in such a picker is then counted
+ * in the self time of its parent, which is therefore not printed. Likewise, pickers created by
+ * a parent without calling {@link Picker#duplicate(boolean) duplicate} on a
+ * metered child are only measured if the parent itself is duplicated
+ * through the registry.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class PickerMetrics
+{
+	/**
+	 * The bean measuring the memory allocated by threads, or <tt>null</tt> if
+	 * the runtime cannot measure it.
+	 */
+	/*@ null @*/ protected static final com.sun.management.ThreadMXBean s_threads = getThreadBean();
+
+	/**
+	 * The fields of each class that can refer to other pickers.
+	 */
+	protected static final Map<Class<?>,Field[]> s_fields = new ConcurrentHashMap<Class<?>,Field[]>();
+
+	/**
+	 * Whether calls are recorded.
+	 */
+	protected volatile boolean m_enabled;
+
+	/**
+	 * Whether the memory allocated during calls is measured.
+	 */
+	protected volatile boolean m_trackAllocation;
+
+	/**
+	 * The nodes of the pickers passed to {@link #instrument(Picker)}.
+	 */
+	/*@ non_null @*/ protected final List<Node> m_roots;
+
+	/**
+	 * Creates a new registry, where calls are recorded and allocations are
+	 * measured.
+	 */
+	public PickerMetrics()
+	{
+		super();
+		m_enabled = true;
+		m_trackAllocation = s_threads != null;
+		m_roots = new CopyOnWriteArrayList<Node>();
+	}
+
+	/**
+	 * Sets whether calls are recorded.
+	 * @param b Set to {@code true} to record calls, {@code false} to only
+	 * pass them to the pickers
+	 * @return This registry
+	 */
+	/*@ non_null @*/ public PickerMetrics setEnabled(boolean b)
+	{
+		m_enabled = b;
+		return this;
+	}
+
+	/**
+	 * Determines whether calls are recorded.
+	 * @return {@code true} if calls are recorded
+	 */
+	/*@ pure @*/ public boolean isEnabled()
+	{
+		return m_enabled;
+	}
+
+	/**
+	 * Sets whether the memory allocated during calls is measured. This
+	 * roughly doubles the cost of recording a call. Allocations are never
+	 * measured if the runtime cannot measure them.
+	 * @param b Set to {@code true} to measure allocations
+	 * @return This registry
+	 */
+	/*@ non_null @*/ public PickerMetrics setTrackAllocation(boolean b)
+	{
+		m_trackAllocation = b && s_threads != null;
+		return this;
+	}
+
+	/**
+	 * Creates a copy of a picker tree where each node is replaced by a
+	 * metered picker. The copy is obtained by calling
+	 * {@link Picker#duplicate(boolean) duplicate(true)} on the picker, which
+	 * is itself not modified.
+	 * @param <T> The type of the elements to pick
+	 * @param picker The root of the tree
+	 * @return A metered picker to use instead of the root
+	 */
+	/*@ non_null @*/ public <T> Picker<T> instrument(/*@ non_null @*/ Picker<T> picker)
+	{
+		if (Metered.isMetered(picker))
+		{
+			return picker;
+		}
+		Node root = new Node("", picker.getClass().getSimpleName());
+		m_roots.add(root);
+		return wrap(picker.duplicate(true), root);
+	}
+
+	/**
+	 * Gets the nodes of the pickers passed to {@link #instrument(Picker)}.
+	 * @return The nodes
+	 */
+	/*@ non_null @*/ public List<Node> getRoots()
+	{
+		return m_roots;
+	}
+
+	/**
+	 * Clears the statistics of all nodes.
+	 */
+	public void reset()
+	{
+		for (Node n : m_roots)
+		{
+			n.reset();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		for (Node n : m_roots)
+		{
+			n.print(out, "");
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Instruments a picker and the pickers below it, and records its calls
+	 * in a node.
+	 * @param <T> The type of the elements to pick
+	 * @param picker The picker
+	 * @param node The node
+	 * @return The metered picker
+	 */
+	/*@ non_null @*/ protected <T> Picker<T> wrap(/*@ non_null @*/ Picker<T> picker, /*@ non_null @*/ Node node)
+	{
+		if (Metered.isMetered(picker))
+		{
+			return picker;
+		}
+		Map<Object,Object> visited = new IdentityHashMap<Object,Object>();
+		Picker<T> m = newMetered(picker, node);
+		node.m_instrumented = true;
+		visited.put(picker, m);
+		visitFields(picker, node, "", visited);
+		return m;
+	}
+
+	/**
+	 * Creates a metered picker implementing all the public interfaces of a
+	 * picker, as well as {@link Wrapper}.
+	 * @param <T> The type of the elements to pick
+	 * @param picker The picker
+	 * @param node The node
+	 * @return The metered picker
+	 */
+	@SuppressWarnings("unchecked")
+	/*@ non_null @*/ protected <T> Picker<T> newMetered(/*@ non_null @*/ Picker<T> picker, /*@ non_null @*/ Node node)
+	{
+		Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+		interfaces.add(Picker.class);
+		for (Class<?> c = picker.getClass(); c != null; c = c.getSuperclass())
+		{
+			for (Class<?> i : c.getInterfaces())
+			{
+				if (Modifier.isPublic(i.getModifiers()))
+				{
+					interfaces.add(i);
+				}
+			}
+		}
+		interfaces.add(Wrapper.class);
+		ClassLoader loader = picker.getClass().getClassLoader();
+		if (loader == null)
+		{
+			loader = Picker.class.getClassLoader();
+		}
+		return (Picker<T>) Proxy.newProxyInstance(loader, interfaces.toArray(new Class<?>[interfaces.size()]), new Metered<T>(picker, this, node));
+	}
+
+	/**
+	 * Visits the fields of an object, and replaces the pickers they refer to
+	 * by metered pickers, unless the fields are final.
+	 * @param o The object
+	 * @param parent The node of the closest picker containing the object
+	 * @param path The path from that picker to the object
+	 * @param visited The objects already visited, associated with their
+	 * replacement
+	 */
+	protected void visitFields(Object o, Node parent, String path, Map<Object,Object> visited)
+	{
+		for (Field f : getFields(o.getClass()))
+		{
+			try
+			{
+				Object v = f.get(o);
+				Object r = visit(v, parent, path + f.getName(), visited);
+				if (r != v && !Modifier.isFinal(f.getModifiers()) && f.getType().isInstance(r))
+				{
+					f.set(o, r);
+					installed(r);
+				}
+			}
+			catch (IllegalAccessException e)
+			{
+				// Skip this field
+			}
+		}
+	}
+
+	/**
+	 * Visits an object referred to by a field, an array, a collection or a
+	 * map.
+	 * @param o The object
+	 * @param parent The node of the closest picker containing the object
+	 * @param path The path from that picker to the object
+	 * @param visited The objects already visited, associated with their
+	 * replacement
+	 * @return The object to put in place of the original, which is a metered
+	 * picker if the object is a picker
+	 */
+	@SuppressWarnings("unchecked")
+	protected Object visit(Object o, Node parent, String path, Map<Object,Object> visited)
+	{
+		if (o == null || Metered.isMetered(o))
+		{
+			return o;
+		}
+		if (visited.containsKey(o))
+		{
+			return visited.get(o);
+		}
+		if (o instanceof Picker)
+		{
+			Node child = parent.getChild(path, o.getClass().getSimpleName());
+			Picker<?> m = newMetered((Picker<Object>) o, child);
+			visited.put(o, m);
+			visitFields(o, child, "", visited);
+			return m;
+		}
+		visited.put(o, o);
+		if (o instanceof Object[])
+		{
+			Object[] array = (Object[]) o;
+			Class<?> type = array.getClass().getComponentType();
+			for (int i = 0; i < array.length; i++)
+			{
+				Object r = visit(array[i], parent, path + "[" + i + "]", visited);
+				if (r != array[i] && type.isInstance(r))
+				{
+					array[i] = r;
+					installed(r);
+				}
+			}
+		}
+		else if (o instanceof List)
+		{
+			ListIterator<Object> it = ((List<Object>) o).listIterator();
+			for (int i = 0; it.hasNext(); i++)
+			{
+				Object e = it.next();
+				Object r = visit(e, parent, path + "[" + i + "]", visited);
+				if (r != e)
+				{
+					try
+					{
+						it.set(r);
+						installed(r);
+					}
+					catch (UnsupportedOperationException ex)
+					{
+						// The list cannot be modified
+					}
+				}
+			}
+		}
+		else if (o instanceof Collection)
+		{
+			int i = 0;
+			for (Object e : (Collection<?>) o)
+			{
+				visit(e, parent, path + "[" + i++ + "]", visited);
+			}
+		}
+		else if (o instanceof Map)
+		{
+			for (Map.Entry<Object,Object> e : ((Map<Object,Object>) o).entrySet())
+			{
+				Object r = visit(e.getValue(), parent, path + "[" + e.getKey() + "]", visited);
+				if (r != e.getValue())
+				{
+					try
+					{
+						e.setValue(r);
+						installed(r);
+					}
+					catch (UnsupportedOperationException ex)
+					{
+						// The map cannot be modified
+					}
+				}
+			}
+		}
+		else if (o.getClass().getName().startsWith("ca.uqac.lif.synthia."))
+		{
+			// An object of this library that is not a picker, but may refer to some
+			visitFields(o, parent, path + ".", visited);
+		}
+		return o;
+	}
+
+	/**
+	 * Marks the node of a metered picker as instrumented, once the picker
+	 * has been put in place of the original.
+	 * @param r The object put in place of the original
+	 */
+	protected static void installed(Object r)
+	{
+		Metered<?> m = Metered.of(r);
+		if (m != null)
+		{
+			m.getNode().m_instrumented = true;
+		}
+	}
+
+	/**
+	 * Gets the fields of a class and its ancestors that can refer to other
+	 * pickers.
+	 * @param c The class
+	 * @return The fields
+	 */
+	protected static Field[] getFields(Class<?> c)
+	{
+		Field[] fields = s_fields.get(c);
+		if (fields != null)
+		{
+			return fields;
+		}
+		List<Field> list = new ArrayList<Field>();
+		for (Class<?> k = c; k != null && k != Object.class; k = k.getSuperclass())
+		{
+			for (Field f : k.getDeclaredFields())
+			{
+				Class<?> t = f.getType();
+				if (Modifier.isStatic(f.getModifiers()) || t.isPrimitive() || t == String.class || t == java.util.Random.class || t == Random.class || f.isSynthetic())
+				{
+					continue;
+				}
+				try
+				{
+					f.setAccessible(true);
+				}
+				catch (RuntimeException e)
+				{
+					continue;
+				}
+				list.add(f);
+			}
+		}
+		fields = list.toArray(new Field[list.size()]);
+		s_fields.put(c, fields);
+		return fields;
+	}
+
+	/**
+	 * Gets the number of bytes allocated so far by the current thread.
+	 * @return The number of bytes
+	 */
+	protected static long allocatedBytes()
+	{
+		return s_threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Gets the bean measuring the memory allocated by threads.
+	 * @return The bean, or <tt>null</tt> if the runtime cannot measure
+	 * allocations
+	 */
+	/*@ null @*/ protected static com.sun.management.ThreadMXBean getThreadBean()
+	{
+		try
+		{
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean)
+			{
+				com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+				if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled())
+				{
+					return b;
+				}
+			}
+		}
+		catch (LinkageError e)
+		{
+			// Not available in this runtime
+		}
+		return null;
+	}
+
+	/**
+	 * The statistics of a node of a picker tree.
+	 */
+	public static class Node
+	{
+		/**
+		 * The path from the parent node to this node, made of field names and
+		 * indices.
+		 */
+		/*@ non_null @*/ protected final String m_name;
+
+		/**
+		 * The name of the class of the picker.
+		 */
+		/*@ non_null @*/ protected final String m_type;
+
+		/**
+		 * The children of this node, indexed by name.
+		 */
+		/*@ non_null @*/ protected final Map<String,Node> m_children;
+
+		/**
+		 * The durations of the calls, in nanoseconds.
+		 */
+		/*@ non_null @*/ protected final LatencyHistogram m_latencies;
+
+		/**
+		 * The total duration of the calls, in nanoseconds.
+		 */
+		/*@ non_null @*/ protected final LongAdder m_time;
+
+		/**
+		 * The number of bytes allocated during the calls.
+		 */
+		/*@ non_null @*/ protected final LongAdder m_allocated;
+
+		/**
+		 * The number of calls that threw a NoMoreElementException.
+		 */
+		/*@ non_null @*/ protected final LongAdder m_noMoreElements;
+
+		/**
+		 * The number of calls that threw a GiveUpException.
+		 */
+		/*@ non_null @*/ protected final LongAdder m_giveUps;
+
+		/**
+		 * The number of calls that threw another exception.
+		 */
+		/*@ non_null @*/ protected final LongAdder m_errors;
+
+		/**
+		 * Whether a metered picker recording its calls in this node has been
+		 * put in place of the original picker.
+		 */
+		protected volatile boolean m_instrumented;
+
+		/**
+		 * Creates a new node.
+		 * @param name The path from the parent node to this node
+		 * @param type The name of the class of the picker
+		 */
+		public Node(/*@ non_null @*/ String name, /*@ non_null @*/ String type)
+		{
+			super();
+			m_name = name;
+			m_type = type;
+			m_children = new LinkedHashMap<String,Node>();
+			m_latencies = new LatencyHistogram();
+			m_time = new LongAdder();
+			m_allocated = new LongAdder();
+			m_noMoreElements = new LongAdder();
+			m_giveUps = new LongAdder();
+			m_errors = new LongAdder();
+			m_instrumented = false;
+		}
+
+		/**
+		 * Records a call.
+		 * @param nanos The duration of the call
+		 * @param bytes The number of bytes allocated during the call
+		 */
+		protected void record(long nanos, long bytes)
+		{
+			m_latencies.record(nanos);
+			m_time.add(nanos);
+			if (bytes > 0)
+			{
+				m_allocated.add(bytes);
+			}
+		}
+
+		/**
+		 * Gets the child of this node with a given name, creating it if it does
+		 * not exist.
+		 * @param name The name
+		 * @param type The name of the class of the picker
+		 * @return The child
+		 */
+		/*@ non_null @*/ protected Node getChild(/*@ non_null @*/ String name, /*@ non_null @*/ String type)
+		{
+			synchronized (m_children)
+			{
+				Node n = m_children.get(name);
+				if (n == null)
+				{
+					n = new Node(name, type);
+					m_children.put(name, n);
+				}
+				return n;
+			}
+		}
+
+		/**
+		 * Gets the path from the parent node to this node.
+		 * @return The path
+		 */
+		/*@ pure non_null @*/ public String getName()
+		{
+			return m_name;
+		}
+
+		/**
+		 * Gets the name of the class of the picker.
+		 * @return The name
+		 */
+		/*@ pure non_null @*/ public String getType()
+		{
+			return m_type;
+		}
+
+		/**
+		 * Gets the children of this node.
+		 * @return The children
+		 */
+		/*@ non_null @*/ public List<Node> getChildren()
+		{
+			synchronized (m_children)
+			{
+				return new ArrayList<Node>(m_children.values());
+			}
+		}
+
+		/**
+		 * Gets a child of this node.
+		 * @param name The path from this node to the child
+		 * @return The child, or <tt>null</tt> if there is none with this name
+		 */
+		/*@ null @*/ public Node getChild(/*@ non_null @*/ String name)
+		{
+			synchronized (m_children)
+			{
+				return m_children.get(name);
+			}
+		}
+
+		/**
+		 * Determines whether the calls to the picker of this node are
+		 * recorded. This is not the case when the picker could not be
+		 * replaced by a metered picker in its parent, for instance because it
+		 * is referred to by a final field, or by a field declared with a
+		 * concrete picker class.
+		 * @return {@code true} if the calls are recorded
+		 */
+		/*@ pure @*/ public boolean isInstrumented()
+		{
+			return m_instrumented;
+		}
+
+		/**
+		 * Gets the number of calls.
+		 * @return The number of calls
+		 */
+		/*@ pure @*/ public long getCount()
+		{
+			return m_latencies.getCount();
+		}
+
+		/**
+		 * Gets the histogram of the duration of the calls.
+		 * @return The histogram, in nanoseconds
+		 */
+		/*@ non_null @*/ public LatencyHistogram getLatencies()
+		{
+			return m_latencies;
+		}
+
+		/**
+		 * Gets the total duration of the calls, including the calls to the
+		 * children.
+		 * @return The duration, in nanoseconds
+		 */
+		/*@ pure @*/ public long getTotalTime()
+		{
+			return m_time.sum();
+		}
+
+		/**
+		 * Gets the duration of the calls, excluding the calls to the children.
+		 * The calls to children that are not instrumented are not excluded.
+		 * @return The duration, in nanoseconds
+		 */
+		/*@ pure @*/ public long getSelfTime()
+		{
+			long t = getTotalTime();
+			for (Node c : getChildren())
+			{
+				t -= c.getTotalTime();
+			}
+			return Math.max(0, t);
+		}
+
+		/**
+		 * Gets the number of bytes allocated during the calls.
+		 * @return The number of bytes
+		 */
+		/*@ pure @*/ public long getAllocatedBytes()
+		{
+			return m_allocated.sum();
+		}
+
+		/**
+		 * Gets the number of calls that threw a NoMoreElementException.
+		 * @return The number of calls
+		 */
+		/*@ pure @*/ public long getNoMoreElements()
+		{
+			return m_noMoreElements.sum();
+		}
+
+		/**
+		 * Gets the number of calls that threw a GiveUpException.
+		 * @return The number of calls
+		 */
+		/*@ pure @*/ public long getGiveUps()
+		{
+			return m_giveUps.sum();
+		}
+
+		/**
+		 * Gets the number of calls that threw another exception.
+		 * @return The number of calls
+		 */
+		/*@ pure @*/ public long getErrors()
+		{
+			return m_errors.sum();
+		}
+
+		/**
+		 * Clears the statistics of this node and its children.
+		 */
+		public void reset()
+		{
+			m_latencies.reset();
+			m_time.reset();
+			m_allocated.reset();
+			m_noMoreElements.reset();
+			m_giveUps.reset();
+			m_errors.reset();
+			for (Node c : getChildren())
+			{
+				c.reset();
+			}
+		}
+
+		/**
+		 * Prints this node and its children, one per line.
+		 * @param out The builder where the nodes are printed
+		 * @param indent The indentation of this node
+		 */
+		protected void print(/*@ non_null @*/ StringBuilder out, /*@ non_null @*/ String indent)
+		{
+			long n = getCount();
+			out.append(indent);
+			if (!m_name.isEmpty())
+			{
+				out.append(m_name).append(": ");
+			}
+			out.append(m_type);
+			if (!m_instrumented)
+			{
+				out.append(" (not instrumented)");
+			}
+			else
+			{
+				out.append(" picks=").append(n);
+			}
+			if (n > 0)
+			{
+				out.append(" mean=").append((long) m_latencies.getMean()).append("ns");
+				out.append(" p99=").append(m_latencies.getValueAtPercentile(99)).append("ns");
+				boolean exact = true;
+				for (Node c : getChildren())
+				{
+					exact &= c.m_instrumented;
+				}
+				if (exact)
+				{
+					// Otherwise, part of the time of the children is unknown
+					out.append(" self=").append(getSelfTime() * 100 / Math.max(1, getTotalTime())).append("%");
+				}
+				out.append(" alloc=").append(getAllocatedBytes() / n).append("B/pick");
+			}
+			if (getNoMoreElements() > 0)
+			{
+				out.append(" noMore=").append(getNoMoreElements());
+			}
+			if (getGiveUps() > 0)
+			{
+				out.append(" giveUp=").append(getGiveUps());
+			}
+			if (getErrors() > 0)
+			{
+				out.append(" errors=").append(getErrors());
+			}
+			out.append("\n");
+			for (Node c : getChildren())
+			{
+				c.print(out, indent + "  ");
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder out = new StringBuilder();
+			print(out, "");
+			return out.toString();
+		}
+	}
+}
@@ -0,0 +1,350 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.uqac.lif.synthia.Picker;
+
+/**
+ * Rewrites a tree of pickers into an equivalent, cheaper one. The
+ * simplifier visits the tree from the leaves up, and asks each node
+ * implementing {@link Simplifiable} to replace itself by a simpler picker.
+ * The rewrites applied by the nodes of Synthia are:
+ * <ul>
+ * <li><em>constant folding</em>: a transformation whose inputs all come
+ * from {@link Constant} pickers is replaced by a constant; this applies,
+ * among others, to {@link ca.uqac.lif.synthia.random.AffineTransform
+ * AffineTransform}, {@link Offset} and {@link Freeze}</li>
+ * <li><em>transform fusion</em>: nested affine transforms over integers
+ * are merged into one, and a translation of a
+ * {@link ca.uqac.lif.synthia.random.RandomInteger RandomInteger} becomes
+ * a random integer with a shifted interval</li>
+ * <li><em>dead branch elimination</em>: alternatives of a {@link Choice}
+ * that can never be selected are removed, and a choice left with a single
+ * alternative is replaced by it</li>
+ * <li><em>redundant conversions</em>, such as an {@link AsInt} applied to
+ * a picker that already produces integers, are removed</li>
+ * </ul>
+ * A rewrite is only applied if the simplified tree produces exactly the
+ * same values as the original, given the same seeds. For instance,
+ * affine transforms on floats are not merged, as doing so would change
+ * the rounding of their results. The rewrites applied are listed by
+ * {@link #getRewrites()}.
+ * <p>
+ * Nodes that are not rewritten are reused in the simplified tree, which
+ * therefore shares state with the original: either of them should be
+ * used, but not both. A picker whose draws would be discarded by a rewrite
+ * (such as the picker deciding between the alternatives of a choice) is
+ * only removed if it occurs once among the nodes visited by the simplifier;
+ * pickers shared with code outside the tree should not be passed to it.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class PickerSimplifier
+{
+	/**
+	 * Name of the rule replacing a transformation of constants by a
+	 * constant.
+	 */
+	public static final String CONSTANT_FOLDING = "Constant folding";
+
+	/**
+	 * Name of the rule merging nested transformations.
+	 */
+	public static final String TRANSFORM_FUSION = "Transform fusion";
+
+	/**
+	 * Name of the rule removing alternatives that can never be selected.
+	 */
+	public static final String DEAD_BRANCH = "Dead branch elimination";
+
+	/**
+	 * Name of the rule removing conversions that have no effect.
+	 */
+	public static final String REDUNDANT_CONVERSION = "Redundant conversion";
+
+	/**
+	 * The largest magnitude up to which all integers can be represented
+	 * exactly by a float.
+	 */
+	protected static final long MAX_EXACT_INT = 1L << 24;
+
+	/**
+	 * The rewrites applied during the last call to {@link #simplify(Picker)}.
+	 */
+	/*@ non_null @*/ protected final List<Rewrite> m_rewrites;
+
+	/**
+	 * The number of times each picker is reached in the tree.
+	 */
+	/*@ non_null @*/ protected final Map<Picker<?>,Integer> m_uses;
+
+	/**
+	 * A flag indicating that the simplifier is counting the occurrences
+	 * of each picker, rather than rewriting the tree.
+	 */
+	protected boolean m_counting;
+
+	/**
+	 * Creates a new simplifier.
+	 */
+	public PickerSimplifier()
+	{
+		super();
+		m_rewrites = new ArrayList<Rewrite>();
+		m_uses = new IdentityHashMap<Picker<?>,Integer>();
+		m_counting = false;
+	}
+
+	/**
+	 * Simplifies a picker tree.
+	 * @param <T> The type of the elements produced by the picker
+	 * @param picker The root of the tree
+	 * @return The simplified tree, which may be the original picker if no
+	 * rewrite applies
+	 */
+	/*@ non_null @*/ public <T> Picker<T> simplify(/*@ non_null @*/ Picker<T> picker)
+	{
+		m_rewrites.clear();
+		m_uses.clear();
+		// A first pass counts the occurrences of each picker, so that none
+		// is removed while it is used elsewhere
+		m_counting = true;
+		reduce(picker);
+		m_counting = false;
+		return reduce(picker);
+	}
+
+	/**
+	 * Gets the rewrites applied during the last call to
+	 * {@link #simplify(Picker)}, from the leaves of the tree up.
+	 * @return The list of rewrites
+	 */
+	/*@ non_null @*/ public List<Rewrite> getRewrites()
+	{
+		return Collections.unmodifiableList(m_rewrites);
+	}
+
+	/**
+	 * Simplifies a node of the tree. This method is called by
+	 * {@link Simplifiable} nodes on each of their children.
+	 * @param <T> The type of the elements produced by the picker
+	 * @param picker The node
+	 * @return The simplified node
+	 */
+	@SuppressWarnings("unchecked")
+	/*@ non_null @*/ public <T> Picker<T> reduce(/*@ non_null @*/ Picker<T> picker)
+	{
+		if (m_counting)
+		{
+			Integer n = m_uses.get(picker);
+			m_uses.put(picker, n == null ? 1 : n + 1);
+		}
+		if (!(picker instanceof Simplifiable))
+		{
+			return picker;
+		}
+		return (Picker<T>) ((Simplifiable) picker).simplify(this);
+	}
+
+	/**
+	 * Determines if a picker can be removed from the tree, or replaced by
+	 * a copy, without affecting other parts of the tree.
+	 * @param picker The picker
+	 * @return <tt>true</tt> if the picker occurs more than once in the tree
+	 */
+	public boolean isShared(/*@ non_null @*/ Picker<?> picker)
+	{
+		if (m_counting)
+		{
+			return true;
+		}
+		Integer n = m_uses.get(picker);
+		return n == null || n > 1;
+	}
+
+	/**
+	 * Records a rewrite.
+	 * @param rule The name of the rule
+	 * @param before The picker that is replaced
+	 * @param after The picker that replaces it
+	 */
+	public void report(/*@ non_null @*/ String rule, /*@ non_null @*/ Picker<?> before, /*@ non_null @*/ Picker<?> after)
+	{
+		if (!m_counting)
+		{
+			m_rewrites.add(new Rewrite(rule, before, after));
+		}
+	}
+
+	/**
+	 * Replaces a picker by a constant, if its value can be computed. This
+	 * method must only be called on pickers whose inputs all come from
+	 * {@link Constant} pickers, and which always produce the same value
+	 * for the same inputs.
+	 * @param <T> The type of the elements produced by the picker
+	 * @param before The picker that is replaced
+	 * @param picker The picker whose value is computed, which may be a
+	 * copy of <tt>before</tt> with simplified children
+	 * @return The constant, or <tt>picker</tt> if its value cannot be
+	 * computed
+	 */
+	/*@ non_null @*/ public <T> Picker<T> fold(/*@ non_null @*/ Picker<?> before, /*@ non_null @*/ Picker<T> picker)
+	{
+		T value;
+		try
+		{
+			value = picker.pick();
+		}
+		catch (RuntimeException e)
+		{
+			// The picker fails on these inputs: let it fail when used
+			return picker;
+		}
+		if (value == null)
+		{
+			return picker;
+		}
+		Constant<T> c = new Constant<T>(value);
+		report(CONSTANT_FOLDING, before, c);
+		return c;
+	}
+
+	/**
+	 * Determines if a float is an integer whose arithmetic is exact.
+	 * @param f The float
+	 * @return <tt>true</tt> if the float is an integer of magnitude at most
+	 * 2<sup>24</sup>
+	 */
+	public static boolean isIntegral(float f)
+	{
+		return f == Math.rint(f) && Math.abs(f) <= MAX_EXACT_INT;
+	}
+
+	/**
+	 * Determines if integers can all be represented exactly by floats.
+	 * @param values The integers
+	 * @return <tt>true</tt> if all integers are of magnitude at most
+	 * 2<sup>24</sup>
+	 */
+	public static boolean isExact(long ... values)
+	{
+		for (long v : values)
+		{
+			if (Math.abs(v) > MAX_EXACT_INT)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Interface implemented by pickers that can be rewritten by a
+	 * {@link PickerSimplifier}.
+	 */
+	public interface Simplifiable
+	{
+		/**
+		 * Simplifies the picker. Implementations first simplify their
+		 * children by calling {@link PickerSimplifier#reduce(Picker) reduce()},
+		 * and report each rewrite they apply with
+		 * {@link PickerSimplifier#report(String, Picker, Picker) report()}.
+		 * The picker itself must not be modified.
+		 * @param s The simplifier
+		 * @return A picker producing the same values as this one; this picker
+		 * itself if it cannot be simplified
+		 */
+		/*@ non_null @*/ public Picker<?> simplify(/*@ non_null @*/ PickerSimplifier s);
+	}
+
+	/**
+	 * A rewrite applied to a picker tree.
+	 */
+	public static class Rewrite
+	{
+		/**
+		 * The name of the rule.
+		 */
+		/*@ non_null @*/ protected final String m_rule;
+
+		/**
+		 * The picker that is replaced.
+		 */
+		/*@ non_null @*/ protected final Picker<?> m_before;
+
+		/**
+		 * The picker that replaces it.
+		 */
+		/*@ non_null @*/ protected final Picker<?> m_after;
+
+		/**
+		 * Creates a new rewrite.
+		 * @param rule The name of the rule
+		 * @param before The picker that is replaced
+		 * @param after The picker that replaces it
+		 */
+		public Rewrite(/*@ non_null @*/ String rule, /*@ non_null @*/ Picker<?> before, /*@ non_null @*/ Picker<?> after)
+		{
+			super();
+			m_rule = rule;
+			m_before = before;
+			m_after = after;
+		}
+
+		/**
+		 * Gets the name of the rule.
+		 * @return The name
+		 */
+		/*@ pure non_null @*/ public String getRule()
+		{
+			return m_rule;
+		}
+
+		/**
+		 * Gets the picker that is replaced.
+		 * @return The picker
+		 */
+		/*@ pure non_null @*/ public Picker<?> getBefore()
+		{
+			return m_before;
+		}
+
+		/**
+		 * Gets the picker that replaces it.
+		 * @return The picker
+		 */
+		/*@ pure non_null @*/ public Picker<?> getAfter()
+		{
+			return m_after;
+		}
+
+		@Override
+		public String toString()
+		{
+			return m_rule + ": " + m_before + " -> " + m_after;
+		}
+	}
+}
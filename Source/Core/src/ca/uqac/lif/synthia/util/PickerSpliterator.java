@@ -0,0 +1,547 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ca.uqac.lif.synthia.Bounded;
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.enumerative.AllIntegers;
+import ca.uqac.lif.synthia.random.Reseeder;
+
+/**
+ * A {@link Spliterator} over the values produced by a picker, making it
+ * possible to use pickers in the pipelines of {@code java.util.stream}.
+ * The spliterator never modifies the picker it is given; it produces values
+ * with copies of it obtained with
+ * {@link Picker#duplicate(boolean) duplicate(false)}.
+ * <p>
+ * For a picker that is not {@link Bounded}, the values are split into
+ * <em>blocks</em> of fixed size, as in {@link BulkGenerator}: each block is
+ * produced by its own copy, reseeded by a {@link Reseeder} with a seed
+ * derived from a master seed and the index of the block. Splitting the
+ * spliterator hands a range of blocks to the new spliterator, so that a
+ * parallel stream scales the generation of values; yet the sequence of
+ * values, in encounter order, is the same whether the stream is parallel or
+ * not. If the copy of a block has no more element, the block ends early and
+ * the values continue with the next block, as in {@link BulkGenerator};
+ * this does not depend on the way the spliterator is split.
+ * <p>
+ * For a {@link Bounded} picker, values are produced by a single copy
+ * until it is done. A bounded picker cannot be split by duplicating it, as
+ * a copy would enumerate the same values again. The exception is an
+ * {@link AllIntegers} picker enumerating values in order, which is split by
+ * handing half of its remaining range to the new spliterator.
+ * <p>
+ * Pickers of numbers can also be turned into an {@link IntStream} or a
+ * {@link DoubleStream} with the {@link OfInt} and {@link OfDouble} variants.
+ * For example, the following prints the sum of one million random integers,
+ * computed in parallel:
+ * <pre>
+ * System.out.println(PickerSpliterator.intStream(new RandomInteger(0, 10), 42, 1000000).parallel().sum());
+ * </pre>
+ * 
+ * @param <T> The type of the elements produced by the picker
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class PickerSpliterator<T> implements Spliterator<T>
+{
+	/**
+	 * The object producing the values of this spliterator.
+	 */
+	/*@ non_null @*/ protected final Source<T> m_source;
+
+	/**
+	 * Creates a new spliterator.
+	 * @param picker The picker of which copies produce the values
+	 * @param seed The master seed from which the seed of each copy is derived
+	 * @param n The maximum number of values to produce
+	 * @param block_size The number of values in a block
+	 */
+	public PickerSpliterator(/*@ non_null @*/ Picker<T> picker, long seed, long n, int block_size)
+	{
+		this(new Source<T>(picker, seed, n, block_size));
+	}
+
+	/**
+	 * Creates a new spliterator using blocks of default size.
+	 * @param picker The picker of which copies produce the values
+	 * @param seed The master seed from which the seed of each copy is derived
+	 * @param n The maximum number of values to produce
+	 */
+	public PickerSpliterator(/*@ non_null @*/ Picker<T> picker, long seed, long n)
+	{
+		this(picker, seed, n, BulkGenerator.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new spliterator from an existing source.
+	 * @param source The source
+	 */
+	protected PickerSpliterator(/*@ non_null @*/ Source<T> source)
+	{
+		super();
+		m_source = source;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action)
+	{
+		if (!m_source.advance())
+		{
+			return false;
+		}
+		action.accept(m_source.m_value);
+		return true;
+	}
+
+	@Override
+	/*@ null @*/ public PickerSpliterator<T> trySplit()
+	{
+		Source<T> prefix = m_source.split();
+		return prefix == null ? null : new PickerSpliterator<T>(prefix);
+	}
+
+	@Override
+	public long estimateSize()
+	{
+		return m_source.estimateSize();
+	}
+
+	@Override
+	public int characteristics()
+	{
+		return ORDERED;
+	}
+
+	/**
+	 * Creates a stream of values produced by a picker.
+	 * @param <T> The type of the elements produced by the picker
+	 * @param picker The picker
+	 * @param seed The master seed from which the seed of each copy is derived
+	 * @param n The maximum number of values in the stream
+	 * @return The stream, which is sequential
+	 */
+	/*@ non_null @*/ public static <T> Stream<T> stream(/*@ non_null @*/ Picker<T> picker, long seed, long n)
+	{
+		return StreamSupport.stream(new PickerSpliterator<T>(picker, seed, n), false);
+	}
+
+	/**
+	 * Creates a stream of values produced by a picker, which only ends when
+	 * the picker has no more element.
+	 * @param <T> The type of the elements produced by the picker
+	 * @param picker The picker
+	 * @param seed The master seed from which the seed of each copy is derived
+	 * @return The stream, which is sequential
+	 */
+	/*@ non_null @*/ public static <T> Stream<T> stream(/*@ non_null @*/ Picker<T> picker, long seed)
+	{
+		return stream(picker, seed, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a stream of integers produced by a picker of numbers.
+	 * @param picker The picker
+	 * @param seed The master seed from which the seed of each copy is derived
+	 * @param n The maximum number of values in the stream
+	 * @return The stream, which is sequential
+	 */
+	/*@ non_null @*/ public static IntStream intStream(/*@ non_null @*/ Picker<? extends Number> picker, long seed, long n)
+	{
+		return StreamSupport.intStream(new OfInt(picker, seed, n), false);
+	}
+
+	/**
+	 * Creates a stream of doubles produced by a picker of numbers.
+	 * @param picker The picker
+	 * @param seed The master seed from which the seed of each copy is derived
+	 * @param n The maximum number of values in the stream
+	 * @return The stream, which is sequential
+	 */
+	/*@ non_null @*/ public static DoubleStream doubleStream(/*@ non_null @*/ Picker<? extends Number> picker, long seed, long n)
+	{
+		return StreamSupport.doubleStream(new OfDouble(picker, seed, n), false);
+	}
+
+	/**
+	 * Spliterator over the values produced by a picker of numbers, seen as
+	 * primitive integers.
+	 */
+	public static class OfInt implements Spliterator.OfInt
+	{
+		/**
+		 * The object producing the values of this spliterator.
+		 */
+		/*@ non_null @*/ protected final Source<? extends Number> m_source;
+
+		/**
+		 * Creates a new spliterator using blocks of default size.
+		 * @param picker The picker of which copies produce the values
+		 * @param seed The master seed from which the seed of each copy is
+		 * derived
+		 * @param n The maximum number of values to produce
+		 */
+		public OfInt(/*@ non_null @*/ Picker<? extends Number> picker, long seed, long n)
+		{
+			this(newSource(picker, seed, n));
+		}
+
+		/**
+		 * Creates a new spliterator from an existing source.
+		 * @param source The source
+		 */
+		protected OfInt(/*@ non_null @*/ Source<? extends Number> source)
+		{
+			super();
+			m_source = source;
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action)
+		{
+			if (!m_source.advance())
+			{
+				return false;
+			}
+			action.accept(m_source.m_value.intValue());
+			return true;
+		}
+
+		@Override
+		/*@ null @*/ public PickerSpliterator.OfInt trySplit()
+		{
+			Source<? extends Number> prefix = m_source.split();
+			return prefix == null ? null : new PickerSpliterator.OfInt(prefix);
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return m_source.estimateSize();
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return ORDERED;
+		}
+	}
+
+	/**
+	 * Spliterator over the values produced by a picker of numbers, seen as
+	 * primitive doubles.
+	 */
+	public static class OfDouble implements Spliterator.OfDouble
+	{
+		/**
+		 * The object producing the values of this spliterator.
+		 */
+		/*@ non_null @*/ protected final Source<? extends Number> m_source;
+
+		/**
+		 * Creates a new spliterator using blocks of default size.
+		 * @param picker The picker of which copies produce the values
+		 * @param seed The master seed from which the seed of each copy is
+		 * derived
+		 * @param n The maximum number of values to produce
+		 */
+		public OfDouble(/*@ non_null @*/ Picker<? extends Number> picker, long seed, long n)
+		{
+			this(newSource(picker, seed, n));
+		}
+
+		/**
+		 * Creates a new spliterator from an existing source.
+		 * @param source The source
+		 */
+		protected OfDouble(/*@ non_null @*/ Source<? extends Number> source)
+		{
+			super();
+			m_source = source;
+		}
+
+		@Override
+		public boolean tryAdvance(DoubleConsumer action)
+		{
+			if (!m_source.advance())
+			{
+				return false;
+			}
+			action.accept(m_source.m_value.doubleValue());
+			return true;
+		}
+
+		@Override
+		/*@ null @*/ public PickerSpliterator.OfDouble trySplit()
+		{
+			Source<? extends Number> prefix = m_source.split();
+			return prefix == null ? null : new PickerSpliterator.OfDouble(prefix);
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return m_source.estimateSize();
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return ORDERED;
+		}
+	}
+
+	/**
+	 * Creates a source with blocks of default size, capturing the type of
+	 * the picker.
+	 * @param <U> The type of the elements produced by the picker
+	 * @param picker The picker
+	 * @param seed The master seed
+	 * @param n The maximum number of values to produce
+	 * @return The source
+	 */
+	protected static <U> Source<U> newSource(Picker<U> picker, long seed, long n)
+	{
+		return new Source<U>(picker, seed, n, BulkGenerator.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Produces the values of a spliterator, and splits the range of values
+	 * it covers. The values of the source are indexed from 0; a source covers
+	 * the indices in an interval, which is halved when the source is split.
+	 * @param <T> The type of the elements produced by the picker
+	 */
+	protected static class Source<T>
+	{
+		/**
+		 * The picker of which copies produce the values.
+		 */
+		/*@ non_null @*/ protected final Picker<T> m_picker;
+
+		/**
+		 * The master seed from which the seed of each copy is derived.
+		 */
+		protected final long m_seed;
+
+		/**
+		 * The number of values in a block.
+		 */
+		protected final int m_blockSize;
+
+		/**
+		 * Whether the picker is bounded, in which case a single copy produces
+		 * all the values.
+		 */
+		protected final boolean m_bounded;
+
+		/**
+		 * The index of the next value to produce.
+		 */
+		protected long m_from;
+
+		/**
+		 * The index after the last value to produce.
+		 */
+		protected long m_to;
+
+		/**
+		 * The copy producing the current values, or <tt>null</tt> if the next
+		 * value starts a new block.
+		 */
+		/*@ null @*/ protected Picker<T> m_current;
+
+		/**
+		 * The last value produced.
+		 */
+		/*@ null @*/ protected T m_value;
+
+		/**
+		 * Creates a new source.
+		 * @param picker The picker of which copies produce the values
+		 * @param seed The master seed from which the seed of each copy is
+		 * derived
+		 * @param n The maximum number of values to produce
+		 * @param block_size The number of values in a block
+		 */
+		public Source(/*@ non_null @*/ Picker<T> picker, long seed, long n, int block_size)
+		{
+			this(picker, seed, Math.max(1, block_size), picker instanceof Bounded, 0, Math.max(0, n), null);
+			if (m_bounded)
+			{
+				m_current = newCopy(0);
+			}
+		}
+
+		/**
+		 * Creates a new source covering part of the values of another one.
+		 * @param picker The picker of which copies produce the values
+		 * @param seed The master seed
+		 * @param block_size The number of values in a block
+		 * @param bounded Whether the picker is bounded
+		 * @param from The index of the first value to produce
+		 * @param to The index after the last value to produce
+		 * @param current The copy producing the current values
+		 */
+		protected Source(Picker<T> picker, long seed, int block_size, boolean bounded, long from, long to, Picker<T> current)
+		{
+			super();
+			m_picker = picker;
+			m_seed = seed;
+			m_blockSize = block_size;
+			m_bounded = bounded;
+			m_from = from;
+			m_to = to;
+			m_current = current;
+		}
+
+		/**
+		 * Produces the next value, which is then available in
+		 * {@link #m_value}.
+		 * @return {@code true} if a value was produced, {@code false} if the
+		 * source has no more value
+		 */
+		public boolean advance()
+		{
+			while (m_from < m_to)
+			{
+				if (m_bounded && ((Bounded<?>) m_current).isDone())
+				{
+					m_from = m_to;
+					return false;
+				}
+				if (m_current == null || (!m_bounded && m_from % m_blockSize == 0))
+				{
+					m_current = newCopy(m_from / m_blockSize);
+				}
+				try
+				{
+					m_value = m_current.pick();
+					m_from++;
+					return true;
+				}
+				catch (NoMoreElementException e)
+				{
+					if (m_bounded)
+					{
+						m_from = m_to;
+						return false;
+					}
+					// Only the current block ends: skip to the next one
+					m_from = Math.min(m_to, (m_from / m_blockSize + 1) * m_blockSize);
+					m_current = null;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Hands the first part of the values of this source to a new source.
+		 * @return The new source, or <tt>null</tt> if this source cannot be
+		 * split
+		 */
+		/*@ null @*/ public Source<T> split()
+		{
+			if (m_bounded)
+			{
+				return splitRange();
+			}
+			// Split on the block boundary closest to the middle of the interval
+			long b = (m_from + (m_to - m_from) / 2) / m_blockSize;
+			if (b * m_blockSize <= m_from)
+			{
+				b++;
+			}
+			long mid = b * m_blockSize;
+			if (mid >= m_to || mid <= m_from)
+			{
+				return null;
+			}
+			Source<T> prefix = new Source<T>(m_picker, m_seed, m_blockSize, false, m_from, mid, m_current);
+			m_from = mid;
+			m_current = null;
+			return prefix;
+		}
+
+		/**
+		 * Splits the source of an {@link AllIntegers} picker by halving its
+		 * range.
+		 * @return The new source, or <tt>null</tt> if this source cannot be
+		 * split
+		 */
+		@SuppressWarnings("unchecked")
+		/*@ null @*/ protected Source<T> splitRange()
+		{
+			if (!(m_current instanceof AllIntegers))
+			{
+				return null;
+			}
+			AllIntegers ai = (AllIntegers) m_current;
+			if (m_to - m_from < ai.countRemaining())
+			{
+				// The bound on the number of values falls inside the range
+				return null;
+			}
+			AllIntegers lower = ai.split();
+			if (lower == null)
+			{
+				return null;
+			}
+			long mid = m_from + lower.countRemaining();
+			Source<T> prefix = new Source<T>(m_picker, m_seed, m_blockSize, true, m_from, mid, (Picker<T>) lower);
+			m_from = mid;
+			return prefix;
+		}
+
+		/**
+		 * Estimates the number of values that remain to be produced.
+		 * @return The number of values
+		 */
+		public long estimateSize()
+		{
+			long size = m_to - m_from;
+			if (m_current instanceof AllIntegers)
+			{
+				size = Math.min(size, ((AllIntegers) m_current).countRemaining());
+			}
+			return size;
+		}
+
+		/**
+		 * Creates the copy producing the values of a block.
+		 * @param block The index of the block
+		 * @return The copy
+		 */
+		/*@ non_null @*/ protected Picker<T> newCopy(long block)
+		{
+			Picker<T> p = m_picker.duplicate(false);
+			Reseeder.reseed(p, Reseeder.derive(m_seed, block));
+			return p;
+		}
+	}
+}
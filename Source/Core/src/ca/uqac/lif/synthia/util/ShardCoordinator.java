@@ -0,0 +1,699 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import ca.uqac.lif.synthia.Picker;
+
+/**
+ * Splits the generation of a large number of values over several worker
+ * processes. The values to produce are divided into <em>shards</em> of
+ * fixed size, identified by their index. Each {@link ShardWorker} rebuilds
+ * the picker from the same {@link Job} specification, and produces any
+ * shard from the master seed and the index of the shard alone; the values
+ * generated are therefore the same as those of a single-process
+ * {@link BulkGenerator} whose blocks have the size of a shard, regardless
+ * of the number of workers.
+ * <p>
+ * The coordinator starts the workers as local processes, and talks to each
+ * of them through the pipes of its standard input and output. Shards are
+ * handed out one at a time to the first worker available. If a worker
+ * dies, or takes longer than a given timeout to produce a shard, the shard
+ * it was producing is handed to another one, and the worker is killed and
+ * started again, up to a maximum number of times. Since shard
+ * files are written atomically and existing shards are not produced
+ * again, a job that fails can simply be run again with the same
+ * parameters: only the missing shards are produced.
+ * <p>
+ * Once all shards are produced, the coordinator writes a <em>manifest</em>
+ * listing, for each shard, its file, number of values and CRC-32
+ * checksum. The shards can then be used as is, or concatenated in order
+ * with {@link #merge(OutputStream)}.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class ShardCoordinator
+{
+	/**
+	 * The name of the manifest file in the output folder.
+	 */
+	public static final String MANIFEST = "manifest.txt";
+
+	/**
+	 * The class of the job, instantiated by each worker.
+	 */
+	/*@ non_null @*/ protected final Class<? extends Job<?>> m_job;
+
+	/**
+	 * The master seed from which the seed of each shard is derived.
+	 */
+	protected final long m_seed;
+
+	/**
+	 * The total number of values to generate.
+	 */
+	protected final long m_count;
+
+	/**
+	 * The number of values in a shard.
+	 */
+	protected final int m_shardSize;
+
+	/**
+	 * The folder where shard files are written.
+	 */
+	/*@ non_null @*/ protected final File m_folder;
+
+	/**
+	 * The number of worker processes.
+	 */
+	protected int m_workers;
+
+	/**
+	 * The number of times a worker is started again after it dies.
+	 */
+	protected int m_restarts;
+
+	/**
+	 * The delay, in nanoseconds, after which a worker that has not produced
+	 * its shard is killed.
+	 */
+	protected long m_shardTimeout;
+
+	/**
+	 * The class path passed to the worker processes.
+	 */
+	/*@ non_null @*/ protected String m_classpath;
+
+	/**
+	 * The error messages reported by the workers during the last run.
+	 */
+	/*@ non_null @*/ protected final Queue<String> m_errors;
+
+	/**
+	 * Creates a new coordinator.
+	 * @param job The class of the job, which must be public and have a
+	 * public constructor without arguments
+	 * @param seed The master seed from which the seed of each shard is
+	 * derived
+	 * @param count The total number of values to generate
+	 * @param shard_size The number of values in a shard
+	 * @param folder The folder where shard files are written
+	 */
+	public ShardCoordinator(/*@ non_null @*/ Class<? extends Job<?>> job, long seed, long count, int shard_size, /*@ non_null @*/ File folder)
+	{
+		super();
+		m_job = job;
+		m_seed = seed;
+		m_count = count;
+		m_shardSize = Math.max(1, shard_size);
+		m_folder = folder;
+		m_workers = Runtime.getRuntime().availableProcessors();
+		m_restarts = 2;
+		m_shardTimeout = TimeUnit.MINUTES.toNanos(10);
+		m_classpath = System.getProperty("java.class.path");
+		m_errors = new ConcurrentLinkedQueue<String>();
+	}
+
+	/**
+	 * Sets the number of worker processes.
+	 * @param n The number of workers
+	 * @return This coordinator
+	 */
+	/*@ non_null @*/ public ShardCoordinator setWorkers(int n)
+	{
+		m_workers = Math.max(1, n);
+		return this;
+	}
+
+	/**
+	 * Sets the number of times a worker is started again after it dies.
+	 * @param n The number of restarts
+	 * @return This coordinator
+	 */
+	/*@ non_null @*/ public ShardCoordinator setRestarts(int n)
+	{
+		m_restarts = Math.max(0, n);
+		return this;
+	}
+
+	/**
+	 * Sets the delay after which a worker that has not produced its shard is
+	 * considered as hung. The worker is then killed, and the shard is handed
+	 * to another one.
+	 * @param duration The delay
+	 * @param unit The unit of the delay
+	 * @return This coordinator
+	 */
+	/*@ non_null @*/ public ShardCoordinator setShardTimeout(long duration, /*@ non_null @*/ TimeUnit unit)
+	{
+		m_shardTimeout = unit.toNanos(duration);
+		return this;
+	}
+
+	/**
+	 * Sets the class path passed to the worker processes. By default, the
+	 * class path of the current process is used.
+	 * @param classpath The class path
+	 * @return This coordinator
+	 */
+	/*@ non_null @*/ public ShardCoordinator setClasspath(/*@ non_null @*/ String classpath)
+	{
+		m_classpath = classpath;
+		return this;
+	}
+
+	/**
+	 * Gets the number of shards of the job.
+	 * @return The number of shards
+	 */
+	/*@ pure @*/ public long getShardCount()
+	{
+		return (m_count + m_shardSize - 1) / m_shardSize;
+	}
+
+	/**
+	 * Produces all the shards that do not exist yet, and writes the
+	 * manifest of the job.
+	 * @return The description of each shard, in order
+	 * @throws IOException If some shards could not be produced; the shards
+	 * that were are kept, and running the job again produces the others
+	 */
+	/*@ non_null @*/ public List<Shard> run() throws IOException
+	{
+		if (!m_folder.isDirectory() && !m_folder.mkdirs())
+		{
+			throw new IOException("Cannot create " + m_folder);
+		}
+		long shards = getShardCount();
+		Queue<Long> pending = new ConcurrentLinkedQueue<Long>();
+		for (long i = 0; i < shards; i++)
+		{
+			pending.add(i);
+		}
+		Map<Long,Shard> done = new ConcurrentHashMap<Long,Shard>();
+		m_errors.clear();
+		Thread[] drivers = new Thread[(int) Math.min(m_workers, Math.max(1, shards))];
+		for (int i = 0; i < drivers.length; i++)
+		{
+			drivers[i] = new Thread(new Driver(pending, done), "ShardCoordinator-" + i);
+			drivers[i].start();
+		}
+		try
+		{
+			for (Thread t : drivers)
+			{
+				t.join();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			for (Thread t : drivers)
+			{
+				t.interrupt();
+			}
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for workers");
+		}
+		if (done.size() < shards)
+		{
+			throw new IOException((shards - done.size()) + " of " + shards + " shards could not be produced; run the job again to resume" + (m_errors.isEmpty() ? "" : ": " + m_errors.peek()));
+		}
+		List<Shard> list = new ArrayList<Shard>((int) shards);
+		for (long i = 0; i < shards; i++)
+		{
+			list.add(done.get(i));
+		}
+		writeManifest(list);
+		return list;
+	}
+
+	/**
+	 * Concatenates the files of all shards, in order.
+	 * @param out The stream to which the contents of the shards are written
+	 * @throws IOException If a shard file is missing or cannot be read
+	 */
+	public void merge(/*@ non_null @*/ OutputStream out) throws IOException
+	{
+		byte[] buffer = new byte[65536];
+		for (long i = 0; i < getShardCount(); i++)
+		{
+			InputStream in = new FileInputStream(getFile(m_folder, i));
+			try
+			{
+				int len;
+				while ((len = in.read(buffer)) >= 0)
+				{
+					out.write(buffer, 0, len);
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Gets the file where a shard is written.
+	 * @param folder The output folder
+	 * @param index The index of the shard
+	 * @return The file
+	 */
+	/*@ non_null @*/ public static File getFile(/*@ non_null @*/ File folder, long index)
+	{
+		return new File(folder, String.format("shard-%08d.txt", index));
+	}
+
+	/**
+	 * Writes the manifest of the job in the output folder.
+	 * @param shards The description of each shard, in order
+	 * @throws IOException If the manifest cannot be written
+	 */
+	protected void writeManifest(/*@ non_null @*/ List<Shard> shards) throws IOException
+	{
+		PrintStream ps = new PrintStream(new FileOutputStream(new File(m_folder, MANIFEST)), false, "UTF-8");
+		try
+		{
+			ps.println("# " + m_job.getName() + " seed=" + m_seed + " count=" + m_count + " shard-size=" + m_shardSize);
+			for (Shard s : shards)
+			{
+				ps.println(s);
+			}
+		}
+		finally
+		{
+			ps.close();
+		}
+	}
+
+	/**
+	 * Starts a worker process.
+	 * @return The process
+	 * @throws IOException If the process cannot be started
+	 */
+	/*@ non_null @*/ protected Process startWorker() throws IOException
+	{
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder pb = new ProcessBuilder(java, "-cp", m_classpath, ShardWorker.class.getName(), m_job.getName(), Long.toString(m_seed), Long.toString(m_count), Integer.toString(m_shardSize), m_folder.getAbsolutePath());
+		pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return pb.start();
+	}
+
+	/**
+	 * Runs a job from the command line, and prints its manifest.
+	 * @param args The name of the job class, the master seed, the total
+	 * number of values, the number of values in a shard, the output folder,
+	 * and optionally the number of workers
+	 * @throws Exception If the job class cannot be found, or some shards
+	 * could not be produced
+	 */
+	@SuppressWarnings("unchecked")
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 5)
+		{
+			System.err.println("Usage: ShardCoordinator job-class seed count shard-size folder [workers]");
+			System.exit(1);
+		}
+		ShardCoordinator c = new ShardCoordinator((Class<? extends Job<?>>) Class.forName(args[0]), Long.parseLong(args[1]), Long.parseLong(args[2]), Integer.parseInt(args[3]), new File(args[4]));
+		if (args.length > 5)
+		{
+			c.setWorkers(Integer.parseInt(args[5]));
+		}
+		for (Shard s : c.run())
+		{
+			System.out.println(s);
+		}
+	}
+
+	/**
+	 * Hands out shards to a worker process, restarting it when it dies or
+	 * hangs.
+	 */
+	protected class Driver implements Runnable
+	{
+		/**
+		 * The shards that remain to be produced.
+		 */
+		/*@ non_null @*/ protected final Queue<Long> m_pending;
+
+		/**
+		 * The shards produced so far, indexed by their number.
+		 */
+		/*@ non_null @*/ protected final Map<Long,Shard> m_done;
+
+		/**
+		 * Creates a new driver.
+		 * @param pending The shards that remain to be produced
+		 * @param done The shards produced so far
+		 */
+		public Driver(/*@ non_null @*/ Queue<Long> pending, /*@ non_null @*/ Map<Long,Shard> done)
+		{
+			super();
+			m_pending = pending;
+			m_done = done;
+		}
+
+		@Override
+		public void run()
+		{
+			for (int starts = 0; starts <= m_restarts && !m_pending.isEmpty() && !Thread.currentThread().isInterrupted(); starts++)
+			{
+				Process p = null;
+				try
+				{
+					p = startWorker();
+					serve(p);
+				}
+				catch (IOException e)
+				{
+					m_errors.add(String.valueOf(e));
+				}
+				finally
+				{
+					if (p != null)
+					{
+						p.destroy();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Hands out shards to a worker until there are no more shards, or the
+		 * worker dies or hangs.
+		 * @param p The worker process
+		 * @throws IOException If the worker dies or hangs
+		 */
+		protected void serve(/*@ non_null @*/ Process p) throws IOException
+		{
+			PrintStream to = new PrintStream(p.getOutputStream(), true, "UTF-8");
+			BufferedReader from = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+			Watchdog watchdog = new Watchdog(p);
+			Thread t = new Thread(watchdog, Thread.currentThread().getName() + "-watchdog");
+			t.setDaemon(true);
+			t.start();
+			try
+			{
+				Long index;
+				while ((index = m_pending.poll()) != null)
+				{
+					to.println(index);
+					watchdog.arm(System.nanoTime() + m_shardTimeout);
+					String line;
+					try
+					{
+						line = from.readLine();
+					}
+					catch (IOException e)
+					{
+						line = null;
+					}
+					boolean expired = watchdog.disarm();
+					if (line == null)
+					{
+						// The worker died, or hung and was killed: another one will
+						// produce the shard
+						m_pending.add(index);
+						throw new IOException("Worker " + (expired ? "timed out" : "died") + " while producing shard " + index);
+					}
+					handle(index, line);
+				}
+				to.close();
+			}
+			finally
+			{
+				watchdog.stop();
+			}
+		}
+
+		/**
+		 * Handles the line sent back by a worker for a shard.
+		 * @param index The index of the shard
+		 * @param line The line
+		 */
+		protected void handle(long index, /*@ non_null @*/ String line)
+		{
+			String[] parts = line.split(" ", 4);
+			if (parts[0].equals("done") && parts.length == 4)
+			{
+				m_done.put(index, new Shard(index, getFile(m_folder, index), Long.parseLong(parts[2]), Long.parseLong(parts[3], 16)));
+			}
+			else
+			{
+				// The job itself fails on this shard: producing it again would
+				// fail as well
+				m_errors.add(line);
+			}
+		}
+	}
+
+	/**
+	 * Kills a worker process that takes too long to produce a shard.
+	 */
+	protected static class Watchdog implements Runnable
+	{
+		/**
+		 * The worker process.
+		 */
+		/*@ non_null @*/ protected final Process m_process;
+
+		/**
+		 * The time at which the worker is killed, as given by
+		 * {@link System#nanoTime()}, if the watchdog is armed.
+		 */
+		protected long m_deadline;
+
+		/**
+		 * A flag indicating whether a shard is being waited for.
+		 */
+		protected boolean m_armed;
+
+		/**
+		 * A flag indicating whether the worker has been killed.
+		 */
+		protected boolean m_expired;
+
+		/**
+		 * A flag indicating whether the watchdog must stop.
+		 */
+		protected boolean m_stopped;
+
+		/**
+		 * Creates a new watchdog.
+		 * @param p The worker process
+		 */
+		public Watchdog(/*@ non_null @*/ Process p)
+		{
+			super();
+			m_process = p;
+			m_armed = false;
+			m_expired = false;
+			m_stopped = false;
+		}
+
+		/**
+		 * Starts waiting for a shard.
+		 * @param deadline The time at which the worker is killed if it has not
+		 * produced the shard
+		 */
+		public synchronized void arm(long deadline)
+		{
+			m_deadline = deadline;
+			m_armed = true;
+			notifyAll();
+		}
+
+		/**
+		 * Stops waiting for a shard.
+		 * @return {@code true} if the worker has been killed
+		 */
+		public synchronized boolean disarm()
+		{
+			m_armed = false;
+			return m_expired;
+		}
+
+		/**
+		 * Stops the watchdog.
+		 */
+		public synchronized void stop()
+		{
+			m_stopped = true;
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void run()
+		{
+			try
+			{
+				while (!m_stopped)
+				{
+					if (!m_armed)
+					{
+						wait();
+						continue;
+					}
+					long left = m_deadline - System.nanoTime();
+					if (left > 0)
+					{
+						TimeUnit.NANOSECONDS.timedWait(this, left);
+						continue;
+					}
+					m_expired = true;
+					m_process.destroyForcibly();
+					return;
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// Stop watching
+			}
+		}
+	}
+
+	/**
+	 * Specification of a generation job. The class implementing it must be
+	 * public and have a public constructor without arguments, as each
+	 * worker process creates its own instance.
+	 * @param <T> The type of the values to generate
+	 */
+	public interface Job<T>
+	{
+		/**
+		 * Creates the picker generating the values. Each call must return a
+		 * picker of the same structure, in every process.
+		 * @return The picker
+		 */
+		/*@ non_null @*/ public Picker<T> getPicker();
+
+		/**
+		 * Converts a value into the line written in a shard file.
+		 * @param t The value
+		 * @return The line, which must not contain a line break
+		 */
+		/*@ non_null @*/ public String format(/*@ null @*/ T t);
+	}
+
+	/**
+	 * Description of a shard that has been produced.
+	 */
+	public static class Shard
+	{
+		/**
+		 * The index of the shard.
+		 */
+		protected final long m_index;
+
+		/**
+		 * The file of the shard.
+		 */
+		/*@ non_null @*/ protected final File m_file;
+
+		/**
+		 * The number of values in the shard.
+		 */
+		protected final long m_count;
+
+		/**
+		 * The CRC-32 checksum of the file.
+		 */
+		protected final long m_checksum;
+
+		/**
+		 * Creates a new shard description.
+		 * @param index The index of the shard
+		 * @param file The file of the shard
+		 * @param count The number of values in the shard
+		 * @param checksum The CRC-32 checksum of the file
+		 */
+		public Shard(long index, /*@ non_null @*/ File file, long count, long checksum)
+		{
+			super();
+			m_index = index;
+			m_file = file;
+			m_count = count;
+			m_checksum = checksum;
+		}
+
+		/**
+		 * Gets the index of the shard.
+		 * @return The index
+		 */
+		/*@ pure @*/ public long getIndex()
+		{
+			return m_index;
+		}
+
+		/**
+		 * Gets the file of the shard.
+		 * @return The file
+		 */
+		/*@ pure non_null @*/ public File getFile()
+		{
+			return m_file;
+		}
+
+		/**
+		 * Gets the number of values in the shard.
+		 * @return The number of values
+		 */
+		/*@ pure @*/ public long getCount()
+		{
+			return m_count;
+		}
+
+		/**
+		 * Gets the CRC-32 checksum of the file of the shard.
+		 * @return The checksum
+		 */
+		/*@ pure @*/ public long getChecksum()
+		{
+			return m_checksum;
+		}
+
+		@Override
+		public String toString()
+		{
+			return m_index + "\t" + m_file.getName() + "\t" + m_count + "\t" + Long.toHexString(m_checksum);
+		}
+	}
+}
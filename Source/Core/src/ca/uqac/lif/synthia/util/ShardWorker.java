@@ -0,0 +1,259 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.Reseeder;
+import ca.uqac.lif.synthia.util.ShardCoordinator.Job;
+import ca.uqac.lif.synthia.util.ShardCoordinator.Shard;
+
+/**
+ * Produces the shards of a generation job split by a
+ * {@link ShardCoordinator}. The values of shard <i>i</i> are produced by a
+ * copy of the job's picker, obtained with
+ * {@link Picker#duplicate(boolean) duplicate(false)} and reseeded by a
+ * {@link Reseeder} with the seed derived from the master seed and
+ * <i>i</i>. This is the same scheme as {@link BulkGenerator} with blocks
+ * the size of a shard: the concatenation of all shards is therefore what
+ * a bulk generator produces in ordered mode, regardless of the number of
+ * workers and of the order in which shards are produced.
+ * <p>
+ * Each shard is written to its own file in the output folder, one value per
+ * line. The file is first written under a temporary name, and renamed once
+ * complete; a shard whose file already exists is not produced again. A
+ * worker that fails can therefore be run again on the same shards, which
+ * only produces the missing ones.
+ * <p>
+ * A worker is normally started by a coordinator as a separate process,
+ * through {@link #main(String[])}. It then reads shard indices from its
+ * standard input, one per line, and answers each one on its standard
+ * output with a line of the form
+ * <tt>done <i>index</i> <i>count</i> <i>checksum</i></tt> or
+ * <tt>error <i>index</i> <i>message</i></tt>. The worker exits when its
+ * input is closed.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class ShardWorker
+{
+	/**
+	 * The job whose shards are produced.
+	 */
+	/*@ non_null @*/ protected final Job<Object> m_job;
+
+	/**
+	 * The picker of which each shard receives a copy.
+	 */
+	/*@ non_null @*/ protected final Picker<Object> m_picker;
+
+	/**
+	 * The master seed from which the seed of each shard is derived.
+	 */
+	protected final long m_seed;
+
+	/**
+	 * The total number of values of the job.
+	 */
+	protected final long m_count;
+
+	/**
+	 * The number of values in a shard.
+	 */
+	protected final int m_shardSize;
+
+	/**
+	 * The folder where shard files are written.
+	 */
+	/*@ non_null @*/ protected final File m_folder;
+
+	/**
+	 * Creates a new worker.
+	 * @param job The job whose shards are produced
+	 * @param seed The master seed from which the seed of each shard is
+	 * derived
+	 * @param count The total number of values of the job
+	 * @param shard_size The number of values in a shard
+	 * @param folder The folder where shard files are written
+	 */
+	@SuppressWarnings("unchecked")
+	public ShardWorker(/*@ non_null @*/ Job<?> job, long seed, long count, int shard_size, /*@ non_null @*/ File folder)
+	{
+		super();
+		m_job = (Job<Object>) job;
+		m_picker = m_job.getPicker();
+		m_seed = seed;
+		m_count = count;
+		m_shardSize = shard_size;
+		m_folder = folder;
+	}
+
+	/**
+	 * Produces a shard, unless its file already exists.
+	 * @param index The index of the shard
+	 * @return The description of the shard
+	 * @throws IOException If the shard file cannot be written or read
+	 */
+	/*@ non_null @*/ public Shard produce(long index) throws IOException
+	{
+		File f = ShardCoordinator.getFile(m_folder, index);
+		if (f.exists())
+		{
+			return read(index, f);
+		}
+		File tmp = new File(m_folder, f.getName() + ".tmp");
+		CRC32 crc = new CRC32();
+		long written = 0;
+		Picker<Object> p = m_picker.duplicate(false);
+		Reseeder.reseed(p, Reseeder.derive(m_seed, index));
+		long n = Math.min(m_shardSize, m_count - index * m_shardSize);
+		Writer w = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(new FileOutputStream(tmp), crc), StandardCharsets.UTF_8));
+		try
+		{
+			for (; written < n; written++)
+			{
+				Object o;
+				try
+				{
+					o = p.pick();
+				}
+				catch (NoMoreElementException e)
+				{
+					break;
+				}
+				w.write(m_job.format(o));
+				w.write('\n');
+			}
+		}
+		finally
+		{
+			w.close();
+		}
+		// The shard only becomes visible once complete
+		Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		return new Shard(index, f, written, crc.getValue());
+	}
+
+	/**
+	 * Answers requests for shards read from a stream, until the end of the
+	 * stream.
+	 * @param in The stream from which shard indices are read
+	 * @param out The stream on which answers are printed
+	 * @throws IOException If the input stream cannot be read
+	 */
+	public void serve(/*@ non_null @*/ InputStream in, /*@ non_null @*/ PrintStream out) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			line = line.trim();
+			if (line.isEmpty())
+			{
+				continue;
+			}
+			try
+			{
+				Shard s = produce(Long.parseLong(line));
+				out.println("done " + s.getIndex() + " " + s.getCount() + " " + Long.toHexString(s.getChecksum()));
+			}
+			catch (IOException | RuntimeException e)
+			{
+				out.println("error " + line + " " + String.valueOf(e).replace('\n', ' '));
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * Computes the description of a shard whose file already exists.
+	 * @param index The index of the shard
+	 * @param f The file of the shard
+	 * @return The description of the shard
+	 * @throws IOException If the file cannot be read
+	 */
+	protected static Shard read(long index, /*@ non_null @*/ File f) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		long lines = 0;
+		byte[] buffer = new byte[65536];
+		InputStream in = new FileInputStream(f);
+		try
+		{
+			int len;
+			while ((len = in.read(buffer)) >= 0)
+			{
+				crc.update(buffer, 0, len);
+				for (int i = 0; i < len; i++)
+				{
+					if (buffer[i] == '\n')
+					{
+						lines++;
+					}
+				}
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return new Shard(index, f, lines, crc.getValue());
+	}
+
+	/**
+	 * Starts a worker serving the requests of a coordinator on the standard
+	 * input and output.
+	 * @param args The name of the job class, the master seed, the total
+	 * number of values, the number of values in a shard and the output
+	 * folder
+	 * @throws Exception If the job cannot be instantiated, or the standard
+	 * input cannot be read
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 5)
+		{
+			System.err.println("Usage: ShardWorker job-class seed count shard-size folder");
+			System.exit(1);
+		}
+		Job<?> job = (Job<?>) Class.forName(args[0]).getDeclaredConstructor().newInstance();
+		// Values are written to files: standard output only carries answers
+		PrintStream out = System.out;
+		System.setOut(System.err);
+		new ShardWorker(job, Long.parseLong(args[1]), Long.parseLong(args[2]), Integer.parseInt(args[3]), new File(args[4])).serve(System.in, out);
+	}
+}
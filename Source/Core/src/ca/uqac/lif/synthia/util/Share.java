@@ -20,8 +20,13 @@ package ca.uqac.lif.synthia.util;
 
 import java.util.ArrayDeque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 import ca.uqac.lif.synthia.NoMoreElementException;
 import ca.uqac.lif.synthia.Picker;
@@ -29,6 +34,36 @@ import ca.uqac.lif.synthia.Picker;
 /**
  * Allows values of a single picker to be shared among multiple copies of a
  * picker instance.
+ * <p>
+ * By default, each copy has its own unbounded queue, where every value
+ * produced by the underlying picker is added; copies cannot be used from
+ * different threads, and a copy that is not read makes its queue grow
+ * indefinitely. When created with a capacity, the share instead works in
+ * <em>ring</em> mode, inspired by the
+ * <a href="https://lmax-exchange.github.io/disruptor/">Disruptor</a>:
+ * <ul>
+ * <li>values are stored in a single ring buffer of fixed capacity, and no
+ * object is allocated per value;</li>
+ * <li>each copy only keeps the sequence number of the next value it
+ * reads, and copies can be read concurrently by different threads;</li>
+ * <li>there is no dedicated producer thread: when a copy needs a value that
+ * has not been produced yet, the thread reading it asks the underlying
+ * picker for this value and publishes it in the buffer. A lock guarantees
+ * that only one thread at a time calls the underlying picker, while the
+ * other copies keep reading the values already in the buffer; the
+ * underlying picker therefore needs not be thread-safe, but it is called
+ * from the threads of the various copies;</li>
+ * <li>when the buffer is full, i.e. when the slowest copy is
+ * <i>capacity</i> values behind, a copy needing a new value either waits
+ * for it (<em>back-pressure</em>, the default), or overwrites the oldest
+ * values, in which case the slowest copies skip the values they missed (see
+ * {@link #setDropping(boolean)}). A copy waits without holding the lock, so
+ * that the other copies can still publish values as soon as there is room
+ * in the buffer.</li>
+ * </ul>
+ * With back-pressure, a copy that is never read eventually blocks all the
+ * others; all copies must therefore be consumed, and not from the same
+ * thread if they are consumed at different paces.
  *
  * @param <T> The type of the elements to pick
  * @ingroup API
@@ -44,31 +79,140 @@ public class Share<T>
 	 * The set of "spawned" copies created.
 	 */
 	protected Set<QueuePicker> m_pickers;
+
+	/**
+	 * The ring buffer holding the values in ring mode, or <tt>null</tt> if
+	 * each copy has its own queue.
+	 */
+	/*@ null @*/ protected final AtomicReferenceArray<T> m_ring;
+
+	/**
+	 * The mask giving the index in the ring buffer of a sequence number.
+	 */
+	protected final int m_mask;
+
+	/**
+	 * The copies created in ring mode.
+	 */
+	/*@ non_null @*/ protected final List<RingPicker> m_consumers;
+
+	/**
+	 * The lock held by the thread producing values in ring mode.
+	 */
+	/*@ non_null @*/ protected final ReentrantLock m_producer;
+
+	/**
+	 * The sequence number of the last value published in the ring buffer.
+	 */
+	protected volatile long m_cursor;
+
+	/**
+	 * The sequence number of the last value being written in the ring
+	 * buffer. It differs from {@link #m_cursor} only while the producer
+	 * writes a value.
+	 */
+	protected volatile long m_claimed;
+
+	/**
+	 * A flag indicating whether the underlying picker has no more element.
+	 */
+	protected volatile boolean m_exhausted;
+
+	/**
+	 * A flag indicating whether the producer overwrites values that have not
+	 * been read by all the copies, instead of waiting for them.
+	 */
+	protected boolean m_dropping;
 	
 	/**
 	 * Creates a new instance of the share picker.
 	 * @param picker The underlying picker from which elements are taken
 	 */
 	public Share(Picker<? extends T> picker)
+	{
+		this(picker, 0);
+	}
+
+	/**
+	 * Creates a new instance of the share picker working in ring mode.
+	 * @param picker The underlying picker from which elements are taken
+	 * @param capacity The capacity of the ring buffer, which is rounded up to
+	 * the next power of 2. Set to 0 to give each copy its own unbounded queue
+	 * instead.
+	 */
+	public Share(Picker<? extends T> picker, int capacity)
 	{
 		super();
 		m_picker = picker;
 		m_pickers = new HashSet<QueuePicker>();
+		if (capacity > 0)
+		{
+			m_ring = new AtomicReferenceArray<T>(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+			m_mask = m_ring.length() - 1;
+		}
+		else
+		{
+			m_ring = null;
+			m_mask = 0;
+		}
+		m_consumers = new CopyOnWriteArrayList<RingPicker>();
+		m_producer = new ReentrantLock();
+		m_cursor = -1;
+		m_claimed = -1;
+		m_exhausted = false;
+		m_dropping = false;
+	}
+
+	/**
+	 * Sets what happens in ring mode when the slowest copy is as many values
+	 * behind as the capacity of the buffer.
+	 * @param b Set to {@code true} to overwrite the values it has not read,
+	 * {@code false} to wait until it reads them (the default)
+	 * @return This share
+	 */
+	public Share<T> setDropping(boolean b)
+	{
+		m_dropping = b;
+		return this;
 	}
 	
 	/**
 	 * Creates a new copy of {@link QueuePicker} from the original picker.
+	 * This method cannot be used in ring mode, where copies are obtained from
+	 * {@link #getRingCopy()}.
 	 * @return A new copy
 	 */
 	public QueuePicker getCopy()
 	{
+		if (m_ring != null)
+		{
+			throw new IllegalStateException("Copies of a share in ring mode are obtained from getRingCopy()");
+		}
 		QueuePicker qp = new QueuePicker();
 		m_pickers.add(qp);
 		return qp;
 	}
+
+	/**
+	 * Creates a new copy of {@link RingPicker} from the original picker. The
+	 * copy can be read from any thread. This method can only be used if the
+	 * share has been created with a capacity.
+	 * @return A new copy
+	 */
+	public RingPicker getRingCopy()
+	{
+		if (m_ring == null)
+		{
+			throw new IllegalStateException("The share has been created without a capacity");
+		}
+		RingPicker rp = new RingPicker(m_cursor + 1);
+		m_consumers.add(rp);
+		return rp;
+	}
 	
 	/**
-	 * Resets the original picker and all its copies.
+	 * Resets the original picker and all its copies. In ring mode, this
+	 * method must not be called while copies are being read.
 	 */
 	public void reset()
 	{
@@ -77,6 +221,21 @@ public class Share<T>
 		{
 			qp.resetInternal();
 		}
+		if (m_ring != null)
+		{
+			for (int i = 0; i < m_ring.length(); i++)
+			{
+				m_ring.set(i, null);
+			}
+			m_cursor = -1;
+			m_claimed = -1;
+			m_exhausted = false;
+			for (RingPicker rp : m_consumers)
+			{
+				rp.m_next = 0;
+				rp.m_dropped = 0;
+			}
+		}
 	}
 
 	/**
@@ -92,6 +251,159 @@ public class Share<T>
 		}
 	}
 	
+	/**
+	 * Publishes the next value of the underlying picker in the ring buffer,
+	 * unless another thread is already doing so. With back-pressure, nothing
+	 * is published while the slowest copy has not read the value about to be
+	 * overwritten; the caller must then wait and try again.
+	 * @param seq The sequence number of the value needed by the caller
+	 * @return {@code false} if the value cannot be published until the
+	 * slowest copy reads a value, {@code true} otherwise
+	 */
+	protected boolean publish(long seq)
+	{
+		if (!m_producer.tryLock())
+		{
+			Thread.yield();
+			return true;
+		}
+		try
+		{
+			long next = m_cursor + 1;
+			if (next > seq || m_exhausted)
+			{
+				// Another thread has published the value in the meantime
+				return true;
+			}
+			if (!m_dropping && minSequence() <= next - m_ring.length())
+			{
+				return false;
+			}
+			T e;
+			try
+			{
+				e = m_picker.pick();
+			}
+			catch (NoMoreElementException ex)
+			{
+				m_exhausted = true;
+				return true;
+			}
+			m_claimed = next;
+			m_ring.set((int) (next & m_mask), e);
+			m_cursor = next;
+			return true;
+		}
+		finally
+		{
+			m_producer.unlock();
+		}
+	}
+
+	/**
+	 * Gets the sequence number of the next value to be read by the slowest
+	 * copy in ring mode.
+	 * @return The sequence number
+	 */
+	protected long minSequence()
+	{
+		long min = Long.MAX_VALUE;
+		for (RingPicker rp : m_consumers)
+		{
+			min = Math.min(min, rp.m_next);
+		}
+		return min;
+	}
+
+	/**
+	 * A picker that acts as a proxy for the values obtained by the parent
+	 * {@link Share} picker in ring mode. Each instance outputs the same
+	 * values in the same order as the picker given to {@link Share}, except
+	 * those it skips when values are dropped.
+	 */
+	public class RingPicker implements Picker<T>
+	{
+		/**
+		 * The sequence number of the next value to read.
+		 */
+		protected volatile long m_next;
+
+		/**
+		 * The number of values this copy has skipped.
+		 */
+		protected long m_dropped;
+
+		/**
+		 * Creates a new copy.
+		 * @param next The sequence number of the first value to read
+		 */
+		public RingPicker(long next)
+		{
+			super();
+			m_next = next;
+			m_dropped = 0;
+		}
+
+		/**
+		 * Gets the number of values this copy has skipped because they were
+		 * overwritten before it could read them.
+		 * @return The number of values
+		 */
+		public long getDropped()
+		{
+			return m_dropped;
+		}
+
+		@Override
+		public void reset()
+		{
+			Share.this.reset();
+		}
+
+		@Override
+		public T pick()
+		{
+			long seq = m_next;
+			while (true)
+			{
+				long cursor = m_cursor;
+				if (seq <= cursor)
+				{
+					int capacity = m_ring.length();
+					if (cursor - seq >= capacity)
+					{
+						// Values have been overwritten: skip to the oldest one
+						m_dropped += cursor - capacity + 1 - seq;
+						seq = cursor - capacity + 1;
+					}
+					T value = m_ring.get((int) (seq & m_mask));
+					if (m_claimed - seq >= capacity)
+					{
+						// The value has been overwritten while it was read
+						continue;
+					}
+					m_next = seq + 1;
+					return value;
+				}
+				if (m_exhausted)
+				{
+					throw new NoMoreElementException();
+				}
+				if (!publish(seq))
+				{
+					// Wait for the slowest copy, without holding the lock
+					LockSupport.parkNanos(1000);
+				}
+			}
+		}
+
+		@Override
+		public Picker<T> duplicate(boolean with_state)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
 	/**
 	 * A picker that acts as a proxy for the values obtained by the parent
 	 * {@link Share} picker. Each instance of {@link QueuePicker} is guaranteed
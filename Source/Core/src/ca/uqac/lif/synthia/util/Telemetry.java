@@ -0,0 +1,233 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import ca.uqac.lif.synthia.GiveUpException;
+import ca.uqac.lif.synthia.Picker;
+
+/**
+ * Global hook through which the generation, checking and shrinking
+ * lifecycle is reported to an external profiler. Objects such as
+ * {@link ca.uqac.lif.synthia.test.Assert Assert},
+ * {@link ca.uqac.lif.synthia.test.Monkey Monkey} and
+ * {@link ca.uqac.lif.synthia.relative.PickIf PickIf} notify the
+ * {@link Listener} installed with {@link #setListener(Listener)} of the
+ * phases they go through, along with their duration.
+ * <p>
+ * No listener is installed by default. In this case, each reporting site
+ * amounts to reading a single field, and no timestamp is taken; profiling
+ * can therefore be left compiled in production code. The listener is
+ * called from the thread that performs the reported operation, and must
+ * therefore be thread-safe and return quickly.
+ * <p>
+ * The durations passed to the listener are expressed in nanoseconds.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class Telemetry
+{
+	/**
+	 * The listener that is notified, or <tt>null</tt> if none.
+	 */
+	/*@ null @*/ protected static volatile Listener s_listener = null;
+
+	/**
+	 * Private constructor, as this class is not meant to be instantiated.
+	 */
+	private Telemetry()
+	{
+		super();
+	}
+
+	/**
+	 * Installs the listener that is notified of the lifecycle events,
+	 * replacing the one installed previously, if any.
+	 * @param l The listener, or <tt>null</tt> to disable reporting
+	 */
+	public static void setListener(/*@ null @*/ Listener l)
+	{
+		s_listener = l;
+	}
+
+	/**
+	 * Gets the listener that is notified of the lifecycle events. Reporting
+	 * sites call this method once and skip all measurements when it returns
+	 * <tt>null</tt>.
+	 * @return The listener, or <tt>null</tt> if none is installed
+	 */
+	/*@ pure null @*/ public static Listener getListener()
+	{
+		return s_listener;
+	}
+
+	/**
+	 * Reports that an object gave up producing a value, if a listener is
+	 * installed.
+	 * @param source The object that gave up
+	 * @param e The exception it is about to throw
+	 * @return The exception, so that the call can be placed in a
+	 * <tt>throw</tt> statement
+	 */
+	/*@ non_null @*/ public static GiveUpException gaveUp(/*@ non_null @*/ Object source, /*@ non_null @*/ GiveUpException e)
+	{
+		Listener l = s_listener;
+		if (l != null)
+		{
+			l.gaveUp(source, e);
+		}
+		return e;
+	}
+
+	/**
+	 * Receives the events of the generation, checking and shrinking
+	 * lifecycle. In all methods, the <tt>checker</tt> argument is the
+	 * {@link ca.uqac.lif.synthia.test.Assert Assert} or
+	 * {@link ca.uqac.lif.synthia.test.Monkey Monkey} that reports the event.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called when a checker starts searching for a failing input.
+		 * @param checker The checker
+		 */
+		public void checkStarted(/*@ non_null @*/ Object checker);
+
+		/**
+		 * Called when a checker ends its search.
+		 * @param checker The checker
+		 * @param passed <tt>true</tt> if no failing input has been found
+		 * @param duration The duration of the whole search
+		 * @param tries The number of inputs or action sequences tried
+		 * @param shrink_steps The number of shrinking steps performed
+		 */
+		public void checkEnded(/*@ non_null @*/ Object checker, boolean passed, long duration, long tries, long shrink_steps);
+
+		/**
+		 * Called when a picker at the root of a checker produces a value.
+		 * @param picker The picker
+		 * @param duration The time taken by the call to
+		 * {@link Picker#pick() pick()}
+		 */
+		public void picked(/*@ non_null @*/ Picker<?> picker, long duration);
+
+		/**
+		 * Called when a checker has tested an input during its search phase.
+		 * For a {@link ca.uqac.lif.synthia.test.Monkey Monkey}, an input is a
+		 * sequence of actions.
+		 * @param checker The checker
+		 * @param index The index of the input since the start of the search
+		 * @param duration The time taken by the test
+		 * @param failed <tt>true</tt> if the input makes the test fail
+		 */
+		public void tried(/*@ non_null @*/ Object checker, long index, long duration, boolean failed);
+
+		/**
+		 * Called when a checker has tested a candidate while shrinking a
+		 * failing input.
+		 * @param checker The checker
+		 * @param duration The time taken by the test
+		 * @param progress <tt>true</tt> if the candidate also makes the test
+		 * fail, and thus replaces the current failing input
+		 */
+		public void shrinkStep(/*@ non_null @*/ Object checker, long duration, boolean progress);
+
+		/**
+		 * Called when a checker has reset the object under test.
+		 * @param checker The checker
+		 * @param duration The time taken by the reset, including any delay
+		 * given to the object to complete it
+		 */
+		public void reset(/*@ non_null @*/ Object checker, long duration);
+
+		/**
+		 * Called when a picker that filters the output of another has
+		 * rejected one or more values before returning or giving up.
+		 * @param picker The picker
+		 * @param count The number of values rejected in a row
+		 * @param duration The time taken by the call to
+		 * {@link Picker#pick() pick()}
+		 * @param gave_up <tt>true</tt> if the picker gave up after these
+		 * rejections
+		 */
+		public void rejected(/*@ non_null @*/ Picker<?> picker, int count, long duration, boolean gave_up);
+
+		/**
+		 * Called when an object is about to throw a {@link GiveUpException}.
+		 * @param source The object
+		 * @param e The exception
+		 */
+		public void gaveUp(/*@ non_null @*/ Object source, /*@ non_null @*/ GiveUpException e);
+	}
+
+	/**
+	 * Listener whose methods do nothing. Descendants override only the
+	 * methods for the events they are interested in.
+	 */
+	public static class Adapter implements Listener
+	{
+		@Override
+		public void checkStarted(Object checker)
+		{
+			// Do nothing
+		}
+
+		@Override
+		public void checkEnded(Object checker, boolean passed, long duration, long tries, long shrink_steps)
+		{
+			// Do nothing
+		}
+
+		@Override
+		public void picked(Picker<?> picker, long duration)
+		{
+			// Do nothing
+		}
+
+		@Override
+		public void tried(Object checker, long index, long duration, boolean failed)
+		{
+			// Do nothing
+		}
+
+		@Override
+		public void shrinkStep(Object checker, long duration, boolean progress)
+		{
+			// Do nothing
+		}
+
+		@Override
+		public void reset(Object checker, long duration)
+		{
+			// Do nothing
+		}
+
+		@Override
+		public void rejected(Picker<?> picker, int count, long duration, boolean gave_up)
+		{
+			// Do nothing
+		}
+
+		@Override
+		public void gaveUp(Object source, GiveUpException e)
+		{
+			// Do nothing
+		}
+	}
+}
@@ -18,6 +18,10 @@
  */
 package ca.uqac.lif.synthia.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import ca.uqac.lif.petitpoucet.AndNode;
 import ca.uqac.lif.petitpoucet.NodeFactory;
 import ca.uqac.lif.petitpoucet.Part;
@@ -48,7 +52,7 @@ import ca.uqac.lif.synthia.random.RandomFloat;
  * number randomly chosen between 0.5 and 1.5.
  * @ingroup API
  */
-public class Tick implements Picker<Number>, ExplanationQueryable
+public class Tick implements Picker<Number>, ExplanationQueryable, PickerCompiler.Fusible
 {
 	/**
 	 * Picker that determines the start value
@@ -151,16 +155,63 @@ public class Tick implements Picker<Number>, ExplanationQueryable
 	 */
 	@Override
 	public Number pick() 
+	{
+		if (isFirst())
+		{
+			return m_currentValue;
+		}
+		return advance(m_increment.pick().doubleValue());
+	}
+
+	/**
+	 * Determines if the next value to produce is the start value, and
+	 * clears this condition.
+	 * @return <tt>true</tt> if the next value is the start value
+	 */
+	protected boolean isFirst()
 	{
 		if (m_first)
 		{
 			m_first = false;
-			return m_currentValue;
+			return true;
 		}
-		m_currentValue += m_increment.pick().doubleValue();
+		return false;
+	}
+
+	/**
+	 * Gets the last value produced by this picker.
+	 * @return The value
+	 */
+	protected double getCurrentValue()
+	{
+		return m_currentValue;
+	}
+
+	/**
+	 * Increments the current value.
+	 * @param increment The increment
+	 * @return The new current value
+	 */
+	protected double advance(double increment)
+	{
+		m_currentValue += increment;
 		return m_currentValue;
 	}
 
+	@Override
+	public MethodHandle fuse(PickerCompiler c) throws ReflectiveOperationException
+	{
+		if (!PickerCompiler.isKnown(this, Tick.class))
+		{
+			return null;
+		}
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle first = lookup.findVirtual(Tick.class, "isFirst", MethodType.methodType(boolean.class)).bindTo(this);
+		MethodHandle current = lookup.findVirtual(Tick.class, "getCurrentValue", MethodType.methodType(double.class)).bindTo(this);
+		MethodHandle advance = lookup.findVirtual(Tick.class, "advance", MethodType.methodType(double.class, double.class)).bindTo(this);
+		return MethodHandles.guardWithTest(first, current, MethodHandles.filterReturnValue(c.fuse(m_increment, double.class), advance));
+	}
+
 
 	/**
 	 * Creates a copy of the tick picker.
@@ -173,7 +224,7 @@ public class Tick implements Picker<Number>, ExplanationQueryable
 	@Override
 	public Tick duplicate(boolean with_state) 
 	{
-		Tick tp = new Tick(m_startValue, m_increment);
+		Tick tp = new Tick(m_startValue.duplicate(with_state), m_increment.duplicate(with_state));
 		if (with_state)
 		{
 			tp.m_currentValue = m_currentValue;
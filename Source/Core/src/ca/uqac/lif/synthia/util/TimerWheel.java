@@ -0,0 +1,278 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks at given times using a single thread. Tasks are stored in a
+ * <em>hashed timer wheel</em>: time is divided in ticks, and each task is
+ * placed in the slot of the wheel corresponding to the tick where it is
+ * due. The thread of the wheel parks until the next tick, and then waits
+ * for the exact deadline of each task due in that tick using
+ * {@link Pacer#waitUntil(long)}. Scheduling a task therefore takes
+ * constant time, and thousands of paced streams (see
+ * {@link Pacer#start(TimerWheel, java.util.function.Consumer) Pacer.start})
+ * can share a single thread, instead of each blocking a thread of its own.
+ * <p>
+ * Tasks are run by the thread of the wheel, and should therefore be short.
+ * Tasks can be scheduled from any thread, including from another task.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class TimerWheel
+{
+	/**
+	 * The default duration of a tick, in nanoseconds.
+	 */
+	public static final long DEFAULT_TICK = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/**
+	 * The default number of slots of the wheel.
+	 */
+	public static final int DEFAULT_SLOTS = 512;
+
+	/**
+	 * Compares tasks by their deadline.
+	 */
+	protected static final Comparator<Timeout> s_byDeadline = new Comparator<Timeout>()
+	{
+		@Override
+		public int compare(Timeout t1, Timeout t2)
+		{
+			return Long.compare(t1.m_deadline - t2.m_deadline, 0);
+		}
+	};
+
+	/**
+	 * The duration of a tick, in nanoseconds.
+	 */
+	protected final long m_tick;
+
+	/**
+	 * The slots of the wheel. They are only accessed by the thread of the
+	 * wheel.
+	 */
+	/*@ non_null @*/ protected final List<List<Timeout>> m_slots;
+
+	/**
+	 * The tasks scheduled and not yet placed in a slot.
+	 */
+	/*@ non_null @*/ protected final Queue<Timeout> m_incoming;
+
+	/**
+	 * The time at which the wheel was started.
+	 */
+	protected final long m_start;
+
+	/**
+	 * The number of tasks placed in a slot and not yet run.
+	 */
+	protected int m_pending;
+
+	/**
+	 * The thread of the wheel.
+	 */
+	/*@ non_null @*/ protected final Thread m_thread;
+
+	/**
+	 * A flag indicating whether the wheel is running.
+	 */
+	protected volatile boolean m_running;
+
+	/**
+	 * Creates and starts a wheel with the default tick and number of slots.
+	 */
+	public TimerWheel()
+	{
+		this(DEFAULT_TICK, TimeUnit.NANOSECONDS, DEFAULT_SLOTS);
+	}
+
+	/**
+	 * Creates and starts a wheel.
+	 * @param tick The duration of a tick
+	 * @param unit The unit of the duration
+	 * @param slots The number of slots of the wheel
+	 */
+	public TimerWheel(long tick, /*@ non_null @*/ TimeUnit unit, int slots)
+	{
+		super();
+		m_tick = Math.max(1, unit.toNanos(tick));
+		m_slots = new ArrayList<List<Timeout>>(slots);
+		for (int i = 0; i < Math.max(1, slots); i++)
+		{
+			m_slots.add(new ArrayList<Timeout>());
+		}
+		m_incoming = new ConcurrentLinkedQueue<Timeout>();
+		m_pending = 0;
+		m_running = true;
+		m_start = System.nanoTime();
+		m_thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				loop();
+			}
+		}, "timer-wheel");
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	/**
+	 * Schedules a task.
+	 * @param task The task
+	 * @param deadline The time at which the task must run, as given by
+	 * {@link System#nanoTime()}
+	 * @return This wheel
+	 */
+	/*@ non_null @*/ public TimerWheel schedule(/*@ non_null @*/ Runnable task, long deadline)
+	{
+		m_incoming.add(new Timeout(task, deadline));
+		if (Thread.currentThread() != m_thread)
+		{
+			LockSupport.unpark(m_thread);
+		}
+		return this;
+	}
+
+	/**
+	 * Stops the wheel. Tasks that have not run yet are discarded.
+	 */
+	public void stop()
+	{
+		m_running = false;
+		LockSupport.unpark(m_thread);
+	}
+
+	/**
+	 * Gets the tick of the wheel corresponding to a time.
+	 * @param time The time, as given by {@link System#nanoTime()}
+	 * @return The tick
+	 */
+	protected long tickOf(long time)
+	{
+		return Math.max(0, time - m_start) / m_tick;
+	}
+
+	/**
+	 * The loop run by the thread of the wheel.
+	 */
+	protected void loop()
+	{
+		long current = 0;
+		List<Timeout> due = new ArrayList<Timeout>();
+		while (m_running)
+		{
+			// Place new tasks in their slot
+			Timeout t;
+			while ((t = m_incoming.poll()) != null)
+			{
+				t.m_tick = Math.max(current, tickOf(t.m_deadline));
+				m_slots.get((int) (t.m_tick % m_slots.size())).add(t);
+				m_pending++;
+			}
+			if (m_pending == 0)
+			{
+				if (m_incoming.isEmpty())
+				{
+					LockSupport.park(this);
+				}
+				current = Math.max(current, tickOf(System.nanoTime()));
+				continue;
+			}
+			// Run the tasks due in the current tick, in order
+			List<Timeout> slot = m_slots.get((int) (current % m_slots.size()));
+			for (int i = slot.size() - 1; i >= 0; i--)
+			{
+				if (slot.get(i).m_tick <= current)
+				{
+					due.add(slot.remove(i));
+				}
+			}
+			m_pending -= due.size();
+			Collections.sort(due, s_byDeadline);
+			for (Timeout d : due)
+			{
+				Pacer.waitUntil(d.m_deadline);
+				try
+				{
+					d.m_task.run();
+				}
+				catch (RuntimeException e)
+				{
+					// A failing task must not stop the other ones
+				}
+			}
+			due.clear();
+			long tick_end = m_start + (current + 1) * m_tick;
+			long remaining = tick_end - System.nanoTime();
+			if (remaining > 0 && m_incoming.isEmpty())
+			{
+				LockSupport.parkNanos(this, remaining);
+			}
+			if (System.nanoTime() - tick_end >= 0)
+			{
+				current++;
+			}
+		}
+	}
+
+	/**
+	 * A task scheduled at a given time.
+	 */
+	protected static class Timeout
+	{
+		/**
+		 * The task.
+		 */
+		/*@ non_null @*/ protected final Runnable m_task;
+
+		/**
+		 * The time at which the task must run.
+		 */
+		protected final long m_deadline;
+
+		/**
+		 * The tick of the wheel where the task is due.
+		 */
+		protected long m_tick;
+
+		/**
+		 * Creates a new timeout.
+		 * @param task The task
+		 * @param deadline The time at which the task must run
+		 */
+		public Timeout(/*@ non_null @*/ Runnable task, long deadline)
+		{
+			super();
+			m_task = task;
+			m_deadline = deadline;
+			m_tick = 0;
+		}
+	}
+}
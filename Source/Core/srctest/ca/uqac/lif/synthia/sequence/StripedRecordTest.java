@@ -0,0 +1,41 @@
+package ca.uqac.lif.synthia.sequence;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+public class StripedRecordTest
+{
+	@Test
+	public void stripes() throws InterruptedException
+	{
+		final StripedRecord<Integer> rec = new StripedRecord<Integer>(new RandomInteger(0, 100), 1);
+		Thread[] threads = new Thread[3];
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < 1000; j++)
+					{
+						rec.pick();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads)
+		{
+			t.join();
+		}
+		Assertions.assertEquals(3000, rec.getValues().size());
+		for (int i = 0; i < threads.length; i++)
+		{
+			Assertions.assertEquals(1000, rec.getStripe(i).size());
+		}
+		Assertions.assertEquals(rec.getStripe(0), rec.getValues().subList(0, 1000));
+	}
+}
@@ -0,0 +1,175 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import ca.uqac.lif.synthia.sequence.Playback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.util.Constant;
+
+public class BudgetTest
+{
+	@Test
+	public void assertInvocations()
+	{
+		Assert<Integer> a = new Assert<Integer>(new AlwaysTrue(), new RandomInteger(0, 100));
+		a.setBudget(new Budget().setMaxInvocations(5000));
+		Assertions.assertTrue(a.check());
+		CheckResult r = a.getResult();
+		// Without a budget, the search would stop after 1,000 inputs
+		Assertions.assertEquals(5000, r.getInvocations());
+		Assertions.assertEquals(5000, r.getGenerated());
+		Assertions.assertTrue(r.isExhausted());
+		Assertions.assertTrue(r.getExecutionsPerSecond() > 0);
+	}
+
+	@Test
+	public void assertWallTime()
+	{
+		Assert<Integer> a = new Assert<Integer>(new AlwaysTrue(), new RandomInteger(0, 100));
+		a.setBudget(new Budget().setWallTime(50, TimeUnit.MILLISECONDS));
+		Assertions.assertTrue(a.check());
+		CheckResult r = a.getResult();
+		Assertions.assertTrue(r.getElapsedTime() >= TimeUnit.MILLISECONDS.toNanos(50));
+		Assertions.assertTrue(r.isExhausted());
+	}
+
+	@Test
+	public void assertShrinkSteps()
+	{
+		Assert<Integer> a = new Assert<Integer>(new LessThan(10), new RandomInteger(0, 1000));
+		a.setBudget(new Budget().setMaxShrinkSteps(3));
+		Assertions.assertFalse(a.check());
+		CheckResult r = a.getResult();
+		Assertions.assertEquals(3, r.getShrinkSteps());
+		Assertions.assertFalse(r.getProgress().isEmpty());
+		for (CheckResult.ShrinkStep step : r.getProgress())
+		{
+			Assertions.assertTrue((Integer) step.getInput() >= 10);
+		}
+	}
+
+	@Test
+	public void assertStopsAtFailure()
+	{
+		Assert<Integer> a = new Assert<Integer>(new LessThan(10), new RandomInteger(0, 1000));
+		a.setBudget(new Budget().setMaxInvocations(1000000));
+		Assertions.assertFalse(a.check());
+		CheckResult r = a.getResult();
+		// The first failing input is shrunk, and the search ends there
+		Assertions.assertFalse(r.isExhausted());
+		Assertions.assertTrue(r.getInvocations() < 10000);
+		Assertions.assertTrue(a.getShrunk() >= 10);
+	}
+
+	@Test
+	public void assertCachedInputs()
+	{
+		Assert<Integer> a = new Assert<Integer>(new AlwaysTrue(), new RandomInteger(0, 3));
+		a.setCache(new VerdictCache()).setBudget(new Budget().setMaxInvocations(5000));
+		Assertions.assertTrue(a.check());
+		// Verdicts found in the cache also consume the budget
+		Assertions.assertEquals(5000, a.getResult().getInvocations());
+		Assertions.assertTrue(a.getResult().isExhausted());
+	}
+
+	@Test
+	public void assertNoMoreElements()
+	{
+		Assert<Integer> a = new Assert<Integer>(new AlwaysTrue(), new Playback<Integer>(Arrays.asList(1, 2, 3)).setLoop(false));
+		a.setBudget(new Budget().setMaxInvocations(5000));
+		Assertions.assertTrue(a.check());
+		Assertions.assertEquals(3, a.getResult().getInvocations());
+		Assertions.assertFalse(a.getResult().isExhausted());
+	}
+
+	@Test
+	public void assertNoBudget()
+	{
+		Assert<Integer> a = new Assert<Integer>(new LessThan(10), new RandomInteger(0, 1000));
+		Assertions.assertFalse(a.check());
+		CheckResult r = a.getResult();
+		Assertions.assertFalse(r.isExhausted());
+		Assertions.assertTrue(r.getInvocations() > 0);
+	}
+
+	@Test
+	public void monkeyInvocations()
+	{
+		Monkey m = new Monkey.ActionMonkey(new Counter(), new Constant<Action>(new Counter()), RandomFloat.instance, null);
+		m.setActionsPerAttempt(10).setBudget(new Budget().setMaxInvocations(1000));
+		Assertions.assertTrue(m.check());
+		Assertions.assertEquals(1000, m.getResult().getInvocations());
+		Assertions.assertTrue(m.getResult().isExhausted());
+	}
+
+	@Test
+	public void monkeyShrinkSteps()
+	{
+		// All the candidates are eventually sequences that were already tried
+		Failing f = new Failing(5);
+		Monkey m = new Monkey.ActionMonkey(f, new Constant<Action>(f), RandomFloat.instance, null);
+		m.setActionsPerAttempt(10).setBudget(new Budget().setMaxShrinkSteps(10000));
+		Assertions.assertFalse(m.check());
+		Assertions.assertEquals(10000, m.getResult().getShrinkSteps());
+	}
+
+	protected static class AlwaysTrue implements Testable
+	{
+		@Override
+		public boolean test(Object ... parameters)
+		{
+			return true;
+		}
+	}
+
+	protected static class Failing implements Action, Resettable
+	{
+		protected final int m_limit;
+
+		protected int m_count = 0;
+
+		public Failing(int limit)
+		{
+			super();
+			m_limit = limit;
+		}
+
+		@Override
+		public void doAction()
+		{
+			if (++m_count == m_limit)
+			{
+				throw new IllegalStateException();
+			}
+		}
+
+		@Override
+		public void reset()
+		{
+			m_count = 0;
+		}
+	}
+
+	protected static class Counter implements Action, Resettable
+	{
+		protected int m_count = 0;
+
+		@Override
+		public void doAction()
+		{
+			m_count++;
+		}
+
+		@Override
+		public void reset()
+		{
+			m_count = 0;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.ChoiceBuffer;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.string.StringPattern;
+import ca.uqac.lif.synthia.util.Choice;
+
+public class ChoiceShrinkerTest
+{
+	@Test
+	public void recordAndReplay()
+	{
+		ComposeList<Integer> cl = new ComposeList<Integer>(new RandomInteger(0, 1000), new RandomInteger(0, 20));
+		ChoiceBuffer rec = new ChoiceBuffer().start();
+		List<Integer> l1 = cl.pick();
+		rec.stop();
+		// Picking again without a buffer produces a different list
+		cl.pick();
+		ChoiceBuffer play = new ChoiceBuffer(rec.getChoices()).start();
+		List<Integer> l2 = cl.pick();
+		play.stop();
+		Assertions.assertEquals(l1, l2);
+		Assertions.assertEquals(rec.size(), play.size());
+	}
+
+	@Test
+	public void replayZeros()
+	{
+		RandomInteger ri = new RandomInteger(3, 10);
+		ChoiceBuffer play = new ChoiceBuffer(new int[0]).start();
+		int x = ri.pick();
+		play.stop();
+		Assertions.assertEquals(3, x);
+	}
+
+	@Test
+	public void shrinkList()
+	{
+		ComposeList<Integer> cl = new ComposeList<Integer>(new RandomInteger(0, 1000), new RandomInteger(0, 20));
+		Assert<List<Integer>> a = new Assert<List<Integer>>(new HasNoLargeElement(), cl).setChoiceShrinking(true);
+		Assertions.assertFalse(a.check());
+		Assertions.assertEquals(Arrays.asList(500), a.getShrunk());
+	}
+
+	@Test
+	public void shrinkWithoutShrinkable()
+	{
+		// StringPattern and Choice have no specific shrinking logic
+		Choice<Integer> c = new Choice<Integer>(new RandomFloat());
+		c.add(1, 0.5).add(600, 0.5);
+		StringPattern sp = new StringPattern("{$0}-{$1}", new RandomInteger(0, 1000), c);
+		ChoiceShrinker<String> cs = new ChoiceShrinker<String>(sp, new Testable()
+		{
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				String[] parts = ((String) parameters[0]).split("-");
+				return Integer.parseInt(parts[0]) + Integer.parseInt(parts[1]) < 700;
+			}
+		});
+		String o = null;
+		int[] choices = null;
+		while (o == null)
+		{
+			ChoiceBuffer rec = new ChoiceBuffer().start();
+			String s = sp.pick();
+			rec.stop();
+			if (!cs.m_sut.test(s))
+			{
+				o = s;
+				choices = rec.getChoices();
+			}
+		}
+		cs.shrink(choices);
+		List<String> shrunk = cs.getShrunk();
+		String[] parts = shrunk.get(shrunk.size() - 1).split("-");
+		// Each part is as small as possible given the other
+		Assertions.assertEquals(700, Integer.parseInt(parts[0]) + Integer.parseInt(parts[1]));
+	}
+
+	protected static class HasNoLargeElement implements Testable
+	{
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean test(Object ... parameters)
+		{
+			for (int x : (List<Integer>) parameters[0])
+			{
+				if (x >= 500)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
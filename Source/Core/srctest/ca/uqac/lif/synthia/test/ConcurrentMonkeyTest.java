@@ -0,0 +1,175 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.util.Constant;
+
+public class ConcurrentMonkeyTest
+{
+	@Test
+	public void lostUpdate()
+	{
+		Counter c = new Counter(true);
+		ConcurrentMonkey m = new ConcurrentMonkey(c, new Constant<Action>(new Increment(c)), new Constant<Action>(new Increment(c)));
+		m.setSeed(0).setActionsPerThread(5).setInvariant(new NoLostUpdate());
+		Assertions.assertFalse(m.check());
+		Schedule s = m.getShrunk();
+		Assertions.assertTrue(m.getFailure() instanceof ConcurrentMonkey.ScheduleException);
+		// One increment per thread is enough to lose an update
+		Assertions.assertEquals(1, s.getActions(0).size());
+		Assertions.assertEquals(1, s.getActions(1).size());
+		Assertions.assertTrue(s.getActionCount() < m.getInitial().getActionCount());
+	}
+
+	@Test
+	public void replay()
+	{
+		Counter c = new Counter(true);
+		ConcurrentMonkey m = new ConcurrentMonkey(c, new Constant<Action>(new Increment(c)), new Constant<Action>(new Increment(c)));
+		m.setSeed(0).setActionsPerThread(3).setInvariant(new NoLostUpdate()).shrink(false);
+		Assertions.assertFalse(m.check());
+		Schedule s = m.getShrunk();
+		for (int i = 0; i < 10; i++)
+		{
+			Assertions.assertNotNull(m.replay(s));
+		}
+		// A schedule without context switch does not lose updates
+		Schedule seq = new Schedule(new int[0], Arrays.asList(s.getActions(0), s.getActions(1)));
+		Assertions.assertNull(m.replay(seq));
+	}
+
+	@Test
+	public void deterministic()
+	{
+		int[] first = null;
+		for (int i = 0; i < 3; i++)
+		{
+			Counter c = new Counter(true);
+			ConcurrentMonkey m = new ConcurrentMonkey(c, new Constant<Action>(new Increment(c)), new Constant<Action>(new Increment(c)), new Constant<Action>(new Increment(c)));
+			m.setSeed(42).setActionsPerThread(4).setInvariant(new NoLostUpdate()).shrink(false);
+			Assertions.assertFalse(m.check());
+			if (first == null)
+			{
+				first = m.getInitial().getDecisions();
+			}
+			else
+			{
+				Assertions.assertArrayEquals(first, m.getInitial().getDecisions());
+			}
+		}
+	}
+
+	@Test
+	public void noBug()
+	{
+		Counter c = new Counter(false);
+		ConcurrentMonkey m = new ConcurrentMonkey(c, new Constant<Action>(new Increment(c)), new Constant<Action>(new Increment(c)));
+		m.setSeed(0).setActionsPerThread(10).setInvariant(new NoLostUpdate()).setMaxSchedules(500);
+		Assertions.assertTrue(m.check());
+		Assertions.assertEquals(500, m.getResult().getGenerated());
+		Assertions.assertEquals(10000, m.getResult().getInvocations());
+	}
+
+	@Test
+	public void exception()
+	{
+		Counter c = new Counter(false);
+		ConcurrentMonkey m = new ConcurrentMonkey(c, new Constant<Action>(new Increment(c)), new Constant<Action>(new Check(c)));
+		m.setSeed(0).setActionsPerThread(5);
+		Assertions.assertFalse(m.check());
+		Assertions.assertTrue(m.getFailure() instanceof IllegalStateException);
+		Schedule s = m.getShrunk();
+		Assertions.assertEquals(1, s.getActions(0).size());
+		Assertions.assertEquals(1, s.getActions(1).size());
+	}
+
+	protected static class Counter implements Resettable
+	{
+		protected final boolean m_racy;
+
+		protected int m_value;
+
+		protected int m_calls;
+
+		public Counter(boolean racy)
+		{
+			super();
+			m_racy = racy;
+		}
+
+		public void increment()
+		{
+			m_calls++;
+			int v = m_value;
+			if (m_racy)
+			{
+				ConcurrentMonkey.schedulingPoint();
+			}
+			m_value = v + 1;
+		}
+
+		@Override
+		public void reset()
+		{
+			m_value = 0;
+			m_calls = 0;
+		}
+	}
+
+	protected static class Increment implements Action
+	{
+		protected final Counter m_counter;
+
+		public Increment(Counter c)
+		{
+			super();
+			m_counter = c;
+		}
+
+		@Override
+		public void doAction()
+		{
+			m_counter.increment();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "inc";
+		}
+	}
+
+	protected static class Check implements Action
+	{
+		protected final Counter m_counter;
+
+		public Check(Counter c)
+		{
+			super();
+			m_counter = c;
+		}
+
+		@Override
+		public void doAction()
+		{
+			if (m_counter.m_value > 0)
+			{
+				throw new IllegalStateException();
+			}
+		}
+	}
+
+	protected static class NoLostUpdate implements Testable
+	{
+		@Override
+		public boolean test(Object ... parameters)
+		{
+			Counter c = (Counter) parameters[0];
+			return c.m_value == c.m_calls;
+		}
+	}
+}
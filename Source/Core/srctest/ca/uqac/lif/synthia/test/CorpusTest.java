@@ -0,0 +1,259 @@
+package ca.uqac.lif.synthia.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.uqac.lif.synthia.sequence.Playback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+public class CorpusTest
+{
+	@Test
+	public void persistence() throws IOException
+	{
+		File dir = Files.createTempDirectory("corpus").toFile();
+		try
+		{
+			Corpus c = new Corpus(dir).setSeed(42);
+			Assertions.assertTrue(c.add(new int[] {0, 1, 300, 70000, -1}, new IllegalStateException()));
+			Assertions.assertFalse(c.add(new int[] {0, 1, 300, 70000, -1}, (String) null));
+			Assertions.assertTrue(c.add(new int[0], (String) null));
+			Assertions.assertEquals(2, dir.listFiles().length);
+			Corpus loaded = new Corpus(dir);
+			Assertions.assertEquals(2, loaded.size());
+			Corpus.Entry e = null;
+			for (Corpus.Entry x : loaded.getEntries())
+			{
+				if (x.getChoices().length > 0)
+				{
+					e = x;
+				}
+			}
+			Assertions.assertNotNull(e);
+			Assertions.assertArrayEquals(new int[] {0, 1, 300, 70000, -1}, e.getChoices());
+			Assertions.assertEquals(42, e.getSeed());
+			Assertions.assertTrue(e.getSignature().startsWith(IllegalStateException.class.getName()));
+			Assertions.assertFalse(loaded.add(new int[] {0, 1, 300, 70000, -1}, (String) null));
+		}
+		finally
+		{
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void context() throws IOException
+	{
+		File dir = Files.createTempDirectory("corpus").toFile();
+		try
+		{
+			Corpus c = new Corpus(dir);
+			Assertions.assertTrue(c.add(new int[] {3, 4}, (String) null));
+			Assertions.assertTrue(c.add(new int[] {3, 4}, null, "101"));
+			Assertions.assertFalse(c.add(new int[] {3, 4}, null, "101"));
+			Assertions.assertEquals(Corpus.fingerprint(new int[] {3, 4}), Corpus.fingerprint(new int[] {3, 4}, ""));
+			Corpus loaded = new Corpus(dir);
+			Assertions.assertEquals(2, loaded.size());
+			Set<String> contexts = new HashSet<String>();
+			for (Corpus.Entry e : loaded.getEntries())
+			{
+				Assertions.assertArrayEquals(new int[] {3, 4}, e.getChoices());
+				contexts.add(e.getContext());
+			}
+			Assertions.assertTrue(contexts.contains(""));
+			Assertions.assertTrue(contexts.contains("101"));
+		}
+		finally
+		{
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void assertReplay() throws IOException
+	{
+		File dir = Files.createTempDirectory("corpus").toFile();
+		try
+		{
+			Assert<Integer> a = new Assert<Integer>(new LessThan(500), new RandomInteger(0, 1000).setSeed(1));
+			a.setChoiceShrinking(true).setCorpus(new Corpus(dir));
+			Assertions.assertFalse(a.check());
+			Assertions.assertEquals(500, (int) a.getShrunk());
+			// A new run starts from the stored failure instead of searching
+			a = new Assert<Integer>(new LessThan(500), new RandomInteger(0, 1000).setSeed(2));
+			a.setCorpus(new Corpus(dir));
+			Assertions.assertFalse(a.check());
+			Assertions.assertEquals(500, (int) a.getInitial());
+			Assertions.assertEquals(500, (int) a.getShrunk());
+			Assertions.assertEquals(1, new Corpus(dir).size());
+		}
+		finally
+		{
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void assertReplayOnly()
+	{
+		Corpus c = new Corpus();
+		c.add(new int[] {900}, (String) null);
+		Assert<Integer> a = new Assert<Integer>(new LessThan(500), new RandomInteger(0, 1000));
+		a.setCorpus(c);
+		Assertions.assertFalse(a.check());
+		Assertions.assertEquals(900, (int) a.getInitial());
+		// The entry is shrunk, but no random input is generated afterwards
+		Assertions.assertEquals(1, a.getResult().getGenerated());
+	}
+
+	@Test
+	public void assertReplayInvocations()
+	{
+		Corpus c = new Corpus();
+		c.add(new int[] {1}, (String) null);
+		c.add(new int[] {2}, (String) null);
+		// The picker no longer produces any input
+		Assert<Integer> a = new Assert<Integer>(new BudgetTest.AlwaysTrue(), new Playback<Integer>(new ArrayList<Integer>()).setLoop(false));
+		a.setCorpus(c);
+		Assertions.assertTrue(a.check());
+		Assertions.assertEquals(0, a.getResult().getInvocations());
+	}
+
+	@Test
+	public void assertFixedRegression()
+	{
+		Corpus c = new Corpus();
+		c.add(new int[] {900}, (String) null);
+		Assert<Integer> a = new Assert<Integer>(new BudgetTest.AlwaysTrue(), new RandomInteger(0, 1000));
+		a.setCorpus(c);
+		Assertions.assertTrue(a.check());
+		Assertions.assertEquals(1, c.size());
+	}
+
+	@Test
+	public void parallelReplay()
+	{
+		Corpus c = new Corpus();
+		for (int i = 0; i < 200; i++)
+		{
+			c.add(new int[] {i * 5}, (String) null);
+		}
+		Picker<Integer> p = new RandomInteger(0, 1000);
+		Testable sut = new LessThan(500);
+		List<Corpus.Entry> sequential = c.replay(p, sut, 1);
+		List<Corpus.Entry> parallel = c.replay(p, sut, 4);
+		Assertions.assertFalse(sequential.isEmpty());
+		Assertions.assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++)
+		{
+			Assertions.assertArrayEquals(sequential.get(i).getChoices(), parallel.get(i).getChoices());
+		}
+	}
+
+	@Test
+	public void monkeyReplay()
+	{
+		Corpus c = new Corpus();
+		Fragile f = new Fragile();
+		Monkey m = new Monkey.ActionMonkey(f, new AddPicker(f, new RandomInteger(0, 19).setSeed(3)), RandomFloat.instance, null);
+		m.shrink(false).setCorpus(c);
+		Assertions.assertFalse(m.check());
+		Assertions.assertEquals(1, c.size());
+		long invocations = m.getResult().getInvocations();
+		int length = c.getEntries().get(0).getChoices().length;
+		m = new Monkey.ActionMonkey(f, new AddPicker(f, new RandomInteger(0, 19).setSeed(4)), RandomFloat.instance, null);
+		m.shrink(false).setCorpus(c);
+		Assertions.assertFalse(m.check());
+		Assertions.assertTrue(m.getResult().getInvocations() <= length);
+		Assertions.assertTrue(m.getResult().getInvocations() <= invocations);
+		Assertions.assertEquals(1, c.size());
+	}
+
+	protected static void delete(File dir)
+	{
+		File[] files = dir.listFiles();
+		if (files != null)
+		{
+			for (File f : files)
+			{
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * An object that fails when it receives the value 17 after at least
+	 * three other values.
+	 */
+	protected static class Fragile implements Resettable
+	{
+		protected int m_count = 0;
+
+		public void add(int x)
+		{
+			if (x == 17 && m_count >= 3)
+			{
+				throw new IllegalStateException();
+			}
+			m_count++;
+		}
+
+		@Override
+		public void reset()
+		{
+			m_count = 0;
+		}
+	}
+
+	protected static class AddPicker implements Picker<Action>
+	{
+		protected final Fragile m_object;
+
+		protected final Picker<Integer> m_values;
+
+		public AddPicker(Fragile object, Picker<Integer> values)
+		{
+			super();
+			m_object = object;
+			m_values = values;
+		}
+
+		@Override
+		public void reset()
+		{
+			m_values.reset();
+		}
+
+		@Override
+		public Action pick()
+		{
+			final int x = m_values.pick();
+			return new Action()
+			{
+				@Override
+				public void doAction()
+				{
+					m_object.add(x);
+				}
+			};
+		}
+
+		@Override
+		public AddPicker duplicate(boolean with_state)
+		{
+			return new AddPicker(m_object, m_values.duplicate(with_state));
+		}
+	}
+}
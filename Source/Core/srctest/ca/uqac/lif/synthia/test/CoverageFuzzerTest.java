@@ -0,0 +1,118 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+public class CoverageFuzzerTest
+{
+	@Test
+	public void findNestedCondition()
+	{
+		RandomInteger ints = new RandomInteger(0, 256);
+		ints.setSeed(0);
+		ComposeList<Integer> lists = new ComposeList<Integer>(ints, 4);
+		CoverageFuzzer<List<Integer>> f = new CoverageFuzzer<List<Integer>>(new Nested(), lists);
+		f.setSeed(0).setBudget(new Budget().setMaxInvocations(200000));
+		Assertions.assertFalse(f.check());
+		List<Integer> found = f.getShrunk();
+		Assertions.assertEquals(17, (int) found.get(0));
+		Assertions.assertEquals(42, (int) found.get(1));
+		Assertions.assertEquals(99, (int) found.get(2));
+		Assertions.assertTrue(f.getCorpus().size() >= 3);
+		Assertions.assertTrue(f.getCoverage().getEdgeCount() >= 3);
+	}
+
+	@Test
+	public void noProbes()
+	{
+		RandomInteger ints = new RandomInteger(0, 100);
+		ints.setSeed(0);
+		CoverageFuzzer<Integer> f = new CoverageFuzzer<Integer>(new AlwaysTrue(), ints);
+		f.setSeed(0).setBudget(new Budget().setMaxInvocations(1000));
+		Assertions.assertTrue(f.check());
+		Assertions.assertTrue(f.getCorpus().isEmpty());
+		Assertions.assertEquals(1000, f.getResult().getInvocations());
+		Assertions.assertNull(f.getShrunk());
+	}
+
+	@Test
+	public void shrinkFailing()
+	{
+		RandomInteger ints = new RandomInteger(0, 1000);
+		ints.setSeed(0);
+		CoverageFuzzer<Integer> f = new CoverageFuzzer<Integer>(new LessThan(10), ints);
+		f.setSeed(0);
+		Assertions.assertFalse(f.check());
+		Assertions.assertEquals(10, (int) f.getShrunk());
+	}
+
+	@Test
+	public void resetBeforeMutation()
+	{
+		CountResets ints = new CountResets();
+		CoverageFuzzer<Integer> f = new CoverageFuzzer<Integer>(new AlwaysTrue(), ints);
+		f.addToCorpus(new int[] {5}).setMutationProbability(1).setSeed(0).setBudget(new Budget().setMaxInvocations(100));
+		Assertions.assertTrue(f.check());
+		// Every input is a mutation of the corpus entry
+		Assertions.assertEquals(100, ints.m_resets);
+	}
+
+	/**
+	 * Fails only on lists starting with 17, 42, 99; each nested condition
+	 * calls a different probe.
+	 */
+	protected static class Nested implements Testable
+	{
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean test(Object ... parameters)
+		{
+			List<Integer> l = (List<Integer>) parameters[0];
+			CoverageMap.probe(0x1a2b);
+			if (l.get(0) == 17)
+			{
+				CoverageMap.probe(0x3c4d);
+				if (l.get(1) == 42)
+				{
+					CoverageMap.probe(0x5e6f);
+					if (l.get(2) == 99)
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+	protected static class CountResets extends RandomInteger
+	{
+		protected int m_resets = 0;
+
+		public CountResets()
+		{
+			super(0, 100);
+		}
+
+		@Override
+		public void reset()
+		{
+			super.reset();
+			m_resets++;
+		}
+	}
+
+	protected static class AlwaysTrue implements Testable
+	{
+		@Override
+		public boolean test(Object ... parameters)
+		{
+			return true;
+		}
+	}
+}
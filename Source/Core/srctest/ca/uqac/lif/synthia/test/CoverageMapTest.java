@@ -0,0 +1,83 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CoverageMapTest
+{
+	@Test
+	public void saturate()
+	{
+		CoverageMap m = new CoverageMap();
+		CoverageMap.clear();
+		for (int i = 0; i < 257; i++)
+		{
+			CoverageMap.probe(0x1a2b);
+		}
+		// The loop from the location to itself is hit 256 times, which does
+		// not wrap around to 0 hits
+		Assertions.assertEquals(2, m.merge());
+		Assertions.assertEquals(2, m.getEdgeCount());
+		CoverageMap.clear();
+		for (int i = 0; i < 1000; i++)
+		{
+			CoverageMap.probe(0x1a2b);
+		}
+		Assertions.assertEquals(0, m.merge());
+	}
+
+	@Test
+	public void newEdges()
+	{
+		CoverageMap m = new CoverageMap();
+		CoverageMap.clear();
+		CoverageMap.probe(0x1a2b);
+		CoverageMap.probe(0x3c4d);
+		Assertions.assertEquals(2, m.merge());
+		CoverageMap.clear();
+		CoverageMap.probe(0x1a2b);
+		CoverageMap.probe(0x3c4d);
+		Assertions.assertEquals(0, m.merge());
+		CoverageMap.clear();
+		CoverageMap.probe(0x3c4d);
+		CoverageMap.probe(0x1a2b);
+		Assertions.assertEquals(2, m.merge());
+		Assertions.assertEquals(4, m.getEdgeCount());
+	}
+
+	@Test
+	public void threads() throws InterruptedException
+	{
+		CoverageMap m = new CoverageMap();
+		CoverageMap.clear();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++)
+		{
+			Thread t = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < 10000; j++)
+					{
+						CoverageMap.probe(0x1a2b);
+						CoverageMap.probe(0x3c4d);
+					}
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads)
+		{
+			t.join();
+		}
+		// Each thread follows its own path: the edges are the same as for a
+		// single thread, no matter how the threads are interleaved
+		Assertions.assertEquals(3, m.merge());
+		Assertions.assertEquals(3, m.getEdgeCount());
+	}
+}
@@ -0,0 +1,222 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.util.Constant;
+
+public class LatencyHistogramTest
+{
+	@Test
+	public void percentiles()
+	{
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 100000; i++)
+		{
+			h.record(i);
+		}
+		Assertions.assertEquals(100000, h.getCount());
+		Assertions.assertEquals(100000, h.getMax());
+		Assertions.assertEquals(50000.5, h.getMean(), 0.001);
+		assertClose(50000, h.getValueAtPercentile(50));
+		assertClose(99000, h.getValueAtPercentile(99));
+		Assertions.assertEquals(100000, h.getValueAtPercentile(100));
+		Assertions.assertEquals(1, h.getValueAtPercentile(0));
+	}
+
+	@Test
+	public void smallValuesAreExact()
+	{
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 0; i < 100; i++)
+		{
+			h.record(i);
+		}
+		Assertions.assertEquals(49, h.getValueAtPercentile(50));
+		h.reset();
+		Assertions.assertEquals(0, h.getCount());
+		Assertions.assertEquals(0, h.getValueAtPercentile(50));
+	}
+
+	@Test
+	public void largeValues()
+	{
+		LatencyHistogram h = new LatencyHistogram();
+		h.record(Long.MAX_VALUE);
+		h.record(-5);
+		Assertions.assertEquals(Long.MAX_VALUE, h.getValueAtPercentile(100));
+		Assertions.assertEquals(0, h.getValueAtPercentile(50));
+	}
+
+	@Test
+	public void concurrentRecording() throws InterruptedException
+	{
+		final LatencyHistogram h = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 10000; i++)
+					{
+						h.record(i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads)
+		{
+			t.join();
+		}
+		Assertions.assertEquals(40000, h.getCount());
+		Assertions.assertEquals(9999, h.getMax());
+	}
+
+	@Test
+	public void monkeyLatencies()
+	{
+		Monkey m = new Monkey.ActionMonkey(new BudgetTest.Counter(), new Constant<Action>(new BudgetTest.Counter()), RandomFloat.instance, null);
+		m.setActionsPerAttempt(10);
+		Assertions.assertTrue(m.check());
+		Map<Class<?>,LatencyHistogram> latencies = m.getLatencies();
+		Assertions.assertEquals(1, latencies.size());
+		Assertions.assertEquals(m.getResult().getInvocations(), latencies.get(BudgetTest.Counter.class).getCount());
+	}
+
+	@Test
+	public void monkeyAsync()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			final Concurrent c = new Concurrent();
+			Monkey m = new Monkey.ActionMonkey(c, new Constant<Action>(c), RandomFloat.instance, null);
+			m.setActionsPerAttempt(100).setAsync(executor, 3);
+			Assertions.assertTrue(m.check());
+			Assertions.assertTrue(c.m_maxRunning.get() <= 3);
+			Assertions.assertEquals(500, m.getResult().getInvocations());
+			Assertions.assertEquals(500, m.getLatencies().get(Concurrent.class).getCount());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void monkeyAsyncFailure()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			Failing f = new Failing();
+			Monkey m = new Monkey.ActionMonkey(f, new Constant<Action>(f), RandomFloat.instance, null);
+			m.setActionsPerAttempt(100).setAsync(executor, 2).shrink(false);
+			Assertions.assertFalse(m.check());
+			Assertions.assertTrue(m.getException() instanceof IllegalStateException);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void monkeyAsyncError()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			Failing f = new Failing(true);
+			Monkey m = new Monkey.ActionMonkey(f, new Constant<Action>(f), RandomFloat.instance, null);
+			m.setActionsPerAttempt(100).setAsync(executor, 2).shrink(false);
+			Assertions.assertFalse(m.check());
+			Assertions.assertTrue(m.getException() instanceof ExecutionException);
+			Assertions.assertTrue(m.getException().getCause() instanceof AssertionError);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	protected static void assertClose(long expected, long actual)
+	{
+		Assertions.assertTrue(Math.abs(expected - actual) <= expected / 64, "Expected " + expected + ", got " + actual);
+	}
+
+	protected static class Concurrent implements Action, Resettable
+	{
+		protected final AtomicInteger m_running = new AtomicInteger();
+
+		protected final AtomicInteger m_maxRunning = new AtomicInteger();
+
+		@Override
+		public void doAction()
+		{
+			int n = m_running.incrementAndGet();
+			int max = m_maxRunning.get();
+			while (n > max && !m_maxRunning.compareAndSet(max, n))
+			{
+				max = m_maxRunning.get();
+			}
+			Thread.yield();
+			m_running.decrementAndGet();
+		}
+
+		@Override
+		public void reset()
+		{
+			// Nothing to do
+		}
+	}
+
+	protected static class Failing implements Action, Resettable
+	{
+		protected final AtomicInteger m_count = new AtomicInteger();
+
+		protected final boolean m_error;
+
+		public Failing()
+		{
+			this(false);
+		}
+
+		public Failing(boolean error)
+		{
+			super();
+			m_error = error;
+		}
+
+		@Override
+		public void doAction()
+		{
+			if (m_count.incrementAndGet() == 10)
+			{
+				if (m_error)
+				{
+					throw new AssertionError();
+				}
+				throw new IllegalStateException();
+			}
+		}
+
+		@Override
+		public void reset()
+		{
+			m_count.set(0);
+		}
+	}
+}
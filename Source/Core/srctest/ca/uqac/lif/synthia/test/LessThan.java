@@ -0,0 +1,22 @@
+package ca.uqac.lif.synthia.test;
+
+/**
+ * Class for test use. A test that passes on the integers smaller than a
+ * bound, and fails on all the others.
+ */
+public class LessThan implements Testable
+{
+	protected final int m_bound;
+
+	public LessThan(int bound)
+	{
+		super();
+		m_bound = bound;
+	}
+
+	@Override
+	public boolean test(Object ... parameters)
+	{
+		return (Integer) parameters[0] < m_bound;
+	}
+}
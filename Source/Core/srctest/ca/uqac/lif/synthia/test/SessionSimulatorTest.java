@@ -0,0 +1,165 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.test.SessionSimulator.Script;
+import ca.uqac.lif.synthia.test.SessionSimulator.Session;
+import ca.uqac.lif.synthia.util.Constant;
+import ca.uqac.lif.synthia.util.TestPickers;
+
+public class SessionSimulatorTest
+{
+	@Test
+	public void deterministicChoices()
+	{
+		Map<Integer,List<Integer>> first = traces(new SessionSimulator<Integer,Integer>(new ThreePicks(), new RandomInteger(0, 1000), new Constant<Integer>(0), new Constant<Integer>(0), 7).run(200));
+		Map<Integer,List<Integer>> second = traces(new SessionSimulator<Integer,Integer>(new ThreePicks(), new RandomInteger(0, 1000), new Constant<Integer>(0), new Constant<Integer>(0), 7).run(200));
+		Assertions.assertEquals(200, first.size());
+		Assertions.assertEquals(first, second);
+		// Sessions draw from different streams
+		Assertions.assertNotEquals(first.get(0), first.get(1));
+	}
+
+	@Test
+	public void choiceTree()
+	{
+		Map<Integer,List<Integer>> first = traces(new SessionSimulator<Integer,Integer>(new ThreePicks(), TestPickers.newChoice(), new Constant<Integer>(0), new Constant<Integer>(0), 7).run(200));
+		Map<Integer,List<Integer>> second = traces(new SessionSimulator<Integer,Integer>(new ThreePicks(), TestPickers.newChoice(), new Constant<Integer>(0), new Constant<Integer>(0), 7).run(200));
+		Assertions.assertEquals(first, second);
+		Assertions.assertNotEquals(first.get(0), first.get(1));
+		// A session only depends on its index
+		Map<Integer,List<Integer>> fewer = traces(new SessionSimulator<Integer,Integer>(new ThreePicks(), TestPickers.newChoice(), new Constant<Integer>(0), new Constant<Integer>(0), 7).run(10));
+		for (int i = 0; i < 10; i++)
+		{
+			Assertions.assertEquals(first.get(i), fewer.get(i));
+		}
+	}
+
+	@Test
+	public void lifetimes()
+	{
+		long lifetime = TimeUnit.MILLISECONDS.toNanos(50);
+		SessionSimulator<Integer,Integer> sim = new SessionSimulator<Integer,Integer>(new Browse(), new RandomInteger(0, 10), new Constant<Integer>(0), new Constant<Long>(lifetime), 0);
+		sim.run(100);
+		Assertions.assertEquals(100, sim.getStarted());
+		Assertions.assertEquals(0, sim.getErrors());
+		// Sessions overlap, since they spend their time thinking
+		Assertions.assertTrue(sim.getMaxConcurrent() > 1);
+		Assertions.assertTrue(sim.getElapsedTime() < 100 * lifetime);
+		for (Session<Integer,Integer> s : sim.getSessions())
+		{
+			Assertions.assertTrue(s.getDuration() >= lifetime);
+			Assertions.assertFalse(s.getTrace().isEmpty());
+		}
+	}
+
+	@Test
+	public void errorsAndSink()
+	{
+		final ConcurrentLinkedQueue<Session<Integer,Integer>> sunk = new ConcurrentLinkedQueue<Session<Integer,Integer>>();
+		SessionSimulator<Integer,Integer> sim = new SessionSimulator<Integer,Integer>(new Failing(), new RandomInteger(0, 2), new Constant<Integer>(0), new Constant<Integer>(0), 0);
+		sim.setSink(new Consumer<Session<Integer,Integer>>()
+		{
+			@Override
+			public void accept(Session<Integer,Integer> s)
+			{
+				sunk.add(s);
+			}
+		}).run(50);
+		Assertions.assertEquals(50, sunk.size());
+		Assertions.assertTrue(sim.getSessions().isEmpty());
+		Assertions.assertTrue(sim.getErrors() > 0 && sim.getErrors() < 50);
+		Assertions.assertTrue(sim.getFirstError() instanceof IllegalStateException);
+	}
+
+	@Test
+	public void failingSink()
+	{
+		SessionSimulator<Integer,Integer> sim = new SessionSimulator<Integer,Integer>(new ThreePicks(), new RandomInteger(0, 2), new Constant<Integer>(0), new Constant<Integer>(0), 0);
+		sim.setSink(new Consumer<Session<Integer,Integer>>()
+		{
+			@Override
+			public void accept(Session<Integer,Integer> s)
+			{
+				throw new IllegalStateException();
+			}
+		}).run(10);
+		Assertions.assertEquals(10, sim.getErrors());
+		Assertions.assertTrue(sim.getFirstError() instanceof IllegalStateException);
+	}
+
+	@Test
+	public void failingCopy()
+	{
+		SessionSimulator<Integer,Integer> sim = new SessionSimulator<Integer,Integer>(new ThreePicks(), new NoCopy(), new Constant<Integer>(0), new Constant<Integer>(0), 0);
+		sim.run(10);
+		Assertions.assertEquals(10, sim.getErrors());
+		Assertions.assertEquals(10, sim.getSessions().size());
+		Assertions.assertTrue(sim.getFirstError() instanceof UnsupportedOperationException);
+	}
+
+	protected static Map<Integer,List<Integer>> traces(SessionSimulator<Integer,Integer> sim)
+	{
+		Map<Integer,List<Integer>> map = new TreeMap<Integer,List<Integer>>();
+		for (Session<Integer,Integer> s : sim.getSessions())
+		{
+			map.put(s.getIndex(), s.getTrace());
+		}
+		return map;
+	}
+
+	protected static class ThreePicks implements Script<Integer,Integer>
+	{
+		@Override
+		public void run(Session<Integer,Integer> s)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				s.record(s.getPicker().pick());
+			}
+		}
+	}
+
+	protected static class Browse implements Script<Integer,Integer>
+	{
+		@Override
+		public void run(Session<Integer,Integer> s)
+		{
+			do
+			{
+				s.record(s.getPicker().pick());
+			}
+			while (s.think(TimeUnit.MILLISECONDS.toNanos(5)));
+		}
+	}
+
+	protected static class NoCopy extends RandomInteger
+	{
+		@Override
+		public RandomInteger duplicate(boolean with_state)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	protected static class Failing implements Script<Integer,Integer>
+	{
+		@Override
+		public void run(Session<Integer,Integer> s)
+		{
+			if (s.getPicker().pick() == 0)
+			{
+				throw new IllegalStateException();
+			}
+		}
+	}
+}
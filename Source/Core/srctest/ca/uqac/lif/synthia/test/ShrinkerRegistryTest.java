@@ -0,0 +1,166 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.string.RandomString;
+import ca.uqac.lif.synthia.util.Constant;
+
+public class ShrinkerRegistryTest
+{
+	@Test
+	public void integerCandidates()
+	{
+		IntegerShrinker s = new IntegerShrinker(0);
+		Assertions.assertEquals(Arrays.asList(0, 50, 75, 88, 94, 97, 99), s.candidates(100));
+		Assertions.assertTrue(s.candidates(0).isEmpty());
+	}
+
+	@Test
+	public void listCandidates()
+	{
+		ListShrinker<Integer> s = new ListShrinker<Integer>(null, 0);
+		List<List<Integer>> c = s.candidates(Arrays.asList(1, 2, 3, 4));
+		Assertions.assertEquals(Arrays.asList(), c.get(0));
+		Assertions.assertEquals(Arrays.asList(1, 2), c.get(1));
+		Assertions.assertEquals(Arrays.asList(3, 4), c.get(2));
+		Assertions.assertTrue(new ListShrinker<Integer>(null, 4).candidates(Arrays.asList(1, 2, 3, 4)).isEmpty());
+	}
+
+	@Test
+	public void stringCandidates()
+	{
+		StringShrinker s = new StringShrinker(new char[] {'a', 'b', 'c'}, 1);
+		List<String> c = s.candidates("cc");
+		Assertions.assertEquals("c", c.get(0));
+		Assertions.assertTrue(c.contains("ac"));
+		Assertions.assertTrue(c.contains("cb"));
+		Assertions.assertFalse(c.contains(""));
+	}
+
+	@Test
+	public void assertInteger()
+	{
+		// The failing threshold is far from the lower bound
+		Assert<Integer> a = new Assert<Integer>(new LessThan(123456), new RandomInteger(0, 100000000).setSeed(0));
+		Assertions.assertFalse(a.check());
+		Assertions.assertEquals(123456, (int) a.getShrunk());
+		// About a hundred candidates for each failing input found
+		Assertions.assertTrue(a.getResult().getShrinkSteps() < 200 * Assert.MAX_STARTS);
+	}
+
+	@Test
+	public void assertFloat()
+	{
+		Assert<Float> a = new Assert<Float>(new Testable()
+		{
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				return (Float) parameters[0] < 0.5f;
+			}
+		}, new RandomFloat().setSeed(0));
+		Assertions.assertFalse(a.check());
+		float f = a.getShrunk();
+		Assertions.assertTrue(f >= 0.5f && f < 0.501f);
+	}
+
+	@Test
+	public void assertList()
+	{
+		RandomInteger ints = new RandomInteger(0, 100).setSeed(0);
+		ComposeList<Integer> lists = new ComposeList<Integer>(ints, new RandomInteger(0, 20).setSeed(0));
+		Assert<List<Integer>> a = new Assert<List<Integer>>(new Testable()
+		{
+			@SuppressWarnings("unchecked")
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				// Fails as soon as an element is at least 50
+				for (int x : (List<Integer>) parameters[0])
+				{
+					if (x >= 50)
+					{
+						return false;
+					}
+				}
+				return true;
+			}
+		}, lists);
+		Assertions.assertFalse(a.check());
+		Assertions.assertEquals(Arrays.asList(50), a.getShrunk());
+	}
+
+	@Test
+	public void assertString()
+	{
+		Assert<String> a = new Assert<String>(new Testable()
+		{
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				return ((String) parameters[0]).indexOf('Z') < 0;
+			}
+		}, new RandomString(new RandomInteger(0, 30).setSeed(0)).setSeed(0));
+		Assertions.assertFalse(a.check());
+		Assertions.assertEquals("Z", a.getShrunk());
+	}
+
+	@Test
+	public void assertRestarts()
+	{
+		// Each failing input is a local minimum for the shrinker
+		Assert<Integer> a = new Assert<Integer>(new Testable()
+		{
+			@Override
+			public boolean test(Object ... parameters)
+			{
+				return (Integer) parameters[0] % 100 != 99;
+			}
+		}, new RandomInteger(0, 100000).setSeed(0));
+		Assertions.assertFalse(a.check());
+		List<CheckResult.ShrinkStep> progress = a.getResult().getProgress();
+		int smallest = Integer.MAX_VALUE;
+		boolean restarted = false;
+		for (int i = 0; i < progress.size(); i++)
+		{
+			int x = (Integer) progress.get(i).getInput();
+			smallest = Math.min(smallest, x);
+			restarted |= i > 0 && x > (Integer) progress.get(i - 1).getInput();
+		}
+		Assertions.assertTrue(restarted);
+		Assertions.assertEquals(smallest, (int) a.getShrunk());
+	}
+
+	@Test
+	public void assertDefault()
+	{
+		// The shrinker registered for RandomInteger is used by default
+		Assert<Integer> a = new Assert<Integer>(new LessThan(10), new RandomInteger(0, 1000).setSeed(0));
+		Assertions.assertFalse(a.check());
+		Assertions.assertEquals(10, (int) a.getShrunk());
+	}
+
+	@Test
+	public void assertNoRegistry()
+	{
+		// Without a registry, the shrinking of the picker is used
+		Assert<Integer> a = new Assert<Integer>(new LessThan(10), new RandomInteger(0, 1000).setSeed(0)).setShrinkerRegistry(null);
+		Assertions.assertFalse(a.check());
+		Assertions.assertTrue(a.getShrunk() >= 10);
+	}
+
+	@Test
+	public void noShrinker()
+	{
+		Assertions.assertNull(new ShrinkerRegistry().get(new RandomInteger(0, 10)));
+		Assertions.assertNull(ShrinkerRegistry.instance.get(new Constant<Integer>(0)));
+		Assertions.assertNotNull(ShrinkerRegistry.instance.get(new ComposeList<Integer>(new Constant<Integer>(0), 3)));
+	}
+}
@@ -0,0 +1,177 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.test.Monkey.SwarmMonkey;
+import ca.uqac.lif.synthia.util.Choice;
+import org.junit.jupiter.api.function.Executable;
+
+public class SwarmTest
+{
+	@Test
+	public void onlyEnabledFeatures()
+	{
+		Swarm<String> s = new Swarm<String>(new RandomFloat().setSeed(0));
+		s.add("a", 1).add("b", 1).add("c", 1);
+		for (int i = 0; i < 50; i++)
+		{
+			s.nextConfiguration();
+			String conf = s.getConfiguration();
+			Assertions.assertTrue(conf.contains("1"));
+			for (int j = 0; j < 20; j++)
+			{
+				String x = s.pick();
+				Assertions.assertEquals('1', conf.charAt(x.charAt(0) - 'a'));
+			}
+		}
+	}
+
+	@Test
+	public void learnsFromFailures()
+	{
+		Swarm<String> s = new Swarm<String>(new RandomFloat().setSeed(0));
+		s.add("a", 1).add("b", 1).add("c", 1);
+		Assertions.assertEquals(0.5f, s.getInclusionProbability(0), 0.001f);
+		for (int i = 0; i < 200; i++)
+		{
+			s.nextConfiguration();
+			// Runs fail when "a" is enabled and "b" is not
+			String conf = s.getConfiguration();
+			s.tell(conf.charAt(0) == '1' && conf.charAt(1) == '0');
+		}
+		Assertions.assertTrue(s.getInclusionProbability(0) > 0.8f);
+		Assertions.assertTrue(s.getInclusionProbability(1) < 0.2f);
+		Assertions.assertFalse(s.getFailingConfigurations().isEmpty());
+		for (String conf : s.getFailingConfigurations().keySet())
+		{
+			Assertions.assertTrue(conf.startsWith("10"));
+		}
+	}
+
+	@Test
+	public void fromChoice()
+	{
+		Choice<String> c = new Choice<String>(new RandomFloat());
+		c.add("a", 0.5).add("b", 0.5);
+		Swarm<String> s = new Swarm<String>(new RandomFloat().setSeed(0), c);
+		Assertions.assertEquals(2, s.getFeatureCount());
+		Set<String> seen = new HashSet<String>();
+		for (int i = 0; i < 100; i++)
+		{
+			seen.add(s.pick());
+		}
+		Assertions.assertEquals(2, seen.size());
+	}
+
+	@Test
+	public void swarmMonkey()
+	{
+		// The counter only fails when incremented 20 times without a reset
+		Counter counter = new Counter();
+		Swarm<Action> s = new Swarm<Action>(new RandomFloat().setSeed(0));
+		s.add(new Increment(counter), 1).add(new Reset(counter), 1);
+		Monkey m = new SwarmMonkey(counter, s, new RandomFloat().setSeed(0), null).shrink(false);
+		m.setBudget(new Budget().setMaxInvocations(100000));
+		Assertions.assertFalse(m.check());
+		Assertions.assertEquals(1, s.getFailingConfigurations().size());
+		Assertions.assertTrue(s.getFailingConfigurations().containsKey("10"));
+	}
+
+	@Test
+	public void setConfiguration()
+	{
+		final Swarm<String> s = new Swarm<String>(new RandomFloat().setSeed(0));
+		s.add("a", 1).add("b", 1).add("c", 1);
+		s.setConfiguration("010");
+		Assertions.assertEquals("010", s.getConfiguration());
+		for (int i = 0; i < 20; i++)
+		{
+			Assertions.assertEquals("b", s.pick());
+		}
+		Assertions.assertThrows(IllegalArgumentException.class, new Executable() {
+			@Override
+			public void execute()
+			{
+				s.setConfiguration("01");
+			}
+		});
+	}
+
+	@Test
+	public void swarmMonkeyCorpus()
+	{
+		Corpus c = new Corpus();
+		Counter counter = new Counter();
+		Swarm<Action> s = new Swarm<Action>(new RandomFloat().setSeed(0));
+		s.add(new Increment(counter), 1).add(new Reset(counter), 1);
+		Monkey m = new SwarmMonkey(counter, s, new RandomFloat().setSeed(0), null).shrink(false);
+		m.setBudget(new Budget().setMaxInvocations(100000)).setCorpus(c);
+		Assertions.assertFalse(m.check());
+		Assertions.assertEquals(1, c.size());
+		Assertions.assertEquals("10", c.getEntries().get(0).getContext());
+		// A new swarm replays the entry under its saved configuration, without
+		// counting the replay as a run of that configuration
+		s = new Swarm<Action>(new RandomFloat().setSeed(1));
+		s.add(new Increment(counter), 1).add(new Reset(counter), 1);
+		m = new SwarmMonkey(counter, s, new RandomFloat().setSeed(0), null).shrink(false);
+		m.setBudget(new Budget().setMaxInvocations(100000)).setCorpus(c);
+		Assertions.assertFalse(m.check());
+		Assertions.assertEquals("10", s.getConfiguration());
+		Assertions.assertEquals(0, s.m_runs);
+		Assertions.assertTrue(s.getFailingConfigurations().isEmpty());
+	}
+
+	protected static class Counter implements Resettable
+	{
+		protected int m_value;
+
+		@Override
+		public void reset()
+		{
+			m_value = 0;
+		}
+	}
+
+	protected static class Increment implements Action
+	{
+		protected final Counter m_counter;
+
+		public Increment(Counter c)
+		{
+			super();
+			m_counter = c;
+		}
+
+		@Override
+		public void doAction()
+		{
+			if (++m_counter.m_value == 20)
+			{
+				throw new IllegalStateException();
+			}
+		}
+	}
+
+	protected static class Reset implements Action
+	{
+		protected final Counter m_counter;
+
+		public Reset(Counter c)
+		{
+			super();
+			m_counter = c;
+		}
+
+		@Override
+		public void doAction()
+		{
+			m_counter.reset();
+		}
+	}
+}
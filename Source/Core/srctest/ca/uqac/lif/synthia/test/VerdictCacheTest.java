@@ -0,0 +1,95 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+public class VerdictCacheTest
+{
+	@Test
+	public void cacheHit()
+	{
+		CountingTestable sut = new CountingTestable();
+		VerdictCache cache = new VerdictCache();
+		Assertions.assertTrue(cache.test(sut, 3));
+		Assertions.assertTrue(cache.test(sut, 3));
+		Assertions.assertFalse(cache.test(sut, 12));
+		Assertions.assertEquals(2, sut.m_calls);
+		Assertions.assertEquals(1, cache.getHits());
+		Assertions.assertEquals(2, cache.getMisses());
+		Assertions.assertEquals(1f / 3f, cache.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void deepEquivalence()
+	{
+		CountingTestable sut = new CountingTestable();
+		VerdictCache cache = new VerdictCache();
+		cache.test(sut, new int[] {1, 2, 3});
+		cache.test(sut, new int[] {1, 2, 3});
+		List<Object> l1 = new ArrayList<Object>();
+		l1.add(new String[] {"a", "b"});
+		List<Object> l2 = new ArrayList<Object>();
+		l2.add(new String[] {"a", "b"});
+		cache.test(sut, l1);
+		cache.test(sut, l2);
+		cache.test(sut, Arrays.asList(4, 5));
+		Assertions.assertEquals(3, sut.m_calls);
+		Assertions.assertEquals(2, cache.getHits());
+	}
+
+	@Test
+	public void boundedSize()
+	{
+		CountingTestable sut = new CountingTestable();
+		VerdictCache cache = new VerdictCache(2);
+		cache.test(sut, 1);
+		cache.test(sut, 2);
+		cache.test(sut, 1);
+		cache.test(sut, 3); // Evicts 2, the least recently used
+		Assertions.assertEquals(2, cache.size());
+		cache.test(sut, 1);
+		Assertions.assertEquals(3, sut.m_calls);
+		cache.test(sut, 2);
+		Assertions.assertEquals(4, sut.m_calls);
+	}
+
+	@Test
+	public void assertWithCache()
+	{
+		CountingTestable sut = new CountingTestable();
+		VerdictCache cache = new VerdictCache();
+		// Shrinking by the picker draws the same candidates many times
+		Assert<Integer> a = new Assert<Integer>(sut, new RandomInteger(0, 20)).setCache(cache).setShrinkerRegistry(null);
+		Assertions.assertFalse(a.check());
+		Assertions.assertEquals(10, (int) a.getShrunk());
+		Assertions.assertTrue(cache.getHits() > 0);
+		Assertions.assertEquals(cache.getMisses(), sut.m_calls);
+	}
+
+	/**
+	 * A test that fails on integers greater than or equal to 10, and counts
+	 * the number of times it is called.
+	 */
+	protected static class CountingTestable implements Testable
+	{
+		protected int m_calls = 0;
+
+		@Override
+		public boolean test(Object ... parameters)
+		{
+			m_calls++;
+			Object o = parameters[0];
+			if (o instanceof Integer)
+			{
+				return (Integer) o < 10;
+			}
+			return true;
+		}
+	}
+}
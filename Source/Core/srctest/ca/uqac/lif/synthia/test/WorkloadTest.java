@@ -0,0 +1,131 @@
+package ca.uqac.lif.synthia.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.util.Constant;
+
+public class WorkloadTest
+{
+	@Test
+	public void fixedRate()
+	{
+		Count c = new Count();
+		Workload w = new Workload(new Constant<Action>(c), new Workload.FixedRate());
+		w.addPhase(10000, 200, TimeUnit.MILLISECONDS).setThreads(1).run();
+		Assertions.assertTrue(w.getIssued() >= 1999 && w.getIssued() <= 2000);
+		Assertions.assertEquals(w.getIssued(), c.m_count.get());
+		Assertions.assertEquals(w.getIssued(), w.getLatencies().getCount());
+		Assertions.assertTrue(w.getElapsedTime() >= TimeUnit.MILLISECONDS.toNanos(199));
+		Assertions.assertEquals(0, w.getErrors());
+	}
+
+	@Test
+	public void ramp()
+	{
+		Workload w = new Workload(new Constant<Action>(new Count()), new Workload.FixedRate());
+		w.addRamp(0, 20000, 200, TimeUnit.MILLISECONDS).addRamp(20000, 0, 100, TimeUnit.MILLISECONDS).setThreads(1).run();
+		// The area under the rate curve
+		Assertions.assertTrue(w.getIssued() >= 2900 && w.getIssued() <= 3100, "Issued " + w.getIssued());
+	}
+
+	@Test
+	public void rampFromZero()
+	{
+		Workload w = new Workload(new Constant<Action>(new Count()), new Workload.FixedRate());
+		w.addRamp(0, 1000, 500, TimeUnit.MILLISECONDS).setThreads(1).run();
+		Assertions.assertTrue(w.getIssued() >= 240 && w.getIssued() <= 260, "Issued " + w.getIssued());
+		w = new Workload(new Constant<Action>(new Count()), new Workload.Poisson(new RandomFloat().setSeed(0)));
+		w.addRamp(0, 1000, 500, TimeUnit.MILLISECONDS).setThreads(1).run();
+		Assertions.assertTrue(w.getIssued() >= 180 && w.getIssued() <= 320, "Issued " + w.getIssued());
+	}
+
+	@Test
+	public void coordinatedOmission()
+	{
+		Workload w = new Workload(new Constant<Action>(new Sleep()), new Workload.FixedRate());
+		// One thread cannot keep up with 1 ms actions issued every 0.5 ms
+		w.addPhase(2000, 100, TimeUnit.MILLISECONDS).setThreads(1).run();
+		Assertions.assertTrue(w.getLatencies().getValueAtPercentile(99) > 5 * w.getServiceTimes().getValueAtPercentile(99));
+	}
+
+	@Test
+	public void errors()
+	{
+		Workload w = new Workload(new Constant<Action>(new Action()
+		{
+			@Override
+			public void doAction()
+			{
+				throw new IllegalStateException();
+			}
+		}), new Workload.FixedRate());
+		w.addPhase(1000, 20, TimeUnit.MILLISECONDS).setThreads(1).run();
+		Assertions.assertEquals(w.getIssued(), w.getErrors());
+		Assertions.assertTrue(w.getFirstError() instanceof IllegalStateException);
+	}
+
+	@Test
+	public void poissonGaps()
+	{
+		Workload.Arrivals a = new Workload.Poisson(new RandomFloat().setSeed(0));
+		a.tell(1000);
+		double sum = 0;
+		for (int i = 0; i < 100000; i++)
+		{
+			sum += a.pick();
+		}
+		Assertions.assertEquals(1e6, sum / 100000, 3e4);
+	}
+
+	@Test
+	public void burstyGaps()
+	{
+		Workload.Arrivals a = new Workload.Bursty(new RandomFloat().setSeed(0), 10);
+		a.tell(1000);
+		double sum = 0;
+		int zeros = 0;
+		for (int i = 0; i < 100000; i++)
+		{
+			long gap = a.pick();
+			sum += gap;
+			if (gap == 0)
+			{
+				zeros++;
+			}
+		}
+		Assertions.assertEquals(90000, zeros);
+		Assertions.assertEquals(1e6, sum / 100000, 5e4);
+	}
+
+	protected static class Count implements Action
+	{
+		protected final AtomicLong m_count = new AtomicLong();
+
+		@Override
+		public void doAction()
+		{
+			m_count.incrementAndGet();
+		}
+	}
+
+	protected static class Sleep implements Action
+	{
+		@Override
+		public void doAction()
+		{
+			try
+			{
+				Thread.sleep(1);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
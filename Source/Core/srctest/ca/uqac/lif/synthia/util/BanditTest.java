@@ -0,0 +1,91 @@
+package ca.uqac.lif.synthia.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.random.RandomFloat;
+
+public class BanditTest
+{
+	/**
+	 * The probability that each arm gives a reward of 1.
+	 */
+	protected static final float[] PAYOFFS = {0.1f, 0.2f, 0.8f, 0.3f};
+
+	@Test
+	public void ucbConverges()
+	{
+		converges(new Bandit.Ucb<Integer>());
+	}
+
+	@Test
+	public void thompsonConverges()
+	{
+		converges(new Bandit.Thompson<Integer>(new RandomFloat().setSeed(0)));
+	}
+
+	@Test
+	public void ucbTriesEachArmFirst()
+	{
+		Bandit<Integer> b = new Bandit.Ucb<Integer>();
+		b.add(0).add(1).add(2);
+		for (int i = 0; i < 3; i++)
+		{
+			Assertions.assertEquals(i, (int) b.pick());
+			b.tell(0);
+		}
+	}
+
+	@Test
+	public void rewardWithoutPick()
+	{
+		Bandit<Integer> b = new Bandit.Ucb<Integer>();
+		b.add(0).add(1);
+		b.tell(1);
+		Assertions.assertEquals(0, b.getPulls(0));
+		b.pick();
+		Assertions.assertEquals(0, b.getLastArm());
+		b.tell(1);
+		b.tell(1);
+		Assertions.assertEquals(1, b.getPulls(0));
+		Assertions.assertEquals(-1, b.getLastArm());
+	}
+
+	@Test
+	public void duplicateWithState()
+	{
+		Bandit<Integer> b = new Bandit.Ucb<Integer>();
+		b.add(0).add(1);
+		b.pick();
+		b.tell(1);
+		Bandit<Integer> copy = b.duplicate(true);
+		Assertions.assertEquals(1, copy.getPulls(0));
+		Assertions.assertEquals(1, copy.getMeanReward(0), 0.0001);
+		copy = b.duplicate(false);
+		Assertions.assertEquals(0, copy.getPulls(0));
+		b.reset();
+		Assertions.assertEquals(0, b.getPulls(0));
+	}
+
+	protected static void converges(Bandit<Integer> b)
+	{
+		for (int i = 0; i < PAYOFFS.length; i++)
+		{
+			b.add(i);
+		}
+		RandomFloat rewards = new RandomFloat().setSeed(1);
+		for (int i = 0; i < 5000; i++)
+		{
+			int arm = b.pick();
+			b.tell(rewards.pick() < PAYOFFS[arm] ? 1 : 0);
+		}
+		for (int i = 0; i < PAYOFFS.length; i++)
+		{
+			if (i != 2)
+			{
+				Assertions.assertTrue(b.getPulls(2) > 5 * b.getPulls(i));
+			}
+		}
+		Assertions.assertEquals(0.8, b.getMeanReward(2), 0.05);
+	}
+}
@@ -0,0 +1,115 @@
+package ca.uqac.lif.synthia.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import ca.uqac.lif.synthia.Picker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+public class BulkGeneratorTest
+{
+	@Test
+	public void sameValuesForAnyThreadCount()
+	{
+		List<Integer> one = generate(1, 10000, true);
+		List<Integer> four = generate(4, 10000, true);
+		Assertions.assertEquals(10000, one.size());
+		Assertions.assertEquals(one, four);
+		List<Integer> unordered = generate(4, 10000, false);
+		Collections.sort(unordered);
+		Collections.sort(one);
+		Assertions.assertEquals(one, unordered);
+	}
+
+	@Test
+	public void blocksDiffer()
+	{
+		List<Integer> values = generate(2, 200, true);
+		// Blocks are produced by copies with different seeds
+		Assertions.assertNotEquals(values.subList(0, 100), values.subList(100, 200));
+	}
+
+	@Test
+	public void compositePicker()
+	{
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try
+		{
+			BulkGenerator<List<Integer>> g = new BulkGenerator<List<Integer>>(new ComposeList<Integer>(new RandomInteger(0, 10), new RandomInteger(1, 5)), 3);
+			final List<List<Integer>> l1 = new ArrayList<List<Integer>>();
+			final List<List<Integer>> l2 = new ArrayList<List<Integer>>();
+			g.setPool(pool).setBlockSize(7).generate(50, new Collect<List<Integer>>(l1), true);
+			g.setPool(ForkJoinPool.commonPool()).generate(50, new Collect<List<Integer>>(l2), true);
+			Assertions.assertEquals(50, l1.size());
+			Assertions.assertEquals(l1, l2);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void choiceTree()
+	{
+		List<Integer> one = generate(TestPickers.newChoice(), 1, 5000, true);
+		Assertions.assertEquals(one, generate(TestPickers.newChoice(), 8, 5000, true));
+		List<Integer> unordered = generate(TestPickers.newChoice(), 8, 5000, false);
+		Collections.sort(unordered);
+		Collections.sort(one);
+		Assertions.assertEquals(one, unordered);
+	}
+
+	@Test
+	public void exhaustedBlocks()
+	{
+		List<Integer> values = new ArrayList<Integer>();
+		new BulkGenerator<Integer>(new Once<Integer>(new Constant<Integer>(1)), 0).setBlockSize(10).generate(100, new Collect<Integer>(values), true);
+		// Each of the 10 blocks ends after one value
+		Assertions.assertEquals(10, values.size());
+	}
+
+	protected static List<Integer> generate(int threads, int n, boolean ordered)
+	{
+		return generate(new RandomInteger(0, 1000000), threads, n, ordered);
+	}
+
+	protected static List<Integer> generate(Picker<Integer> picker, int threads, int n, boolean ordered)
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+			new BulkGenerator<Integer>(picker, 42).setBlockSize(100).setPool(pool).generate(n, new Collect<Integer>(values), ordered);
+			return new ArrayList<Integer>(values);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	protected static class Collect<T> implements Consumer<T>
+	{
+		protected final List<T> m_list;
+
+		public Collect(List<T> list)
+		{
+			super();
+			m_list = list;
+		}
+
+		@Override
+		public void accept(T t)
+		{
+			m_list.add(t);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package ca.uqac.lif.synthia.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.PoissonInteger;
+import ca.uqac.lif.synthia.random.RandomBoolean;
+import ca.uqac.lif.synthia.util.Dataflow.Bound;
+import ca.uqac.lif.synthia.util.Dataflow.CycleException;
+import ca.uqac.lif.synthia.util.Dataflow.Derived;
+import ca.uqac.lif.synthia.util.Dataflow.Formula;
+import ca.uqac.lif.synthia.util.Dataflow.Input;
+
+public class DataflowTest
+{
+	@Test
+	public void lazyEvaluation()
+	{
+		Dataflow g = new Dataflow();
+		Input<Float> a = g.input(2f), b = g.input(3f);
+		Derived<Float> p = g.derive(new Product(), a, b);
+		Derived<Float> half = g.derive(new Half(), p);
+		Assertions.assertEquals(0, g.getEvaluationCount());
+		Assertions.assertEquals(3f, half.get());
+		Assertions.assertEquals(2, g.getEvaluationCount());
+		Assertions.assertEquals(3f, half.get());
+		Assertions.assertEquals(2, g.getEvaluationCount());
+		a.set(4f);
+		a.set(5f);
+		Assertions.assertTrue(half.isDirty());
+		Assertions.assertEquals(2, g.getEvaluationCount());
+		Assertions.assertEquals(7.5f, half.get());
+		Assertions.assertEquals(4, g.getEvaluationCount());
+	}
+
+	@Test
+	public void earlyCutoff()
+	{
+		Dataflow g = new Dataflow();
+		Input<Float> a = g.input(2f), b = g.input(3f);
+		Derived<Float> p = g.derive(new Product(), a, b);
+		Derived<Float> half = g.derive(new Half(), p);
+		half.get();
+		// The product keeps its value: its dependent is not re-evaluated
+		g.batch().set(a, 3f).set(b, 2f).commit();
+		Assertions.assertEquals(3f, half.get());
+		Assertions.assertEquals(3, g.getEvaluationCount());
+		// Setting an input to its current value changes nothing
+		a.set(3f);
+		Assertions.assertFalse(half.isDirty());
+	}
+
+	@Test
+	public void batch()
+	{
+		Dataflow g = new Dataflow();
+		Input<Float> a = g.input(2f), b = g.input(3f);
+		Derived<Float> p = g.derive(new Product(), a, b);
+		Assertions.assertEquals(6f, p.get());
+		Dataflow.Batch batch = g.batch().set(a, 1f).set(b, 1f).set(a, 5f);
+		Assertions.assertEquals(6f, p.get());
+		batch.commit();
+		Assertions.assertEquals(5f, p.get());
+		Assertions.assertEquals(2, g.getEvaluationCount());
+	}
+
+	@Test
+	public void cycle()
+	{
+		final Dataflow g = new Dataflow();
+		Input<Float> a = g.input(2f);
+		final Derived<Float> h1 = g.derive(new Half(), a);
+		final Derived<Float> h2 = g.derive(new Half(), h1);
+		Assertions.assertThrows(CycleException.class, new Executable()
+		{
+			@Override
+			public void execute() throws Throwable
+			{
+				g.connect(h2, h1);
+			}
+		});
+		Assertions.assertThrows(CycleException.class, new Executable()
+		{
+			@Override
+			public void execute() throws Throwable
+			{
+				g.connect(h1, h1);
+			}
+		});
+		// The graph is left unchanged
+		Assertions.assertEquals(0.5f, h2.get());
+	}
+
+	@Test
+	public void bound()
+	{
+		Dataflow g = new Dataflow();
+		Input<Float> rate = g.input(0f);
+		Derived<Float> p = g.derive(new Half(), rate);
+		Bound<Float,Boolean> coin = g.bind(new RandomBoolean(), p);
+		for (int i = 0; i < 20; i++)
+		{
+			Assertions.assertFalse(coin.pick());
+		}
+		rate.set(2f);
+		for (int i = 0; i < 20; i++)
+		{
+			Assertions.assertTrue(coin.pick());
+		}
+		Assertions.assertEquals(2, g.getEvaluationCount());
+		Input<Float> lambda = g.input(4f);
+		PoissonInteger poisson = new PoissonInteger(1);
+		poisson.setSeed(0);
+		Picker<Integer> arrivals = g.bind(poisson, lambda);
+		Picker<Integer> expected = new PoissonInteger(4).setSeed(0);
+		for (int i = 0; i < 20; i++)
+		{
+			Assertions.assertEquals(expected.pick(), arrivals.pick());
+		}
+	}
+
+	protected static class Product implements Formula<Float>
+	{
+		@Override
+		public Float evaluate(Object ... inputs)
+		{
+			return (Float) inputs[0] * (Float) inputs[1];
+		}
+	}
+
+	protected static class Half implements Formula<Float>
+	{
+		@Override
+		public Float evaluate(Object ... inputs)
+		{
+			return (Float) inputs[0] / 2;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package ca.uqac.lif.synthia.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PacerTest
+{
+	@Test
+	public void delays()
+	{
+		Pacer<Integer> p = new Pacer<Integer>(new Constant<Integer>(3), new Constant<Float>(0.01f));
+		long start = System.nanoTime();
+		for (int i = 1; i <= 20; i++)
+		{
+			Assertions.assertEquals(3, (int) p.pick());
+			// Values are on an absolute schedule: lateness does not accumulate
+			long late = System.nanoTime() - start - i * TimeUnit.MILLISECONDS.toNanos(10);
+			Assertions.assertTrue(late >= 0);
+		}
+		long elapsed = System.nanoTime() - start;
+		Assertions.assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(250), "Elapsed " + elapsed);
+	}
+
+	@Test
+	public void timestamps()
+	{
+		Pacer<Integer> p = new Pacer<Integer>(new Constant<Integer>(3), new Tick(0.02, 0.01)).setAbsolute(true);
+		long start = System.nanoTime();
+		p.pick();
+		Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+		p.pick();
+		Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+		p.reset();
+		start = System.nanoTime();
+		p.pick();
+		Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+	}
+
+	@Test
+	public void interrupt()
+	{
+		Thread.currentThread().interrupt();
+		long start = System.nanoTime();
+		Assertions.assertFalse(Pacer.sleep(TimeUnit.SECONDS.toNanos(10)));
+		Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		// The interrupted status is preserved
+		Assertions.assertTrue(Thread.interrupted());
+	}
+
+	@Test
+	public void wheel() throws InterruptedException
+	{
+		TimerWheel wheel = new TimerWheel();
+		try
+		{
+			int streams = 200, values = 10;
+			final CountDownLatch latch = new CountDownLatch(streams * values);
+			final long start = System.nanoTime();
+			final long[] last = new long[1];
+			Pacer<?>[] pacers = new Pacer<?>[streams];
+			for (int i = 0; i < streams; i++)
+			{
+				Pacer<Integer> p = new Pacer<Integer>(new Constant<Integer>(i), new Constant<Float>(0.005f));
+				pacers[i] = p;
+				p.start(wheel, new Consumer<Integer>()
+				{
+					@Override
+					public void accept(Integer t)
+					{
+						last[0] = System.nanoTime();
+						latch.countDown();
+					}
+				});
+			}
+			Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+			for (Pacer<?> p : pacers)
+			{
+				p.stop();
+			}
+			Assertions.assertTrue(last[0] - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		}
+		finally
+		{
+			wheel.stop();
+		}
+	}
+
+	@Test
+	public void wheelOrder() throws InterruptedException
+	{
+		TimerWheel wheel = new TimerWheel();
+		try
+		{
+			final StringBuilder out = new StringBuilder();
+			final CountDownLatch latch = new CountDownLatch(3);
+			long now = System.nanoTime();
+			wheel.schedule(new Append(out, "c", latch), now + TimeUnit.MILLISECONDS.toNanos(30));
+			wheel.schedule(new Append(out, "a", latch), now + TimeUnit.MICROSECONDS.toNanos(100));
+			wheel.schedule(new Append(out, "b", latch), now + TimeUnit.MICROSECONDS.toNanos(300));
+			Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+			Assertions.assertEquals("abc", out.toString());
+		}
+		finally
+		{
+			wheel.stop();
+		}
+	}
+
+	protected static class Append implements Runnable
+	{
+		protected final StringBuilder m_out;
+
+		protected final String m_s;
+
+		protected final CountDownLatch m_latch;
+
+		public Append(StringBuilder out, String s, CountDownLatch latch)
+		{
+			super();
+			m_out = out;
+			m_s = s;
+			m_latch = latch;
+		}
+
+		@Override
+		public void run()
+		{
+			m_out.append(m_s);
+			m_latch.countDown();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package ca.uqac.lif.synthia.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.sequence.MarkovChain;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.random.Reseeder;
+
+public class PerThreadTest
+{
+	@Test
+	public void reseedTree()
+	{
+		ComposeList<Integer> p1 = new ComposeList<Integer>(new RandomInteger(0, 1000), new RandomInteger(5, 10));
+		ComposeList<Integer> p2 = p1.duplicate(false);
+		// One seed for the elements, one for the length
+		Assertions.assertEquals(2, Reseeder.reseed(p1, 42));
+		Reseeder.reseed(p2, 42);
+		for (int i = 0; i < 10; i++)
+		{
+			Assertions.assertEquals(p1.pick(), p2.pick());
+		}
+		Reseeder.reseed(p2, 43);
+		Assertions.assertNotEquals(p1.pick(), p2.pick());
+	}
+
+	@Test
+	public void reseedChoice()
+	{
+		Choice<Integer> p1 = TestPickers.newChoice();
+		Choice<Integer> p2 = p1.duplicate(false);
+		Assertions.assertNotSame(p1.getChoice(0).getPicker(), p2.getChoice(0).getPicker());
+		// The float picker and the two alternatives
+		Assertions.assertEquals(3, Reseeder.reseed(p1, 42));
+		Assertions.assertEquals(3, Reseeder.reseed(p2, 42));
+		Assertions.assertEquals(draw(p1, 50), draw(p2, 50));
+		// Picking from a copy does not affect the original
+		List<Integer> expected = draw(reseeded(TestPickers.newChoice(), 5), 50);
+		Choice<Integer> p3 = reseeded(TestPickers.newChoice(), 5);
+		draw(reseeded(p3.duplicate(false), 6), 50);
+		Assertions.assertEquals(expected, draw(p3, 50));
+	}
+
+	@Test
+	public void reseedMarkovChain()
+	{
+		MarkovChain<Integer> p1 = newChain();
+		MarkovChain<Integer> p2 = p1.duplicate(false);
+		// The float source and the pickers of the two states
+		Assertions.assertEquals(3, Reseeder.reseed(p1, 42));
+		Assertions.assertEquals(3, Reseeder.reseed(p2, 42));
+		Assertions.assertEquals(draw(p1, 50), draw(p2, 50));
+		List<Integer> expected = draw(reseeded(newChain(), 5), 50);
+		MarkovChain<Integer> p3 = reseeded(newChain(), 5);
+		draw(reseeded(p3.duplicate(false), 6), 50);
+		Assertions.assertEquals(expected, draw(p3, 50));
+	}
+
+	@Test
+	public void derive()
+	{
+		Assertions.assertEquals(Reseeder.derive(1, 2), Reseeder.derive(1, 2));
+		Assertions.assertNotEquals(Reseeder.derive(1, 2), Reseeder.derive(1, 3));
+		Assertions.assertNotEquals(Reseeder.derive(1, 2), Reseeder.derive(2, 2));
+	}
+
+	@Test
+	public void threads() throws InterruptedException
+	{
+		final PerThread<Integer> pt = new PerThread<Integer>(new RandomInteger(0, 1000000), 7);
+		List<Integer> main = draw(pt, 20);
+		Drawer[] drawers = new Drawer[4];
+		for (int i = 0; i < drawers.length; i++)
+		{
+			drawers[i] = new Drawer(pt);
+			drawers[i].start();
+		}
+		for (Drawer d : drawers)
+		{
+			d.join();
+			Assertions.assertEquals(20, d.m_values.size());
+			Assertions.assertNotEquals(main, d.m_values);
+		}
+		Assertions.assertEquals(5, pt.getThreadCount());
+		// The first thread always receives the same values
+		Assertions.assertEquals(main, draw(new PerThread<Integer>(new RandomInteger(0, 1000000), 7), 20));
+		pt.reset();
+		Assertions.assertEquals(main, draw(pt, 20));
+	}
+
+	protected static MarkovChain<Integer> newChain()
+	{
+		MarkovChain<Integer> m = new MarkovChain<Integer>(new RandomFloat());
+		m.add(0, new Constant<Integer>(-1)).add(1, new RandomInteger(0, 1000)).add(2, new RandomInteger(1000, 2000));
+		m.add(0, 1, 1).add(1, 1, 0.5).add(1, 2, 0.5).add(2, 1, 0.5).add(2, 2, 0.5);
+		return m;
+	}
+
+	protected static <P extends Picker<?>> P reseeded(P p, long seed)
+	{
+		Reseeder.reseed(p, seed);
+		return p;
+	}
+
+	protected static List<Integer> draw(Picker<Integer> p, int n)
+	{
+		List<Integer> list = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++)
+		{
+			list.add(p.pick());
+		}
+		return list;
+	}
+
+	protected static class Drawer extends Thread
+	{
+		protected final Picker<Integer> m_picker;
+
+		protected List<Integer> m_values;
+
+		public Drawer(Picker<Integer> p)
+		{
+			super();
+			m_picker = p;
+		}
+
+		@Override
+		public void run()
+		{
+			m_values = draw(m_picker, 20);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package ca.uqac.lif.synthia.util;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.collection.ListPicker;
+import ca.uqac.lif.synthia.random.AffineTransform.AffineTransformInteger;
+import ca.uqac.lif.synthia.random.BiasedRandomFloat;
+import ca.uqac.lif.synthia.random.RandomBoolean;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.string.AsString;
+import ca.uqac.lif.synthia.string.StringPattern;
+import ca.uqac.lif.synthia.util.PickerCompiler.Compiled;
+
+public class PickerCompilerTest
+{
+	@Test
+	public void stringPattern()
+	{
+		Compiled<String> c = PickerCompiler.compile(newPattern());
+		Assertions.assertEquals(9, c.getFusedCount());
+		Assertions.assertTrue(c.getInterpreted().isEmpty());
+		TestPickers.assertSameValues(newPattern(), c, 200);
+	}
+
+	@Test
+	public void numbers()
+	{
+		Compiled<Integer> c = PickerCompiler.compile(newNumbers());
+		Assertions.assertTrue(c.getInterpreted().isEmpty());
+		TestPickers.assertSameValues(newNumbers(), c, 200);
+		Compiled<Number> t = PickerCompiler.compile(new Tick(new Constant<Integer>(3), new BiasedRandomFloat(2).setSeed(5)));
+		TestPickers.assertSameValues(new Tick(new Constant<Integer>(3), new BiasedRandomFloat(2).setSeed(5)), t, 200);
+	}
+
+	@Test
+	public void interpreted()
+	{
+		Compiled<String> c = PickerCompiler.compile(new StringPattern("{$0} {$1}", new ListPicker(new RandomInteger(1, 4).setSeed(0), new RandomInteger(0, 10).setSeed(1)), new RandomBoolean().setSeed(2)));
+		List<Picker<?>> interpreted = c.getInterpreted();
+		Assertions.assertEquals(1, interpreted.size());
+		Assertions.assertTrue(interpreted.get(0) instanceof ListPicker);
+		Assertions.assertEquals(2, c.getFusedCount());
+		TestPickers.assertSameValues(new StringPattern("{$0} {$1}", new ListPicker(new RandomInteger(1, 4).setSeed(0), new RandomInteger(0, 10).setSeed(1)), new RandomBoolean().setSeed(2)), c, 100);
+	}
+
+	@Test
+	public void overridingSubclass()
+	{
+		Compiled<Integer> c = PickerCompiler.compile(new AsInt(new AffineTransformInteger(new Doubling(), 1, 1)));
+		List<Picker<?>> interpreted = c.getInterpreted();
+		Assertions.assertEquals(1, interpreted.size());
+		Assertions.assertTrue(interpreted.get(0) instanceof Doubling);
+		TestPickers.assertSameValues(new AsInt(new AffineTransformInteger(new Doubling(), 1, 1)), c, 100);
+	}
+
+	@Test
+	public void resetAndDuplicate()
+	{
+		Compiled<String> c = PickerCompiler.compile(newPattern());
+		String[] first = new String[50];
+		for (int i = 0; i < first.length; i++)
+		{
+			first[i] = c.pick();
+		}
+		c.reset();
+		for (int i = 0; i < first.length; i++)
+		{
+			Assertions.assertEquals(first[i], c.pick());
+		}
+		// Tick shares its increment picker with its duplicates
+		Compiled<Integer> n = PickerCompiler.compile(new AsInt(new AffineTransformInteger(new RandomInteger(0, 10).setSeed(4), 3, -2)));
+		int[] values = new int[50];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = n.pick();
+		}
+		Compiled<Integer> copy = n.duplicate(false);
+		Assertions.assertEquals(n.getFusedCount(), copy.getFusedCount());
+		for (int i = 0; i < values.length; i++)
+		{
+			Assertions.assertEquals(values[i], (int) copy.pick());
+		}
+	}
+
+	protected static Picker<String> newPattern()
+	{
+		Choice<String> choice = new Choice<String>(new RandomFloat().setSeed(2));
+		choice.add("A", 0.25).add(new AsString(new RandomFloat(-1, 1).setSeed(3)), 0.5).add("C", 0.25);
+		return new StringPattern("{$0}/{$1}", new AsString(new RandomInteger(0, 100).setSeed(1)), choice);
+	}
+
+	protected static Picker<Integer> newNumbers()
+	{
+		return new AsInt(new Tick(new Constant<Float>(1.5f), new AffineTransformInteger(new RandomInteger(0, 10).setSeed(4), 3, -2)));
+	}
+
+	/**
+	 * A subclass of a fusible picker overriding its <tt>pick</tt> method.
+	 */
+	protected static class Doubling extends RandomInteger
+	{
+		public Doubling()
+		{
+			super(0, 100);
+			setSeed(3);
+		}
+
+		@Override
+		public Integer pick()
+		{
+			return 2 * super.pick();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package ca.uqac.lif.synthia.util;
+
+import java.util.List;
+
+import ca.uqac.lif.synthia.Wrapper;
+import ca.uqac.lif.synthia.string.RandomString;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.Reactive;
+import ca.uqac.lif.synthia.Seedable;
+import ca.uqac.lif.synthia.Shrinkable;
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.random.Reseeder;
+import ca.uqac.lif.synthia.test.ShrinkerRegistry;
+import ca.uqac.lif.synthia.util.PickerMetrics.Node;
+
+public class PickerMetricsTest
+{
+	@Test
+	public void tree()
+	{
+		PickerMetrics metrics = new PickerMetrics();
+		Choice<Integer> c = new Choice<Integer>(new RandomFloat().setSeed(0));
+		c.add(new RandomInteger(0, 10).setSeed(1), 0.5).add(new RandomInteger(10, 20).setSeed(2), 0.5);
+		Picker<List<Integer>> p = metrics.instrument(new ComposeList<Integer>(c, new RandomInteger(1, 5).setSeed(3)));
+		int elements = 0;
+		for (int i = 0; i < 100; i++)
+		{
+			elements += p.pick().size();
+		}
+		Node root = metrics.getRoots().get(0);
+		Assertions.assertEquals("ComposeList", root.getType());
+		Assertions.assertEquals(100, root.getCount());
+		Assertions.assertEquals(100, root.getChild("m_length").getCount());
+		Node choice = root.getChild("m_elements");
+		Assertions.assertEquals(elements, choice.getCount());
+		// Alternatives of the choice are reached through its list
+		long alternatives = choice.getChild("m_choices[0].m_object").getCount() + choice.getChild("m_choices[1].m_object").getCount();
+		Assertions.assertEquals(elements, alternatives);
+		Assertions.assertTrue(root.getTotalTime() >= choice.getTotalTime());
+		Assertions.assertTrue(metrics.toString().contains("m_elements: Choice picks=" + elements));
+	}
+
+	@Test
+	public void concreteField()
+	{
+		PickerMetrics metrics = new PickerMetrics();
+		Picker<String> p = metrics.instrument(new RandomString(new RandomInteger(1, 10)));
+		for (int i = 0; i < 100; i++)
+		{
+			p.pick();
+		}
+		Node root = metrics.getRoots().get(0);
+		Assertions.assertTrue(root.isInstrumented());
+		Assertions.assertEquals(100, root.getCount());
+		Assertions.assertTrue(root.getChild("m_lengthPicker").isInstrumented());
+		Assertions.assertEquals(100, root.getChild("m_lengthPicker").getCount());
+		// Declared as RandomInteger, the field cannot receive a metered picker
+		Node chars = root.getChild("m_charIndexPicker");
+		Assertions.assertFalse(chars.isInstrumented());
+		String report = metrics.toString();
+		Assertions.assertTrue(report.contains("m_charIndexPicker: RandomInteger (not instrumented)"), report);
+		// The self time of the root would include the picks of this child
+		Assertions.assertFalse(report.split("\n")[0].contains("self="), report);
+	}
+
+	@Test
+	public void duplicateSharesNodes()
+	{
+		PickerMetrics metrics = new PickerMetrics();
+		Picker<List<Integer>> p = metrics.instrument(new ComposeList<Integer>(new RandomInteger(0, 10), 3));
+		Picker<List<Integer>> copy = p.duplicate(false);
+		Assertions.assertTrue(Metered.isMetered(copy));
+		p.pick();
+		copy.pick();
+		Node root = metrics.getRoots().get(0);
+		Assertions.assertEquals(2, root.getCount());
+		Assertions.assertEquals(6, root.getChild("m_elements").getCount());
+	}
+
+	@Test
+	public void shrinkable()
+	{
+		PickerMetrics metrics = new PickerMetrics();
+		Picker<List<Integer>> p = metrics.instrument(new ComposeList<Integer>(new RandomInteger(0, 10), new RandomInteger(1, 5)));
+		Assertions.assertTrue(p instanceof Shrinkable);
+		Shrinkable<List<Integer>> s = ((Shrinkable<List<Integer>>) p).shrink(p.pick());
+		Assertions.assertTrue(Metered.isMetered(s));
+		s.pick();
+		Assertions.assertEquals(2, metrics.getRoots().get(0).getCount());
+	}
+
+	@Test
+	public void originalUntouched()
+	{
+		PickerMetrics metrics = new PickerMetrics();
+		RandomInteger ints = new RandomInteger(0, 100).setSeed(0);
+		ComposeList<Integer> original = new ComposeList<Integer>(ints, 3);
+		Picker<List<Integer>> p = metrics.instrument(original);
+		Assertions.assertNotSame(original, Metered.unwrap(p));
+		Assertions.assertSame(Metered.unwrap(p), ((Wrapper) p).getWrapped());
+		Assertions.assertSame(ints, original.getElementPicker());
+		// The copy starts from the state of the original
+		Assertions.assertEquals(original.pick(), p.pick());
+		Assertions.assertEquals(3, metrics.getRoots().get(0).getChild("m_elements").getCount());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void capabilities()
+	{
+		PickerMetrics metrics = new PickerMetrics();
+		Picker<Integer> p = metrics.instrument(new RandomInteger(0, 100));
+		Assertions.assertTrue(p instanceof Seedable);
+		Assertions.assertTrue(p instanceof Shrinkable);
+		Assertions.assertTrue(p instanceof Reactive);
+		Assertions.assertSame(p, ((Seedable) p).setSeed(0));
+		((Reactive<Integer,Integer>) p).tell(10);
+		for (int i = 0; i < 100; i++)
+		{
+			Assertions.assertTrue(p.pick() < 10);
+		}
+		Assertions.assertNotNull(ShrinkerRegistry.instance.get(p));
+		Picker<List<Integer>> lists = metrics.instrument(new ComposeList<Integer>(new RandomInteger(0, 100), 3));
+		Assertions.assertNotNull(ShrinkerRegistry.instance.get(lists));
+		// The pickers below a metered picker are reseeded
+		Assertions.assertEquals(1, Reseeder.reseed(lists, 1));
+		List<Integer> first = lists.pick();
+		Reseeder.reseed(lists, 1);
+		Assertions.assertEquals(first, lists.pick());
+	}
+
+	@Test
+	public void exceptionsAndDisabled()
+	{
+		PickerMetrics metrics = new PickerMetrics();
+		Picker<Integer> p = metrics.instrument(new Once<Integer>(new Constant<Integer>(1)));
+		p.pick();
+		try
+		{
+			p.pick();
+			Assertions.fail();
+		}
+		catch (NoMoreElementException e)
+		{
+			// Expected
+		}
+		Node root = metrics.getRoots().get(0);
+		Assertions.assertEquals(2, root.getCount());
+		Assertions.assertEquals(1, root.getNoMoreElements());
+		metrics.setEnabled(false);
+		p.reset();
+		p.pick();
+		Assertions.assertEquals(2, root.getCount());
+		metrics.reset();
+		Assertions.assertEquals(0, root.getCount());
+		Assertions.assertEquals(0, root.getNoMoreElements());
+	}
+}
@@ -0,0 +1,104 @@
+package ca.uqac.lif.synthia.util;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.AffineTransform.AffineTransformFloat;
+import ca.uqac.lif.synthia.random.AffineTransform.AffineTransformInteger;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.string.AsString;
+import ca.uqac.lif.synthia.string.StringPattern;
+import ca.uqac.lif.synthia.util.PickerSimplifier.Rewrite;
+
+public class PickerSimplifierTest
+{
+	@Test
+	public void constantFolding()
+	{
+		PickerSimplifier s = new PickerSimplifier();
+		Picker<Integer> t = s.simplify(new AffineTransformInteger(new Constant<Integer>(4), 3, -2));
+		Assertions.assertTrue(t instanceof Constant);
+		Assertions.assertEquals(10, t.pick());
+		Picker<Number> o = s.simplify(new Offset(new Constant<Float>(2f), new Constant<Float>(0.5f)));
+		Assertions.assertTrue(o instanceof Constant);
+		Assertions.assertEquals(2.5f, o.pick());
+		Picker<Float> f = s.simplify(new Freeze<Float>(new AffineTransformFloat(new Constant<Float>(1f), 2, 1)));
+		Assertions.assertTrue(f instanceof Constant);
+		Assertions.assertEquals(3f, f.pick());
+		Assertions.assertEquals(2, s.getRewrites().size());
+		Picker<String> p = s.simplify(new StringPattern("{$0}-{$1}", new AsString(new Constant<Integer>(1)), new Constant<String>("a")));
+		Assertions.assertTrue(p instanceof Constant);
+		Assertions.assertEquals("1-a", p.pick());
+	}
+
+	@Test
+	public void transformFusion()
+	{
+		PickerSimplifier s = new PickerSimplifier();
+		Picker<Integer> t = s.simplify(new AffineTransformInteger(new RandomInteger(0, 10).setSeed(1), 1, 5));
+		Assertions.assertTrue(t instanceof RandomInteger);
+		TestPickers.assertSameValues(new AffineTransformInteger(new RandomInteger(0, 10).setSeed(1), 1, 5), t, 200);
+		t = s.simplify(newNested());
+		Assertions.assertTrue(t instanceof AffineTransformInteger);
+		Assertions.assertEquals(1, s.getRewrites().size());
+		Assertions.assertEquals(PickerSimplifier.TRANSFORM_FUSION, s.getRewrites().get(0).getRule());
+		TestPickers.assertSameValues(newNested(), t, 200);
+	}
+
+	@Test
+	public void sharedPicker()
+	{
+		// The random integer is also used by the second part of the pattern
+		RandomInteger r = new RandomInteger(0, 10).setSeed(3);
+		StringPattern p = new StringPattern("{$0} {$1}", new AffineTransformInteger(r, 1, 5), r);
+		PickerSimplifier s = new PickerSimplifier();
+		Assertions.assertSame(p, s.simplify(p));
+		Assertions.assertTrue(s.getRewrites().isEmpty());
+	}
+
+	@Test
+	public void deadBranches()
+	{
+		PickerSimplifier s = new PickerSimplifier();
+		Picker<String> p = s.simplify(newChoice());
+		List<Rewrite> rewrites = s.getRewrites();
+		Assertions.assertEquals(1, rewrites.size());
+		Assertions.assertEquals(PickerSimplifier.DEAD_BRANCH, rewrites.get(0).getRule());
+		Assertions.assertTrue(p instanceof Choice);
+		TestPickers.assertSameValues(newChoice(), p, 200);
+		// A single alternative with probability 1
+		Choice<String> c = new Choice<String>(new RandomFloat().setSeed(0));
+		c.add(new AsString(new RandomInteger(0, 10).setSeed(4)), 1).add("B", 0.5);
+		p = s.simplify(c);
+		Assertions.assertTrue(p instanceof AsString);
+		Assertions.assertEquals(2, s.getRewrites().size());
+	}
+
+	@Test
+	public void redundantConversion()
+	{
+		PickerSimplifier s = new PickerSimplifier();
+		RandomInteger r = new RandomInteger(0, 10);
+		Assertions.assertSame(r, s.simplify(new AsInt(r)));
+		Assertions.assertEquals(PickerSimplifier.REDUNDANT_CONVERSION, s.getRewrites().get(0).getRule());
+		Picker<Integer> f = new AsInt(new RandomFloat());
+		Assertions.assertSame(f, s.simplify(f));
+		Assertions.assertTrue(s.getRewrites().isEmpty());
+	}
+
+	protected static Picker<Integer> newNested()
+	{
+		return new AffineTransformInteger(new AffineTransformInteger(new RandomInteger(-5, 5).setSeed(2), 3, 1), -2, 4);
+	}
+
+	protected static Choice<String> newChoice()
+	{
+		Choice<String> c = new Choice<String>(new RandomFloat().setSeed(5));
+		c.add("A", 0.25).add("B", 0).add("C", 0.75).add("D", 0.5);
+		return c;
+	}
+}
@@ -0,0 +1,107 @@
+package ca.uqac.lif.synthia.util;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.enumerative.AllIntegers;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+public class PickerSpliteratorTest
+{
+	@Test
+	public void sameValuesInParallel()
+	{
+		RandomInteger p = new RandomInteger(0, 1000000);
+		List<Integer> seq = PickerSpliterator.stream(p, 42, 20000).collect(Collectors.<Integer>toList());
+		List<Integer> par = PickerSpliterator.stream(p, 42, 20000).parallel().collect(Collectors.<Integer>toList());
+		Assertions.assertEquals(20000, seq.size());
+		Assertions.assertEquals(seq, par);
+		Assertions.assertNotEquals(seq, PickerSpliterator.stream(p, 43, 20000).collect(Collectors.<Integer>toList()));
+	}
+
+	@Test
+	public void splitOnBlocks()
+	{
+		PickerSpliterator<Integer> s = new PickerSpliterator<Integer>(new RandomInteger(0, 10), 0, 100, 10);
+		PickerSpliterator<Integer> prefix = s.trySplit();
+		Assertions.assertNotNull(prefix);
+		Assertions.assertEquals(50, prefix.estimateSize());
+		Assertions.assertEquals(50, s.estimateSize());
+		s = new PickerSpliterator<Integer>(new RandomInteger(0, 10), 0, 10, 10);
+		Assertions.assertNull(s.trySplit());
+	}
+
+	@Test
+	public void allIntegersJumps()
+	{
+		AllIntegers p = new AllIntegers(1, 1000);
+		PickerSpliterator<Integer> s = new PickerSpliterator<Integer>(p, 0, Long.MAX_VALUE);
+		PickerSpliterator<Integer> prefix = s.trySplit();
+		Assertions.assertEquals(500, prefix.estimateSize());
+		Assertions.assertEquals(500, s.estimateSize());
+		List<Integer> values = PickerSpliterator.stream(p, 0).parallel().collect(Collectors.<Integer>toList());
+		Assertions.assertEquals(1000, values.size());
+		for (int i = 0; i < 1000; i++)
+		{
+			Assertions.assertEquals(i + 1, values.get(i));
+		}
+		// The picker itself is not modified
+		Assertions.assertEquals(1, p.pick());
+		Assertions.assertEquals(500500, PickerSpliterator.intStream(p, 0, Long.MAX_VALUE).parallel().sum());
+		Assertions.assertEquals(10, PickerSpliterator.intStream(p, 0, 10).parallel().count());
+	}
+
+	@Test
+	public void scrambledNotSplit()
+	{
+		AllIntegers p = new AllIntegers(1, 100, true);
+		Assertions.assertNull(new PickerSpliterator<Integer>(p, 0, Long.MAX_VALUE).trySplit());
+		Assertions.assertEquals(5050, PickerSpliterator.intStream(p, 3, Long.MAX_VALUE).parallel().sum());
+	}
+
+	@Test
+	public void exhaustedPicker()
+	{
+		Assertions.assertEquals(1, PickerSpliterator.stream(new Once<Integer>(new Constant<Integer>(1)), 0, 100).count());
+	}
+
+	@Test
+	public void exhaustedBlocks()
+	{
+		// Each block of 10 values ends after one value, whether split or not
+		PickerSpliterator<Integer> s = new PickerSpliterator<Integer>(new Once<Integer>(new Constant<Integer>(1)), 0, 100, 10);
+		Assertions.assertEquals(10, StreamSupport.stream(s, false).count());
+		s = new PickerSpliterator<Integer>(new Once<Integer>(new Constant<Integer>(1)), 0, 100, 10);
+		Assertions.assertEquals(10, StreamSupport.stream(s, true).count());
+	}
+
+	@Test
+	public void choiceTreeInParallel()
+	{
+		Choice<Integer> c = new Choice<Integer>(new RandomFloat());
+		c.add(new RandomInteger(0, 1000), 0.5).add(new RandomInteger(1000, 2000), 0.5);
+		List<Integer> seq = PickerSpliterator.stream(c, 42, 20000).collect(Collectors.<Integer>toList());
+		List<Integer> par = PickerSpliterator.stream(c, 42, 20000).parallel().collect(Collectors.<Integer>toList());
+		Assertions.assertEquals(20000, seq.size());
+		Assertions.assertEquals(seq, par);
+		// The picker itself is not modified
+		Assertions.assertEquals(c.duplicate(false).pick(), c.pick());
+	}
+
+	@Test
+	public void doubles()
+	{
+		double[] seq = PickerSpliterator.doubleStream(new RandomFloat(), 5, 10000).toArray();
+		double[] par = PickerSpliterator.doubleStream(new RandomFloat(), 5, 10000).parallel().toArray();
+		Assertions.assertArrayEquals(seq, par);
+		for (double d : seq)
+		{
+			Assertions.assertTrue(d >= 0 && d <= 1);
+		}
+	}
+}
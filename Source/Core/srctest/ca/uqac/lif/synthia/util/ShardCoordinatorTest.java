@@ -0,0 +1,249 @@
+package ca.uqac.lif.synthia.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import ca.uqac.lif.synthia.random.RandomFloat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.util.ShardCoordinator.Job;
+import ca.uqac.lif.synthia.util.ShardCoordinator.Shard;
+
+public class ShardCoordinatorTest
+{
+	@Test
+	public void sameAsSingleProcess() throws IOException
+	{
+		File folder = Files.createTempDirectory("shards").toFile();
+		ShardCoordinator c = new ShardCoordinator(Numbers.class, 42, 1000, 64, folder).setWorkers(3);
+		List<Shard> shards = c.run();
+		Assertions.assertEquals(16, shards.size());
+		Assertions.assertEquals(64, shards.get(0).getCount());
+		Assertions.assertEquals(40, shards.get(15).getCount());
+		Assertions.assertEquals(expected(42, 1000, 64), merge(c));
+		Assertions.assertTrue(new File(folder, ShardCoordinator.MANIFEST).exists());
+	}
+
+	@Test
+	public void resume() throws IOException
+	{
+		File folder = Files.createTempDirectory("shards").toFile();
+		ShardCoordinator c = new ShardCoordinator(Numbers.class, 7, 500, 100, folder).setWorkers(2);
+		List<Shard> first = c.run();
+		Assertions.assertTrue(ShardCoordinator.getFile(folder, 2).delete());
+		long modified = ShardCoordinator.getFile(folder, 1).lastModified();
+		List<Shard> second = c.run();
+		Assertions.assertEquals(first.toString(), second.toString());
+		Assertions.assertEquals(modified, ShardCoordinator.getFile(folder, 1).lastModified());
+		// A worker produces the shards in any order with the same result
+		File other = Files.createTempDirectory("shards").toFile();
+		ShardWorker w = new ShardWorker(new Numbers(), 7, 500, 100, other);
+		for (int i = 4; i >= 0; i--)
+		{
+			Assertions.assertEquals(first.get(i).getChecksum(), w.produce(i).getChecksum());
+		}
+	}
+
+	@Test
+	public void choiceTree() throws IOException
+	{
+		File folder = Files.createTempDirectory("shards").toFile();
+		ShardCoordinator c = new ShardCoordinator(Choices.class, 11, 600, 50, folder).setWorkers(3);
+		List<Shard> shards = c.run();
+		Assertions.assertEquals(expected(new Choices(), 11, 600, 50), merge(c));
+		// A shard does not depend on the shards produced before it
+		ShardWorker w = new ShardWorker(new Choices(), 11, 600, 50, Files.createTempDirectory("shards").toFile());
+		for (int i = 11; i >= 0; i -= 2)
+		{
+			Assertions.assertEquals(shards.get(i).getChecksum(), w.produce(i).getChecksum());
+		}
+	}
+
+	@Test
+	public void workerDies() throws IOException
+	{
+		File folder = Files.createTempDirectory("shards").toFile();
+		File marker = Crashing.getMarker();
+		Assertions.assertTrue(marker.createNewFile() || marker.exists());
+		ShardCoordinator c = new ShardCoordinator(Crashing.class, 3, 300, 50, folder).setWorkers(2);
+		c.run();
+		Assertions.assertFalse(marker.exists());
+		Assertions.assertEquals(expected(3, 300, 50), merge(c));
+	}
+
+	@Test
+	public void workerHangs() throws IOException
+	{
+		File folder = Files.createTempDirectory("shards").toFile();
+		File marker = Hanging.getMarker();
+		Assertions.assertTrue(marker.createNewFile() || marker.exists());
+		ShardCoordinator c = new ShardCoordinator(Hanging.class, 5, 300, 50, folder).setWorkers(2).setShardTimeout(2, TimeUnit.SECONDS);
+		c.run();
+		Assertions.assertFalse(marker.exists());
+		Assertions.assertEquals(expected(5, 300, 50), merge(c));
+	}
+
+	protected static String merge(ShardCoordinator c) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		c.merge(baos);
+		return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	protected static String expected(long seed, long n, int shard_size)
+	{
+		return expected(new Numbers(), seed, n, shard_size);
+	}
+
+	protected static String expected(Job<Integer> job, long seed, long n, int shard_size)
+	{
+		final StringBuilder out = new StringBuilder();
+		new BulkGenerator<Integer>(job.getPicker(), seed).setBlockSize(shard_size).generate(n, new Consumer<Integer>()
+		{
+			@Override
+			public void accept(Integer t)
+			{
+				out.append(t).append('\n');
+			}
+		}, true);
+		return out.toString();
+	}
+
+	public static class Numbers implements Job<Integer>
+	{
+		@Override
+		public Picker<Integer> getPicker()
+		{
+			return new RandomInteger(0, 1000);
+		}
+
+		@Override
+		public String format(Integer t)
+		{
+			return t.toString();
+		}
+	}
+
+	public static class Choices extends Numbers
+	{
+		@Override
+		public Picker<Integer> getPicker()
+		{
+			Choice<Integer> c = new Choice<Integer>(new RandomFloat());
+			c.add(new RandomInteger(0, 1000), 0.5).add(new RandomInteger(1000, 2000), 0.5);
+			return c;
+		}
+	}
+
+	/**
+	 * Job whose picker stops the process the first time it is used while a
+	 * marker file exists.
+	 */
+	public static class Crashing extends Numbers
+	{
+		@Override
+		public Picker<Integer> getPicker()
+		{
+			return new CrashingPicker(super.getPicker());
+		}
+
+		protected static File getMarker()
+		{
+			return new File(System.getProperty("java.io.tmpdir"), "synthia-shard-crash");
+		}
+	}
+
+	/**
+	 * Job whose picker blocks forever the first time it is used while a
+	 * marker file exists.
+	 */
+	public static class Hanging extends Numbers
+	{
+		@Override
+		public Picker<Integer> getPicker()
+		{
+			return new HangingPicker(super.getPicker());
+		}
+
+		protected static File getMarker()
+		{
+			return new File(System.getProperty("java.io.tmpdir"), "synthia-shard-hang");
+		}
+	}
+
+	protected static class HangingPicker extends CrashingPicker
+	{
+		public HangingPicker(Picker<Integer> picker)
+		{
+			super(picker);
+		}
+
+		@Override
+		public Integer pick()
+		{
+			if (Hanging.getMarker().delete())
+			{
+				while (true)
+				{
+					try
+					{
+						Thread.sleep(Long.MAX_VALUE);
+					}
+					catch (InterruptedException e)
+					{
+						// Keep hanging
+					}
+				}
+			}
+			return m_picker.pick();
+		}
+
+		@Override
+		public HangingPicker duplicate(boolean with_state)
+		{
+			return new HangingPicker(m_picker.duplicate(with_state));
+		}
+	}
+
+	protected static class CrashingPicker implements Picker<Integer>
+	{
+		protected final Picker<Integer> m_picker;
+
+		public CrashingPicker(Picker<Integer> picker)
+		{
+			super();
+			m_picker = picker;
+		}
+
+		@Override
+		public Integer pick()
+		{
+			if (Crashing.getMarker().delete())
+			{
+				Runtime.getRuntime().halt(1);
+			}
+			return m_picker.pick();
+		}
+
+		@Override
+		public void reset()
+		{
+			m_picker.reset();
+		}
+
+		@Override
+		public CrashingPicker duplicate(boolean with_state)
+		{
+			return new CrashingPicker(m_picker.duplicate(with_state));
+		}
+	}
+}
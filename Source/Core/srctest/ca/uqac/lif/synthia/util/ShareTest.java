@@ -0,0 +1,183 @@
+package ca.uqac.lif.synthia.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+
+public class ShareTest
+{
+	@Test
+	public void queues()
+	{
+		Share<Number> s = new Share<Number>(new Tick(0, 1));
+		Picker<Number> p1 = s.getCopy();
+		Picker<Number> p2 = s.getCopy();
+		Assertions.assertEquals(0, p1.pick().intValue());
+		Assertions.assertEquals(1, p1.pick().intValue());
+		Assertions.assertEquals(0, p2.pick().intValue());
+		Assertions.assertEquals(1, p2.pick().intValue());
+		Assertions.assertEquals(2, p2.pick().intValue());
+		Assertions.assertEquals(2, p1.pick().intValue());
+	}
+
+	@Test
+	public void ringSingleThread()
+	{
+		Share<Number> s = new Share<Number>(new Tick(0, 1), 4);
+		Picker<Number> p1 = s.getRingCopy();
+		Picker<Number> p2 = s.getRingCopy();
+		for (int i = 0; i < 4; i++)
+		{
+			Assertions.assertEquals(i, p1.pick().intValue());
+		}
+		for (int i = 0; i < 10; i++)
+		{
+			Assertions.assertEquals(i, p2.pick().intValue());
+			if (i < 6)
+			{
+				Assertions.assertEquals(i + 4, p1.pick().intValue());
+			}
+		}
+		s.reset();
+		Assertions.assertEquals(0, p1.pick().intValue());
+		Assertions.assertEquals(0, p2.pick().intValue());
+	}
+
+	@Test
+	public void ringThreads() throws InterruptedException
+	{
+		final int values = 20000;
+		Share<Number> s = new Share<Number>(new Tick(0, 1), 64);
+		Reader[] readers = new Reader[4];
+		for (int i = 0; i < readers.length; i++)
+		{
+			readers[i] = new Reader(s.getRingCopy(), values);
+		}
+		for (Reader r : readers)
+		{
+			r.start();
+		}
+		for (Reader r : readers)
+		{
+			r.join(10000);
+			Assertions.assertTrue(r.m_ok);
+		}
+	}
+
+	@Test
+	public void ringDropping()
+	{
+		Share<Number> s = new Share<Number>(new Tick(0, 1), 8).setDropping(true);
+		Picker<Number> fast = s.getRingCopy();
+		Share<Number>.RingPicker slow = s.getRingCopy();
+		for (int i = 0; i < 100; i++)
+		{
+			Assertions.assertEquals(i, fast.pick().intValue());
+		}
+		// The slow copy only finds the last 8 values
+		Assertions.assertEquals(92, slow.pick().intValue());
+		Assertions.assertEquals(92, slow.getDropped());
+		Assertions.assertEquals(93, slow.pick().intValue());
+	}
+
+	@Test
+	public void ringExhausted()
+	{
+		Share<Integer> s = new Share<Integer>(new Once<Integer>(new Constant<Integer>(3)), 4);
+		final Picker<Integer> p1 = s.getRingCopy();
+		Picker<Integer> p2 = s.getRingCopy();
+		Assertions.assertEquals(3, (int) p1.pick());
+		Assertions.assertThrows(NoMoreElementException.class, new Executable()
+		{
+			@Override
+			public void execute() throws Throwable
+			{
+				p1.pick();
+			}
+		});
+		Assertions.assertEquals(3, (int) p2.pick());
+	}
+
+	@Test
+	public void ringWaitsWithoutLock() throws InterruptedException
+	{
+		Share<Number> s = new Share<Number>(new Tick(0, 1), 4);
+		final Picker<Number> fast = s.getRingCopy();
+		Picker<Number> slow = s.getRingCopy();
+		for (int i = 0; i < 4; i++)
+		{
+			fast.pick();
+		}
+		Thread t = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				// Waits until the slow copy reads a value
+				fast.pick();
+			}
+		});
+		t.start();
+		Thread.sleep(100);
+		Assertions.assertTrue(t.isAlive());
+		Assertions.assertFalse(s.m_producer.isLocked());
+		Assertions.assertEquals(0, slow.pick().intValue());
+		t.join(10000);
+		Assertions.assertFalse(t.isAlive());
+	}
+
+	@Test
+	public void wrongMode()
+	{
+		final Share<Number> ring = new Share<Number>(new Tick(0, 1), 4);
+		final Share<Number> queues = new Share<Number>(new Tick(0, 1));
+		Assertions.assertThrows(IllegalStateException.class, new Executable()
+		{
+			@Override
+			public void execute() throws Throwable
+			{
+				ring.getCopy();
+			}
+		});
+		Assertions.assertThrows(IllegalStateException.class, new Executable()
+		{
+			@Override
+			public void execute() throws Throwable
+			{
+				queues.getRingCopy();
+			}
+		});
+	}
+
+	protected static class Reader extends Thread
+	{
+		protected final Picker<Number> m_picker;
+
+		protected final int m_values;
+
+		protected volatile boolean m_ok = false;
+
+		public Reader(Picker<Number> p, int values)
+		{
+			super();
+			m_picker = p;
+			m_values = values;
+		}
+
+		@Override
+		public void run()
+		{
+			for (int i = 0; i < m_values; i++)
+			{
+				if (m_picker.pick().intValue() != i)
+				{
+					return;
+				}
+			}
+			m_ok = true;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package ca.uqac.lif.synthia.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.GiveUpException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.relative.PickIf;
+import ca.uqac.lif.synthia.test.Assert;
+import ca.uqac.lif.synthia.test.LessThan;
+
+public class TelemetryTest
+{
+	@Test
+	public void assertLifecycle()
+	{
+		Counter c = new Counter();
+		Telemetry.setListener(c);
+		try
+		{
+			Assert<Integer> a = new Assert<Integer>(new LessThan(10), new RandomInteger(0, 1000).setSeed(0));
+			Assertions.assertFalse(a.check());
+			Assertions.assertEquals(1, c.m_started);
+			Assertions.assertEquals(1, c.m_ended);
+			Assertions.assertFalse(c.m_passed);
+			Assertions.assertEquals(a.getResult().getGenerated(), c.m_picks);
+			Assertions.assertEquals(a.getResult().getGenerated(), c.m_tries);
+			// Each restart of the search ends on a failing input
+			Assertions.assertTrue(c.m_failedTries > 0);
+			Assertions.assertEquals(a.getResult().getShrinkSteps(), c.m_shrinkSteps);
+			Assertions.assertEquals(a.getResult().getProgress().size() - c.m_failedTries, c.m_progress);
+		}
+		finally
+		{
+			Telemetry.setListener(null);
+		}
+	}
+
+	@Test
+	public void rejections()
+	{
+		Counter c = new Counter();
+		Telemetry.setListener(c);
+		try
+		{
+			Picker<Integer> p = new Even(new RandomInteger(0, 100).setSeed(0), 10);
+			for (int i = 0; i < 100; i++)
+			{
+				Assertions.assertEquals(0, p.pick() % 2);
+			}
+			Assertions.assertTrue(c.m_rejections > 0);
+			Assertions.assertEquals(0, c.m_giveUps);
+			p = new Even(new Constant<Integer>(1), 10);
+			try
+			{
+				p.pick();
+				Assertions.fail();
+			}
+			catch (GiveUpException e)
+			{
+				// Expected
+			}
+			Assertions.assertEquals(1, c.m_giveUps);
+			Assertions.assertEquals(11, c.m_lastBurst);
+		}
+		finally
+		{
+			Telemetry.setListener(null);
+		}
+	}
+
+	@Test
+	public void noListener()
+	{
+		Assertions.assertNull(Telemetry.getListener());
+		GiveUpException e = new GiveUpException();
+		Assertions.assertSame(e, Telemetry.gaveUp(this, e));
+	}
+
+	protected static class Even extends PickIf<Integer>
+	{
+		public Even(Picker<Integer> p, int max_iteration)
+		{
+			super(p);
+			m_maxIteration = max_iteration;
+		}
+
+		@Override
+		protected boolean select(Integer x)
+		{
+			return x % 2 == 0;
+		}
+	}
+
+	protected static class Counter extends Telemetry.Adapter
+	{
+		int m_started;
+		int m_ended;
+		boolean m_passed;
+		int m_picks;
+		int m_tries;
+		int m_failedTries;
+		int m_shrinkSteps;
+		int m_progress;
+		int m_rejections;
+		int m_lastBurst;
+		int m_giveUps;
+
+		@Override
+		public void checkStarted(Object checker)
+		{
+			m_started++;
+		}
+
+		@Override
+		public void checkEnded(Object checker, boolean passed, long duration, long tries, long shrink_steps)
+		{
+			m_ended++;
+			m_passed = passed;
+		}
+
+		@Override
+		public void picked(Picker<?> picker, long duration)
+		{
+			m_picks++;
+		}
+
+		@Override
+		public void tried(Object checker, long index, long duration, boolean failed)
+		{
+			m_tries++;
+			if (failed)
+			{
+				m_failedTries++;
+			}
+		}
+
+		@Override
+		public void shrinkStep(Object checker, long duration, boolean progress)
+		{
+			m_shrinkSteps++;
+			if (progress)
+			{
+				m_progress++;
+			}
+		}
+
+		@Override
+		public void rejected(Picker<?> picker, int count, long duration, boolean gave_up)
+		{
+			m_rejections += count;
+			m_lastBurst = count;
+		}
+
+		@Override
+		public void gaveUp(Object source, GiveUpException e)
+		{
+			m_giveUps++;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package ca.uqac.lif.synthia.util;
+
+import org.junit.jupiter.api.Assertions;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+
+/**
+ * Class for test use. Creates the picker trees, and makes the assertions on
+ * pickers, shared by several tests.
+ */
+public class TestPickers
+{
+	private TestPickers()
+	{
+		super();
+	}
+
+	/**
+	 * Creates a choice between two integer pickers, drawing from [0,1000[
+	 * and [1000,2000[ with equal probability.
+	 * @return The choice
+	 */
+	public static Choice<Integer> newChoice()
+	{
+		Choice<Integer> c = new Choice<Integer>(new RandomFloat());
+		c.add(new RandomInteger(0, 1000), 0.5).add(new RandomInteger(1000, 2000), 0.5);
+		return c;
+	}
+
+	/**
+	 * Asserts that two pickers produce the same values.
+	 * @param <T> The type of the values
+	 * @param expected The picker producing the expected values
+	 * @param actual The picker producing the actual values
+	 * @param n The number of values to compare
+	 */
+	public static <T> void assertSameValues(Picker<? extends T> expected, Picker<? extends T> actual, int n)
+	{
+		for (int i = 0; i < n; i++)
+		{
+			Assertions.assertEquals(expected.pick(), actual.pick());
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.coverage;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java agent inserting coverage probes into the classes of the object under
+ * test as they are loaded. The agent is enabled by starting the JVM with
+ * the option
+ * <pre>
+ * -javaagent:synthia-coverage.jar=com.foo.,com.bar.Baz
+ * </pre>
+ * where the argument is a comma-separated list of prefixes of the names of
+ * the classes to instrument. A {@link ca.uqac.lif.synthia.test.CoverageFuzzer
+ * CoverageFuzzer} running in this JVM then observes the edges exercised by
+ * these classes, without any change to their source code. The Synthia Core
+ * library must be on the class path of the application.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ * @see CoverageTransformer
+ */
+public class CoverageAgent
+{
+	private CoverageAgent()
+	{
+		super();
+		throw new UnsupportedOperationException("This class cannot be instantiated");
+	}
+
+	/**
+	 * Installs the transformer when the agent is given on the command line.
+	 * @param args The comma-separated prefixes of the names of the classes to
+	 * instrument
+	 * @param inst The instrumentation services of the JVM
+	 */
+	public static void premain(String args, Instrumentation inst)
+	{
+		inst.addTransformer(new CoverageTransformer(getPrefixes(args)));
+	}
+
+	/**
+	 * Splits the argument of the agent into class name prefixes.
+	 * @param args The argument, which may be <tt>null</tt>
+	 * @return The prefixes
+	 */
+	/*@ non_null @*/ public static String[] getPrefixes(/*@ null @*/ String args)
+	{
+		List<String> prefixes = new ArrayList<String>();
+		if (args != null)
+		{
+			for (String part : args.split(","))
+			{
+				part = part.trim();
+				if (!part.isEmpty())
+				{
+					prefixes.add(part);
+				}
+			}
+		}
+		if (prefixes.isEmpty())
+		{
+			// An empty prefix would instrument every class of the JVM
+			throw new IllegalArgumentException("The agent expects the prefixes of the classes to instrument");
+		}
+		return prefixes.toArray(new String[prefixes.size()]);
+	}
+}
@@ -0,0 +1,253 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.coverage;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Inserts calls to {@link ca.uqac.lif.synthia.test.CoverageMap#probe(int)
+ * CoverageMap.probe} into the bytecode of a class. A probe is placed at the
+ * start of each method, at the start of each branch (the target of a jump,
+ * a case of a switch, or an exception handler), and right after each
+ * conditional jump, so that taking or not taking a branch produces
+ * different edges. Each probe is given an identifier computed from the name
+ * of the class, the signature of the method and the position of the probe
+ * in the method, so that a class is instrumented the same way every time it
+ * is loaded.
+ * <p>
+ * Only the classes whose name starts with one of the prefixes given to the
+ * transformer are instrumented. Classes of Synthia itself are never
+ * instrumented, as they are not part of the object under test.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class CoverageTransformer implements ClassFileTransformer
+{
+	/**
+	 * The internal name of the class where probes are recorded.
+	 */
+	protected static final String MAP_CLASS = "ca/uqac/lif/synthia/test/CoverageMap";
+
+	/**
+	 * The prefix of the internal names of the classes of Synthia.
+	 */
+	protected static final String SYNTHIA_PREFIX = "ca/uqac/lif/synthia/";
+
+	/**
+	 * The prefixes of the internal names of the classes to instrument.
+	 */
+	/*@ non_null @*/ protected final String[] m_prefixes;
+
+	/**
+	 * Creates a new transformer.
+	 * @param prefixes The prefixes of the names of the classes to instrument,
+	 * such as <tt>com.foo.</tt> for all the classes of package
+	 * <tt>com.foo</tt> and its sub-packages
+	 */
+	public CoverageTransformer(String ... prefixes)
+	{
+		super();
+		m_prefixes = new String[prefixes.length];
+		for (int i = 0; i < prefixes.length; i++)
+		{
+			m_prefixes[i] = prefixes[i].replace('.', '/');
+		}
+	}
+
+	/**
+	 * Determines if a class is instrumented by this transformer.
+	 * @param class_name The internal name of the class, such as
+	 * <tt>com/foo/Bar</tt>
+	 * @return {@code true} if the class is instrumented, {@code false}
+	 * otherwise
+	 */
+	public boolean instruments(/*@ null @*/ String class_name)
+	{
+		if (class_name == null || class_name.startsWith(SYNTHIA_PREFIX))
+		{
+			return false;
+		}
+		for (String prefix : m_prefixes)
+		{
+			if (class_name.startsWith(prefix))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	/*@ null @*/ public byte[] transform(ClassLoader loader, String class_name, Class<?> redefined, ProtectionDomain domain, byte[] bytes)
+	{
+		if (!instruments(class_name))
+		{
+			return null;
+		}
+		try
+		{
+			return instrument(bytes);
+		}
+		catch (RuntimeException e)
+		{
+			// Leave the class untouched rather than preventing it from loading
+			return null;
+		}
+	}
+
+	/**
+	 * Inserts probes into the bytecode of a class.
+	 * @param bytes The bytecode of the class
+	 * @return The bytecode of the instrumented class
+	 */
+	/*@ non_null @*/ public byte[] instrument(/*@ non_null @*/ byte[] bytes)
+	{
+		ClassReader reader = new ClassReader(bytes);
+		ClassNode node = new ClassNode();
+		reader.accept(node, 0);
+		for (MethodNode m : node.methods)
+		{
+			instrument(node.name, m);
+		}
+		// Probes do not change the local variables or the stack at the
+		// boundaries of blocks: the existing frames remain valid
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		node.accept(writer);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Inserts probes into a method.
+	 * @param owner The internal name of the class
+	 * @param m The method
+	 */
+	protected void instrument(String owner, MethodNode m)
+	{
+		InsnList code = m.instructions;
+		if (code.size() == 0)
+		{
+			// Abstract or native method
+			return;
+		}
+		Set<LabelNode> targets = new HashSet<LabelNode>();
+		for (AbstractInsnNode n : code.toArray())
+		{
+			if (n instanceof JumpInsnNode)
+			{
+				targets.add(((JumpInsnNode) n).label);
+			}
+			else if (n instanceof TableSwitchInsnNode)
+			{
+				TableSwitchInsnNode s = (TableSwitchInsnNode) n;
+				targets.add(s.dflt);
+				targets.addAll(s.labels);
+			}
+			else if (n instanceof LookupSwitchInsnNode)
+			{
+				LookupSwitchInsnNode s = (LookupSwitchInsnNode) n;
+				targets.add(s.dflt);
+				targets.addAll(s.labels);
+			}
+		}
+		for (TryCatchBlockNode b : m.tryCatchBlocks)
+		{
+			targets.add(b.handler);
+		}
+		int seed = (owner + "." + m.name + m.desc).hashCode();
+		int count = 0;
+		code.insertBefore(firstInstruction(code.getFirst()), probe(seed, count++));
+		for (AbstractInsnNode n : code.toArray())
+		{
+			if (n instanceof LabelNode && targets.contains(n))
+			{
+				code.insertBefore(firstInstruction(n), probe(seed, count++));
+			}
+			else if (n instanceof JumpInsnNode && n.getOpcode() != Opcodes.GOTO && n.getOpcode() != Opcodes.JSR)
+			{
+				// The probe of the fall-through branch
+				code.insert(n, probe(seed, count++));
+			}
+		}
+	}
+
+	/**
+	 * Finds the first actual instruction at or after a node, skipping
+	 * labels, line numbers and frames. Inserting a probe before this
+	 * instruction keeps the frame at the start of a block in its place.
+	 * @param n The node
+	 * @return The instruction
+	 */
+	protected static AbstractInsnNode firstInstruction(AbstractInsnNode n)
+	{
+		while (n.getOpcode() < 0 && n.getNext() != null)
+		{
+			n = n.getNext();
+		}
+		return n;
+	}
+
+	/**
+	 * Creates the instructions calling a probe.
+	 * @param seed A number identifying the method
+	 * @param count The position of the probe in the method
+	 * @return The instructions
+	 */
+	protected static InsnList probe(int seed, int count)
+	{
+		InsnList l = new InsnList();
+		l.add(new LdcInsnNode(mix(seed + count * 0x9e3779b9)));
+		l.add(new MethodInsnNode(Opcodes.INVOKESTATIC, MAP_CLASS, "probe", "(I)V", false));
+		return l;
+	}
+
+	/**
+	 * Scrambles the bits of a number, so that probes of nearby positions in
+	 * a method get unrelated identifiers.
+	 * @param x The number
+	 * @return The scrambled number
+	 */
+	protected static int mix(int x)
+	{
+		x ^= x >>> 16;
+		x *= 0x85ebca6b;
+		x ^= x >>> 13;
+		x *= 0xc2b2ae35;
+		x ^= x >>> 16;
+		return x;
+	}
+}
@@ -0,0 +1,33 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Records the coverage of the object under test automatically, for use by
+ * a {@link ca.uqac.lif.synthia.test.CoverageFuzzer CoverageFuzzer}. The
+ * {@link CoverageAgent} is a Java agent that rewrites the bytecode of
+ * selected classes when they are loaded, inserting calls to
+ * {@link ca.uqac.lif.synthia.test.CoverageMap#probe(int) CoverageMap.probe}
+ * at the start of each method and of each branch. The object under test no
+ * longer needs to call the probes by hand.
+ * <p>
+ * Contrary to the Core project, this project depends on the
+ * <a href="https://asm.ow2.io">ASM</a> library.
+ * @ingroup API
+ */
+package ca.uqac.lif.synthia.coverage;
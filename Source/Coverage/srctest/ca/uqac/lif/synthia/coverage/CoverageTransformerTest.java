@@ -0,0 +1,213 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.coverage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.collection.ComposeList;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.test.Budget;
+import ca.uqac.lif.synthia.test.CoverageFuzzer;
+import ca.uqac.lif.synthia.test.CoverageMap;
+import ca.uqac.lif.synthia.test.Testable;
+
+public class CoverageTransformerTest
+{
+	@Test
+	public void findNestedCondition() throws Exception
+	{
+		Testable sut = load(Nested.class, true);
+		RandomInteger ints = new RandomInteger(0, 256);
+		ints.setSeed(0);
+		ComposeList<Integer> lists = new ComposeList<Integer>(ints, 4);
+		CoverageFuzzer<List<Integer>> f = new CoverageFuzzer<List<Integer>>(sut, lists);
+		f.setSeed(0).setBudget(new Budget().setMaxInvocations(200000));
+		Assertions.assertFalse(f.check());
+		List<Integer> found = f.getShrunk();
+		Assertions.assertEquals(17, (int) found.get(0));
+		Assertions.assertEquals(42, (int) found.get(1));
+		Assertions.assertEquals(99, (int) found.get(2));
+		Assertions.assertTrue(f.getCorpus().size() >= 3);
+	}
+
+	@Test
+	public void noInstrumentation() throws Exception
+	{
+		Testable sut = load(Nested.class, false);
+		RandomInteger ints = new RandomInteger(0, 256);
+		ints.setSeed(0);
+		CoverageFuzzer<List<Integer>> f = new CoverageFuzzer<List<Integer>>(sut, new ComposeList<Integer>(ints, 4));
+		f.setSeed(0).setBudget(new Budget().setMaxInvocations(1000));
+		Assertions.assertTrue(f.check());
+		Assertions.assertTrue(f.getCorpus().isEmpty());
+	}
+
+	@Test
+	public void sameBehavior() throws Exception
+	{
+		// Switches, exception handlers and constructors still run as before
+		Testable original = new Branches();
+		Testable instrumented = load(Branches.class, true);
+		CoverageMap m = new CoverageMap();
+		for (int i = -3; i < 10; i++)
+		{
+			CoverageMap.clear();
+			Assertions.assertEquals(original.test(i), instrumented.test(i));
+			m.merge();
+		}
+		Assertions.assertTrue(m.getEdgeCount() >= 10);
+	}
+
+	@Test
+	public void prefixes()
+	{
+		CoverageTransformer t = new CoverageTransformer(CoverageAgent.getPrefixes("com.foo., org.Bar"));
+		Assertions.assertTrue(t.instruments("com/foo/Baz"));
+		Assertions.assertTrue(t.instruments("com/foo/bar/Baz$1"));
+		Assertions.assertTrue(t.instruments("org/Bar"));
+		Assertions.assertFalse(t.instruments("com/food/Baz"));
+		Assertions.assertFalse(t.instruments(null));
+		Assertions.assertNull(t.transform(null, "java/lang/String", null, null, new byte[0]));
+		// Synthia is not part of the object under test
+		t = new CoverageTransformer("ca.uqac.");
+		Assertions.assertFalse(t.instruments("ca/uqac/lif/synthia/test/CoverageMap"));
+		Assertions.assertTrue(t.instruments("ca/uqac/foo/Bar"));
+		Assertions.assertEquals(Arrays.asList("a."), Arrays.asList(CoverageAgent.getPrefixes(" a., ")));
+	}
+
+	/**
+	 * Loads a class into a new class loader, possibly instrumented, and
+	 * creates an instance of it.
+	 * @param c The class
+	 * @param instrument Whether to instrument the class
+	 * @return The instance
+	 */
+	protected static Testable load(Class<?> c, boolean instrument) throws Exception
+	{
+		byte[] bytes = read(c);
+		if (instrument)
+		{
+			bytes = new CoverageTransformer().instrument(bytes);
+		}
+		Class<?> loaded = new Loader().define(c.getName(), bytes);
+		return (Testable) loaded.getDeclaredConstructor().newInstance();
+	}
+
+	protected static byte[] read(Class<?> c) throws IOException
+	{
+		String name = c.getName();
+		InputStream is = c.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class");
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int len;
+		while ((len = is.read(buffer)) >= 0)
+		{
+			os.write(buffer, 0, len);
+		}
+		is.close();
+		return os.toByteArray();
+	}
+
+	protected static class Loader extends ClassLoader
+	{
+		public Loader()
+		{
+			super(CoverageTransformerTest.class.getClassLoader());
+		}
+
+		public Class<?> define(String name, byte[] bytes)
+		{
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Fails only on lists starting with 17, 42, 99. Contrary to the object
+	 * used in the tests of the fuzzer, it calls no probe by itself.
+	 */
+	public static class Nested implements Testable
+	{
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean test(Object ... parameters)
+		{
+			List<Integer> l = (List<Integer>) parameters[0];
+			if (l.get(0) == 17)
+			{
+				if (l.get(1) == 42)
+				{
+					if (l.get(2) == 99)
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+	public static class Branches implements Testable
+	{
+		protected final int m_offset;
+
+		public Branches()
+		{
+			super();
+			m_offset = 2;
+		}
+
+		@Override
+		public boolean test(Object ... parameters)
+		{
+			int x = (Integer) parameters[0];
+			int y;
+			switch (x)
+			{
+			case 0:
+				y = 1;
+				break;
+			case 1:
+			case 2:
+				y = x * m_offset;
+				break;
+			case 1000:
+				y = -1;
+				break;
+			default:
+				y = x;
+			}
+			try
+			{
+				y = 10 / (y - m_offset);
+			}
+			catch (ArithmeticException e)
+			{
+				y = 0;
+			}
+			return y % 2 == 0;
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package examples.monkey;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import ca.uqac.lif.synthia.Resettable;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.test.Action;
+import ca.uqac.lif.synthia.test.Monkey;
+import ca.uqac.lif.synthia.test.Monkey.ActionMonkey;
+import ca.uqac.lif.synthia.test.Monkey.SwarmMonkey;
+import ca.uqac.lif.synthia.test.Swarm;
+import ca.uqac.lif.synthia.util.Choice;
+
+/**
+ * Compares the number of failures found per minute by an {@link ActionMonkey}
+ * drawing from the full mix of actions, and by a {@link SwarmMonkey} that
+ * disables a random subset of actions in each attempt.
+ * <p>
+ * The component is a stack with two faults:
+ * <ul>
+ * <li>it overflows when it contains 20 elements;</li>
+ * <li>peeking at the stack right after popping its last element throws an
+ * exception.</li>
+ * </ul>
+ * Five actions are possible: push, pop, peek, clear and size, each with the
+ * same probability. When all five are enabled, the size of the stack
+ * hovers around a few elements, and the overflow is practically never
+ * reached. A swarm configuration without <i>pop</i> and <i>clear</i> reaches
+ * it in a few dozen actions; the swarm then learns that these two actions
+ * should rather be disabled, and that <i>push</i> should be enabled.
+ * <p>
+ * A typical output is:
+ * <pre>
+ * ActionMonkey: 1396436.8 failures/min, distinct failures: [EmptyStack]
+ * SwarmMonkey: 1642197.5 failures/min, distinct failures: [EmptyStack, Overflow]
+ * Failing configurations: {11110=3955, 11101=8427, 11111=3116, 10100=17516, ...}
+ * </pre>
+ * The columns of a configuration are push, pop, peek, clear and size, in
+ * this order.
+ * The duration of each campaign, in seconds, can be passed as the first
+ * argument.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup Examples
+ */
+public class SwarmStack
+{
+	public static void main(String[] args)
+	{
+		long duration = (args.length > 0 ? Long.parseLong(args[0]) : 10) * 1000000000L;
+		Stack stack = new Stack();
+		Set<String> distinct = new HashSet<String>();
+		int failures = 0;
+		long start = System.nanoTime();
+		for (int seed = 0; System.nanoTime() - start < duration; seed++)
+		{
+			Choice<Action> actions = new Choice<Action>(new RandomFloat().setSeed(seed));
+			addActions(actions, stack);
+			stack.reset();
+			Monkey m = new ActionMonkey(stack, actions, new RandomFloat().setSeed(seed), null).shrink(false);
+			if (!m.check())
+			{
+				failures++;
+				distinct.add(m.getException().getMessage());
+			}
+		}
+		System.out.println("ActionMonkey: " + perMinute(failures, System.nanoTime() - start) + " failures/min, distinct failures: " + distinct);
+		distinct.clear();
+		failures = 0;
+		Choice<Action> all = new Choice<Action>(new RandomFloat());
+		addActions(all, stack);
+		Swarm<Action> swarm = new Swarm<Action>(new RandomFloat().setSeed(0), all);
+		start = System.nanoTime();
+		for (int seed = 0; System.nanoTime() - start < duration; seed++)
+		{
+			Monkey m = new SwarmMonkey(stack, swarm, new RandomFloat().setSeed(seed), null).shrink(false);
+			if (!m.check())
+			{
+				failures++;
+				distinct.add(m.getException().getMessage());
+			}
+		}
+		System.out.println("SwarmMonkey: " + perMinute(failures, System.nanoTime() - start) + " failures/min, distinct failures: " + distinct);
+		System.out.println("Failing configurations: " + swarm.getFailingConfigurations());
+	}
+
+	/**
+	 * Adds the five stack actions to a choice, with equal probabilities.
+	 * @param c The choice
+	 * @param s The stack
+	 */
+	protected static void addActions(Choice<Action> c, Stack s)
+	{
+		for (String name : new String[] {"push", "pop", "peek", "clear", "size"})
+		{
+			c.add(new StackAction(s, name), 0.2f);
+		}
+	}
+
+	/**
+	 * Computes a number of failures per minute.
+	 * @param failures The number of failures
+	 * @param nanos The duration of the campaign
+	 * @return The number of failures per minute
+	 */
+	protected static double perMinute(int failures, long nanos)
+	{
+		return Math.round(failures * 600e9 / nanos) / 10d;
+	}
+
+	/**
+	 * A stack of integers with two faults.
+	 */
+	public static class Stack implements Resettable
+	{
+		/**
+		 * The elements of the stack.
+		 */
+		protected int[] m_elements = new int[20];
+
+		/**
+		 * The number of elements in the stack.
+		 */
+		protected int m_size;
+
+		/**
+		 * A flag set when the last element of the stack has just been popped.
+		 */
+		protected boolean m_emptied;
+
+		public void push(int x)
+		{
+			if (m_size == m_elements.length)
+			{
+				throw new IllegalStateException("Overflow");
+			}
+			m_elements[m_size++] = x;
+			m_emptied = false;
+		}
+
+		public int pop()
+		{
+			if (m_size == 0)
+			{
+				return -1;
+			}
+			m_emptied = m_size == 1;
+			return m_elements[--m_size];
+		}
+
+		public int peek()
+		{
+			if (m_emptied)
+			{
+				throw new IllegalStateException("EmptyStack");
+			}
+			return m_size == 0 ? -1 : m_elements[m_size - 1];
+		}
+
+		public int size()
+		{
+			return m_size;
+		}
+
+		@Override
+		public void reset()
+		{
+			m_size = 0;
+			m_emptied = false;
+		}
+	}
+
+	/**
+	 * An action calling one of the methods of the stack.
+	 */
+	protected static class StackAction implements Action
+	{
+		/**
+		 * The stack.
+		 */
+		protected final Stack m_stack;
+
+		/**
+		 * The name of the method.
+		 */
+		protected final String m_name;
+
+		public StackAction(Stack s, String name)
+		{
+			super();
+			m_stack = s;
+			m_name = name;
+		}
+
+		@Override
+		public void doAction()
+		{
+			switch (m_name)
+			{
+			case "push":
+				m_stack.push(m_stack.size());
+				break;
+			case "pop":
+				m_stack.pop();
+				break;
+			case "peek":
+				m_stack.peek();
+				break;
+			case "clear":
+				m_stack.reset();
+				break;
+			default:
+				m_stack.size();
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return m_name;
+		}
+	}
+}
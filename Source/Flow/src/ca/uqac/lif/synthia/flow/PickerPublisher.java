@@ -0,0 +1,415 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.flow;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ca.uqac.lif.synthia.Bounded;
+import ca.uqac.lif.synthia.NoMoreElementException;
+import ca.uqac.lif.synthia.Picker;
+
+/**
+ * Publisher producing the objects of a picker to
+ * {@link Flow.Subscriber Flow.Subscriber}s. The publisher honors
+ * back-pressure: an object is only picked when a subscriber has requested
+ * it through {@link Flow.Subscription#request(long) request()}, so that
+ * requesting <i>n</i> objects produces exactly <i>n</i> calls to
+ * {@link Picker#pick() pick()}. The stream completes when the picker is a
+ * {@link Bounded} picker that is done, or when it throws a
+ * {@link NoMoreElementException}; any other exception thrown by the picker
+ * terminates the stream with an error.
+ * <p>
+ * Each subscription receives its own copy of the picker, obtained with
+ * {@link Picker#duplicate(boolean) duplicate(true)} when the subscriber
+ * subscribes: all subscribers therefore receive the same objects, and the
+ * picker given to the publisher is never picked from. The objects of a
+ * subscription are picked and delivered by tasks submitted to an executor,
+ * in batches of bounded size; a subscription is only run by one task at a
+ * time, so that its copy of the picker is never used by two threads at
+ * once, even though successive batches may run on different threads. A
+ * subscription with outstanding demand yields its thread after each batch,
+ * which lets several subscriptions share the same executor fairly.
+ * 
+ * @param <T> The type of the objects produced by the picker
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class PickerPublisher<T> implements Flow.Publisher<T>
+{
+	/**
+	 * The default maximum number of objects delivered by a task.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/**
+	 * The picker of which each subscription receives a copy.
+	 */
+	/*@ non_null @*/ protected final Picker<T> m_picker;
+
+	/**
+	 * The executor running the tasks delivering the objects.
+	 */
+	/*@ non_null @*/ protected final Executor m_executor;
+
+	/**
+	 * The maximum number of objects delivered by a task.
+	 */
+	protected volatile int m_batchSize;
+
+	/**
+	 * Creates a new publisher delivering objects from the common fork-join
+	 * pool.
+	 * @param picker The picker of which each subscription receives a copy
+	 */
+	public PickerPublisher(/*@ non_null @*/ Picker<T> picker)
+	{
+		this(picker, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a new publisher.
+	 * @param picker The picker of which each subscription receives a copy
+	 * @param executor The executor running the tasks delivering the objects
+	 */
+	public PickerPublisher(/*@ non_null @*/ Picker<T> picker, /*@ non_null @*/ Executor executor)
+	{
+		super();
+		m_picker = picker;
+		m_executor = executor;
+		m_batchSize = DEFAULT_BATCH_SIZE;
+	}
+
+	/**
+	 * Sets the maximum number of objects delivered by a task, before the
+	 * subscription yields its thread.
+	 * @param size The size
+	 * @return This publisher
+	 */
+	/*@ non_null @*/ public PickerPublisher<T> setBatchSize(int size)
+	{
+		m_batchSize = Math.max(1, size);
+		return this;
+	}
+
+	@Override
+	public void subscribe(/*@ non_null @*/ Flow.Subscriber<? super T> subscriber)
+	{
+		if (subscriber == null)
+		{
+			throw new NullPointerException("Subscriber is null");
+		}
+		Picker<T> copy;
+		synchronized (m_picker)
+		{
+			copy = m_picker.duplicate(true);
+		}
+		new PickerSubscription<T>(copy, subscriber, m_executor, m_batchSize).start();
+	}
+
+	/**
+	 * Subscription delivering the objects of a copy of the picker to a
+	 * subscriber. The number of pending calls to {@link #run()} is kept in
+	 * a counter: a task is only submitted to the executor when the counter
+	 * goes from zero to one, and the task keeps delivering objects until it
+	 * has accounted for all the calls made in the meantime.
+	 * @param <T> The type of the objects produced by the picker
+	 */
+	protected static class PickerSubscription<T> implements Flow.Subscription, Runnable
+	{
+		/**
+		 * The copy of the picker, which is set to <tt>null</tt> once the
+		 * stream is terminated.
+		 */
+		/*@ null @*/ protected Picker<T> m_picker;
+
+		/**
+		 * The subscriber receiving the objects.
+		 */
+		/*@ non_null @*/ protected final Flow.Subscriber<? super T> m_subscriber;
+
+		/**
+		 * The executor running the tasks delivering the objects.
+		 */
+		/*@ non_null @*/ protected final Executor m_executor;
+
+		/**
+		 * The maximum number of objects delivered by a task.
+		 */
+		protected final int m_batchSize;
+
+		/**
+		 * The number of objects requested and not yet delivered, or
+		 * {@link Long#MAX_VALUE} if the demand is unbounded.
+		 */
+		/*@ non_null @*/ protected final AtomicLong m_demand;
+
+		/**
+		 * The number of calls to {@link #run()} that remain to be accounted
+		 * for.
+		 */
+		/*@ non_null @*/ protected final AtomicInteger m_pending;
+
+		/**
+		 * A flag set when the subscriber cancels the subscription.
+		 */
+		protected volatile boolean m_cancelled;
+
+		/**
+		 * An error caused by a call to {@link #request(long)} with a
+		 * non-positive argument, to be signalled to the subscriber.
+		 */
+		/*@ null @*/ protected volatile Throwable m_error;
+
+		/**
+		 * A flag indicating that {@link Flow.Subscriber#onSubscribe(Flow.Subscription)
+		 * onSubscribe()} has been called. This field is only accessed by the
+		 * task running the subscription.
+		 */
+		protected boolean m_started;
+
+		/**
+		 * Creates a new subscription.
+		 * @param picker The copy of the picker
+		 * @param subscriber The subscriber receiving the objects
+		 * @param executor The executor running the tasks delivering the
+		 * objects
+		 * @param batch_size The maximum number of objects delivered by a task
+		 */
+		public PickerSubscription(/*@ non_null @*/ Picker<T> picker, /*@ non_null @*/ Flow.Subscriber<? super T> subscriber, /*@ non_null @*/ Executor executor, int batch_size)
+		{
+			super();
+			m_picker = picker;
+			m_subscriber = subscriber;
+			m_executor = executor;
+			m_batchSize = batch_size;
+			m_demand = new AtomicLong(0);
+			m_pending = new AtomicInteger(0);
+			m_cancelled = false;
+			m_error = null;
+			m_started = false;
+		}
+
+		/**
+		 * Submits the first task, which calls
+		 * {@link Flow.Subscriber#onSubscribe(Flow.Subscription) onSubscribe()}.
+		 */
+		protected void start()
+		{
+			schedule();
+		}
+
+		@Override
+		public void request(long n)
+		{
+			if (n <= 0)
+			{
+				m_error = new IllegalArgumentException("Non-positive request: " + n);
+			}
+			else
+			{
+				long current, next;
+				do
+				{
+					current = m_demand.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				}
+				while (!m_demand.compareAndSet(current, next));
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel()
+		{
+			m_cancelled = true;
+			schedule();
+		}
+
+		/**
+		 * Submits a task running the subscription, unless one is already
+		 * pending.
+		 */
+		protected void schedule()
+		{
+			if (m_pending.getAndIncrement() == 0)
+			{
+				submit();
+			}
+		}
+
+		/**
+		 * Submits a task running the subscription to the executor. If the
+		 * executor rejects it, the stream is terminated with an error. Since
+		 * no other task can run the subscription at this point, the error is
+		 * signalled from the calling thread.
+		 */
+		protected void submit()
+		{
+			try
+			{
+				m_executor.execute(this);
+			}
+			catch (RuntimeException e)
+			{
+				if (!m_started)
+				{
+					m_started = true;
+					m_picker = null;
+					m_subscriber.onSubscribe(this);
+				}
+				terminate(e);
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			int missed = 1;
+			if (!m_started)
+			{
+				m_started = true;
+				try
+				{
+					m_subscriber.onSubscribe(this);
+				}
+				catch (Throwable t)
+				{
+					// Rule 2.13: the subscriber is considered cancelled
+					m_cancelled = true;
+				}
+			}
+			for (;;)
+			{
+				if (deliver())
+				{
+					// The batch is full and demand remains: yield the thread
+					submit();
+					return;
+				}
+				missed = m_pending.addAndGet(-missed);
+				if (missed == 0)
+				{
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Delivers at most one batch of objects to the subscriber, or
+		 * terminates the stream.
+		 * @return <tt>true</tt> if the batch is full and objects remain to
+		 * be delivered, <tt>false</tt> otherwise
+		 */
+		protected boolean deliver()
+		{
+			Picker<T> p = m_picker;
+			if (p == null)
+			{
+				// The stream is terminated
+				return false;
+			}
+			for (int delivered = 0; ; delivered++)
+			{
+				if (m_cancelled)
+				{
+					m_picker = null;
+					return false;
+				}
+				Throwable error = m_error;
+				if (error != null)
+				{
+					// Rule 3.9: an illegal request terminates the stream
+					terminate(error);
+					return false;
+				}
+				if (p instanceof Bounded && ((Bounded<?>) p).isDone())
+				{
+					terminate(null);
+					return false;
+				}
+				long demand = m_demand.get();
+				if (demand == 0)
+				{
+					return false;
+				}
+				if (delivered == m_batchSize)
+				{
+					return true;
+				}
+				T t;
+				try
+				{
+					t = p.pick();
+				}
+				catch (NoMoreElementException e)
+				{
+					terminate(null);
+					return false;
+				}
+				catch (RuntimeException e)
+				{
+					terminate(e);
+					return false;
+				}
+				if (demand != Long.MAX_VALUE)
+				{
+					m_demand.decrementAndGet();
+				}
+				try
+				{
+					m_subscriber.onNext(t);
+				}
+				catch (Throwable e)
+				{
+					// Rule 2.13: the subscriber is considered cancelled
+					m_cancelled = true;
+				}
+			}
+		}
+
+		/**
+		 * Terminates the stream, and releases the copy of the picker.
+		 * @param error The error to signal to the subscriber, or
+		 * <tt>null</tt> to signal the completion of the stream
+		 */
+		protected void terminate(/*@ null @*/ Throwable error)
+		{
+			m_picker = null;
+			try
+			{
+				if (error == null)
+				{
+					m_subscriber.onComplete();
+				}
+				else
+				{
+					m_subscriber.onError(error);
+				}
+			}
+			catch (Throwable t)
+			{
+				// Rule 2.13: nothing more can be signalled to the subscriber
+			}
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Exposes pickers as
+ * <a href="https://docs.oracle.com/javase/9/docs/api/java/util/concurrent/Flow.html">Reactive
+ * Streams</a> publishers, so that generated objects can be fed into
+ * reactive pipelines. A {@link PickerPublisher} only picks as many objects
+ * as its subscribers request, from the threads of an executor.
+ * <p>
+ * Contrary to the rest of Synthia, this project requires Java 9.
+ * @ingroup API
+ */
+package ca.uqac.lif.synthia.flow;
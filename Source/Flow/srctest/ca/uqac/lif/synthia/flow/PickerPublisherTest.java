@@ -0,0 +1,213 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.flow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.enumerative.AllBooleans;
+import ca.uqac.lif.synthia.random.RandomFloat;
+import ca.uqac.lif.synthia.random.RandomInteger;
+import ca.uqac.lif.synthia.util.Choice;
+import ca.uqac.lif.synthia.util.Constant;
+import ca.uqac.lif.synthia.util.Once;
+
+public class PickerPublisherTest
+{
+	/**
+	 * An executor running each task in the calling thread, which makes the
+	 * delivery of objects synchronous.
+	 */
+	protected static final Executor s_inline = new Executor()
+	{
+		@Override
+		public void execute(Runnable r)
+		{
+			r.run();
+		}
+	};
+
+	@Test
+	public void exactDemand()
+	{
+		AtomicInteger picks = new AtomicInteger();
+		PickerPublisher<Integer> pub = new PickerPublisher<Integer>(new Counting(new RandomInteger(0, 10), picks), s_inline).setBatchSize(3);
+		Collector s = new Collector(7);
+		pub.subscribe(s);
+		Assertions.assertEquals(7, s.m_values.size());
+		Assertions.assertEquals(7, picks.get());
+		s.m_subscription.request(10);
+		Assertions.assertEquals(17, s.m_values.size());
+		Assertions.assertEquals(17, picks.get());
+		s.m_subscription.cancel();
+		s.m_subscription.request(5);
+		Assertions.assertEquals(17, picks.get());
+		Assertions.assertFalse(s.m_complete);
+		Assertions.assertNull(s.m_error);
+	}
+
+	@Test
+	public void completeOnBounded()
+	{
+		Collector s = new Collector(Long.MAX_VALUE);
+		new PickerPublisher<Boolean>(new AllBooleans(), s_inline).subscribe(s);
+		Assertions.assertEquals(2, s.m_values.size());
+		Assertions.assertTrue(s.m_complete);
+		// The end of a picker that is not bounded is found when picking
+		s = new Collector(0);
+		new PickerPublisher<Integer>(new Once<Integer>(new Constant<Integer>(1)), s_inline).subscribe(s);
+		Assertions.assertFalse(s.m_complete);
+		s.m_subscription.request(5);
+		Assertions.assertEquals(1, s.m_values.size());
+		Assertions.assertTrue(s.m_complete);
+	}
+
+	@Test
+	public void illegalRequest()
+	{
+		Collector s = new Collector(0);
+		new PickerPublisher<Integer>(new RandomInteger(0, 10), s_inline).subscribe(s);
+		s.m_subscription.request(0);
+		Assertions.assertTrue(s.m_error instanceof IllegalArgumentException);
+		Assertions.assertTrue(s.m_values.isEmpty());
+		s.m_subscription.request(3);
+		Assertions.assertTrue(s.m_values.isEmpty());
+	}
+
+	@Test
+	public void separateExecutors() throws InterruptedException
+	{
+		Choice<Integer> c = new Choice<Integer>(new RandomFloat());
+		c.add(new RandomInteger(0, 1000), 0.5).add(new RandomInteger(1000, 2000), 0.5);
+		ExecutorService e1 = Executors.newFixedThreadPool(2), e2 = Executors.newFixedThreadPool(2);
+		try
+		{
+			Collector s1 = new Collector(5000), s2 = new Collector(5000);
+			new PickerPublisher<Integer>(c, e1).setBatchSize(16).subscribe(s1);
+			new PickerPublisher<Integer>(c, e2).setBatchSize(16).subscribe(s2);
+			Assertions.assertTrue(s1.m_received.await(10, TimeUnit.SECONDS));
+			Assertions.assertTrue(s2.m_received.await(10, TimeUnit.SECONDS));
+			// Each subscription picks from its own copy of the whole tree
+			Assertions.assertEquals(s1.m_values, s2.m_values);
+			Assertions.assertEquals(c.duplicate(false).pick(), c.pick());
+		}
+		finally
+		{
+			e1.shutdown();
+			e2.shutdown();
+		}
+	}
+
+	protected static class Collector implements Flow.Subscriber<Object>
+	{
+		protected final long m_initial;
+
+		protected final List<Object> m_values;
+
+		protected final CountDownLatch m_received;
+
+		protected Flow.Subscription m_subscription;
+
+		protected volatile boolean m_complete;
+
+		protected volatile Throwable m_error;
+
+		public Collector(long initial)
+		{
+			super();
+			m_initial = initial;
+			m_values = Collections.synchronizedList(new ArrayList<Object>());
+			m_received = new CountDownLatch(initial > 0 && initial < Integer.MAX_VALUE ? (int) initial : 0);
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription s)
+		{
+			m_subscription = s;
+			if (m_initial > 0)
+			{
+				s.request(m_initial);
+			}
+		}
+
+		@Override
+		public void onNext(Object o)
+		{
+			m_values.add(o);
+			m_received.countDown();
+		}
+
+		@Override
+		public void onError(Throwable t)
+		{
+			m_error = t;
+		}
+
+		@Override
+		public void onComplete()
+		{
+			m_complete = true;
+		}
+	}
+
+	protected static class Counting implements Picker<Integer>
+	{
+		protected final Picker<Integer> m_picker;
+
+		protected final AtomicInteger m_picks;
+
+		public Counting(Picker<Integer> picker, AtomicInteger picks)
+		{
+			super();
+			m_picker = picker;
+			m_picks = picks;
+		}
+
+		@Override
+		public Integer pick()
+		{
+			m_picks.incrementAndGet();
+			return m_picker.pick();
+		}
+
+		@Override
+		public void reset()
+		{
+			m_picker.reset();
+		}
+
+		@Override
+		public Counting duplicate(boolean with_state)
+		{
+			return new Counting(m_picker.duplicate(with_state), m_picks);
+		}
+	}
+}
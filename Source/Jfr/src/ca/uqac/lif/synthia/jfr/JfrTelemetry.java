@@ -0,0 +1,432 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.synthia.jfr;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import ca.uqac.lif.synthia.GiveUpException;
+import ca.uqac.lif.synthia.Picker;
+import ca.uqac.lif.synthia.util.Telemetry;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Telemetry listener that turns each lifecycle event into a Java Flight
+ * Recorder event. A typical use is to call {@link #install()} when the
+ * program starts; events are then only produced while a recording is
+ * running, for instance after <tt>jcmd &lt;pid&gt; JFR.start</tt>. When no
+ * recording is running, each notification amounts to a check of the state
+ * of the corresponding event type.
+ * <p>
+ * To keep the overhead low, the picks of a checker's input picker are
+ * sampled: only one pick out of {@link #getSamplingPeriod()} in each
+ * thread produces a {@link PickEvent}. Likewise, a {@link RejectionEvent}
+ * is only produced when a filtering picker rejects at least
+ * {@link #getBurstThreshold()} values in a row, or gives up.
+ * 
+ * @author Sylvain Hallé
+ * @ingroup API
+ */
+public class JfrTelemetry implements Telemetry.Listener
+{
+	/**
+	 * The default number of picks for which a single event is produced.
+	 */
+	public static final int DEFAULT_SAMPLING_PERIOD = 100;
+
+	/**
+	 * The default minimum number of rejections for which an event is
+	 * produced.
+	 */
+	public static final int DEFAULT_BURST_THRESHOLD = 10;
+
+	/**
+	 * The number of picks for which a single event is produced.
+	 */
+	protected final int m_samplingPeriod;
+
+	/**
+	 * The minimum number of rejections in a row for which an event is
+	 * produced.
+	 */
+	protected final int m_burstThreshold;
+
+	/**
+	 * The number of picks seen by each thread since the last sampled pick.
+	 */
+	/*@ non_null @*/ protected final ThreadLocal<int[]> m_pickCounts;
+
+	/**
+	 * The events of the checks in progress, indexed by checker.
+	 */
+	/*@ non_null @*/ protected final Map<Object,CheckEvent> m_checks;
+
+	/**
+	 * Installs a new instance of this listener with the default settings.
+	 * @return The listener
+	 */
+	/*@ non_null @*/ public static JfrTelemetry install()
+	{
+		return install(DEFAULT_SAMPLING_PERIOD, DEFAULT_BURST_THRESHOLD);
+	}
+
+	/**
+	 * Installs a new instance of this listener.
+	 * @param period The number of picks for which a single event is produced
+	 * @param threshold The minimum number of rejections in a row for which an
+	 * event is produced
+	 * @return The listener
+	 */
+	/*@ non_null @*/ public static JfrTelemetry install(int period, int threshold)
+	{
+		JfrTelemetry t = new JfrTelemetry(period, threshold);
+		Telemetry.setListener(t);
+		return t;
+	}
+
+	/**
+	 * Removes the listener currently installed, if any.
+	 */
+	public static void uninstall()
+	{
+		Telemetry.setListener(null);
+	}
+
+	/**
+	 * Creates a new listener.
+	 * @param period The number of picks for which a single event is produced
+	 * @param threshold The minimum number of rejections in a row for which an
+	 * event is produced
+	 */
+	public JfrTelemetry(int period, int threshold)
+	{
+		super();
+		if (period < 1)
+		{
+			throw new IllegalArgumentException("Sampling period must be positive");
+		}
+		m_samplingPeriod = period;
+		m_burstThreshold = threshold;
+		m_pickCounts = new ThreadLocal<int[]>()
+		{
+			@Override
+			protected int[] initialValue()
+			{
+				return new int[1];
+			}
+		};
+		m_checks = Collections.synchronizedMap(new IdentityHashMap<Object,CheckEvent>());
+	}
+
+	/**
+	 * Gets the number of picks for which a single event is produced.
+	 * @return The period
+	 */
+	/*@ pure @*/ public int getSamplingPeriod()
+	{
+		return m_samplingPeriod;
+	}
+
+	/**
+	 * Gets the minimum number of rejections in a row for which an event is
+	 * produced.
+	 * @return The threshold
+	 */
+	/*@ pure @*/ public int getBurstThreshold()
+	{
+		return m_burstThreshold;
+	}
+
+	@Override
+	public void checkStarted(Object checker)
+	{
+		CheckEvent e = new CheckEvent();
+		if (e.isEnabled())
+		{
+			e.begin();
+			m_checks.put(checker, e);
+		}
+	}
+
+	@Override
+	public void checkEnded(Object checker, boolean passed, long duration, long tries, long shrink_steps)
+	{
+		CheckEvent e = m_checks.remove(checker);
+		if (e == null)
+		{
+			// The recording was not running when the check started
+			return;
+		}
+		e.end();
+		e.checker = checker.getClass().getName();
+		e.passed = passed;
+		e.tries = tries;
+		e.shrinkSteps = shrink_steps;
+		e.commit();
+	}
+
+	@Override
+	public void picked(Picker<?> picker, long duration)
+	{
+		PickEvent e = new PickEvent();
+		if (!e.isEnabled())
+		{
+			return;
+		}
+		int[] count = m_pickCounts.get();
+		if (++count[0] < m_samplingPeriod)
+		{
+			return;
+		}
+		count[0] = 0;
+		e.picker = picker.getClass().getName();
+		e.elapsed = duration;
+		e.period = m_samplingPeriod;
+		e.commit();
+	}
+
+	@Override
+	public void tried(Object checker, long index, long duration, boolean failed)
+	{
+		TryEvent e = new TryEvent();
+		if (e.isEnabled())
+		{
+			e.checker = checker.getClass().getName();
+			e.index = index;
+			e.elapsed = duration;
+			e.failed = failed;
+			e.commit();
+		}
+	}
+
+	@Override
+	public void shrinkStep(Object checker, long duration, boolean progress)
+	{
+		ShrinkStepEvent e = new ShrinkStepEvent();
+		if (e.isEnabled())
+		{
+			e.checker = checker.getClass().getName();
+			e.elapsed = duration;
+			e.progress = progress;
+			e.commit();
+		}
+	}
+
+	@Override
+	public void reset(Object checker, long duration)
+	{
+		ResetEvent e = new ResetEvent();
+		if (e.isEnabled())
+		{
+			e.checker = checker.getClass().getName();
+			e.elapsed = duration;
+			e.commit();
+		}
+	}
+
+	@Override
+	public void rejected(Picker<?> picker, int count, long duration, boolean gave_up)
+	{
+		if (count < m_burstThreshold && !gave_up)
+		{
+			return;
+		}
+		RejectionEvent e = new RejectionEvent();
+		if (e.isEnabled())
+		{
+			e.picker = picker.getClass().getName();
+			e.count = count;
+			e.elapsed = duration;
+			e.gaveUp = gave_up;
+			e.commit();
+		}
+	}
+
+	@Override
+	public void gaveUp(Object source, GiveUpException ex)
+	{
+		GiveUpEvent e = new GiveUpEvent();
+		if (e.isEnabled())
+		{
+			e.source = source.getClass().getName();
+			e.message = ex.getMessage();
+			e.commit();
+		}
+	}
+
+	/**
+	 * Event spanning a whole call to the <tt>check</tt> method of an
+	 * {@link ca.uqac.lif.synthia.test.Assert Assert} or a
+	 * {@link ca.uqac.lif.synthia.test.Monkey Monkey}.
+	 */
+	@Name("ca.uqac.lif.synthia.Check")
+	@Label("Check")
+	@Description("Search for a failing input, followed by its shrinking")
+	@Category("Synthia")
+	@StackTrace(false)
+	public static class CheckEvent extends Event
+	{
+		@Label("Checker")
+		public String checker;
+
+		@Label("Passed")
+		@Description("Whether no failing input has been found")
+		public boolean passed;
+
+		@Label("Tries")
+		@Description("Number of inputs or action sequences tried")
+		public long tries;
+
+		@Label("Shrinking Steps")
+		public long shrinkSteps;
+	}
+
+	/**
+	 * Sampled event for a pick of the input picker of a checker.
+	 */
+	@Name("ca.uqac.lif.synthia.Pick")
+	@Label("Pick")
+	@Description("Sampled call to the pick method of a checker's input picker")
+	@Category("Synthia")
+	@StackTrace(false)
+	public static class PickEvent extends Event
+	{
+		@Label("Picker")
+		public String picker;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		public long elapsed;
+
+		@Label("Sampling Period")
+		@Description("Number of picks represented by this event")
+		public int period;
+	}
+
+	/**
+	 * Event for an input tested during the search phase of a checker.
+	 */
+	@Name("ca.uqac.lif.synthia.Try")
+	@Label("Try")
+	@Description("Input or action sequence tried during the search for a failing input")
+	@Category("Synthia")
+	@StackTrace(false)
+	public static class TryEvent extends Event
+	{
+		@Label("Checker")
+		public String checker;
+
+		@Label("Index")
+		public long index;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		public long elapsed;
+
+		@Label("Failed")
+		public boolean failed;
+	}
+
+	/**
+	 * Event for a candidate tested while shrinking a failing input.
+	 */
+	@Name("ca.uqac.lif.synthia.ShrinkStep")
+	@Label("Shrinking Step")
+	@Description("Candidate tested while shrinking a failing input")
+	@Category("Synthia")
+	@StackTrace(false)
+	public static class ShrinkStepEvent extends Event
+	{
+		@Label("Checker")
+		public String checker;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		public long elapsed;
+
+		@Label("Progress")
+		@Description("Whether the candidate replaces the current failing input")
+		public boolean progress;
+	}
+
+	/**
+	 * Event for a reset of the object under test by a monkey.
+	 */
+	@Name("ca.uqac.lif.synthia.Reset")
+	@Label("Reset")
+	@Description("Reset of the object under test")
+	@Category("Synthia")
+	@StackTrace(false)
+	public static class ResetEvent extends Event
+	{
+		@Label("Checker")
+		public String checker;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		public long elapsed;
+	}
+
+	/**
+	 * Event for a burst of values rejected by a filtering picker.
+	 */
+	@Name("ca.uqac.lif.synthia.Rejection")
+	@Label("Rejection Burst")
+	@Description("Values rejected in a row by a filtering picker")
+	@Category("Synthia")
+	@StackTrace(false)
+	public static class RejectionEvent extends Event
+	{
+		@Label("Picker")
+		public String picker;
+
+		@Label("Count")
+		public int count;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		public long elapsed;
+
+		@Label("Gave Up")
+		public boolean gaveUp;
+	}
+
+	/**
+	 * Event for a {@link GiveUpException} about to be thrown.
+	 */
+	@Name("ca.uqac.lif.synthia.GiveUp")
+	@Label("Give Up")
+	@Description("A picker gave up producing a value")
+	@Category("Synthia")
+	public static class GiveUpEvent extends Event
+	{
+		@Label("Source")
+		public String source;
+
+		@Label("Message")
+		public String message;
+	}
+}
@@ -0,0 +1,32 @@
+/*
+    Synthia, a data structure generator
+    Copyright (C) 2019-2021 Laboratoire d'informatique formelle
+    Université du Québec à Chicoutimi, Canada
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Reports the generation, checking and shrinking lifecycle of Synthia as
+ * <a href="https://docs.oracle.com/en/java/javase/11/docs/api/jdk.jfr/jdk/jfr/package-summary.html">Java
+ * Flight Recorder</a> events. Once {@link JfrTelemetry#install()} has been
+ * called, a recording started with <tt>jcmd &lt;pid&gt; JFR.start</tt> (or
+ * the <tt>-XX:StartFlightRecording</tt> option) contains the events of the
+ * <em>Synthia</em> category, which can be browsed with JDK Mission Control
+ * or <tt>jfr print</tt>.
+ * <p>
+ * Contrary to the rest of Synthia, this project requires Java 11.
+ * @ingroup API
+ */
+package ca.uqac.lif.synthia.jfr;